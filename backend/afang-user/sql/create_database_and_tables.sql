@@ -14,7 +14,7 @@ USE afang;
 -- 用户表 (users)
 -- ========================================
 CREATE TABLE IF NOT EXISTS users (
-    id BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '用户ID，主键自增',
+    id BIGINT PRIMARY KEY COMMENT '用户ID，雪花算法生成',
     username VARCHAR(50) NOT NULL UNIQUE COMMENT '用户名',
     password VARCHAR(255) NOT NULL COMMENT '密码（加密存储）',
     email VARCHAR(100) UNIQUE COMMENT '邮箱',
@@ -24,6 +24,10 @@ CREATE TABLE IF NOT EXISTS users (
     status VARCHAR(20) DEFAULT 'active' COMMENT '用户状态（active/inactive/banned等）',
     create_time DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     update_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    version INT NOT NULL DEFAULT 0 COMMENT '乐观锁版本号',
+    last_login_time DATETIME NULL COMMENT '最后登录时间',
+    login_count INT NOT NULL DEFAULT 0 COMMENT '登录次数',
+    deleted TINYINT NOT NULL DEFAULT 0 COMMENT '逻辑删除标记（0正常/1已删除）',
 
     -- 索引
     INDEX idx_username (username),
@@ -31,9 +35,59 @@ CREATE TABLE IF NOT EXISTS users (
     INDEX idx_phone (phone),
     INDEX idx_user_role (user_role),
     INDEX idx_status (status),
-    INDEX idx_create_time (create_time)
+    INDEX idx_create_time (create_time),
+    INDEX idx_update_time (update_time)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='用户表';
 
+-- ========================================
+-- 用户分片查找表 (user_shard_lookup)
+-- 仅在开启 afang.sharding.enabled 时使用，位于全局库
+-- ========================================
+CREATE TABLE IF NOT EXISTS user_shard_lookup (
+    lookup_type VARCHAR(16) NOT NULL COMMENT '查找类型（ID/EMAIL/USERNAME）',
+    lookup_value VARCHAR(100) NOT NULL COMMENT '查找值',
+    user_id BIGINT NOT NULL COMMENT '用户ID',
+    shard VARCHAR(32) NOT NULL COMMENT '所在分片名称',
+    PRIMARY KEY (lookup_type, lookup_value),
+    INDEX idx_user_id (user_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='用户分片查找表';
+
+-- ========================================
+-- 登录审计表 (login_audit)
+-- 按天RANGE分区，日分区由应用从 p_future 中拆分预建，超过保留期的分区由应用删除
+-- ========================================
+CREATE TABLE IF NOT EXISTS login_audit (
+    id BIGINT NOT NULL COMMENT '审计ID，雪花算法生成',
+    user_id BIGINT NULL COMMENT '用户ID，手机号不存在时为空',
+    phone VARCHAR(20) COMMENT '登录使用的手机号',
+    ip VARCHAR(64) COMMENT '客户端IP',
+    user_agent VARCHAR(255) COMMENT '客户端User-Agent',
+    success TINYINT(1) NOT NULL COMMENT '是否登录成功',
+    failure_reason VARCHAR(100) COMMENT '失败原因',
+    latency_ms INT NOT NULL COMMENT '登录处理耗时（毫秒）',
+    login_time DATETIME NOT NULL COMMENT '登录时间',
+    PRIMARY KEY (id, login_time),
+    INDEX idx_user_time (user_id, login_time),
+    INDEX idx_phone_time (phone, login_time)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='登录审计表'
+PARTITION BY RANGE (TO_DAYS(login_time)) (
+    PARTITION p_init VALUES LESS THAN (TO_DAYS('2024-01-01')),
+    PARTITION p_future VALUES LESS THAN MAXVALUE
+);
+
+-- ========================================
+-- 用户变更发件箱表 (user_outbox)
+-- 与 users 表位于同一库，开启分片时每个分片库各建一张，与用户写操作在同一事务中写入
+-- ========================================
+CREATE TABLE IF NOT EXISTS user_outbox (
+    id BIGINT NOT NULL PRIMARY KEY COMMENT '事件ID，雪花算法生成',
+    user_id BIGINT NOT NULL COMMENT '用户ID',
+    event_type VARCHAR(16) NOT NULL COMMENT '事件类型（CREATED/UPDATED/DELETED）',
+    create_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    delivered_time DATETIME NULL COMMENT '投递时间，未投递时为空',
+    INDEX idx_delivered_id (delivered_time, id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='用户变更发件箱表';
+
 -- ========================================
 -- 可选：插入初始数据
 -- ========================================
@@ -64,6 +118,20 @@ CREATE TABLE IF NOT EXISTS schema_version (
 -- 记录当前版本
 INSERT IGNORE INTO schema_version (version, description, script_name)
 VALUES ('1.0.0', '初始化用户表结构', 'create_database_and_tables.sql');
+INSERT IGNORE INTO schema_version (version, description, script_name)
+VALUES ('1.1.0', '用户表增加乐观锁版本号', 'upgrade_1.1.0_users_version.sql');
+INSERT IGNORE INTO schema_version (version, description, script_name)
+VALUES ('1.2.0', '用户ID改为雪花算法生成', 'upgrade_1.2.0_users_snowflake_id.sql');
+INSERT IGNORE INTO schema_version (version, description, script_name)
+VALUES ('1.3.0', '用户表水平分片查找表', 'upgrade_1.3.0_user_sharding.sql');
+INSERT IGNORE INTO schema_version (version, description, script_name)
+VALUES ('1.4.0', '用户表增加登录统计字段', 'upgrade_1.4.0_users_login_stats.sql');
+INSERT IGNORE INTO schema_version (version, description, script_name)
+VALUES ('1.5.0', '登录审计分区表', 'upgrade_1.5.0_login_audit.sql');
+INSERT IGNORE INTO schema_version (version, description, script_name)
+VALUES ('1.6.0', '用户变更发件箱表', 'upgrade_1.6.0_user_outbox.sql');
+INSERT IGNORE INTO schema_version (version, description, script_name)
+VALUES ('1.7.0', '用户表逻辑删除与更新时间索引', 'upgrade_1.7.0_users_replica.sql');
 
 -- ========================================
 -- 使用说明
@@ -0,0 +1,19 @@
+-- ========================================
+-- 本地分片测试环境：在同一MySQL实例中用多个schema模拟多个分片
+-- 执行后在 application.yml 中开启 afang.sharding.enabled 并配置 afang_shard_0 ~ afang_shard_2
+-- 新增分片时按相同结构建库，配置到所有节点后再通过 /admin/sharding/reshard 迁移
+-- ========================================
+
+CREATE DATABASE IF NOT EXISTS afang_shard_0 CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci;
+CREATE DATABASE IF NOT EXISTS afang_shard_1 CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci;
+CREATE DATABASE IF NOT EXISTS afang_shard_2 CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci;
+
+-- 各分片的用户表与全局库中的 users 表结构一致
+CREATE TABLE IF NOT EXISTS afang_shard_0.users LIKE afang.users;
+CREATE TABLE IF NOT EXISTS afang_shard_1.users LIKE afang.users;
+CREATE TABLE IF NOT EXISTS afang_shard_2.users LIKE afang.users;
+
+-- 各分片的用户变更发件箱与用户表位于同一库，保证在同一事务中写入
+CREATE TABLE IF NOT EXISTS afang_shard_0.user_outbox LIKE afang.user_outbox;
+CREATE TABLE IF NOT EXISTS afang_shard_1.user_outbox LIKE afang.user_outbox;
+CREATE TABLE IF NOT EXISTS afang_shard_2.user_outbox LIKE afang.user_outbox;
@@ -0,0 +1,12 @@
+-- ========================================
+-- 升级脚本 1.1.0：用户表增加乐观锁版本号
+-- 适用于已按 1.0.0 初始化的数据库，新库直接执行 create_database_and_tables.sql 即可
+-- ========================================
+
+USE afang;
+
+ALTER TABLE users
+    ADD COLUMN version INT NOT NULL DEFAULT 0 COMMENT '乐观锁版本号' AFTER update_time;
+
+INSERT IGNORE INTO schema_version (version, description, script_name)
+VALUES ('1.1.0', '用户表增加乐观锁版本号', 'upgrade_1.1.0_users_version.sql');
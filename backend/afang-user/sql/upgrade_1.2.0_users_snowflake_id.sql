@@ -0,0 +1,12 @@
+-- ========================================
+-- 升级脚本 1.2.0：用户ID改为雪花算法生成
+-- 主键由应用在写库前分配，去掉 AUTO_INCREMENT；已有的自增ID远小于雪花ID，不会冲突
+-- ========================================
+
+USE afang;
+
+ALTER TABLE users
+    MODIFY COLUMN id BIGINT NOT NULL COMMENT '用户ID，雪花算法生成';
+
+INSERT IGNORE INTO schema_version (version, description, script_name)
+VALUES ('1.2.0', '用户ID改为雪花算法生成', 'upgrade_1.2.0_users_snowflake_id.sql');
@@ -0,0 +1,19 @@
+-- ========================================
+-- 升级脚本 1.3.0：用户表水平分片
+-- 全局库（spring.datasource 指向的 afang 库）中创建分片查找表；
+-- 查找表主键 (lookup_type, lookup_value) 同时充当跨分片的邮箱/用户名唯一约束
+-- ========================================
+
+USE afang;
+
+CREATE TABLE IF NOT EXISTS user_shard_lookup (
+    lookup_type VARCHAR(16) NOT NULL COMMENT '查找类型（ID/EMAIL/USERNAME）',
+    lookup_value VARCHAR(100) NOT NULL COMMENT '查找值',
+    user_id BIGINT NOT NULL COMMENT '用户ID',
+    shard VARCHAR(32) NOT NULL COMMENT '所在分片名称',
+    PRIMARY KEY (lookup_type, lookup_value),
+    INDEX idx_user_id (user_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='用户分片查找表';
+
+INSERT IGNORE INTO schema_version (version, description, script_name)
+VALUES ('1.3.0', '用户表水平分片查找表', 'upgrade_1.3.0_user_sharding.sql');
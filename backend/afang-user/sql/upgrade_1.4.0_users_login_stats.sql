@@ -0,0 +1,14 @@
+-- ========================================
+-- 升级脚本 1.4.0：用户表增加登录统计字段
+-- 由应用异步批量写入，登录请求本身不写库
+-- 开启分片时需对每个分片库的 users 表执行相同的 ALTER
+-- ========================================
+
+USE afang;
+
+ALTER TABLE users
+    ADD COLUMN last_login_time DATETIME NULL COMMENT '最后登录时间' AFTER version,
+    ADD COLUMN login_count INT NOT NULL DEFAULT 0 COMMENT '登录次数' AFTER last_login_time;
+
+INSERT IGNORE INTO schema_version (version, description, script_name)
+VALUES ('1.4.0', '用户表增加登录统计字段', 'upgrade_1.4.0_users_login_stats.sql');
@@ -0,0 +1,29 @@
+-- ========================================
+-- 升级脚本 1.5.0：登录审计分区表
+-- 位于全局库；日分区（p20240101 存放当天数据）由应用启动时及每天凌晨自动预建和清理，
+-- 这里只建立初始分区和兜底分区 p_future
+-- ========================================
+
+USE afang;
+
+CREATE TABLE IF NOT EXISTS login_audit (
+    id BIGINT NOT NULL COMMENT '审计ID，雪花算法生成',
+    user_id BIGINT NULL COMMENT '用户ID，手机号不存在时为空',
+    phone VARCHAR(20) COMMENT '登录使用的手机号',
+    ip VARCHAR(64) COMMENT '客户端IP',
+    user_agent VARCHAR(255) COMMENT '客户端User-Agent',
+    success TINYINT(1) NOT NULL COMMENT '是否登录成功',
+    failure_reason VARCHAR(100) COMMENT '失败原因',
+    latency_ms INT NOT NULL COMMENT '登录处理耗时（毫秒）',
+    login_time DATETIME NOT NULL COMMENT '登录时间',
+    PRIMARY KEY (id, login_time),
+    INDEX idx_user_time (user_id, login_time),
+    INDEX idx_phone_time (phone, login_time)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='登录审计表'
+PARTITION BY RANGE (TO_DAYS(login_time)) (
+    PARTITION p_init VALUES LESS THAN (TO_DAYS('2024-01-01')),
+    PARTITION p_future VALUES LESS THAN MAXVALUE
+);
+
+INSERT IGNORE INTO schema_version (version, description, script_name)
+VALUES ('1.5.0', '登录审计分区表', 'upgrade_1.5.0_login_audit.sql');
@@ -0,0 +1,19 @@
+-- ========================================
+-- 升级脚本 1.6.0：用户变更发件箱表
+-- 用户写操作在同一事务中写入发件箱，由应用中继批量投递到Redis Stream
+-- 开启分片时需在每个分片库中执行相同的 CREATE TABLE
+-- ========================================
+
+USE afang;
+
+CREATE TABLE IF NOT EXISTS user_outbox (
+    id BIGINT NOT NULL PRIMARY KEY COMMENT '事件ID，雪花算法生成',
+    user_id BIGINT NOT NULL COMMENT '用户ID',
+    event_type VARCHAR(16) NOT NULL COMMENT '事件类型（CREATED/UPDATED/DELETED）',
+    create_time DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    delivered_time DATETIME NULL COMMENT '投递时间，未投递时为空',
+    INDEX idx_delivered_id (delivered_time, id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='用户变更发件箱表';
+
+INSERT IGNORE INTO schema_version (version, description, script_name)
+VALUES ('1.6.0', '用户变更发件箱表', 'upgrade_1.6.0_user_outbox.sql');
@@ -0,0 +1,15 @@
+-- ========================================
+-- 升级脚本 1.7.0：用户表逻辑删除与更新时间索引
+-- 各节点的用户副本按 update_time 水位增量同步，删除改为逻辑删除，已删除的行作为墓碑被同步
+-- 注意：已删除用户的手机号、邮箱、用户名仍占用唯一索引
+-- 开启分片时需对每个分片库的 users 表执行相同的 ALTER
+-- ========================================
+
+USE afang;
+
+ALTER TABLE users
+    ADD COLUMN deleted TINYINT NOT NULL DEFAULT 0 COMMENT '逻辑删除标记（0正常/1已删除）' AFTER login_count,
+    ADD INDEX idx_update_time (update_time);
+
+INSERT IGNORE INTO schema_version (version, description, script_name)
+VALUES ('1.7.0', '用户表逻辑删除与更新时间索引', 'upgrade_1.7.0_users_replica.sql');
@@ -3,10 +3,11 @@ package com.example.afanguserbackend;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * AFang用户管理系统启动类
- * Spring Boot应用程序的入口点，配置MyBatis Mapper扫描
+ * Spring Boot应用程序的入口点，配置MyBatis Mapper扫描并启用定时任务
  *
  * @author AFang Team
  * @version 1.0
@@ -14,6 +15,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  */
 @SpringBootApplication
 @MapperScan("com.example.afanguserbackend.mapper")
+@EnableScheduling
 public class AfangUserBackendApplication {
 
     /**
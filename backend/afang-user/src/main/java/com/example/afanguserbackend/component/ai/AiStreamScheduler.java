@@ -0,0 +1,571 @@
+package com.example.afanguserbackend.component.ai;
+
+import com.example.afanguserbackend.exception.TooManyRequestsException;
+import com.example.afanguserbackend.utils.RequestUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * AI请求调度器。
+ * <p>
+ * /public/ai/** 无需登录，单个客户端不能占满上游额度：
+ * <ul>
+ *   <li>客户端为登录用户或匿名IP，每个客户端同时进行和排队的请求数有上限，超过时立即拒绝；
+ *       IP取连接的对端地址，不信任可伪造的转发头</li>
+ *   <li>调用上游的请求受全局并发上限约束，该上限应与服务商的限流额度匹配</li>
+ *   <li>全局并发已满时按客户端分队排队，以按权重的差额轮询（DRR）在客户端之间分配空出的名额，登录用户权重更高</li>
+ *   <li>排队超过最长等待时间或队列已满时拒绝，拒绝以HTTP 429返回，Retry-After按平均占用时长和排队长度估算</li>
+ *   <li>命中缓存和加入已有共享流的请求不调用上游，只计入客户端的并发数；
+ *       共享流由实际发起上游调用的一方单独申请上游名额，不计入客户端的并发数，但仍按该客户端排队</li>
+ *   <li>取消排队中的Future时移出队列；名额发放时Future已被取消的，名额立即释放</li>
+ * </ul>
+ * 排队长度、占用中的名额和等待耗时以Micrometer指标 ai.scheduler.* 暴露。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class AiStreamScheduler {
+
+    /**
+     * 排队超时定时器
+     */
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("ai-scheduler-timer").daemon(true).factory());
+
+    /**
+     * 每个客户端的状态，只包含有进行中或排队请求的客户端
+     */
+    private final Map<String, ClientState> clients = new HashMap<>();
+
+    /**
+     * 有排队请求的客户端，按轮询顺序排列
+     */
+    private final Deque<ClientState> rotation = new ArrayDeque<>();
+
+    /**
+     * 指标注册表
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 排队等待耗时
+     */
+    private final Timer waitTimer;
+
+    /**
+     * 全局上游并发上限
+     */
+    private final int maxUpstream;
+
+    /**
+     * 每个客户端同时进行和排队的请求数上限
+     */
+    private final int maxPerClient;
+
+    /**
+     * 全局排队数上限
+     */
+    private final int maxQueued;
+
+    /**
+     * 最长排队时间（毫秒）
+     */
+    private final long maxWaitMs;
+
+    /**
+     * 登录用户的权重，匿名IP为1
+     */
+    private final int userWeight;
+
+    /**
+     * 占用中的上游名额
+     */
+    private int upstreamInUse;
+
+    /**
+     * 排队中的请求数
+     */
+    private int queued;
+
+    /**
+     * 上游名额平均占用时长（毫秒），EWMA
+     */
+    private double averageHoldMs = 10_000;
+
+    /**
+     * 构造函数
+     *
+     * @param meterRegistry 指标注册表
+     * @param maxUpstream   全局上游并发上限
+     * @param maxPerClient  每个客户端同时进行和排队的请求数上限
+     * @param maxQueued     全局排队数上限
+     * @param maxWaitMs     最长排队时间（毫秒）
+     * @param userWeight    登录用户的权重
+     */
+    public AiStreamScheduler(MeterRegistry meterRegistry,
+                             @Value("${afang.ai.scheduler.max-upstream:32}") int maxUpstream,
+                             @Value("${afang.ai.scheduler.max-per-client:3}") int maxPerClient,
+                             @Value("${afang.ai.scheduler.max-queued:200}") int maxQueued,
+                             @Value("${afang.ai.scheduler.max-wait-ms:10000}") long maxWaitMs,
+                             @Value("${afang.ai.scheduler.user-weight:2}") int userWeight) {
+        this.meterRegistry = meterRegistry;
+        this.maxUpstream = maxUpstream;
+        this.maxPerClient = maxPerClient;
+        this.maxQueued = maxQueued;
+        this.maxWaitMs = maxWaitMs;
+        this.userWeight = Math.max(1, userWeight);
+        this.waitTimer = Timer.builder("ai.scheduler.wait")
+                .description("AI请求排队等待耗时")
+                .register(meterRegistry);
+        Gauge.builder("ai.scheduler.queue.depth", this, AiStreamScheduler::queued)
+                .description("AI请求排队数").register(meterRegistry);
+        Gauge.builder("ai.scheduler.upstream.in-use", this, AiStreamScheduler::upstreamInUse)
+                .description("占用中的上游名额").register(meterRegistry);
+    }
+
+    /**
+     * 识别当前请求的客户端：已登录时为用户，否则为连接的对端地址。
+     * <p>
+     * 地址由{@link RequestUtil#clientIp}解析，不使用X-Forwarded-For等请求头，
+     * 否则匿名客户端每次换一个伪造地址即可绕过单客户端上限。
+     *
+     * @param request HTTP请求
+     * @return 客户端
+     */
+    public Client client(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return new Client("user:" + authentication.getName(), userWeight);
+        }
+        return new Client("ip:" + RequestUtil.clientIp(request), 1);
+    }
+
+    /**
+     * 申请执行一个请求
+     *
+     * @param client   客户端
+     * @param upstream 是否会调用上游；为false时只计入客户端并发数，不占用上游名额
+     * @return 名额，请求结束时必须释放；超过上限、队列已满或排队超时时以{@link TooManyRequestsException}异常完成；
+     * 不再需要时可取消，排队中的请求随之移出队列
+     */
+    public CompletableFuture<Permit> acquire(Client client, boolean upstream) {
+        return acquire(client, upstream, true);
+    }
+
+    /**
+     * 只申请上游名额，用于共享流发起上游调用；调用方已持有该客户端的名额，不再计入客户端的并发数
+     *
+     * @param client 客户端，空出的名额仍按该客户端的权重分配
+     * @return 名额，语义同{@link #acquire(Client, boolean)}
+     */
+    public CompletableFuture<Permit> acquireUpstream(Client client) {
+        return acquire(client, true, false);
+    }
+
+    /**
+     * 申请名额
+     *
+     * @param client   客户端
+     * @param upstream 是否占用上游名额
+     * @param counted  是否计入客户端的并发数
+     * @return 名额
+     */
+    private CompletableFuture<Permit> acquire(Client client, boolean upstream, boolean counted) {
+        synchronized (this) {
+            ClientState state = clients.computeIfAbsent(client.key(), k -> new ClientState(k, client.weight()));
+            if (counted && state.active + state.waiting.stream().filter(w -> w.counted).count() >= maxPerClient) {
+                removeIfIdle(state);
+                return reject("client", "当前客户端的AI请求过多，请等待进行中的请求结束", 1);
+            }
+            if (!upstream || (upstreamInUse < maxUpstream && queued == 0)) {
+                return CompletableFuture.completedFuture(grant(state, upstream, counted));
+            }
+            if (queued >= maxQueued) {
+                removeIfIdle(state);
+                return reject("queue", "AI服务繁忙，请稍后再试", retryAfterSeconds());
+            }
+            Waiter waiter = new Waiter(state, counted, System.nanoTime());
+            state.waiting.addLast(waiter);
+            if (state.waiting.size() == 1) {
+                rotation.addLast(state);
+            }
+            queued++;
+            // 超时任务需要同一把锁，在这里设置不会与超时处理竞争
+            waiter.timeout = timer.schedule(() -> expire(waiter), maxWaitMs, TimeUnit.MILLISECONDS);
+            waiter.future.whenComplete((permit, error) -> {
+                if (error instanceof CancellationException) {
+                    cancel(waiter);
+                }
+            });
+            return waiter.future;
+        }
+    }
+
+    /**
+     * 关闭定时器
+     */
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * 发放名额，调用方持有锁
+     *
+     * @param state    客户端状态
+     * @param upstream 是否占用上游名额
+     * @param counted  是否计入客户端的并发数
+     * @return 名额
+     */
+    private Permit grant(ClientState state, boolean upstream, boolean counted) {
+        if (counted) {
+            state.active++;
+        }
+        if (upstream) {
+            upstreamInUse++;
+        }
+        return new Permit(state, upstream, counted, System.nanoTime());
+    }
+
+    /**
+     * 释放名额，并按DRR把空出的上游名额分给排队的请求
+     *
+     * @param permit 名额
+     */
+    private void release(Permit permit) {
+        long heldMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - permit.grantedAt);
+        Waiter next = null;
+        ScheduledFuture<?> timeout = null;
+        synchronized (this) {
+            ClientState state = permit.state;
+            if (permit.counted) {
+                state.active--;
+            }
+            if (permit.upstream) {
+                upstreamInUse--;
+                averageHoldMs = 0.2 * heldMs + 0.8 * averageHoldMs;
+                next = dequeue();
+                if (next != null) {
+                    queued--;
+                    next.granted = grant(next.state, true, next.counted);
+                    timeout = next.timeout;
+                }
+            }
+            removeIfIdle(state);
+        }
+        if (next != null) {
+            timeout.cancel(false);
+            waitTimer.record(System.nanoTime() - next.enqueuedAt, TimeUnit.NANOSECONDS);
+            if (!next.future.complete(next.granted)) {
+                // 发放前已被取消，没有人会释放这个名额
+                next.granted.release();
+            }
+        }
+    }
+
+    /**
+     * 按权重的差额轮询取出下一个排队请求，调用方持有锁
+     *
+     * @return 排队请求，队列为空时为null
+     */
+    private Waiter dequeue() {
+        while (!rotation.isEmpty()) {
+            ClientState state = rotation.peekFirst();
+            if (state.deficit < 1) {
+                state.deficit += state.weight;
+            }
+            Waiter waiter = state.waiting.pollFirst();
+            state.deficit--;
+            if (state.waiting.isEmpty()) {
+                state.deficit = 0;
+                rotation.pollFirst();
+            } else if (state.deficit < 1) {
+                rotation.addLast(rotation.pollFirst());
+            }
+            if (waiter != null) {
+                return waiter;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 排队超时：仍在队列中时移除并拒绝
+     *
+     * @param waiter 排队请求
+     */
+    private void expire(Waiter waiter) {
+        if (!withdraw(waiter)) {
+            return;
+        }
+        waitTimer.record(System.nanoTime() - waiter.enqueuedAt, TimeUnit.NANOSECONDS);
+        meterRegistry.counter("ai.scheduler.rejected", "reason", "timeout").increment();
+        waiter.future.completeExceptionally(new TooManyRequestsException("AI服务繁忙，排队超时，请稍后再试",
+                retryAfterSeconds()));
+    }
+
+    /**
+     * 排队中的Future被取消：仍在队列中时移除
+     *
+     * @param waiter 排队请求
+     */
+    private void cancel(Waiter waiter) {
+        if (!withdraw(waiter)) {
+            return;
+        }
+        waiter.timeout.cancel(false);
+        meterRegistry.counter("ai.scheduler.cancelled").increment();
+    }
+
+    /**
+     * 把仍在排队的请求移出队列
+     *
+     * @param waiter 排队请求
+     * @return 已发放名额或已移除时返回false
+     */
+    private synchronized boolean withdraw(Waiter waiter) {
+        ClientState state = waiter.state;
+        if (waiter.granted != null || !state.waiting.remove(waiter)) {
+            return false;
+        }
+        queued--;
+        if (state.waiting.isEmpty()) {
+            state.deficit = 0;
+            rotation.remove(state);
+        }
+        removeIfIdle(state);
+        return true;
+    }
+
+    /**
+     * 客户端没有进行中和排队的请求时移除，调用方持有锁
+     *
+     * @param state 客户端状态
+     */
+    private void removeIfIdle(ClientState state) {
+        if (state.active == 0 && state.waiting.isEmpty()) {
+            clients.remove(state.key, state);
+        }
+    }
+
+    /**
+     * 按平均占用时长和排队长度估算重试等待时间，调用方持有锁
+     *
+     * @return 秒，至少为1
+     */
+    private synchronized long retryAfterSeconds() {
+        double waitMs = averageHoldMs * (queued + 1) / Math.max(1, maxUpstream);
+        return Math.max(1, (long) Math.ceil(waitMs / 1000));
+    }
+
+    /**
+     * 立即拒绝
+     *
+     * @param reason            拒绝原因标签
+     * @param message           错误信息
+     * @param retryAfterSeconds 建议的重试等待时间（秒）
+     * @return 异常完成的Future
+     */
+    private CompletableFuture<Permit> reject(String reason, String message, long retryAfterSeconds) {
+        meterRegistry.counter("ai.scheduler.rejected", "reason", reason).increment();
+        return CompletableFuture.failedFuture(new TooManyRequestsException(message, retryAfterSeconds));
+    }
+
+    /**
+     * 排队数
+     *
+     * @return 排队数
+     */
+    private synchronized int queued() {
+        return queued;
+    }
+
+    /**
+     * 占用中的上游名额
+     *
+     * @return 名额数
+     */
+    private synchronized int upstreamInUse() {
+        return upstreamInUse;
+    }
+
+    /**
+     * 客户端
+     *
+     * @param key    客户端标识，user:用户名 或 ip:地址
+     * @param weight 公平排队的权重
+     */
+    public record Client(String key, int weight) {
+    }
+
+    /**
+     * 已发放的名额，释放多次只生效一次
+     */
+    public final class Permit {
+
+        /**
+         * 所属客户端
+         */
+        private final ClientState state;
+
+        /**
+         * 是否占用上游名额
+         */
+        private final boolean upstream;
+
+        /**
+         * 是否计入客户端的并发数
+         */
+        private final boolean counted;
+
+        /**
+         * 发放时间（纳秒）
+         */
+        private final long grantedAt;
+
+        /**
+         * 是否已释放
+         */
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        /**
+         * 构造函数
+         *
+         * @param state     所属客户端
+         * @param upstream  是否占用上游名额
+         * @param counted   是否计入客户端的并发数
+         * @param grantedAt 发放时间（纳秒）
+         */
+        private Permit(ClientState state, boolean upstream, boolean counted, long grantedAt) {
+            this.state = state;
+            this.upstream = upstream;
+            this.counted = counted;
+            this.grantedAt = grantedAt;
+        }
+
+        /**
+         * 释放名额
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                AiStreamScheduler.this.release(this);
+            }
+        }
+    }
+
+    /**
+     * 客户端状态，受调度器的锁保护
+     */
+    private static final class ClientState {
+
+        /**
+         * 客户端标识
+         */
+        private final String key;
+
+        /**
+         * 权重
+         */
+        private final int weight;
+
+        /**
+         * 排队中的请求
+         */
+        private final Deque<Waiter> waiting = new ArrayDeque<>();
+
+        /**
+         * 进行中的请求数
+         */
+        private int active;
+
+        /**
+         * DRR差额
+         */
+        private int deficit;
+
+        /**
+         * 构造函数
+         *
+         * @param key    客户端标识
+         * @param weight 权重
+         */
+        private ClientState(String key, int weight) {
+            this.key = key;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * 排队中的请求
+     */
+    private static final class Waiter {
+
+        /**
+         * 结果
+         */
+        private final CompletableFuture<Permit> future = new CompletableFuture<>();
+
+        /**
+         * 所属客户端
+         */
+        private final ClientState state;
+
+        /**
+         * 是否计入客户端的并发数
+         */
+        private final boolean counted;
+
+        /**
+         * 入队时间（纳秒）
+         */
+        private final long enqueuedAt;
+
+        /**
+         * 超时任务，受调度器的锁保护
+         */
+        private ScheduledFuture<?> timeout;
+
+        /**
+         * 发放的名额，受调度器的锁保护
+         */
+        private Permit granted;
+
+        /**
+         * 构造函数
+         *
+         * @param state      所属客户端
+         * @param counted    是否计入客户端的并发数
+         * @param enqueuedAt 入队时间（纳秒）
+         */
+        private Waiter(ClientState state, boolean counted, long enqueuedAt) {
+            this.state = state;
+            this.counted = counted;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
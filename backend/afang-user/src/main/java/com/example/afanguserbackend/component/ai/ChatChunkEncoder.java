@@ -0,0 +1,121 @@
+package com.example.afanguserbackend.component.ai;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.util.Locale;
+
+/**
+ * OpenAI兼容的流式响应帧编码器，一个流一个实例。
+ * <p>
+ * 每个token都会产生一帧，编码路径上尽量不产生临时对象：
+ * <ul>
+ *   <li>id、object、created、model等整个流不变的字段在创建时拼成前缀，每帧直接追加</li>
+ *   <li>内容按JSON规范转义（引号、反斜杠、控制字符），直接写入每个线程复用的{@link StringBuilder}</li>
+ *   <li>每帧只在生成最终字符串时分配一次；帧为单行JSON，SSE的“data:”前缀和事件分隔由框架写出</li>
+ * </ul>
+ * 帧格式：
+ * <pre>
+ * {"id":"...","object":"chat.completion.chunk","created":1700000000,"model":"...",
+ *  "choices":[{"index":0,"delta":{"content":"..."},"finish_reason":null}]}
+ * </pre>
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public final class ChatChunkEncoder {
+
+    /**
+     * 线程缓冲区保留的最大容量，编码出特别大的帧后丢弃缓冲区，避免长期占用内存
+     */
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+    /**
+     * 每个线程复用的编码缓冲区
+     */
+    private static final ThreadLocal<StringBuilder> BUFFERS = ThreadLocal.withInitial(() -> new StringBuilder(512));
+
+    /**
+     * 内容之后、结束原因之前的固定部分
+     */
+    private static final String CONTENT_SUFFIX = "\"},\"finish_reason\":";
+
+    /**
+     * 帧结尾
+     */
+    private static final String FRAME_SUFFIX = "}]}";
+
+    /**
+     * 流内不变的帧前缀，到content的左引号为止
+     */
+    private final String prefix;
+
+    /**
+     * 构造函数
+     *
+     * @param id      消息ID
+     * @param created 创建时间（秒）
+     * @param model   模型名称
+     */
+    private ChatChunkEncoder(String id, long created, String model) {
+        StringBuilder builder = new StringBuilder(128);
+        builder.append("{\"id\":\"");
+        quote(id, builder);
+        builder.append("\",\"object\":\"chat.completion.chunk\",\"created\":").append(created).append(",\"model\":\"");
+        quote(model, builder);
+        builder.append("\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"");
+        this.prefix = builder.toString();
+    }
+
+    /**
+     * 为一个流创建编码器
+     *
+     * @param id      消息ID，整个流共用
+     * @param created 创建时间（秒），整个流共用
+     * @param model   模型名称
+     * @return 编码器
+     */
+    public static ChatChunkEncoder forStream(String id, long created, String model) {
+        return new ChatChunkEncoder(id, created, model);
+    }
+
+    /**
+     * 编码一帧
+     *
+     * @param content      本帧增量内容，null按空串处理
+     * @param finishReason 结束原因，null或空串表示未结束
+     * @return 单行JSON帧
+     */
+    public String encode(CharSequence content, String finishReason) {
+        StringBuilder buffer = BUFFERS.get();
+        buffer.setLength(0);
+        buffer.append(prefix);
+        if (content != null) {
+            quote(content, buffer);
+        }
+        buffer.append(CONTENT_SUFFIX);
+        if (finishReason == null || finishReason.isEmpty()) {
+            buffer.append("null");
+        } else {
+            buffer.append('"');
+            quote(finishReason.toLowerCase(Locale.ROOT), buffer);
+            buffer.append('"');
+        }
+        buffer.append(FRAME_SUFFIX);
+        String frame = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            BUFFERS.remove();
+        }
+        return frame;
+    }
+
+    /**
+     * 按JSON字符串规则转义并追加，不含两侧引号
+     *
+     * @param value  原始内容
+     * @param output 输出缓冲区
+     */
+    private static void quote(CharSequence value, StringBuilder output) {
+        JsonStringEncoder.getInstance().quoteAsString(value, output);
+    }
+}
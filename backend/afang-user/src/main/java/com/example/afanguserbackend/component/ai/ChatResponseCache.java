@@ -0,0 +1,372 @@
+package com.example.afanguserbackend.component.ai;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * 大模型回答的精确匹配缓存。
+ * <p>
+ * 问答场景中大量问题逐字重复，命中缓存时直接返回已有回答，不再消耗上游token：
+ * <ul>
+ *   <li>Key为“模型、温度、最大token数、规范化后的问题”的SHA-256摘要；规范化为NFKC、去首尾空白、连续空白合并为一个空格</li>
+ *   <li>一级缓存为进程内LRU，同时限制条目数和总字符数；二级缓存为Redis，所有节点共用</li>
+ *   <li>两级缓存都有过期时间，超过单条长度上限的回答不缓存；二级命中时回填一级</li>
+ *   <li>只缓存正常结束的回答，被截断或出错的流不写入</li>
+ *   <li>流式接口命中时按固定长度切块，以与上游相同的帧格式回放</li>
+ * </ul>
+ * Redis异常时按未命中处理，写入Redis在后台虚拟线程中进行，不阻塞响应流。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class ChatResponseCache {
+
+    /**
+     * Redis Key前缀
+     */
+    private static final String KEY_PREFIX = "ai:cache:";
+
+    /**
+     * 连续空白
+     */
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * 一级缓存，按访问顺序排列，最久未访问的在前
+     */
+    private final LinkedHashMap<String, Entry> local = new LinkedHashMap<>(256, 0.75f, true);
+
+    /**
+     * 后台写入Redis的执行器
+     */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Redis操作模板
+     */
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 指标注册表
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 是否启用
+     */
+    private final boolean enabled;
+
+    /**
+     * 参与Key计算的模型和参数
+     */
+    private final String keyContext;
+
+    /**
+     * 模型名称
+     */
+    private final String model;
+
+    /**
+     * 缓存过期时间
+     */
+    private final Duration ttl;
+
+    /**
+     * 一级缓存最大条目数
+     */
+    private final int localMaxEntries;
+
+    /**
+     * 一级缓存最大总字符数
+     */
+    private final long localMaxChars;
+
+    /**
+     * 单条回答的最大字符数
+     */
+    private final int maxAnswerChars;
+
+    /**
+     * 回放时每帧的字符数
+     */
+    private final int replayChunkChars;
+
+    /**
+     * 一级缓存当前总字符数，受local的锁保护
+     */
+    private long localChars;
+
+    /**
+     * 构造函数
+     *
+     * @param stringRedisTemplate Redis操作模板
+     * @param meterRegistry       指标注册表
+     * @param enabled             是否启用
+     * @param model               模型名称
+     * @param temperature         温度
+     * @param maxTokens           最大token数
+     * @param ttlSeconds          缓存过期时间（秒）
+     * @param localMaxEntries     一级缓存最大条目数
+     * @param localMaxChars       一级缓存最大总字符数
+     * @param maxAnswerChars      单条回答的最大字符数
+     * @param replayChunkChars    回放时每帧的字符数
+     */
+    public ChatResponseCache(StringRedisTemplate stringRedisTemplate, MeterRegistry meterRegistry,
+                             @Value("${afang.ai.cache.enabled:true}") boolean enabled,
+                             @Value("${spring.ai.openai.chat.options.model:glm-4.5-flash}") String model,
+                             @Value("${spring.ai.openai.chat.options.temperature:}") String temperature,
+                             @Value("${spring.ai.openai.chat.options.max-tokens:}") String maxTokens,
+                             @Value("${afang.ai.cache.ttl-seconds:86400}") long ttlSeconds,
+                             @Value("${afang.ai.cache.local-max-entries:2000}") int localMaxEntries,
+                             @Value("${afang.ai.cache.local-max-chars:4000000}") long localMaxChars,
+                             @Value("${afang.ai.cache.max-answer-chars:20000}") int maxAnswerChars,
+                             @Value("${afang.ai.cache.replay-chunk-chars:32}") int replayChunkChars) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.model = model;
+        this.keyContext = model + '\n' + temperature + '\n' + maxTokens + '\n';
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.localMaxEntries = localMaxEntries;
+        this.localMaxChars = localMaxChars;
+        this.maxAnswerChars = maxAnswerChars;
+        this.replayChunkChars = Math.max(1, replayChunkChars);
+        Gauge.builder("ai.cache.local.size", this, ChatResponseCache::localSize)
+                .description("大模型回答一级缓存条目数").register(meterRegistry);
+    }
+
+    /**
+     * 是否启用
+     *
+     * @return 启用返回true
+     */
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * 计算问题的缓存Key
+     *
+     * @param prompt 用户问题
+     * @return SHA-256摘要的十六进制字符串
+     */
+    public String key(String prompt) {
+        String normalized = WHITESPACE.matcher(Normalizer.normalize(prompt, Normalizer.Form.NFKC).strip())
+                .replaceAll(" ");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(keyContext.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 查询缓存，先查一级再查二级
+     *
+     * @param key 缓存Key
+     * @return 已缓存的回答
+     */
+    public Optional<String> get(String key) {
+        return get(key, true);
+    }
+
+    /**
+     * 查询缓存，先查一级再查二级
+     *
+     * @param key     缓存Key
+     * @param counted 是否计入命中率指标；语义缓存按Key取回答时不重复计数
+     * @return 已缓存的回答
+     */
+    Optional<String> get(String key, boolean counted) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        long now = System.currentTimeMillis();
+        synchronized (local) {
+            Entry entry = local.get(key);
+            if (entry != null) {
+                if (entry.expireAt() > now) {
+                    count("l1", counted);
+                    return Optional.of(entry.answer());
+                }
+                removeLocal(key);
+            }
+        }
+        try {
+            String answer = stringRedisTemplate.opsForValue().get(KEY_PREFIX + key);
+            if (answer != null) {
+                count("l2", counted);
+                Long remainingSeconds = stringRedisTemplate.getExpire(KEY_PREFIX + key);
+                long remainingMs = remainingSeconds != null && remainingSeconds > 0
+                        ? remainingSeconds * 1000 : ttl.toMillis();
+                putLocal(key, answer, now + remainingMs);
+                return Optional.of(answer);
+            }
+        } catch (Exception e) {
+            log.warn("读取大模型回答缓存失败，错误信息：{}", e.getMessage());
+        }
+        count("miss", counted);
+        return Optional.empty();
+    }
+
+    /**
+     * 回答是否仍在二级缓存中，不计入命中率指标，也不改变一级缓存的淘汰顺序
+     *
+     * @param key 缓存Key
+     * @return 未过期返回true；Redis异常时按存在处理，避免误删
+     */
+    boolean contains(String key) {
+        if (!enabled) {
+            return false;
+        }
+        try {
+            return Boolean.TRUE.equals(stringRedisTemplate.hasKey(KEY_PREFIX + key));
+        } catch (Exception e) {
+            return true;
+        }
+    }
+
+    /**
+     * 写入缓存：一级同步写入，二级在后台写入
+     *
+     * @param key    缓存Key
+     * @param answer 完整回答
+     */
+    public void put(String key, String answer) {
+        if (!enabled || answer == null || answer.isEmpty() || answer.length() > maxAnswerChars) {
+            return;
+        }
+        putLocal(key, answer, System.currentTimeMillis() + ttl.toMillis());
+        executor.execute(() -> {
+            try {
+                stringRedisTemplate.opsForValue().set(KEY_PREFIX + key, answer, ttl);
+            } catch (Exception e) {
+                log.warn("写入大模型回答缓存失败，错误信息：{}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 将缓存的回答切成若干帧，帧格式与上游流式响应相同，最后一帧带结束原因stop
+     *
+     * @param key    缓存Key
+     * @param answer 缓存的回答
+     * @return 帧列表
+     */
+    public List<String> replay(String key, String answer) {
+        ChatChunkEncoder encoder = ChatChunkEncoder.forStream("chatcmpl-cache-" + key.substring(0, 16),
+                System.currentTimeMillis() / 1000, model);
+        List<String> frames = new ArrayList<>(answer.length() / replayChunkChars + 2);
+        int start = 0;
+        while (start < answer.length()) {
+            int end = Math.min(answer.length(), start + replayChunkChars);
+            // 不在代理对中间切开
+            if (end < answer.length() && Character.isHighSurrogate(answer.charAt(end - 1))) {
+                end++;
+            }
+            frames.add(encoder.encode(answer.subSequence(start, end), null));
+            start = end;
+        }
+        frames.add(encoder.encode("", "stop"));
+        return frames;
+    }
+
+    /**
+     * 关闭后台写入执行器
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 写入一级缓存，按条目数和总字符数淘汰最久未访问的条目
+     *
+     * @param key      缓存Key
+     * @param answer   回答
+     * @param expireAt 过期时间戳（毫秒）
+     */
+    private void putLocal(String key, String answer, long expireAt) {
+        synchronized (local) {
+            removeLocal(key);
+            local.put(key, new Entry(answer, expireAt));
+            localChars += answer.length();
+            Iterator<Map.Entry<String, Entry>> eldest = local.entrySet().iterator();
+            while ((local.size() > localMaxEntries || localChars > localMaxChars) && eldest.hasNext()) {
+                localChars -= eldest.next().getValue().answer().length();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * 从一级缓存删除，调用方持有local的锁
+     *
+     * @param key 缓存Key
+     */
+    private void removeLocal(String key) {
+        Entry removed = local.remove(key);
+        if (removed != null) {
+            localChars -= removed.answer().length();
+        }
+    }
+
+    /**
+     * 一级缓存条目数
+     *
+     * @return 条目数
+     */
+    private int localSize() {
+        synchronized (local) {
+            return local.size();
+        }
+    }
+
+    /**
+     * 按命中层级计数
+     *
+     * @param result  l1、l2或miss
+     * @param counted 是否计数
+     */
+    private void count(String result, boolean counted) {
+        if (!counted) {
+            return;
+        }
+        meterRegistry.counter("ai.cache.requests", "result", result).increment();
+    }
+
+    /**
+     * 一级缓存条目
+     *
+     * @param answer   回答
+     * @param expireAt 过期时间戳（毫秒）
+     */
+    private record Entry(String answer, long expireAt) {
+    }
+}
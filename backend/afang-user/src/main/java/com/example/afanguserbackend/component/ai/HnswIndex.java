@@ -0,0 +1,588 @@
+package com.example.afanguserbackend.component.ai;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 存放在内存映射文件中的HNSW近似最近邻索引，相似度为单位向量的点积（余弦相似度）。
+ * <p>
+ * 向量和图结构直接读写映射文件，重启时只需重新映射，不需要重建索引：
+ * <ul>
+ *   <li>文件头记录维度、M、层数上限、容量、节点数、入口节点和最高层</li>
+ *   <li>每个节点定长：32字节Key、层级、向量、第0层最多2M个邻居、其余每层最多M个邻居</li>
+ *   <li>先写节点本身和它的出边，再更新节点数和入口，最后给已有节点补反向边；
+ *       进程中途退出时未完成的节点不可见，已有节点也不会指向它。机器掉电时映射页的落盘顺序无法保证，不在此列</li>
+ *   <li>同一Key只保存一次；只追加不删除，容量用尽后不再写入，由调用方重建；参数与已有文件不一致时重建空索引</li>
+ * </ul>
+ * 查询持有读锁，写入持有写锁。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+final class HnswIndex implements AutoCloseable {
+
+    /**
+     * 文件标识
+     */
+    private static final int MAGIC = 0x484E5357;
+
+    /**
+     * 文件格式版本
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * 文件头长度
+     */
+    private static final int HEADER_BYTES = 64;
+
+    /**
+     * 节点Key长度
+     */
+    static final int KEY_BYTES = 32;
+
+    /**
+     * 文件头中节点数的位置
+     */
+    private static final int COUNT_OFFSET = 24;
+
+    /**
+     * 文件头中入口节点的位置
+     */
+    private static final int ENTRY_OFFSET = 28;
+
+    /**
+     * 文件头中最高层的位置
+     */
+    private static final int TOP_LEVEL_OFFSET = 32;
+
+    /**
+     * 读写锁
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 文件通道
+     */
+    private final FileChannel channel;
+
+    /**
+     * 映射缓冲区
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * 向量维度
+     */
+    private final int dimensions;
+
+    /**
+     * 每层邻居数，第0层为2M
+     */
+    private final int m;
+
+    /**
+     * 层数上限
+     */
+    private final int maxLevels;
+
+    /**
+     * 节点容量
+     */
+    private final int capacity;
+
+    /**
+     * 构建时的候选集大小
+     */
+    private final int efConstruction;
+
+    /**
+     * 层级分布参数 1/ln(M)
+     */
+    private final double levelFactor;
+
+    /**
+     * 单个节点占用的字节数
+     */
+    private final int recordBytes;
+
+    /**
+     * 节点内向量的偏移
+     */
+    private final int vectorOffset;
+
+    /**
+     * 节点内第0层邻居表的偏移
+     */
+    private final int layer0Offset;
+
+    /**
+     * 节点内第1层邻居表的偏移
+     */
+    private final int upperOffset;
+
+    /**
+     * 已有节点的Key，用于写入时去重
+     */
+    private final Set<ByteBuffer> keys = new HashSet<>();
+
+    /**
+     * 构造函数
+     *
+     * @param channel        文件通道
+     * @param buffer         映射缓冲区
+     * @param dimensions     向量维度
+     * @param m              每层邻居数
+     * @param maxLevels      层数上限
+     * @param capacity       节点容量
+     * @param efConstruction 构建时的候选集大小
+     */
+    private HnswIndex(FileChannel channel, MappedByteBuffer buffer, int dimensions, int m, int maxLevels,
+                      int capacity, int efConstruction) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxLevels = maxLevels;
+        this.capacity = capacity;
+        this.efConstruction = efConstruction;
+        this.levelFactor = 1 / Math.log(m);
+        this.vectorOffset = KEY_BYTES + 4;
+        this.layer0Offset = vectorOffset + dimensions * 4;
+        this.upperOffset = layer0Offset + 4 + 2 * m * 4;
+        this.recordBytes = upperOffset + (maxLevels - 1) * (4 + m * 4);
+        int count = buffer.getInt(COUNT_OFFSET);
+        for (int node = 0; node < count; node++) {
+            keys.add(ByteBuffer.wrap(key(node)));
+        }
+    }
+
+    /**
+     * 打开索引文件，不存在或参数不一致时创建空索引
+     *
+     * @param path           文件路径
+     * @param dimensions     向量维度
+     * @param m              每层邻居数
+     * @param maxLevels      层数上限
+     * @param capacity       节点容量
+     * @param efConstruction 构建时的候选集大小
+     * @return 索引
+     * @throws IOException 文件读写失败
+     */
+    static HnswIndex open(Path path, int dimensions, int m, int maxLevels, int capacity, int efConstruction)
+            throws IOException {
+        long recordBytes = KEY_BYTES + 4 + dimensions * 4L + 4 + 2L * m * 4 + (maxLevels - 1L) * (4 + m * 4L);
+        long size = HEADER_BYTES + recordBytes * capacity;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("语义缓存索引文件超过2GB，请减小容量或维度");
+        }
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        boolean reuse = Files.exists(path) && Files.size(path) == size && headerMatches(path, dimensions, m, maxLevels, capacity);
+        if (!reuse) {
+            Files.deleteIfExists(path);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (!reuse) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, dimensions);
+            buffer.putInt(12, m);
+            buffer.putInt(16, maxLevels);
+            buffer.putInt(20, capacity);
+            buffer.putInt(COUNT_OFFSET, 0);
+            buffer.putInt(ENTRY_OFFSET, -1);
+            buffer.putInt(TOP_LEVEL_OFFSET, -1);
+            buffer.force();
+        }
+        return new HnswIndex(channel, buffer, dimensions, m, maxLevels, capacity, efConstruction);
+    }
+
+    /**
+     * 检查已有文件头与当前参数是否一致
+     *
+     * @param path       文件路径
+     * @param dimensions 向量维度
+     * @param m          每层邻居数
+     * @param maxLevels  层数上限
+     * @param capacity   节点容量
+     * @return 一致返回true
+     * @throws IOException 文件读取失败
+     */
+    private static boolean headerMatches(Path path, int dimensions, int m, int maxLevels, int capacity)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            return header.getInt(0) == MAGIC && header.getInt(4) == VERSION && header.getInt(8) == dimensions
+                    && header.getInt(12) == m && header.getInt(16) == maxLevels && header.getInt(20) == capacity;
+        }
+    }
+
+    /**
+     * 节点数
+     *
+     * @return 节点数
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return buffer.getInt(COUNT_OFFSET);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查询与给定向量最相似的节点
+     *
+     * @param query    单位向量
+     * @param efSearch 查询时的候选集大小
+     * @return 最相似的节点，索引为空时为null
+     */
+    Match nearest(float[] query, int efSearch) {
+        lock.readLock().lock();
+        try {
+            int entry = buffer.getInt(ENTRY_OFFSET);
+            if (entry < 0) {
+                return null;
+            }
+            Candidate current = new Candidate(entry, similarity(query, entry));
+            for (int layer = buffer.getInt(TOP_LEVEL_OFFSET); layer > 0; layer--) {
+                current = greedy(query, current, layer);
+            }
+            List<Candidate> found = searchLayer(query, current, Math.max(efSearch, 1), 0);
+            Candidate best = found.get(0);
+            return new Match(key(best.node()), best.similarity());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 读取节点Key
+     *
+     * @param node 节点，须小于{@link #size()}
+     * @return 32字节Key
+     */
+    byte[] keyAt(int node) {
+        lock.readLock().lock();
+        try {
+            return key(node);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 读取节点向量
+     *
+     * @param node 节点，须小于{@link #size()}
+     * @return 单位向量
+     */
+    float[] vectorAt(int node) {
+        lock.readLock().lock();
+        try {
+            return vector(node);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 插入一个节点，Key已存在时不重复写入
+     *
+     * @param vector 单位向量
+     * @param key    节点Key，32字节
+     * @return 容量已满时返回false
+     */
+    boolean insert(float[] vector, byte[] key) {
+        lock.writeLock().lock();
+        try {
+            ByteBuffer wrapped = ByteBuffer.wrap(key.clone());
+            if (keys.contains(wrapped)) {
+                return true;
+            }
+            int node = buffer.getInt(COUNT_OFFSET);
+            if (node >= capacity) {
+                return false;
+            }
+            int level = randomLevel();
+            int base = recordBase(node);
+            buffer.put(base, key, 0, KEY_BYTES);
+            buffer.putInt(base + KEY_BYTES, level);
+            for (int i = 0; i < dimensions; i++) {
+                buffer.putFloat(base + vectorOffset + i * 4, vector[i]);
+            }
+            for (int layer = 0; layer < maxLevels; layer++) {
+                buffer.putInt(neighborsOffset(node, layer), 0);
+            }
+
+            int entry = buffer.getInt(ENTRY_OFFSET);
+            int topLevel = buffer.getInt(TOP_LEVEL_OFFSET);
+            List<List<Candidate>> selectedByLayer = new ArrayList<>();
+            if (entry >= 0) {
+                Candidate current = new Candidate(entry, similarity(vector, entry));
+                for (int layer = topLevel; layer > level; layer--) {
+                    current = greedy(vector, current, layer);
+                }
+                for (int layer = Math.min(level, topLevel); layer >= 0; layer--) {
+                    List<Candidate> found = searchLayer(vector, current, efConstruction, layer);
+                    List<Candidate> selected = found.subList(0, Math.min(m, found.size()));
+                    for (Candidate neighbor : selected) {
+                        link(node, neighbor.node(), layer);
+                    }
+                    selectedByLayer.add(selected);
+                    current = found.get(0);
+                }
+            }
+            // 节点和出边写完后才对查询可见，之后再让已有节点指向它
+            buffer.putInt(COUNT_OFFSET, node + 1);
+            keys.add(wrapped);
+            if (level > topLevel) {
+                buffer.putInt(ENTRY_OFFSET, node);
+                buffer.putInt(TOP_LEVEL_OFFSET, level);
+            }
+            for (int i = 0; i < selectedByLayer.size(); i++) {
+                int layer = Math.min(level, topLevel) - i;
+                for (Candidate neighbor : selectedByLayer.get(i)) {
+                    link(neighbor.node(), node, layer);
+                }
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 将修改刷到磁盘
+     */
+    void force() {
+        lock.readLock().lock();
+        try {
+            buffer.force();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    /**
+     * 在指定层从起点贪心移动到局部最相似的节点
+     *
+     * @param query 查询向量
+     * @param start 起点
+     * @param layer 层
+     * @return 局部最相似的节点
+     */
+    private Candidate greedy(float[] query, Candidate start, int layer) {
+        Candidate current = start;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int offset = neighborsOffset(current.node(), layer);
+            int count = buffer.getInt(offset);
+            for (int i = 0; i < count; i++) {
+                int neighbor = buffer.getInt(offset + 4 + i * 4);
+                float similarity = similarity(query, neighbor);
+                if (similarity > current.similarity()) {
+                    current = new Candidate(neighbor, similarity);
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在指定层做束搜索
+     *
+     * @param query 查询向量
+     * @param start 起点
+     * @param ef    候选集大小
+     * @param layer 层
+     * @return 找到的节点，按相似度从高到低排列，至少包含起点
+     */
+    private List<Candidate> searchLayer(float[] query, Candidate start, int ef, int layer) {
+        BitSet visited = new BitSet(buffer.getInt(COUNT_OFFSET) + 1);
+        visited.set(start.node());
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(
+                Comparator.comparingDouble(Candidate::similarity).reversed());
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Comparator.comparingDouble(Candidate::similarity));
+        candidates.add(start);
+        results.add(start);
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (results.size() >= ef && closest.similarity() < results.peek().similarity()) {
+                break;
+            }
+            int offset = neighborsOffset(closest.node(), layer);
+            int count = buffer.getInt(offset);
+            for (int i = 0; i < count; i++) {
+                int neighbor = buffer.getInt(offset + 4 + i * 4);
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float similarity = similarity(query, neighbor);
+                if (results.size() < ef || similarity > results.peek().similarity()) {
+                    Candidate candidate = new Candidate(neighbor, similarity);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        List<Candidate> ordered = new ArrayList<>(results);
+        ordered.sort(Comparator.comparingDouble(Candidate::similarity).reversed());
+        return ordered;
+    }
+
+    /**
+     * 添加一条单向边，邻居表已满时保留与该节点最相似的邻居
+     *
+     * @param from  起点
+     * @param to    终点
+     * @param layer 层
+     */
+    private void link(int from, int to, int layer) {
+        int offset = neighborsOffset(from, layer);
+        int count = buffer.getInt(offset);
+        int limit = layer == 0 ? 2 * m : m;
+        if (count < limit) {
+            buffer.putInt(offset + 4 + count * 4, to);
+            buffer.putInt(offset, count + 1);
+            return;
+        }
+        float[] vector = vector(from);
+        List<Candidate> all = new ArrayList<>(count + 1);
+        for (int i = 0; i < count; i++) {
+            int neighbor = buffer.getInt(offset + 4 + i * 4);
+            all.add(new Candidate(neighbor, similarity(vector, neighbor)));
+        }
+        all.add(new Candidate(to, similarity(vector, to)));
+        all.sort(Comparator.comparingDouble(Candidate::similarity).reversed());
+        for (int i = 0; i < limit; i++) {
+            buffer.putInt(offset + 4 + i * 4, all.get(i).node());
+        }
+    }
+
+    /**
+     * 随机层级，超过层数上限时截断
+     *
+     * @return 层级
+     */
+    private int randomLevel() {
+        double uniform = 1 - ThreadLocalRandom.current().nextDouble();
+        return Math.min(maxLevels - 1, (int) (-Math.log(uniform) * levelFactor));
+    }
+
+    /**
+     * 计算查询向量与节点的点积
+     *
+     * @param query 查询向量
+     * @param node  节点
+     * @return 相似度
+     */
+    private float similarity(float[] query, int node) {
+        int offset = recordBase(node) + vectorOffset;
+        float sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += query[i] * buffer.getFloat(offset + i * 4);
+        }
+        return sum;
+    }
+
+    /**
+     * 读取节点向量
+     *
+     * @param node 节点
+     * @return 向量
+     */
+    private float[] vector(int node) {
+        int offset = recordBase(node) + vectorOffset;
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = buffer.getFloat(offset + i * 4);
+        }
+        return vector;
+    }
+
+    /**
+     * 读取节点Key
+     *
+     * @param node 节点
+     * @return 32字节Key
+     */
+    private byte[] key(int node) {
+        byte[] key = new byte[KEY_BYTES];
+        buffer.get(recordBase(node), key, 0, KEY_BYTES);
+        return key;
+    }
+
+    /**
+     * 节点在文件中的起始位置
+     *
+     * @param node 节点
+     * @return 偏移
+     */
+    private int recordBase(int node) {
+        return HEADER_BYTES + node * recordBytes;
+    }
+
+    /**
+     * 节点在指定层的邻居表位置，首个int为邻居数
+     *
+     * @param node  节点
+     * @param layer 层
+     * @return 偏移
+     */
+    private int neighborsOffset(int node, int layer) {
+        int base = recordBase(node);
+        return layer == 0 ? base + layer0Offset : base + upperOffset + (layer - 1) * (4 + m * 4);
+    }
+
+    /**
+     * 搜索过程中的候选节点
+     *
+     * @param node       节点
+     * @param similarity 与查询向量的相似度
+     */
+    private record Candidate(int node, float similarity) {
+    }
+
+    /**
+     * 查询结果
+     *
+     * @param key        节点Key
+     * @param similarity 相似度
+     */
+    record Match(byte[] key, float similarity) {
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.afanguserbackend.component.ai;
+
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * 通过配置的OpenAI兼容接口向量化问题，模型和维度由 spring.ai.openai.embedding.options.* 配置
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Component
+public class OpenAiPromptEmbedder implements PromptEmbedder {
+
+    /**
+     * Spring AI自动配置的向量模型，关闭向量模型自动配置时不存在
+     */
+    private final ObjectProvider<EmbeddingModel> embeddingModel;
+
+    /**
+     * 构造函数
+     *
+     * @param embeddingModel 向量模型
+     */
+    public OpenAiPromptEmbedder(ObjectProvider<EmbeddingModel> embeddingModel) {
+        this.embeddingModel = embeddingModel;
+    }
+
+    @Override
+    public String name() {
+        return "openai";
+    }
+
+    @Override
+    public float[] embed(String text) {
+        EmbeddingModel model = embeddingModel.getIfAvailable();
+        if (model == null) {
+            throw new IllegalStateException("未配置向量模型");
+        }
+        return model.embed(text);
+    }
+}
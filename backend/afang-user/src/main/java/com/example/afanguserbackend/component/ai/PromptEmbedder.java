@@ -0,0 +1,26 @@
+package com.example.afanguserbackend.component.ai;
+
+/**
+ * 问题向量化实现
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public interface PromptEmbedder {
+
+    /**
+     * 实现名称，与 afang.ai.semantic-cache.embedder 配置中的名称一致
+     *
+     * @return 名称
+     */
+    String name();
+
+    /**
+     * 将问题转为向量，维度须与 afang.ai.semantic-cache.dimensions 一致
+     *
+     * @param text 问题
+     * @return 向量，不要求已归一化
+     */
+    float[] embed(String text);
+}
@@ -0,0 +1,388 @@
+package com.example.afanguserbackend.component.ai;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 大模型回答的语义缓存。
+ * <p>
+ * 精确匹配缓存未命中时，把问题向量化后在进程内HNSW索引中查找最相似的历史问题：
+ * <ul>
+ *   <li>相似度达到阈值时视为同一个问题，返回该问题已缓存的回答</li>
+ *   <li>索引只保存向量和精确匹配缓存的Key，回答本身仍由{@link ChatResponseCache}保存，回答过期后语义命中自动失效</li>
+ *   <li>索引存放在内存映射文件中，重启后直接映射使用，不需要重建；定期和关闭时刷盘</li>
+ *   <li>索引写满或大部分回答已过期时，只保留回答仍在缓存中的问题重建索引文件，仍放不下时保留最新的一半</li>
+ *   <li>向量化可使用配置的OpenAI兼容接口，也可使用本地桩实现</li>
+ * </ul>
+ * 向量化或索引出错时按未命中处理；写入索引在后台虚拟线程中进行，不阻塞响应流。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class SemanticAnswerCache {
+
+    /**
+     * 后台写入索引的执行器
+     */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * 精确匹配缓存，保存回答本身
+     */
+    private final ChatResponseCache chatResponseCache;
+
+    /**
+     * 指标注册表
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 选中的向量化实现
+     */
+    private final PromptEmbedder embedder;
+
+    /**
+     * 索引文件路径
+     */
+    private final Path path;
+
+    /**
+     * 向量维度
+     */
+    private final int dimensions;
+
+    /**
+     * 每层邻居数
+     */
+    private final int m;
+
+    /**
+     * 层数上限
+     */
+    private final int maxLevels;
+
+    /**
+     * 索引容量
+     */
+    private final int capacity;
+
+    /**
+     * 构建时的候选集大小
+     */
+    private final int efConstruction;
+
+    /**
+     * 查询时的候选集大小
+     */
+    private final int efSearch;
+
+    /**
+     * 命中阈值（余弦相似度）
+     */
+    private final double threshold;
+
+    /**
+     * 回答已过期的问题超过该比例时重建索引
+     */
+    private final double staleRatio;
+
+    /**
+     * 是否正在重建索引
+     */
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    /**
+     * 索引，未启用或打开失败时为null
+     */
+    private volatile HnswIndex index;
+
+    /**
+     * 构造函数
+     *
+     * @param embedders         所有向量化实现
+     * @param chatResponseCache 精确匹配缓存
+     * @param meterRegistry     指标注册表
+     * @param enabled           是否启用
+     * @param embedderName      使用的向量化实现
+     * @param path              索引文件路径
+     * @param dimensions        向量维度
+     * @param m                 每层邻居数
+     * @param maxLevels         层数上限
+     * @param capacity          索引容量
+     * @param efConstruction    构建时的候选集大小
+     * @param efSearch          查询时的候选集大小
+     * @param threshold         命中阈值
+     * @param staleRatio        回答已过期的问题超过该比例时重建索引
+     */
+    public SemanticAnswerCache(List<PromptEmbedder> embedders, ChatResponseCache chatResponseCache,
+                               MeterRegistry meterRegistry,
+                               @Value("${afang.ai.semantic-cache.enabled:true}") boolean enabled,
+                               @Value("${afang.ai.semantic-cache.embedder:openai}") String embedderName,
+                               @Value("${afang.ai.semantic-cache.path:data/semantic-cache.hnsw}") String path,
+                               @Value("${afang.ai.semantic-cache.dimensions:1024}") int dimensions,
+                               @Value("${afang.ai.semantic-cache.m:16}") int m,
+                               @Value("${afang.ai.semantic-cache.max-levels:8}") int maxLevels,
+                               @Value("${afang.ai.semantic-cache.capacity:100000}") int capacity,
+                               @Value("${afang.ai.semantic-cache.ef-construction:100}") int efConstruction,
+                               @Value("${afang.ai.semantic-cache.ef-search:64}") int efSearch,
+                               @Value("${afang.ai.semantic-cache.threshold:0.92}") double threshold,
+                               @Value("${afang.ai.semantic-cache.stale-ratio:0.5}") double staleRatio) {
+        this.chatResponseCache = chatResponseCache;
+        this.meterRegistry = meterRegistry;
+        this.embedder = enabled && chatResponseCache.enabled() ? embedders.stream()
+                .filter(e -> e.name().equals(embedderName.trim()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("未知的向量化实现：" + embedderName)) : null;
+        this.path = Path.of(path);
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxLevels = maxLevels;
+        this.capacity = capacity;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.threshold = threshold;
+        this.staleRatio = staleRatio;
+    }
+
+    /**
+     * 映射索引文件
+     */
+    @PostConstruct
+    public void init() {
+        if (embedder == null) {
+            return;
+        }
+        try {
+            HnswIndex opened = HnswIndex.open(path, dimensions, m, maxLevels, capacity, efConstruction);
+            index = opened;
+            Gauge.builder("ai.semantic.cache.size", this, c -> {
+                        HnswIndex current = c.index;
+                        return current == null ? 0 : current.size();
+                    })
+                    .description("语义缓存索引中的问题数").register(meterRegistry);
+            log.info("语义缓存已启用，向量化实现：{}，索引文件：{}，已有问题数：{}", embedder.name(), path, opened.size());
+        } catch (IOException | RuntimeException e) {
+            log.error("打开语义缓存索引失败，语义缓存不生效，索引文件：{}，错误信息：{}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * 将问题向量化并归一化
+     *
+     * @param prompt 用户问题
+     * @return 单位向量；未启用、向量化失败或维度不符时为null
+     */
+    public float[] embed(String prompt) {
+        if (index == null) {
+            return null;
+        }
+        try {
+            float[] vector = embedder.embed(prompt);
+            if (vector == null || vector.length != dimensions) {
+                log.warn("向量维度与配置不一致，期望：{}，实际：{}", dimensions, vector == null ? 0 : vector.length);
+                return null;
+            }
+            double norm = 0;
+            for (float value : vector) {
+                norm += value * value;
+            }
+            if (norm == 0) {
+                return null;
+            }
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+            return vector;
+        } catch (Exception e) {
+            count("error");
+            log.warn("问题向量化失败，错误信息：{}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 查找语义相同的历史问题的回答
+     *
+     * @param vector {@link #embed(String)}返回的单位向量，为null时直接未命中
+     * @return 命中的回答
+     */
+    public Optional<Hit> find(float[] vector) {
+        HnswIndex current = index;
+        if (current == null || vector == null) {
+            return Optional.empty();
+        }
+        HnswIndex.Match match = current.nearest(vector, efSearch);
+        if (match == null || match.similarity() < threshold) {
+            count("miss");
+            return Optional.empty();
+        }
+        String key = HexFormat.of().formatHex(match.key());
+        Optional<String> answer = chatResponseCache.get(key, false);
+        if (answer.isEmpty()) {
+            // 回答已过期或被淘汰
+            count("expired");
+            return Optional.empty();
+        }
+        count("hit");
+        return Optional.of(new Hit(key, answer.get()));
+    }
+
+    /**
+     * 在后台把问题加入索引，回答须已写入精确匹配缓存
+     *
+     * @param vector   {@link #embed(String)}返回的单位向量，为null时忽略
+     * @param cacheKey 精确匹配缓存的Key
+     */
+    public void remember(float[] vector, String cacheKey) {
+        HnswIndex current = index;
+        if (current == null || vector == null) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                if (!current.insert(vector, HexFormat.of().parseHex(cacheKey))) {
+                    log.info("语义缓存索引已满，开始重建，容量：{}", capacity);
+                    rebuild(true);
+                }
+            } catch (RuntimeException e) {
+                log.warn("写入语义缓存索引失败，错误信息：{}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 定期将索引刷盘
+     */
+    @Scheduled(fixedDelayString = "${afang.ai.semantic-cache.flush-interval-ms:60000}")
+    public void flush() {
+        HnswIndex current = index;
+        if (current != null) {
+            current.force();
+        }
+    }
+
+    /**
+     * 定期检查索引中回答已过期的问题，比例过高时重建
+     */
+    @Scheduled(fixedDelayString = "${afang.ai.semantic-cache.compact-interval-ms:3600000}")
+    public void compact() {
+        rebuild(false);
+    }
+
+    /**
+     * 只保留回答仍在缓存中的问题，写入新文件后替换当前索引。
+     * <p>
+     * 重建期间新加入旧索引的问题会一并搬到新索引；替换前的极短窗口内加入的问题可能丢失，只影响命中率。
+     *
+     * @param full 是否因写满触发；否则仅在过期比例超过阈值时重建
+     */
+    void rebuild(boolean full) {
+        HnswIndex current = index;
+        if (current == null || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        Path building = path.resolveSibling(path.getFileName() + ".rebuild");
+        try {
+            List<Integer> live = new ArrayList<>();
+            int scanned = 0;
+            for (int size = current.size(); scanned < size; scanned++) {
+                if (chatResponseCache.contains(HexFormat.of().formatHex(current.keyAt(scanned)))) {
+                    live.add(scanned);
+                }
+            }
+            if (!full && scanned - live.size() <= scanned * staleRatio) {
+                return;
+            }
+            if (live.size() > capacity / 2) {
+                // 节点按写入顺序编号，保留最新的问题
+                live = live.subList(live.size() - capacity / 2, live.size());
+            }
+            Files.deleteIfExists(building);
+            HnswIndex rebuilt = HnswIndex.open(building, dimensions, m, maxLevels, capacity, efConstruction);
+            for (int node : live) {
+                rebuilt.insert(current.vectorAt(node), current.keyAt(node));
+            }
+            for (int size = current.size(); scanned < size && rebuilt.size() < capacity; scanned++) {
+                rebuilt.insert(current.vectorAt(scanned), current.keyAt(scanned));
+            }
+            rebuilt.force();
+            synchronized (this) {
+                if (index != current) {
+                    // 重建期间已关闭
+                    rebuilt.close();
+                    Files.deleteIfExists(building);
+                    return;
+                }
+                Files.move(building, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                index = rebuilt;
+            }
+            current.close();
+            meterRegistry.counter("ai.semantic.cache.rebuilds").increment();
+            log.info("语义缓存索引已重建，原问题数：{}，保留问题数：{}", scanned, rebuilt.size());
+        } catch (IOException | RuntimeException e) {
+            log.warn("重建语义缓存索引失败，错误信息：{}", e.getMessage());
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * 等待后台写入完成后刷盘并关闭索引
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.close();
+        HnswIndex current;
+        synchronized (this) {
+            current = index;
+            index = null;
+        }
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                log.warn("关闭语义缓存索引失败，错误信息：{}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 按结果计数
+     *
+     * @param result 结果
+     */
+    private void count(String result) {
+        meterRegistry.counter("ai.semantic.cache.requests", "result", result).increment();
+    }
+
+    /**
+     * 语义命中
+     *
+     * @param key    回答在精确匹配缓存中的Key
+     * @param answer 回答
+     */
+    public record Hit(String key, String answer) {
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.afanguserbackend.component.ai;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 相同问题的流式请求合并。
+ * <p>
+ * 热门问题往往在几秒内被大量用户同时提问，合并后上游并发和token消耗只与不同问题的数量有关：
+ * <ul>
+ *   <li>同一Key第一个到达的请求发起上游调用，之后到达的请求订阅同一个流，不再调用上游</li>
+ *   <li>共享流开始时才申请上游名额，拿到名额后再调用上游，结束或取消时释放；名额与发起方身份同时确定，
+ *       所有订阅者取消后有新订阅者重新开始时也会重新申请</li>
+ *   <li>共享流缓存已产生的全部帧，后加入的请求先收到已生成的部分，再接着收到后续帧</li>
+ *   <li>所有订阅者都取消时取消排队或上游调用；上游结束或取消后移除，之后的请求由回答缓存或新的上游调用处理</li>
+ * </ul>
+ * 上游出错或名额被拒绝时所有订阅者都收到同一个错误。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Component
+public class StreamCoalescer {
+
+    /**
+     * 进行中的共享流
+     */
+    private final Map<String, Flux<String>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 指标注册表
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 构造函数
+     *
+     * @param meterRegistry 指标注册表
+     */
+    public StreamCoalescer(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("ai.stream.coalesce.in-flight", inFlight, Map::size)
+                .description("进行中的共享上游流数").register(meterRegistry);
+    }
+
+    /**
+     * 加入同一Key的共享流，不存在时由当前请求发起
+     *
+     * @param key      问题的Key，相同Key的请求共享同一个上游流
+     * @param permit   申请上游名额，共享流开始时调用
+     * @param upstream 发起上游调用，拿到名额后调用
+     * @return 共享流
+     */
+    public Flux<String> coalesce(String key, Supplier<CompletableFuture<AiStreamScheduler.Permit>> permit,
+                                 Supplier<Flux<String>> upstream) {
+        return Flux.defer(() -> {
+            boolean[] leader = new boolean[1];
+            Flux<String> shared = inFlight.computeIfAbsent(key, k -> {
+                leader[0] = true;
+                return share(k, permit, upstream);
+            });
+            meterRegistry.counter("ai.stream.coalesce", "role", leader[0] ? "leader" : "follower").increment();
+            return shared;
+        });
+    }
+
+    /**
+     * 创建共享流：开始时申请名额，缓存全部帧，订阅者全部取消时断开上游，结束或取消时释放名额并从进行中移除
+     *
+     * @param key      问题的Key
+     * @param permit   申请上游名额
+     * @param upstream 发起上游调用
+     * @return 共享流
+     */
+    private Flux<String> share(String key, Supplier<CompletableFuture<AiStreamScheduler.Permit>> permit,
+                               Supplier<Flux<String>> upstream) {
+        AtomicReference<Flux<String>> self = new AtomicReference<>();
+        // 取消时同时取消名额的Future，排队中的请求随之移出队列
+        Flux<String> shared = Mono.fromFuture(permit)
+                // 名额发放与取消同时发生时，被丢弃的名额也要释放
+                .doOnDiscard(AiStreamScheduler.Permit.class, AiStreamScheduler.Permit::release)
+                .flatMapMany(granted -> Flux.defer(upstream).doFinally(signal -> granted.release()))
+                .doFinally(signal -> inFlight.remove(key, self.get()))
+                .replay()
+                .refCount();
+        self.set(shared);
+        return shared;
+    }
+}
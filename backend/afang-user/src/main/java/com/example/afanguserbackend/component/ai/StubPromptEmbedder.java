@@ -0,0 +1,73 @@
+package com.example.afanguserbackend.component.ai;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * 本地桩向量化实现，用于本地联调和测试。
+ * <p>
+ * 把规范化后的问题按单字和相邻两字做特征哈希，不调用任何外部接口；只能识别字面相近的问法，
+ * 识别不了同义改写，生产环境应使用 openai 实现。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Component
+public class StubPromptEmbedder implements PromptEmbedder {
+
+    /**
+     * 向量维度
+     */
+    private final int dimensions;
+
+    /**
+     * 构造函数
+     *
+     * @param dimensions 向量维度
+     */
+    public StubPromptEmbedder(@Value("${afang.ai.semantic-cache.dimensions:1024}") int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    @Override
+    public String name() {
+        return "stub";
+    }
+
+    @Override
+    public float[] embed(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        float[] vector = new float[dimensions];
+        int previous = -1;
+        for (int i = 0; i < normalized.length(); ) {
+            int codePoint = normalized.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (!Character.isLetterOrDigit(codePoint)) {
+                previous = -1;
+                continue;
+            }
+            add(vector, codePoint);
+            if (previous >= 0) {
+                add(vector, previous * 31 + codePoint);
+            }
+            previous = codePoint;
+        }
+        return vector;
+    }
+
+    /**
+     * 把一个特征哈希到向量中，符号位由哈希决定，减少冲突带来的偏差
+     *
+     * @param vector  向量
+     * @param feature 特征
+     */
+    private void add(float[] vector, int feature) {
+        int hash = feature * 0x9E3779B9;
+        hash ^= hash >>> 16;
+        vector[Math.floorMod(hash, dimensions)] += (hash & 0x40000000) == 0 ? 1 : -1;
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.afanguserbackend.component.audit;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.example.afanguserbackend.component.id.SnowflakeIdGenerator;
+import com.example.afanguserbackend.mapper.audit.LoginAuditMapper;
+import com.example.afanguserbackend.model.entity.audit.LoginAudit;
+import com.example.afanguserbackend.utils.RedisUtil;
+import com.example.afanguserbackend.utils.RequestUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * 登录审计记录器。
+ * <p>
+ * 记录每一次登录尝试（用户、IP、User-Agent、成功与否、耗时），对登录链路只增加一次无锁入队：
+ * <ul>
+ *   <li>审计事件进入有界的{@link ConcurrentLinkedQueue}，容量由原子计数器控制，队列满时丢弃并计数，不阻塞登录</li>
+ *   <li>后台定时任务按批多行插入login_audit表</li>
+ *   <li>login_audit按天RANGE分区，每天预建未来若干天的分区并删除超过保留期的分区；多节点通过Redis锁保证只有一个节点执行DDL</li>
+ * </ul>
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class LoginAuditRecorder {
+
+    /**
+     * 分区维护锁Key
+     */
+    private static final String PARTITION_LOCK_KEY = "audit:login:partition-lock";
+
+    /**
+     * 日分区名格式
+     */
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+
+    /**
+     * 日分区名匹配规则
+     */
+    private static final Pattern DAILY_PARTITION = Pattern.compile("p\\d{8}");
+
+    /**
+     * User-Agent最大长度，与表字段一致
+     */
+    private static final int MAX_USER_AGENT_LENGTH = 255;
+
+    /**
+     * 失败原因最大长度，与表字段一致
+     */
+    private static final int MAX_REASON_LENGTH = 100;
+
+    /**
+     * 待写入的审计事件
+     */
+    private final ConcurrentLinkedQueue<LoginAudit> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 队列中的事件数量
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+
+    /**
+     * 保证定时写入与关闭写入不会并发执行
+     */
+    private final ReentrantLock drainLock = new ReentrantLock();
+
+    /**
+     * 审计数据访问
+     */
+    private final LoginAuditMapper loginAuditMapper;
+
+    /**
+     * 雪花ID生成器
+     */
+    private final SnowflakeIdGenerator idGenerator;
+
+    /**
+     * 队列容量
+     */
+    private final int capacity;
+
+    /**
+     * 单条INSERT语句包含的最大行数
+     */
+    private final int batchSize;
+
+    /**
+     * 预建未来分区的天数
+     */
+    private final int premakeDays;
+
+    /**
+     * 分区保留天数
+     */
+    private final int retentionDays;
+
+    /**
+     * 队列满而被丢弃的事件数
+     */
+    private final Counter dropped;
+
+    /**
+     * 写库失败而丢弃的事件数
+     */
+    private final Counter failed;
+
+    /**
+     * 构造函数
+     *
+     * @param loginAuditMapper 审计数据访问
+     * @param idGenerator      雪花ID生成器
+     * @param meterRegistry    指标注册表
+     * @param capacity         队列容量
+     * @param batchSize        单条INSERT语句包含的最大行数
+     * @param premakeDays      预建未来分区的天数
+     * @param retentionDays    分区保留天数
+     */
+    public LoginAuditRecorder(LoginAuditMapper loginAuditMapper, SnowflakeIdGenerator idGenerator,
+                              MeterRegistry meterRegistry,
+                              @Value("${afang.audit.queue-capacity:100000}") int capacity,
+                              @Value("${afang.audit.batch-size:500}") int batchSize,
+                              @Value("${afang.audit.premake-days:3}") int premakeDays,
+                              @Value("${afang.audit.retention-days:90}") int retentionDays) {
+        this.loginAuditMapper = loginAuditMapper;
+        this.idGenerator = idGenerator;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.premakeDays = premakeDays;
+        this.retentionDays = retentionDays;
+        this.dropped = Counter.builder("login.audit.dropped").tag("reason", "queue_full")
+                .description("丢弃的登录审计事件数").register(meterRegistry);
+        this.failed = Counter.builder("login.audit.dropped").tag("reason", "write_failed")
+                .description("丢弃的登录审计事件数").register(meterRegistry);
+        Gauge.builder("login.audit.queue.size", queued, AtomicInteger::get)
+                .description("待写入的登录审计事件数").register(meterRegistry);
+    }
+
+    /**
+     * 记录一次登录尝试
+     * 在请求线程中调用，从当前请求中提取IP和User-Agent
+     *
+     * @param userId        用户ID，用户不存在时为null
+     * @param phone         登录使用的手机号
+     * @param success       是否成功
+     * @param failureReason 失败原因，成功时为null
+     * @param startNanos    登录处理开始时的{@link System#nanoTime()}
+     */
+    public void record(Long userId, String phone, boolean success, String failureReason, long startNanos) {
+        int latencyMs = (int) TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        if (queued.incrementAndGet() > capacity) {
+            queued.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        LoginAudit.LoginAuditBuilder audit = LoginAudit.builder()
+                .id(idGenerator.nextId())
+                .userId(userId)
+                .phone(phone)
+                .success(success)
+                .failureReason(truncate(failureReason, MAX_REASON_LENGTH))
+                .latencyMs(latencyMs)
+                .loginTime(LocalDateTime.now());
+        RequestUtil.currentRequest().ifPresent(request -> audit
+                .ip(RequestUtil.clientIp(request))
+                .userAgent(truncate(RequestUtil.userAgent(request), MAX_USER_AGENT_LENGTH)));
+        queue.offer(audit.build());
+    }
+
+    /**
+     * 查询用户最近的登录记录
+     *
+     * @param userId 用户ID
+     * @param days   查询最近多少天
+     * @param limit  最多返回条数
+     * @return 按登录时间倒序的审计记录
+     */
+    public List<LoginAudit> recent(Long userId, int days, int limit) {
+        return loginAuditMapper.selectList(new LambdaQueryWrapper<LoginAudit>()
+                .eq(LoginAudit::getUserId, userId)
+                .ge(LoginAudit::getLoginTime, LocalDate.now().minusDays(days).atStartOfDay())
+                .orderByDesc(LoginAudit::getLoginTime)
+                .last("LIMIT " + limit));
+    }
+
+    /**
+     * 定时批量写入队列中的审计事件
+     */
+    @Scheduled(fixedDelayString = "${afang.audit.flush-interval-ms:500}")
+    public void drain() {
+        drainLock.lock();
+        try {
+            List<LoginAudit> batch = new ArrayList<>(batchSize);
+            LoginAudit audit;
+            while ((audit = queue.poll()) != null) {
+                queued.decrementAndGet();
+                batch.add(audit);
+                if (batch.size() >= batchSize) {
+                    write(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    /**
+     * 启动完成后及每天凌晨维护分区
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${afang.audit.partition-cron:0 10 0 * * *}")
+    public void maintainPartitions() {
+        if (!RedisUtil.setIfAbsent(PARTITION_LOCK_KEY, "1", Duration.ofMinutes(10))) {
+            return;
+        }
+        try {
+            List<String> partitions = loginAuditMapper.selectPartitionNames();
+            if (!partitions.contains("p_future")) {
+                log.warn("login_audit表未按天分区，跳过分区维护，请执行 upgrade_1.5.0_login_audit.sql");
+                return;
+            }
+            LocalDate today = LocalDate.now();
+            for (int i = 0; i <= premakeDays; i++) {
+                LocalDate day = today.plusDays(i);
+                String name = day.format(PARTITION_NAME);
+                if (!partitions.contains(name) && isAfterAllDaily(partitions, name)) {
+                    loginAuditMapper.addPartition(name, day.plusDays(1).toString());
+                    log.info("创建登录审计分区：{}", name);
+                }
+            }
+            String cutoff = today.minusDays(retentionDays).format(PARTITION_NAME);
+            for (String name : partitions) {
+                if (DAILY_PARTITION.matcher(name).matches() && name.compareTo(cutoff) < 0) {
+                    loginAuditMapper.dropPartition(name);
+                    log.info("删除过期登录审计分区：{}", name);
+                }
+            }
+        } catch (Exception e) {
+            log.error("登录审计分区维护失败，错误信息：{}", e.getMessage(), e);
+        } finally {
+            RedisUtil.delete(PARTITION_LOCK_KEY);
+        }
+    }
+
+    /**
+     * 关闭时写入剩余事件
+     */
+    @PreDestroy
+    public void shutdown() {
+        drain();
+    }
+
+    /**
+     * 写入一批审计事件，失败时丢弃并计数，避免审计故障反压到登录
+     *
+     * @param batch 审计事件
+     */
+    private void write(List<LoginAudit> batch) {
+        try {
+            loginAuditMapper.insertBatch(batch);
+        } catch (Exception e) {
+            failed.increment(batch.size());
+            log.error("登录审计写库失败，丢弃{}条记录，错误信息：{}", batch.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 判断日分区是否晚于所有已有日分区
+     * REORGANIZE只能从兜底分区的头部拆分，新分区必须位于已有日分区之后
+     *
+     * @param partitions 已有分区名
+     * @param name       新分区名
+     * @return 晚于所有已有日分区返回true
+     */
+    private static boolean isAfterAllDaily(List<String> partitions, String name) {
+        return partitions.stream()
+                .filter(p -> DAILY_PARTITION.matcher(p).matches())
+                .allMatch(p -> p.compareTo(name) < 0);
+    }
+
+    /**
+     * 截断字符串
+     *
+     * @param value     原始值
+     * @param maxLength 最大长度
+     * @return 截断后的值
+     */
+    private static String truncate(String value, int maxLength) {
+        return value == null || value.length() <= maxLength ? value : value.substring(0, maxLength);
+    }
+}
@@ -0,0 +1,393 @@
+package com.example.afanguserbackend.component.bitmap;
+
+import com.example.afanguserbackend.component.event.UserChangedEvent;
+import com.example.afanguserbackend.component.index.InMemoryUserIndex;
+import com.example.afanguserbackend.component.sharding.UserShardTemplate;
+import com.example.afanguserbackend.mapper.user.UsersMapper;
+import com.example.afanguserbackend.model.dto.user.admin_user_dto.UserFilterDto;
+import com.example.afanguserbackend.model.entity.user.Users;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * 用户位图二级索引。
+ * <p>
+ * 角色、状态这类低基数字段在MySQL中单独建索引效果很差，组合条件（如“本月注册的活跃管理员”）往往退化为全表扫描。
+ * 该组件在内存中为每个角色、每个状态、每个注册日期维护一个Roaring压缩位图，组合筛选只需位图的与/或/非运算：
+ * <ul>
+ *   <li>雪花ID是稀疏的64位整数，先映射为稠密的32位序号再写入位图，位图保持紧凑；删除用户后序号会被复用</li>
+ *   <li>注册日期按天分桶并按日期排序，日期范围条件合并范围内的日桶</li>
+ *   <li>构建与增量更新由{@link InMemoryUserIndex}负责：启动后流式扫描构建，之后监听{@link UserChangedEvent}增量更新</li>
+ * </ul>
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Component
+public class UserBitmapIndex extends InMemoryUserIndex {
+
+    /**
+     * 单个用户在索引中的位置与维度值
+     *
+     * @param ordinal 稠密序号
+     * @param role    角色
+     * @param status  状态
+     * @param day     注册日期
+     */
+    private record Entry(int ordinal, String role, String status, LocalDate day) {
+    }
+
+    /**
+     * 用户ID到索引条目的映射
+     */
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    /**
+     * 序号到用户ID的映射
+     */
+    private long[] ordinalToId = new long[1024];
+
+    /**
+     * 下一个未使用过的序号
+     */
+    private int nextOrdinal;
+
+    /**
+     * 已释放、可复用的序号
+     */
+    private final ArrayDeque<Integer> freeOrdinals = new ArrayDeque<>();
+
+    /**
+     * 全部有效用户
+     */
+    private final RoaringBitmap all = new RoaringBitmap();
+
+    /**
+     * 角色位图
+     */
+    private final Map<String, RoaringBitmap> byRole = new HashMap<>();
+
+    /**
+     * 状态位图
+     */
+    private final Map<String, RoaringBitmap> byStatus = new HashMap<>();
+
+    /**
+     * 注册日期位图，按日期排序
+     */
+    private final NavigableMap<LocalDate, RoaringBitmap> byDay = new TreeMap<>();
+
+    /**
+     * 构造函数
+     *
+     * @param usersMapper   用户数据访问
+     * @param shardTemplate 分片操作模板
+     * @param scanBatchSize 构建索引时每批扫描的行数
+     */
+    public UserBitmapIndex(UsersMapper usersMapper, UserShardTemplate shardTemplate,
+                           @Value("${afang.search.scan-batch-size:1000}") int scanBatchSize) {
+        super("用户位图索引", "user-bitmap-index", usersMapper, shardTemplate, scanBatchSize);
+    }
+
+    /**
+     * 全量构建完成后压缩位图
+     */
+    @Override
+    protected void afterBuild() {
+        all.runOptimize();
+        byRole.values().forEach(RoaringBitmap::runOptimize);
+        byStatus.values().forEach(RoaringBitmap::runOptimize);
+        byDay.values().forEach(RoaringBitmap::runOptimize);
+    }
+
+    /**
+     * 统计满足条件的用户数
+     *
+     * @param filter 筛选条件
+     * @return 用户数
+     * @throws RuntimeException 注册日期起始晚于截止日期时抛出
+     */
+    public long count(UserFilterDto filter) {
+        checkReady();
+        validate(filter);
+        lock.readLock().lock();
+        try {
+            return evaluate(filter).getLongCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查询满足条件的用户ID（按序号顺序分页）
+     *
+     * @param filter 筛选条件
+     * @param offset 起始偏移
+     * @param limit  最大数量
+     * @return 用户ID列表
+     * @throws RuntimeException 注册日期起始晚于截止日期时抛出
+     */
+    public List<Long> ids(UserFilterDto filter, int offset, int limit) {
+        checkReady();
+        validate(filter);
+        lock.readLock().lock();
+        try {
+            RoaringBitmap result = evaluate(filter);
+            if (limit <= 0 || offset >= result.getCardinality()) {
+                return List.of();
+            }
+            List<Long> ids = new ArrayList<>(Math.min(limit, result.getCardinality() - offset));
+            PeekableIntIterator iterator = result.getIntIterator();
+            iterator.advanceIfNeeded(result.select(offset));
+            while (iterator.hasNext() && ids.size() < limit) {
+                ids.add(ordinalToId[iterator.next()]);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按角色和状态分别统计用户数，供管理后台仪表盘使用
+     *
+     * @return 维度名（role/status）到各取值用户数的映射
+     */
+    public Map<String, Map<String, Long>> stats() {
+        checkReady();
+        lock.readLock().lock();
+        try {
+            Map<String, Map<String, Long>> stats = new LinkedHashMap<>();
+            stats.put("role", cardinalities(byRole));
+            stats.put("status", cardinalities(byStatus));
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 计算筛选条件对应的位图，调用方需持有读锁
+     *
+     * @param filter 筛选条件
+     * @return 结果位图（新对象）
+     */
+    private RoaringBitmap evaluate(UserFilterDto filter) {
+        RoaringBitmap result = all.clone();
+        if (hasValues(filter.getRoles())) {
+            result.and(union(byRole, filter.getRoles()));
+        }
+        if (hasValues(filter.getStatuses())) {
+            result.and(union(byStatus, filter.getStatuses()));
+        }
+        if (filter.getCreatedFrom() != null || filter.getCreatedTo() != null) {
+            NavigableMap<LocalDate, RoaringBitmap> range = byDay;
+            if (filter.getCreatedFrom() != null) {
+                range = range.tailMap(filter.getCreatedFrom(), true);
+            }
+            if (filter.getCreatedTo() != null) {
+                range = range.headMap(filter.getCreatedTo(), true);
+            }
+            result.and(RoaringBitmap.or(range.values().iterator()));
+        }
+        if (hasValues(filter.getExcludeRoles())) {
+            result.andNot(union(byRole, filter.getExcludeRoles()));
+        }
+        if (hasValues(filter.getExcludeStatuses())) {
+            result.andNot(union(byStatus, filter.getExcludeStatuses()));
+        }
+        return result;
+    }
+
+    /**
+     * 合并多个取值的位图
+     *
+     * @param bitmaps 取值到位图的映射
+     * @param values  取值
+     * @return 并集位图
+     */
+    private static RoaringBitmap union(Map<String, RoaringBitmap> bitmaps, Collection<String> values) {
+        return RoaringBitmap.or(values.stream()
+                .map(UserBitmapIndex::normalize)
+                .map(bitmaps::get)
+                .filter(Objects::nonNull)
+                .iterator());
+    }
+
+    /**
+     * 写入或替换用户条目，调用方需持有写锁
+     *
+     * @param user 用户实体
+     */
+    @Override
+    protected void put(Users user) {
+        Entry previous = entries.get(user.getId());
+        int ordinal;
+        if (previous != null) {
+            ordinal = previous.ordinal();
+            unmark(previous);
+        } else {
+            ordinal = allocateOrdinal(user.getId());
+        }
+        LocalDate day = user.getCreateTime() == null ? null : user.getCreateTime().toLocalDate();
+        Entry entry = new Entry(ordinal, normalize(user.getUserRole()), normalize(user.getStatus()), day);
+        entries.put(user.getId(), entry);
+        all.add(ordinal);
+        if (entry.role() != null) {
+            byRole.computeIfAbsent(entry.role(), r -> new RoaringBitmap()).add(ordinal);
+        }
+        if (entry.status() != null) {
+            byStatus.computeIfAbsent(entry.status(), s -> new RoaringBitmap()).add(ordinal);
+        }
+        if (day != null) {
+            byDay.computeIfAbsent(day, d -> new RoaringBitmap()).add(ordinal);
+        }
+    }
+
+    /**
+     * 删除用户条目并释放序号，调用方需持有写锁
+     *
+     * @param id 用户ID
+     */
+    @Override
+    protected void remove(Long id) {
+        Entry previous = entries.remove(id);
+        if (previous == null) {
+            return;
+        }
+        unmark(previous);
+        all.remove(previous.ordinal());
+        freeOrdinals.push(previous.ordinal());
+    }
+
+    /**
+     * 从各维度位图中清除条目
+     *
+     * @param entry 索引条目
+     */
+    private void unmark(Entry entry) {
+        removeFrom(byRole, entry.role(), entry.ordinal());
+        removeFrom(byStatus, entry.status(), entry.ordinal());
+        if (entry.day() != null) {
+            RoaringBitmap bitmap = byDay.get(entry.day());
+            if (bitmap != null) {
+                bitmap.remove(entry.ordinal());
+                if (bitmap.isEmpty()) {
+                    byDay.remove(entry.day());
+                }
+            }
+        }
+    }
+
+    /**
+     * 从指定取值的位图中清除序号，位图为空时移除
+     *
+     * @param bitmaps 取值到位图的映射
+     * @param value   取值
+     * @param ordinal 序号
+     */
+    private static void removeFrom(Map<String, RoaringBitmap> bitmaps, String value, int ordinal) {
+        if (value == null) {
+            return;
+        }
+        RoaringBitmap bitmap = bitmaps.get(value);
+        if (bitmap != null) {
+            bitmap.remove(ordinal);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(value);
+            }
+        }
+    }
+
+    /**
+     * 为用户分配序号，优先复用已释放的序号
+     *
+     * @param id 用户ID
+     * @return 序号
+     */
+    private int allocateOrdinal(long id) {
+        Integer reused = freeOrdinals.poll();
+        int ordinal = reused != null ? reused : nextOrdinal++;
+        if (ordinal >= ordinalToId.length) {
+            ordinalToId = Arrays.copyOf(ordinalToId, ordinalToId.length * 2);
+        }
+        ordinalToId[ordinal] = id;
+        return ordinal;
+    }
+
+    /**
+     * 统计各取值的用户数
+     *
+     * @param bitmaps 取值到位图的映射
+     * @return 取值到用户数的映射
+     */
+    private static Map<String, Long> cardinalities(Map<String, RoaringBitmap> bitmaps) {
+        Map<String, Long> counts = new TreeMap<>();
+        bitmaps.forEach((value, bitmap) -> counts.put(value, bitmap.getLongCardinality()));
+        return counts;
+    }
+
+    /**
+     * 检查索引是否已构建完成
+     *
+     * @throws RuntimeException 索引尚未构建完成时抛出
+     */
+    private void checkReady() {
+        if (!isReady()) {
+            throw new RuntimeException("用户位图索引正在构建，请稍后重试");
+        }
+    }
+
+    /**
+     * 校验筛选条件
+     *
+     * @param filter 筛选条件
+     * @throws RuntimeException 注册日期起始晚于截止日期时抛出
+     */
+    private static void validate(UserFilterDto filter) {
+        if (filter.getCreatedFrom() != null && filter.getCreatedTo() != null
+                && filter.getCreatedFrom().isAfter(filter.getCreatedTo())) {
+            throw new RuntimeException("注册日期起始不能晚于截止日期");
+        }
+    }
+
+    /**
+     * 判断列表是否包含取值
+     *
+     * @param values 取值列表
+     * @return 非空返回true
+     */
+    private static boolean hasValues(List<String> values) {
+        return values != null && !values.isEmpty();
+    }
+
+    /**
+     * 归一化维度取值：去除首尾空白并转为小写
+     *
+     * @param value 原始值
+     * @return 归一化结果，空白时为null
+     */
+    private static String normalize(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.afanguserbackend.component.cache;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * MyBatis二级缓存配置。
+ * <p>
+ * {@link RedisMybatisCache}由MyBatis直接实例化，无法注入Spring配置，
+ * 因此由该组件在启动时读取配置并注入到缓存类中。
+ * <p>
+ * 语句白名单{@code afang.mybatis-cache.statements}的每一项可以是完整语句ID，
+ * 也可以是“Mapper简单类名.方法名”，例如{@code UsersMapper.selectById}。
+ * 只应开启返回实体的查询；计数类查询命中率低，且每次写入都会被失效。
+ * 登录鉴权依赖的条件查询（如{@code UsersMapper.selectList}）不应开启，否则改密、禁用在缓存过期前不生效。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+@Getter
+@Component
+public class MybatisCacheSettings {
+
+    /**
+     * 开启缓存的语句
+     */
+    private final List<String> statements;
+
+    /**
+     * 每个命名空间的最大条目数
+     */
+    private final long maxEntries;
+
+    /**
+     * 缓存过期时间（秒），每次写入时刷新
+     */
+    private final long ttlSeconds;
+
+    /**
+     * 构造函数
+     *
+     * @param statements 开启缓存的语句
+     * @param maxEntries 每个命名空间的最大条目数
+     * @param ttlSeconds 缓存过期时间（秒）
+     */
+    public MybatisCacheSettings(@Value("${afang.mybatis-cache.statements:}") List<String> statements,
+                                @Value("${afang.mybatis-cache.max-entries:10000}") long maxEntries,
+                                @Value("${afang.mybatis-cache.ttl-seconds:600}") long ttlSeconds) {
+        this.statements = statements.stream().map(String::trim).filter(s -> !s.isEmpty()).toList();
+        this.maxEntries = maxEntries;
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /**
+     * 将配置注入到缓存类
+     */
+    @PostConstruct
+    public void init() {
+        RedisMybatisCache.configure(this);
+        log.info("MyBatis二级缓存已启用，语句：{}，上限：{}，过期时间：{}s", statements, maxEntries, ttlSeconds);
+    }
+
+    /**
+     * 判断语句是否开启了缓存
+     *
+     * @param statementId MappedStatement的ID，如 com.example...UsersMapper.selectById
+     * @return 是否开启
+     */
+    public boolean isStatementEnabled(String statementId) {
+        for (String statement : statements) {
+            if (statementId.equals(statement) || statementId.endsWith("." + statement)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.afanguserbackend.component.cache;
+
+import com.example.afanguserbackend.component.sharding.ShardContext;
+import com.example.afanguserbackend.utils.RedisUtil;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheKey;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.util.SerializationUtils;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于Redis的MyBatis二级缓存。
+ * <p>
+ * 通过{@code @CacheNamespace(implementation = RedisMybatisCache.class)}挂到Mapper上，
+ * 每个命名空间（Mapper）对应Redis中的一个哈希表：
+ * <ul>
+ *   <li>字段为“当前分片 + CacheKey”的SHA-256摘要，值为JDK序列化后的查询结果，保证结果类型与直查数据库一致；
+ *       同一语句和参数在不同分片上的结果互不覆盖（读写都在{@link ShardContext}设置的分片上下文中发生）</li>
+ *   <li>命名空间内任意insert/update/delete都会触发MyBatis调用{@link #clear()}，整体删除该哈希表，所有节点立即失效</li>
+ *   <li>只缓存{@code afang.mybatis-cache.statements}中显式开启的语句，其余语句读写都不访问Redis</li>
+ *   <li>写入通过Lua脚本在同一次往返中检查条目上限，超过上限的结果不再缓存，直到下次失效</li>
+ *   <li>命中/未命中计数以Micrometer指标{@code mybatis.cache.requests}和{@code mybatis.cache.hit.ratio}暴露</li>
+ * </ul>
+ * Redis异常时按未命中处理，不影响查询本身。该类由MyBatis直接实例化，配置由{@link MybatisCacheSettings}在启动时注入。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+public class RedisMybatisCache implements Cache {
+
+    /**
+     * 缓存Key前缀
+     */
+    private static final String KEY_PREFIX = "mybatis:cache:";
+
+    /**
+     * 写入脚本：条目数未达上限时写入字段并刷新过期时间
+     */
+    private static final byte[] PUT_SCRIPT = ("if redis.call('hlen', KEYS[1]) < tonumber(ARGV[3]) then "
+            + "redis.call('hset', KEYS[1], ARGV[1], ARGV[2]) "
+            + "redis.call('expire', KEYS[1], ARGV[4]) return 1 end return 0").getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * 全局配置，由{@link MybatisCacheSettings}在启动时设置，未设置前缓存不生效
+     */
+    private static volatile MybatisCacheSettings settings;
+
+    /**
+     * 命名空间（Mapper全限定名）
+     */
+    private final String id;
+
+    /**
+     * Redis哈希表Key
+     */
+    private final byte[] redisKey;
+
+    /**
+     * 语句ID是否开启缓存的判定结果
+     */
+    private final Map<String, Boolean> statementEnabled = new ConcurrentHashMap<>();
+
+    /**
+     * 命中次数
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * 未命中次数
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * 构造函数，由MyBatis在解析Mapper时调用
+     *
+     * @param id 命名空间
+     */
+    public RedisMybatisCache(String id) {
+        this.id = id;
+        this.redisKey = (KEY_PREFIX + id).getBytes(StandardCharsets.UTF_8);
+        FunctionCounter.builder("mybatis.cache.requests", hits, LongAdder::doubleValue)
+                .tag("namespace", id).tag("result", "hit")
+                .description("MyBatis二级缓存请求次数")
+                .register(Metrics.globalRegistry);
+        FunctionCounter.builder("mybatis.cache.requests", misses, LongAdder::doubleValue)
+                .tag("namespace", id).tag("result", "miss")
+                .description("MyBatis二级缓存请求次数")
+                .register(Metrics.globalRegistry);
+        Gauge.builder("mybatis.cache.hit.ratio", this, RedisMybatisCache::hitRatio)
+                .tag("namespace", id)
+                .description("MyBatis二级缓存命中率")
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * 注入全局配置
+     *
+     * @param cacheSettings 缓存配置
+     */
+    static void configure(MybatisCacheSettings cacheSettings) {
+        settings = cacheSettings;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        MybatisCacheSettings current = settings;
+        if (current == null || !isEnabled(key) || !(value instanceof Serializable)) {
+            return;
+        }
+        try {
+            byte[] field = field(key);
+            byte[] data = SerializationUtils.serialize(value);
+            byte[] maxEntries = String.valueOf(current.getMaxEntries()).getBytes(StandardCharsets.UTF_8);
+            byte[] ttl = String.valueOf(current.getTtlSeconds()).getBytes(StandardCharsets.UTF_8);
+            Long stored = RedisUtil.execute(connection -> connection.scriptingCommands()
+                    .eval(PUT_SCRIPT, ReturnType.INTEGER, 1, redisKey, field, data, maxEntries, ttl));
+            if (stored != null && stored == 0) {
+                log.debug("MyBatis二级缓存已达上限，命名空间：{}", id);
+            }
+        } catch (Exception e) {
+            log.warn("写入MyBatis二级缓存失败，命名空间：{}，错误信息：{}", id, e.getMessage());
+        }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        if (settings == null || !isEnabled(key)) {
+            return null;
+        }
+        try {
+            byte[] field = field(key);
+            byte[] data = RedisUtil.execute(connection -> connection.hashCommands().hGet(redisKey, field));
+            if (data == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return SerializationUtils.deserialize(data);
+        } catch (Exception e) {
+            misses.increment();
+            log.warn("读取MyBatis二级缓存失败，命名空间：{}，错误信息：{}", id, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        if (settings == null || !isEnabled(key)) {
+            return null;
+        }
+        try {
+            byte[] field = field(key);
+            RedisUtil.execute(connection -> connection.hashCommands().hDel(redisKey, field));
+        } catch (Exception e) {
+            log.warn("删除MyBatis二级缓存失败，命名空间：{}，错误信息：{}", id, e.getMessage());
+        }
+        return null;
+    }
+
+    @Override
+    public void clear() {
+        if (settings == null) {
+            return;
+        }
+        try {
+            // UNLINK在后台线程回收内存，大哈希表失效也不会阻塞Redis
+            RedisUtil.execute(connection -> connection.keyCommands().unlink(redisKey));
+        } catch (Exception e) {
+            // 失效失败只能依赖过期时间兜底，这里必须留下明显的日志
+            log.error("清空MyBatis二级缓存失败，命名空间：{}，错误信息：{}", id, e.getMessage());
+        }
+    }
+
+    @Override
+    public int getSize() {
+        try {
+            Long size = RedisUtil.execute(connection -> connection.hashCommands().hLen(redisKey));
+            return size == null ? 0 : size.intValue();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 计算命中率
+     *
+     * @return 命中率，无请求时为0
+     */
+    double hitRatio() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * 判断缓存Key所属的语句是否开启了缓存
+     *
+     * @param key MyBatis缓存Key
+     * @return 是否开启
+     */
+    private boolean isEnabled(Object key) {
+        String statementId = statementIdOf(key);
+        return statementId != null
+                && statementEnabled.computeIfAbsent(statementId, sid -> settings.isStatementEnabled(sid));
+    }
+
+    /**
+     * 从CacheKey中解析语句ID
+     * CacheKey.toString()的格式为 hashcode:checksum:statementId:offset:limit:sql:参数...
+     *
+     * @param key MyBatis缓存Key
+     * @return 语句ID，无法解析时为null
+     */
+    private static String statementIdOf(Object key) {
+        if (!(key instanceof CacheKey)) {
+            return null;
+        }
+        String[] parts = key.toString().split(":", 4);
+        return parts.length >= 3 ? parts[2] : null;
+    }
+
+    /**
+     * 计算缓存Key对应的哈希字段，包含当前分片，CacheKey本身不区分数据源
+     *
+     * @param key MyBatis缓存Key
+     * @return SHA-256摘要的十六进制字节
+     */
+    static byte[] field(Object key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(Objects.requireNonNullElse(ShardContext.current(), ShardContext.GLOBAL).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            return HexFormat.of().formatHex(digest.digest(key.toString().getBytes(StandardCharsets.UTF_8)))
+                    .getBytes(StandardCharsets.UTF_8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
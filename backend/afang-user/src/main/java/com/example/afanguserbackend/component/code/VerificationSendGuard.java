@@ -0,0 +1,162 @@
+package com.example.afanguserbackend.component.code;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+
+import static com.example.afanguserbackend.utils.CommonUtil.getVerificationCode;
+
+/**
+ * 验证码发送去重。
+ * <p>
+ * 用户连续点击“发送验证码”时不再每次生成新验证码并付费发送，一次Lua脚本原子完成全部判断：
+ * <ul>
+ *   <li>每个收件地址一个冷却Key（SET NX PX），冷却期内的重复请求直接视为成功，不发送</li>
+ *   <li>冷却期过后再次请求时，若上一次的验证码仍未过期则原样重发同一个验证码，用户收到的任意一条都可用</li>
+ *   <li>每个收件地址按自然日计数（INCR），超过每日上限时拒绝</li>
+ * </ul>
+ * 验证码的存储格式与{@link com.example.afanguserbackend.utils.RedisUtil}一致，校验逻辑无需改动。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class VerificationSendGuard {
+
+    /**
+     * 冷却Key前缀
+     */
+    private static final String COOLDOWN_KEY_PREFIX = "code:cooldown:";
+
+    /**
+     * 每日计数Key前缀
+     */
+    private static final String DAILY_KEY_PREFIX = "code:daily:";
+
+    /**
+     * 冷却期内被抑制
+     */
+    private static final long SUPPRESSED = 0;
+
+    /**
+     * 超过每日上限
+     */
+    private static final long CAPPED = -1;
+
+    /**
+     * 生成了新验证码
+     */
+    private static final long ISSUED = 1;
+
+    /**
+     * KEYS: 冷却Key、每日计数Key、验证码Key
+     * ARGV: 冷却毫秒数、每日上限、计数过期秒数、新验证码、验证码过期秒数
+     * 返回 {状态, 本次发送的验证码}：0 冷却中，-1 超过上限，1 新验证码，2 复用未过期的验证码
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "if not redis.call('set', KEYS[1], '1', 'NX', 'PX', ARGV[1]) then return {0, ''} end "
+                    + "local n = redis.call('incr', KEYS[2]) "
+                    + "if n == 1 then redis.call('expire', KEYS[2], ARGV[3]) end "
+                    + "if n > tonumber(ARGV[2]) then return {-1, ''} end "
+                    + "local code = redis.call('get', KEYS[3]) "
+                    + "if code then return {2, code} end "
+                    + "redis.call('set', KEYS[3], ARGV[4], 'EX', ARGV[5]) "
+                    + "return {1, ARGV[4]}", List.class);
+
+    /**
+     * Redis操作模板，与验证码的写入方式使用相同的序列化
+     */
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 指标注册表
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 重发冷却时间
+     */
+    private final Duration cooldown;
+
+    /**
+     * 每个收件地址每日的发送上限
+     */
+    private final int dailyLimit;
+
+    /**
+     * 构造函数
+     *
+     * @param redisTemplate   Redis操作模板
+     * @param meterRegistry   指标注册表
+     * @param cooldownSeconds 重发冷却时间（秒）
+     * @param dailyLimit      每个收件地址每日的发送上限
+     */
+    public VerificationSendGuard(RedisTemplate<String, Object> redisTemplate, MeterRegistry meterRegistry,
+                                 @Value("${afang.verification.cooldown-seconds:60}") int cooldownSeconds,
+                                 @Value("${afang.verification.daily-limit:10}") int dailyLimit) {
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.cooldown = Duration.ofSeconds(cooldownSeconds);
+        this.dailyLimit = dailyLimit;
+    }
+
+    /**
+     * 申请发送一次验证码
+     *
+     * @param destination 收件地址（手机号或邮箱）
+     * @param codeKey     验证码在Redis中的Key
+     * @param codeTtl     新验证码的有效期
+     * @return 本次应发送的验证码；冷却期内的重复请求返回空，调用方不再发送
+     * @throws RuntimeException 超过每日发送上限时抛出
+     */
+    public Optional<String> acquire(String destination, String codeKey, Duration codeTtl) {
+        String day = LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE);
+        List<?> reply = redisTemplate.execute(ACQUIRE_SCRIPT,
+                List.of(COOLDOWN_KEY_PREFIX + destination, DAILY_KEY_PREFIX + destination + ":" + day, codeKey),
+                cooldown.toMillis(), dailyLimit, Duration.ofDays(1).plusHours(1).toSeconds(),
+                getVerificationCode(), codeTtl.toSeconds());
+        long status = reply == null || reply.isEmpty() ? ISSUED : ((Number) reply.get(0)).longValue();
+        if (status == SUPPRESSED) {
+            count("suppressed");
+            log.debug("验证码发送冷却中，忽略重复请求，收件地址：{}", destination);
+            return Optional.empty();
+        }
+        if (status == CAPPED) {
+            count("capped");
+            throw new RuntimeException("今日验证码发送次数已达上限，请明天再试");
+        }
+        count(status == ISSUED ? "issued" : "reused");
+        return Optional.of(String.valueOf(reply.get(1)));
+    }
+
+    /**
+     * 发送失败时解除冷却，允许用户立即重试
+     *
+     * @param destination 收件地址
+     */
+    public void release(String destination) {
+        redisTemplate.delete(COOLDOWN_KEY_PREFIX + destination);
+    }
+
+    /**
+     * 按结果计数
+     *
+     * @param outcome 结果
+     */
+    private void count(String outcome) {
+        meterRegistry.counter("verification.send", "outcome", outcome).increment();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.afanguserbackend.component.event;
+
+import com.example.afanguserbackend.model.entity.user.Users;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * 用户数据变更事件。
+ * <p>
+ * 业务层在用户写库的同一事务中登记到发件箱，经Redis Stream投递到每个节点后在进程内发布，
+ * 供登录缓存、搜索索引等派生数据增量更新。
+ * 发布前由订阅者按ID回查一次最新数据随事件携带，所有监听方共用这一次查询，
+ * 因此重复投递或乱序到达都只会让派生数据收敛到数据库的当前状态。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Getter
+public class UserChangedEvent extends ApplicationEvent {
+
+    /**
+     * 变更类型
+     */
+    public enum Type {
+        /**
+         * 新建用户
+         */
+        CREATED,
+        /**
+         * 更新用户信息
+         */
+        UPDATED,
+        /**
+         * 删除用户
+         */
+        DELETED
+    }
+
+    /**
+     * 用户ID
+     */
+    private final Long userId;
+
+    /**
+     * 变更类型
+     */
+    private final Type type;
+
+    /**
+     * 发布时回查到的用户最新数据，删除事件或用户已不存在（含逻辑删除）时为null
+     */
+    private final Users user;
+
+    /**
+     * 构造函数
+     *
+     * @param source 事件发布者
+     * @param userId 用户ID
+     * @param type   变更类型
+     * @param user   回查到的用户最新数据，删除事件或用户已不存在时为null
+     */
+    public UserChangedEvent(Object source, Long userId, Type type, Users user) {
+        super(source);
+        this.userId = userId;
+        this.type = type;
+        this.user = user;
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.afanguserbackend.component.http;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 共享的对外HTTP客户端。
+ * <p>
+ * 全应用共用一个JDK {@link HttpClient}，替代每次请求新建 DefaultHttpClient 的做法：
+ * <ul>
+ *   <li>连接池与keep-alive由JDK客户端维护，同一主机的后续请求复用已完成TLS握手的连接；
+ *       服务端支持时通过ALPN协商HTTP/2，在一条连接上多路复用</li>
+ *   <li>三段超时：建立连接、等待响应头（{@link HttpRequest.Builder#timeout}）、包含读取响应体在内的总耗时；
+ *       总耗时超时会取消底层请求</li>
+ *   <li>每个主机的并发请求数受信号量限制，等待许可超时直接失败，某个下游变慢时不会拖住全部调用方</li>
+ *   <li>异步接口返回{@link CompletableFuture}，回调在虚拟线程上执行；同步接口适合在虚拟线程中直接调用</li>
+ *   <li>按主机和结果统计请求耗时</li>
+ * </ul>
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Component
+public class OutboundHttpClient {
+
+    /**
+     * JDK HTTP客户端
+     */
+    private final HttpClient client;
+
+    /**
+     * 客户端回调线程
+     */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * 每个主机的并发许可
+     */
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    /**
+     * 指标注册表
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 每个主机的最大并发请求数
+     */
+    private final int maxPerHost;
+
+    /**
+     * 等待响应头的超时时间
+     */
+    private final Duration readTimeout;
+
+    /**
+     * 请求总耗时上限（毫秒）
+     */
+    private final long totalTimeoutMs;
+
+    /**
+     * 等待主机许可的最长时间（毫秒）
+     */
+    private final long acquireTimeoutMs;
+
+    /**
+     * 构造函数
+     *
+     * @param meterRegistry    指标注册表
+     * @param connectTimeoutMs 建立连接超时（毫秒）
+     * @param readTimeoutMs    等待响应头超时（毫秒）
+     * @param totalTimeoutMs   请求总耗时上限（毫秒）
+     * @param maxPerHost       每个主机的最大并发请求数
+     * @param acquireTimeoutMs 等待主机许可的最长时间（毫秒）
+     */
+    public OutboundHttpClient(MeterRegistry meterRegistry,
+                              @Value("${afang.http.connect-timeout-ms:2000}") long connectTimeoutMs,
+                              @Value("${afang.http.read-timeout-ms:5000}") long readTimeoutMs,
+                              @Value("${afang.http.total-timeout-ms:10000}") long totalTimeoutMs,
+                              @Value("${afang.http.max-per-host:16}") int maxPerHost,
+                              @Value("${afang.http.acquire-timeout-ms:1000}") long acquireTimeoutMs) {
+        this.meterRegistry = meterRegistry;
+        this.maxPerHost = maxPerHost;
+        this.readTimeout = Duration.ofMillis(readTimeoutMs);
+        this.totalTimeoutMs = totalTimeoutMs;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+    }
+
+    /**
+     * 异步发送请求，响应体按UTF-8解码为字符串
+     * 调用线程只在主机并发已满时等待许可，最长 acquire-timeout-ms
+     *
+     * @param request 请求构造器，响应头超时统一设置为 read-timeout-ms
+     * @return 响应；连接、超时或许可等待失败时异常完成
+     */
+    public CompletableFuture<HttpResponse<String>> sendAsync(HttpRequest.Builder request) {
+        HttpRequest built = request.timeout(readTimeout).build();
+        String host = built.uri().getAuthority();
+        Semaphore permits = hostPermits.computeIfAbsent(host, h -> new Semaphore(maxPerHost));
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejected(host);
+                return CompletableFuture.failedFuture(new HttpTimeoutException("等待主机连接许可超时：" + host));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> exchange;
+        try {
+            exchange = client.sendAsync(built, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (RuntimeException e) {
+            permits.release();
+            return CompletableFuture.failedFuture(e);
+        }
+        // 许可在底层请求真正结束时归还，总耗时超时后取消底层请求
+        exchange.whenComplete((response, error) -> {
+            permits.release();
+            record(host, response == null ? "error" : (response.statusCode() / 100) + "xx", start);
+        });
+        CompletableFuture<HttpResponse<String>> result = exchange.copy().orTimeout(totalTimeoutMs, TimeUnit.MILLISECONDS);
+        result.whenComplete((response, error) -> {
+            if (error instanceof TimeoutException) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 同步发送请求，适合在虚拟线程中调用
+     *
+     * @param request 请求构造器
+     * @return 响应
+     * @throws IOException 连接失败或超时时抛出
+     */
+    public HttpResponse<String> send(HttpRequest.Builder request) throws IOException {
+        try {
+            return sendAsync(request).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("请求被中断", e);
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof TimeoutException) {
+                throw new HttpTimeoutException("请求总耗时超过 " + totalTimeoutMs + "ms");
+            }
+            throw new IOException(cause == null ? e : cause);
+        }
+    }
+
+    /**
+     * 拼接请求地址，查询参数按UTF-8编码
+     *
+     * @param host   主机地址，如 https://api.example.com
+     * @param path   请求路径
+     * @param querys 查询参数，可以为null
+     * @return 请求地址
+     */
+    public static URI uri(String host, String path, Map<String, String> querys) {
+        StringBuilder url = new StringBuilder(host).append(path == null ? "" : path);
+        if (querys != null && !querys.isEmpty()) {
+            url.append('?').append(formEncode(querys));
+        }
+        return URI.create(url.toString());
+    }
+
+    /**
+     * 按 application/x-www-form-urlencoded 编码参数
+     *
+     * @param params 参数
+     * @return 编码后的字符串
+     */
+    public static String formEncode(Map<String, String> params) {
+        StringBuilder encoded = new StringBuilder();
+        for (Map.Entry<String, String> e : params.entrySet()) {
+            if (!encoded.isEmpty()) {
+                encoded.append('&');
+            }
+            encoded.append(URLEncoder.encode(e.getKey(), StandardCharsets.UTF_8));
+            if (e.getValue() != null) {
+                encoded.append('=').append(URLEncoder.encode(e.getValue(), StandardCharsets.UTF_8));
+            }
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * 关闭客户端，等待进行中的请求结束
+     */
+    @PreDestroy
+    public void shutdown() {
+        client.close();
+        executor.close();
+    }
+
+    /**
+     * 记录请求耗时
+     *
+     * @param host    主机
+     * @param outcome 结果
+     * @param start   开始时间（纳秒）
+     */
+    private void record(String host, String outcome, long start) {
+        Timer.builder("http.client.outbound")
+                .tags("host", host, "outcome", outcome)
+                .description("对外HTTP请求耗时")
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 统计因等待许可超时而未发出的请求
+     *
+     * @param host 主机
+     */
+    private void rejected(String host) {
+        meterRegistry.counter("http.client.outbound.rejected", "host", host).increment();
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.afanguserbackend.component.id;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 雪花ID机器号租约。
+ * <p>
+ * 启动时在Redis中以 SET NX EX 抢占一个空闲的机器号（0-1023），并定时续期；
+ * 续期时同时持久化ID生成器的逻辑时间戳，下次拿到同一机器号时以此为下限，
+ * 避免重启后时钟回拨导致重复ID。租约丢失（如长时间GC导致过期被他人抢占）时会重新申请。
+ * <p>
+ * 配置{@code afang.id.worker-id}为非负数时使用固定机器号，跳过Redis租约。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class WorkerIdLease {
+
+    /**
+     * 机器号租约Key前缀
+     */
+    private static final String LEASE_KEY_PREFIX = "id:worker:lease:";
+
+    /**
+     * 机器号时间戳Key前缀
+     */
+    private static final String TIMESTAMP_KEY_PREFIX = "id:worker:ts:";
+
+    /**
+     * 续期脚本：仅当租约仍属于当前节点时刷新过期时间
+     */
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('expire', KEYS[1], ARGV[2]) else return 0 end", Long.class);
+
+    /**
+     * 释放脚本：仅当租约仍属于当前节点时删除
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('del', KEYS[1]) else return 0 end", Long.class);
+
+    /**
+     * Redis操作模板
+     */
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 固定机器号，小于0表示通过Redis租约分配
+     */
+    private final long configuredWorkerId;
+
+    /**
+     * 租约有效期
+     */
+    private final Duration leaseTtl;
+
+    /**
+     * 当前节点的租约持有者标识
+     */
+    private final String owner;
+
+    /**
+     * 当前持有的机器号
+     */
+    private volatile long workerId = -1;
+
+    /**
+     * 上次持久化的逻辑时间戳
+     */
+    private volatile long lastTimestamp;
+
+    /**
+     * 绑定的ID生成器，续期时持久化其逻辑时间戳，重新申请机器号后推进其时间下限
+     */
+    private volatile SnowflakeIdGenerator generator;
+
+    /**
+     * 构造函数
+     *
+     * @param redisTemplate      Redis操作模板
+     * @param configuredWorkerId 固定机器号配置
+     * @param leaseTtlSeconds    租约有效期（秒）
+     */
+    public WorkerIdLease(RedisTemplate<String, Object> redisTemplate,
+                         @Value("${afang.id.worker-id:-1}") long configuredWorkerId,
+                         @Value("${afang.id.lease-ttl-seconds:60}") long leaseTtlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.configuredWorkerId = configuredWorkerId;
+        this.leaseTtl = Duration.ofSeconds(leaseTtlSeconds);
+        this.owner = resolveOwner();
+    }
+
+    /**
+     * 启动时申请机器号
+     */
+    @PostConstruct
+    public void acquire() {
+        if (configuredWorkerId >= 0) {
+            if (configuredWorkerId > SnowflakeIdGenerator.MAX_WORKER_ID) {
+                throw new IllegalStateException("机器号超出范围：" + configuredWorkerId);
+            }
+            workerId = configuredWorkerId;
+            lastTimestamp = readTimestamp(workerId);
+            log.info("使用固定雪花机器号：{}", workerId);
+            return;
+        }
+
+        int size = (int) SnowflakeIdGenerator.MAX_WORKER_ID + 1;
+        int start = ThreadLocalRandom.current().nextInt(size);
+        for (int i = 0; i < size; i++) {
+            long candidate = (start + i) % size;
+            if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(LEASE_KEY_PREFIX + candidate, owner, leaseTtl))) {
+                lastTimestamp = readTimestamp(candidate);
+                SnowflakeIdGenerator bound = generator;
+                if (bound != null) {
+                    bound.advanceTo(lastTimestamp);
+                }
+                workerId = candidate;
+                log.info("获取雪花机器号租约成功，机器号：{}，持有者：{}", candidate, owner);
+                return;
+            }
+        }
+        throw new IllegalStateException("没有可用的雪花机器号");
+    }
+
+    /**
+     * 定时续期租约并持久化逻辑时间戳
+     */
+    @Scheduled(fixedDelayString = "${afang.id.lease-renew-interval-ms:20000}")
+    public void renew() {
+        long current = workerId;
+        if (current < 0) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().set(TIMESTAMP_KEY_PREFIX + current, currentTimestamp());
+            if (configuredWorkerId >= 0) {
+                return;
+            }
+            Long renewed = redisTemplate.execute(RENEW_SCRIPT, List.of(LEASE_KEY_PREFIX + current), owner, leaseTtl.toSeconds());
+            if (renewed == null || renewed == 0) {
+                log.error("雪花机器号租约已丢失，机器号：{}，重新申请", current);
+                acquire();
+            }
+        } catch (Exception e) {
+            // Redis短暂不可用时保留当前机器号，等待下次续期
+            log.warn("雪花机器号租约续期失败，机器号：{}，错误信息：{}", current, e.getMessage());
+        }
+    }
+
+    /**
+     * 关闭时持久化时间戳并释放租约
+     */
+    @PreDestroy
+    public void release() {
+        long current = workerId;
+        if (current < 0) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().set(TIMESTAMP_KEY_PREFIX + current, currentTimestamp());
+            if (configuredWorkerId < 0) {
+                redisTemplate.execute(RELEASE_SCRIPT, List.of(LEASE_KEY_PREFIX + current), owner);
+            }
+        } catch (Exception e) {
+            log.warn("释放雪花机器号租约失败，机器号：{}，错误信息：{}", current, e.getMessage());
+        }
+    }
+
+    /**
+     * 获取当前机器号
+     *
+     * @return 机器号
+     */
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * 获取申请租约时读取到的上次逻辑时间戳
+     *
+     * @return 毫秒时间戳，不存在时为0
+     */
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * 绑定ID生成器
+     *
+     * @param generator ID生成器
+     */
+    void bind(SnowflakeIdGenerator generator) {
+        this.generator = generator;
+    }
+
+    /**
+     * 获取需要持久化的逻辑时间戳
+     *
+     * @return 生成器的逻辑时间戳，未绑定时为当前时间
+     */
+    private long currentTimestamp() {
+        SnowflakeIdGenerator bound = generator;
+        return bound != null ? bound.currentTimestamp() : System.currentTimeMillis();
+    }
+
+    /**
+     * 读取机器号上次持久化的时间戳
+     *
+     * @param id 机器号
+     * @return 毫秒时间戳，不存在或读取失败时为0
+     */
+    private long readTimestamp(long id) {
+        try {
+            Object value = redisTemplate.opsForValue().get(TIMESTAMP_KEY_PREFIX + id);
+            return value instanceof Number number ? number.longValue() : 0L;
+        } catch (Exception e) {
+            log.warn("读取雪花机器号时间戳失败，机器号：{}，错误信息：{}", id, e.getMessage());
+            return 0L;
+        }
+    }
+
+    /**
+     * 生成当前节点的租约持有者标识
+     *
+     * @return 主机名:进程号:随机后缀
+     */
+    private static String resolveOwner() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        String pid = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+        return host + ":" + pid + ":" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
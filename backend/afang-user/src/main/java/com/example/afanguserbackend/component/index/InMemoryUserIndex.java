@@ -0,0 +1,196 @@
+package com.example.afanguserbackend.component.index;
+
+import com.example.afanguserbackend.component.event.UserChangedEvent;
+import com.example.afanguserbackend.component.sharding.UserShardTemplate;
+import com.example.afanguserbackend.mapper.user.UsersMapper;
+import com.example.afanguserbackend.model.entity.user.Users;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 基于users表的进程内索引的公共部分。
+ * <p>
+ * 负责索引的生命周期，子类只需实现单个用户的写入和删除：
+ * <ul>
+ *   <li>启动完成后在后台按ID分页流式扫描全部分片构建索引，逻辑删除的墓碑行不进入索引</li>
+ *   <li>之后监听{@link UserChangedEvent}，按事件携带的最新数据增量更新</li>
+ *   <li>构建与增量更新在同一个单线程执行器中串行执行，构建期间发生的变更会在构建完成后补齐</li>
+ *   <li>查询持有读锁并发执行，构建和增量更新持有写锁</li>
+ * </ul>
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+public abstract class InMemoryUserIndex {
+
+    /**
+     * 读写锁：查询并发读，构建和增量更新独占写
+     */
+    protected final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 索引名称，用于日志
+     */
+    private final String name;
+
+    /**
+     * 用户数据访问
+     */
+    private final UsersMapper usersMapper;
+
+    /**
+     * 分片操作模板
+     */
+    private final UserShardTemplate shardTemplate;
+
+    /**
+     * 构建索引时每批扫描的行数
+     */
+    private final int scanBatchSize;
+
+    /**
+     * 串行执行构建与增量更新的单线程执行器
+     */
+    private final ExecutorService updater;
+
+    /**
+     * 索引是否已构建完成
+     */
+    private volatile boolean ready;
+
+    /**
+     * 构造函数
+     *
+     * @param name          索引名称，用于日志
+     * @param threadName    更新线程名称
+     * @param usersMapper   用户数据访问
+     * @param shardTemplate 分片操作模板
+     * @param scanBatchSize 构建索引时每批扫描的行数
+     */
+    protected InMemoryUserIndex(String name, String threadName, UsersMapper usersMapper,
+                                UserShardTemplate shardTemplate, int scanBatchSize) {
+        this.name = name;
+        this.usersMapper = usersMapper;
+        this.shardTemplate = shardTemplate;
+        this.scanBatchSize = scanBatchSize;
+        this.updater = Executors.newSingleThreadExecutor(Thread.ofPlatform().name(threadName).daemon().factory());
+    }
+
+    /**
+     * 应用启动完成后在后台构建索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        updater.execute(() -> {
+            long start = System.currentTimeMillis();
+            int total = 0;
+            try {
+                for (String shard : shardTemplate.configuredShards()) {
+                    long lastId = 0;
+                    while (true) {
+                        long from = lastId;
+                        List<Users> batch = shardTemplate.onShard(shard, () -> usersMapper.scanAfterId(from, scanBatchSize));
+                        if (batch.isEmpty()) {
+                            break;
+                        }
+                        lock.writeLock().lock();
+                        try {
+                            // 扫描结果包含逻辑删除的墓碑行，不进入索引
+                            batch.stream().filter(user -> !Integer.valueOf(1).equals(user.getDeleted())).forEach(this::put);
+                        } finally {
+                            lock.writeLock().unlock();
+                        }
+                        total += batch.size();
+                        lastId = batch.get(batch.size() - 1).getId();
+                    }
+                }
+                lock.writeLock().lock();
+                try {
+                    afterBuild();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                ready = true;
+                log.info("{}构建完成，用户数：{}，耗时：{}ms", name, total, System.currentTimeMillis() - start);
+            } catch (Exception e) {
+                log.error("{}构建失败，已索引用户数：{}，错误信息：{}", name, total, e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * 用户数据变更时按事件携带的最新数据更新索引
+     *
+     * @param event 用户变更事件
+     */
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        Long id = event.getUserId();
+        if (id == null) {
+            return;
+        }
+        updater.execute(() -> {
+            try {
+                Users user = event.getUser();
+                lock.writeLock().lock();
+                try {
+                    if (user == null) {
+                        remove(id);
+                    } else {
+                        put(user);
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } catch (Exception e) {
+                log.warn("{}增量更新失败，用户ID：{}，错误信息：{}", name, id, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 关闭更新线程
+     */
+    @PreDestroy
+    public void shutdown() {
+        updater.shutdownNow();
+    }
+
+    /**
+     * 索引是否已构建完成
+     *
+     * @return 构建完成返回true
+     */
+    protected boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 写入或替换用户，调用方持有写锁
+     *
+     * @param user 用户实体
+     */
+    protected abstract void put(Users user);
+
+    /**
+     * 删除用户，调用方持有写锁
+     *
+     * @param id 用户ID
+     */
+    protected abstract void remove(Long id);
+
+    /**
+     * 全量构建完成后、对外可用前调用，调用方持有写锁
+     */
+    protected void afterBuild() {
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.afanguserbackend.component.login;
+
+import com.example.afanguserbackend.component.sharding.UserShardTemplate;
+import com.example.afanguserbackend.mapper.user.UsersMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 登录统计写后缓冲（write-behind）。
+ * <p>
+ * 登录请求只在内存中记录一次增量，不写数据库，保证登录链路只读：
+ * <ul>
+ *   <li>增量按用户ID存放在{@link ConcurrentHashMap}中，通过{@code merge}无锁合并同一用户的多次登录</li>
+ *   <li>定时任务逐个{@code remove}取走增量，按分片分组后以单条 UPDATE ... CASE 批量写库，失败的增量放回缓冲区等待下次重试</li>
+ *   <li>缓冲区每秒整体镜像到Redis哈希表（先写临时Key再RENAME，保证镜像完整），进程崩溃后由同一节点重启时回放</li>
+ *   <li>重分片期间暂停写库，增量留在缓冲区和镜像中，重分片结束后写入新分片</li>
+ *   <li>关闭时同步刷新一次</li>
+ * </ul>
+ * 镜像与写库之间存在短暂窗口，崩溃恰好发生在其中时回放会重复累加少量登录次数；最后登录时间只前进，不受影响。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class LoginActivityTracker {
+
+    /**
+     * Redis镜像Key前缀
+     */
+    private static final String MIRROR_KEY_PREFIX = "login:pending:";
+
+    /**
+     * 未写库的登录增量
+     */
+    private final ConcurrentHashMap<Long, LoginDelta> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 用户数据访问
+     */
+    private final UsersMapper usersMapper;
+
+    /**
+     * 分片操作模板
+     */
+    private final UserShardTemplate shardTemplate;
+
+    /**
+     * Redis操作模板
+     */
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 单条UPDATE语句包含的最大用户数
+     */
+    private final int batchSize;
+
+    /**
+     * 本节点的镜像Key
+     */
+    private final String mirrorKey;
+
+    /**
+     * 保证定时刷新与关闭刷新不会并发执行
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * 缓冲区自上次镜像后是否有变化
+     */
+    private volatile boolean dirty;
+
+    /**
+     * 构造函数
+     *
+     * @param usersMapper   用户数据访问
+     * @param shardTemplate 分片操作模板
+     * @param redisTemplate Redis操作模板
+     * @param batchSize     单条UPDATE语句包含的最大用户数
+     * @param nodeId        节点标识，用于区分各节点的镜像，为空时使用主机名
+     */
+    public LoginActivityTracker(UsersMapper usersMapper, UserShardTemplate shardTemplate,
+                                RedisTemplate<String, Object> redisTemplate,
+                                @Value("${afang.login-tracker.batch-size:500}") int batchSize,
+                                @Value("${afang.login-tracker.node-id:}") String nodeId) {
+        this.usersMapper = usersMapper;
+        this.shardTemplate = shardTemplate;
+        this.redisTemplate = redisTemplate;
+        this.batchSize = batchSize;
+        this.mirrorKey = MIRROR_KEY_PREFIX + (nodeId.isBlank() ? hostName() : nodeId);
+    }
+
+    /**
+     * 记录一次登录
+     *
+     * @param userId 用户ID
+     */
+    public void record(Long userId) {
+        pending.merge(userId, new LoginDelta(userId, 1, LocalDateTime.now()), LoginDelta::merge);
+        dirty = true;
+    }
+
+    /**
+     * 启动完成后回放本节点上次未写库的镜像
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void replay() {
+        String replayKey = mirrorKey + ":replay";
+        try {
+            // 上次回放中途崩溃时replay Key仍在，直接继续回放；否则把镜像原子地改名为replay Key
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(replayKey))) {
+                if (!Boolean.TRUE.equals(redisTemplate.hasKey(mirrorKey))) {
+                    return;
+                }
+                redisTemplate.rename(mirrorKey, replayKey);
+            }
+            Map<Object, Object> entries = redisTemplate.opsForHash().entries(replayKey);
+            entries.forEach((field, value) -> {
+                LoginDelta delta = decode(Long.valueOf(field.toString()), value.toString());
+                pending.merge(delta.getUserId(), delta, LoginDelta::merge);
+            });
+            dirty = true;
+            log.info("回放上次未写库的登录统计，用户数：{}", entries.size());
+            flush();
+            redisTemplate.delete(replayKey);
+        } catch (Exception e) {
+            log.error("回放登录统计镜像失败，错误信息：{}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 定时将缓冲区批量写入数据库
+     * 重分片期间暂停写库，增量留在缓冲区和Redis镜像中，重分片结束后写入新分片
+     */
+    @Scheduled(fixedDelayString = "${afang.login-tracker.flush-interval-ms:5000}")
+    public void flush() {
+        if (shardTemplate.isResharding()) {
+            mirror();
+            return;
+        }
+        flushLock.lock();
+        try {
+            List<LoginDelta> drained = new ArrayList<>(pending.size());
+            for (Long userId : pending.keySet()) {
+                LoginDelta delta = pending.remove(userId);
+                if (delta != null) {
+                    drained.add(delta);
+                }
+            }
+            if (drained.isEmpty()) {
+                return;
+            }
+
+            Map<Long, LoginDelta> byId = new HashMap<>(drained.size() * 2);
+            drained.forEach(delta -> byId.put(delta.getUserId(), delta));
+            Map<String, List<Long>> byShard;
+            try {
+                byShard = shardTemplate.groupIdsByShard(byId.keySet());
+            } catch (Exception e) {
+                log.warn("登录统计分片定位失败，{}条增量等待下次写入，错误信息：{}", drained.size(), e.getMessage());
+                drained.forEach(this::requeue);
+                return;
+            }
+
+            int written = 0;
+            for (Map.Entry<String, List<Long>> entry : byShard.entrySet()) {
+                List<Long> ids = entry.getValue();
+                for (int from = 0; from < ids.size(); from += batchSize) {
+                    List<LoginDelta> batch = ids.subList(from, Math.min(from + batchSize, ids.size()))
+                            .stream().map(byId::get).toList();
+                    try {
+                        written += shardTemplate.onShard(entry.getKey(), () -> usersMapper.batchRecordLogins(batch));
+                    } catch (Exception e) {
+                        log.warn("登录统计写库失败，分片：{}，{}条增量等待下次写入，错误信息：{}",
+                                entry.getKey(), batch.size(), e.getMessage());
+                        batch.forEach(this::requeue);
+                    }
+                }
+            }
+            log.debug("登录统计写库完成，增量：{}，更新行数：{}", drained.size(), written);
+        } finally {
+            flushLock.unlock();
+        }
+        // 写库后立即刷新镜像，缩短崩溃回放时重复累加的窗口
+        dirty = true;
+        mirror();
+    }
+
+    /**
+     * 定时将缓冲区镜像到Redis
+     */
+    @Scheduled(fixedDelayString = "${afang.login-tracker.mirror-interval-ms:1000}")
+    public void mirror() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        try {
+            Map<String, String> snapshot = new HashMap<>(pending.size() * 2);
+            pending.forEach((userId, delta) -> snapshot.put(userId.toString(), encode(delta)));
+            if (snapshot.isEmpty()) {
+                redisTemplate.delete(mirrorKey);
+                return;
+            }
+            String tempKey = mirrorKey + ":tmp";
+            redisTemplate.delete(tempKey);
+            redisTemplate.opsForHash().putAll(tempKey, snapshot);
+            redisTemplate.rename(tempKey, mirrorKey);
+        } catch (Exception e) {
+            dirty = true;
+            log.warn("登录统计镜像写入Redis失败，错误信息：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 关闭时写入剩余增量
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        log.info("登录统计缓冲区已在关闭前写库，剩余增量：{}", pending.size());
+    }
+
+    /**
+     * 写库失败的增量放回缓冲区，与期间新产生的增量合并
+     *
+     * @param delta 登录增量
+     */
+    private void requeue(LoginDelta delta) {
+        pending.merge(delta.getUserId(), delta, LoginDelta::merge);
+    }
+
+    /**
+     * 编码镜像值
+     *
+     * @param delta 登录增量
+     * @return 次数:最后登录毫秒时间戳
+     */
+    private static String encode(LoginDelta delta) {
+        return delta.getCount() + ":" + delta.getLastLoginTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 解码镜像值
+     *
+     * @param userId 用户ID
+     * @param value  次数:最后登录毫秒时间戳
+     * @return 登录增量
+     */
+    private static LoginDelta decode(Long userId, String value) {
+        String[] parts = value.split(":", 2);
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(parts[1])), ZoneId.systemDefault());
+        return new LoginDelta(userId, Integer.parseInt(parts[0]), time);
+    }
+
+    /**
+     * 获取主机名
+     *
+     * @return 主机名，获取失败时为local
+     */
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "local";
+        }
+    }
+}
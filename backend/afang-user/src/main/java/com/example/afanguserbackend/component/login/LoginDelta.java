@@ -0,0 +1,48 @@
+package com.example.afanguserbackend.component.login;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 单个用户尚未写库的登录增量（不可变）。
+ * <p>
+ * 同一用户在一个刷新周期内的多次登录通过{@link #merge(LoginDelta, LoginDelta)}合并为一条：
+ * 次数相加，最后登录时间取较大值。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Getter
+@AllArgsConstructor
+public class LoginDelta {
+
+    /**
+     * 用户ID
+     */
+    private final Long userId;
+
+    /**
+     * 登录次数增量
+     */
+    private final int count;
+
+    /**
+     * 最后登录时间
+     */
+    private final LocalDateTime lastLoginTime;
+
+    /**
+     * 合并两个增量
+     *
+     * @param a 增量a
+     * @param b 增量b
+     * @return 合并后的新增量
+     */
+    public static LoginDelta merge(LoginDelta a, LoginDelta b) {
+        LocalDateTime latest = a.lastLoginTime.isAfter(b.lastLoginTime) ? a.lastLoginTime : b.lastLoginTime;
+        return new LoginDelta(a.userId, a.count + b.count, latest);
+    }
+}
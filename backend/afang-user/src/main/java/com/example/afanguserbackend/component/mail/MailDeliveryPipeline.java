@@ -0,0 +1,441 @@
+package com.example.afanguserbackend.component.mail;
+
+import com.example.afanguserbackend.utils.RedisUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步邮件投递管道。
+ * <p>
+ * 请求线程只负责把邮件放入有界队列，SMTP交互全部在后台完成，慢速或不可用的邮件服务器不会占满Tomcat线程：
+ * <ul>
+ *   <li>队列满时立即拒绝，由调用方提示稍后重试，不在请求线程上排队等待</li>
+ *   <li>固定数量的工作线程（可选虚拟线程）从队列取出邮件，一次取出已排队的多封，借用一个池化的SMTP连接依次发送</li>
+ *   <li>发送失败按指数退避（带随机抖动）重新入队，达到最大次数后写入Redis死信列表；邮件格式错误等不可恢复的失败直接进入死信</li>
+ *   <li>按邮件类型和结果统计投递次数、从入队到完成的延迟，以及队列长度</li>
+ *   <li>关闭时等待队列中的邮件发完；仍在退避等待的重试和超时未发出的邮件写入死信，调用方都会收到失败结果</li>
+ * </ul>
+ * 死信只记录收件人、主题和失败原因，不保存正文（验证码在重试期间已过期，正文没有重发价值）。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class MailDeliveryPipeline {
+
+    /**
+     * 待发送的邮件
+     */
+    private final BlockingQueue<MailTask> queue;
+
+    /**
+     * 重试调度器
+     */
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("mail-retry").daemon(true).factory());
+
+    /**
+     * 正在退避等待、尚未重新入队的重试
+     * 重新入队与关闭时写入死信都先从集合中移除，只有移除成功的一方处理该邮件
+     */
+    private final Set<MailTask> pendingRetries = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 工作线程
+     */
+    private final List<Thread> workers = new ArrayList<>();
+
+    /**
+     * SMTP连接池
+     */
+    private final SmtpTransportPool transportPool;
+
+    /**
+     * 指标注册表
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 发件人邮箱地址
+     */
+    private final String fromEmail;
+
+    /**
+     * 工作线程数
+     */
+    private final int workerCount;
+
+    /**
+     * 是否使用虚拟线程
+     */
+    private final boolean virtualThreads;
+
+    /**
+     * 每个工作线程一次取出并通过同一连接发送的最大邮件数
+     */
+    private final int batchSize;
+
+    /**
+     * 最大尝试次数
+     */
+    private final int maxAttempts;
+
+    /**
+     * 首次重试的退避时间（毫秒）
+     */
+    private final long initialBackoffMs;
+
+    /**
+     * 最大退避时间（毫秒）
+     */
+    private final long maxBackoffMs;
+
+    /**
+     * 死信列表Key
+     */
+    private final String deadLetterKey;
+
+    /**
+     * 死信列表最多保留的条数
+     */
+    private final int deadLetterMax;
+
+    /**
+     * 是否运行中
+     */
+    private volatile boolean running;
+
+    /**
+     * 构造函数
+     *
+     * @param transportPool    SMTP连接池
+     * @param meterRegistry    指标注册表
+     * @param fromEmail        发件人邮箱地址
+     * @param capacity         队列容量
+     * @param workerCount      工作线程数
+     * @param virtualThreads   是否使用虚拟线程
+     * @param batchSize        每个工作线程一次取出并通过同一连接发送的最大邮件数
+     * @param maxAttempts      最大尝试次数
+     * @param initialBackoffMs 首次重试的退避时间（毫秒）
+     * @param maxBackoffMs     最大退避时间（毫秒）
+     * @param deadLetterKey    死信列表Key
+     * @param deadLetterMax    死信列表最多保留的条数
+     */
+    public MailDeliveryPipeline(SmtpTransportPool transportPool, MeterRegistry meterRegistry,
+                                @Value("${spring.mail.username}") String fromEmail,
+                                @Value("${afang.mail.queue-capacity:1000}") int capacity,
+                                @Value("${afang.mail.workers:4}") int workerCount,
+                                @Value("${afang.mail.virtual-threads:false}") boolean virtualThreads,
+                                @Value("${afang.mail.batch-size:20}") int batchSize,
+                                @Value("${afang.mail.max-attempts:4}") int maxAttempts,
+                                @Value("${afang.mail.initial-backoff-ms:1000}") long initialBackoffMs,
+                                @Value("${afang.mail.max-backoff-ms:30000}") long maxBackoffMs,
+                                @Value("${afang.mail.dead-letter-key:mail:dead-letter}") String deadLetterKey,
+                                @Value("${afang.mail.dead-letter-max:1000}") int deadLetterMax) {
+        this.transportPool = transportPool;
+        this.meterRegistry = meterRegistry;
+        this.fromEmail = fromEmail;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.workerCount = workerCount;
+        this.virtualThreads = virtualThreads;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.deadLetterKey = deadLetterKey;
+        this.deadLetterMax = deadLetterMax;
+        Gauge.builder("mail.queue.size", queue, BlockingQueue::size)
+                .description("待发送的邮件数").register(meterRegistry);
+    }
+
+    /**
+     * 启动工作线程
+     */
+    @PostConstruct
+    public void start() {
+        running = true;
+        ThreadFactory factory = virtualThreads
+                ? Thread.ofVirtual().name("mail-worker-", 0).factory()
+                : Thread.ofPlatform().name("mail-worker-", 0).daemon(true).factory();
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = factory.newThread(this::work);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * 提交一封邮件
+     *
+     * @param task 待投递的邮件
+     * @throws RuntimeException 队列已满时抛出
+     */
+    public void submit(MailTask task) {
+        if (!running || !queue.offer(task)) {
+            count(task, "rejected");
+            log.warn("邮件队列已满，拒绝发送，收件人：{}，队列长度：{}", task.to(), queue.size());
+            throw new RuntimeException("邮件发送繁忙，请稍后重试");
+        }
+    }
+
+    /**
+     * 关闭时停止接收新邮件，等待工作线程处理完队列中剩余的邮件；
+     * 尚在退避等待的重试和超时后仍未发出的邮件写入死信
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        retryScheduler.shutdownNow();
+        for (MailTask task : pendingRetries) {
+            if (pendingRetries.remove(task)) {
+                deadLetter(task, new IllegalStateException("邮件投递管道已关闭，重试未执行"));
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for (Thread worker : workers) {
+            try {
+                worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        workers.forEach(Thread::interrupt);
+        List<MailTask> unsent = new ArrayList<>();
+        queue.drainTo(unsent);
+        if (!unsent.isEmpty()) {
+            log.warn("邮件投递管道关闭，未发送的邮件数：{}", unsent.size());
+            IllegalStateException cause = new IllegalStateException("邮件投递管道已关闭，邮件未发送");
+            unsent.forEach(task -> deadLetter(task, cause));
+        }
+    }
+
+    /**
+     * 工作线程主循环：阻塞等待第一封邮件，再顺带取出已排队的邮件组成一批，
+     * 关闭后继续处理完队列中剩余的邮件再退出
+     */
+    private void work() {
+        List<MailTask> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            MailTask first;
+            try {
+                first = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (first != null) {
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                deliverBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 通过同一个SMTP连接依次发送一批邮件
+     * 连接在发送中断开（如服务器关闭了空闲连接）时换一个新连接重发当前邮件；无法获得连接时整批按失败处理
+     *
+     * @param batch 待投递的邮件
+     */
+    private void deliverBatch(List<MailTask> batch) {
+        Transport transport = null;
+        Exception unavailable = null;
+        try {
+            for (MailTask task : batch) {
+                if (unavailable != null) {
+                    failed(task, unavailable);
+                    continue;
+                }
+                try {
+                    MimeMessage message = build(task);
+                    if (transport == null) {
+                        try {
+                            transport = transportPool.borrow();
+                        } catch (Exception e) {
+                            unavailable = e;
+                            failed(task, e);
+                            continue;
+                        }
+                    }
+                    try {
+                        transport.sendMessage(message, message.getAllRecipients());
+                    } catch (MessagingException e) {
+                        if (transport.isConnected()) {
+                            throw e;
+                        }
+                        transportPool.invalidate(transport);
+                        transport = null;
+                        transport = transportPool.borrow();
+                        transport.sendMessage(message, message.getAllRecipients());
+                    }
+                    succeeded(task);
+                } catch (Exception e) {
+                    failed(task, e);
+                }
+            }
+        } finally {
+            if (transport != null) {
+                transportPool.release(transport);
+            }
+        }
+    }
+
+    /**
+     * 处理发送成功的邮件
+     *
+     * @param task 邮件
+     */
+    private void succeeded(MailTask task) {
+        count(task, "sent");
+        record(task, "sent");
+        task.completion().complete(null);
+        log.info("邮件发送成功，收件人：{}，尝试次数：{}", task.to(), task.attempts() + 1);
+    }
+
+    /**
+     * 处理发送失败的邮件：可恢复的失败按退避时间重试，其余写入死信
+     *
+     * @param task 邮件
+     * @param e    失败原因
+     */
+    private void failed(MailTask task, Exception e) {
+        MailTask failed = task.retried();
+        // 地址格式错误或服务器明确拒绝收件人，重试不会成功
+        boolean permanent = e instanceof AddressException
+                || (e instanceof SendFailedException sfe && sfe.getInvalidAddresses() != null
+                && sfe.getInvalidAddresses().length > 0);
+        if (permanent || failed.attempts() >= maxAttempts || !running) {
+            deadLetter(failed, e);
+            return;
+        }
+        long backoff = backoffMs(failed.attempts());
+        count(task, "retried");
+        log.warn("邮件发送失败，{}ms后第{}次重试，收件人：{}，错误信息：{}",
+                backoff, failed.attempts() + 1, task.to(), e.getMessage());
+        pendingRetries.add(failed);
+        try {
+            retryScheduler.schedule(() -> {
+                if (pendingRetries.remove(failed) && !queue.offer(failed)) {
+                    deadLetter(failed, new IllegalStateException("重试时邮件队列已满"));
+                }
+            }, backoff, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException rejected) {
+            // 与关闭并发：调度器已停止
+            if (pendingRetries.remove(failed)) {
+                deadLetter(failed, e);
+            }
+        }
+    }
+
+    /**
+     * 构造待发送的消息
+     *
+     * @param task 待投递的邮件
+     * @return MIME消息
+     * @throws MessagingException 地址或内容格式错误时抛出
+     */
+    private MimeMessage build(MailTask task) throws MessagingException {
+        MimeMessage mimeMessage = new MimeMessage(transportPool.session());
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+        helper.setTo(task.to());
+        helper.setSubject(task.subject());
+        helper.setText(task.html(), true);
+        helper.setFrom(fromEmail);
+        mimeMessage.saveChanges();
+        return mimeMessage;
+    }
+
+    /**
+     * 写入死信列表
+     *
+     * @param task  最终失败的邮件
+     * @param cause 最后一次失败的原因
+     */
+    private void deadLetter(MailTask task, Exception cause) {
+        count(task, "dead");
+        record(task, "dead");
+        task.completion().completeExceptionally(cause);
+        log.error("邮件投递最终失败，写入死信，收件人：{}，尝试次数：{}，错误信息：{}",
+                task.to(), task.attempts(), cause.getMessage());
+        try {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("to", task.to());
+            entry.put("subject", task.subject());
+            entry.put("type", task.type());
+            entry.put("attempts", task.attempts());
+            entry.put("error", String.valueOf(cause.getMessage()));
+            entry.put("failedTime", LocalDateTime.now().toString());
+            RedisUtil.listPush(deadLetterKey, entry);
+            RedisUtil.listTrim(deadLetterKey, 0, deadLetterMax - 1);
+        } catch (Exception e) {
+            log.warn("写入邮件死信列表失败，错误信息：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 计算第n次重试前的退避时间，带±20%的随机抖动
+     *
+     * @param attempts 已尝试次数
+     * @return 退避时间（毫秒）
+     */
+    private long backoffMs(int attempts) {
+        long base = Math.min(maxBackoffMs, initialBackoffMs << Math.min(20, attempts - 1));
+        return (long) (base * ThreadLocalRandom.current().nextDouble(0.8, 1.2));
+    }
+
+    /**
+     * 累加投递结果计数
+     *
+     * @param task    邮件
+     * @param outcome 结果
+     */
+    private void count(MailTask task, String outcome) {
+        meterRegistry.counter("mail.delivery", "type", task.type(), "outcome", outcome).increment();
+    }
+
+    /**
+     * 记录从入队到完成的投递延迟
+     *
+     * @param task    邮件
+     * @param outcome 结果
+     */
+    private void record(MailTask task, String outcome) {
+        Timer.builder("mail.delivery.latency")
+                .tags("type", task.type(), "outcome", outcome)
+                .description("邮件从入队到投递完成的耗时")
+                .register(meterRegistry)
+                .record(System.nanoTime() - task.enqueuedNanos(), TimeUnit.NANOSECONDS);
+    }
+}
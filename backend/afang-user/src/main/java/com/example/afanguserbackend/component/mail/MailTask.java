@@ -0,0 +1,43 @@
+package com.example.afanguserbackend.component.mail;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 待投递的邮件
+ *
+ * @param to            收件人
+ * @param subject       主题
+ * @param html          HTML正文
+ * @param type          邮件类型，用于指标标签和死信记录
+ * @param enqueuedNanos 入队时的{@link System#nanoTime()}，用于统计投递延迟
+ * @param attempts      已尝试次数
+ * @param completion    投递结束时完成：发送成功时正常完成，写入死信时异常完成
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public record MailTask(String to, String subject, String html, String type, long enqueuedNanos, int attempts,
+                       CompletableFuture<Void> completion) {
+
+    /**
+     * 创建新邮件
+     *
+     * @param to      收件人
+     * @param subject 主题
+     * @param html    HTML正文
+     * @param type    邮件类型
+     * @return 待投递的邮件
+     */
+    public static MailTask of(String to, String subject, String html, String type) {
+        return new MailTask(to, subject, html, type, System.nanoTime(), 0, new CompletableFuture<>());
+    }
+
+    /**
+     * 记录一次失败的尝试
+     *
+     * @return 尝试次数加一后的邮件
+     */
+    public MailTask retried() {
+        return new MailTask(to, subject, html, type, enqueuedNanos, attempts + 1, completion);
+    }
+}
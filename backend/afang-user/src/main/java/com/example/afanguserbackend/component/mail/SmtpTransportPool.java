@@ -0,0 +1,200 @@
+package com.example.afanguserbackend.component.mail;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Properties;
+
+/**
+ * SMTP连接池。
+ * <p>
+ * 复用已完成TLS握手和AUTH认证的{@link Transport}连接，每封邮件只需一次 MAIL/RCPT/DATA 交互：
+ * <ul>
+ *   <li>会话、主机、端口和账号取自Spring自动配置的{@link JavaMailSenderImpl}，与 spring.mail 配置一致</li>
+ *   <li>连接、读取和写入都设置超时（spring.mail.properties 中已配置的优先），
+ *       无响应的SMTP服务器不会让工作线程和借出的连接无限期阻塞</li>
+ *   <li>空闲连接定期用NOOP探活（{@link Transport#isConnected()}），探活失败或空闲过久的连接被关闭，
+ *       避免使用已被服务器断开的连接</li>
+ *   <li>发送中发现连接失效时由调用方{@link #invalidate}后重新借出</li>
+ * </ul>
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class SmtpTransportPool {
+
+    /**
+     * 连接池
+     */
+    private final GenericObjectPool<Transport> pool;
+
+    /**
+     * 邮件会话
+     */
+    private final Session session;
+
+    /**
+     * 构造函数
+     *
+     * @param mailSender       Spring邮件发送器，提供会话和连接参数
+     * @param meterRegistry    指标注册表
+     * @param maxTotal         最大连接数
+     * @param maxIdleSeconds   连接最长空闲时间（秒），超过后关闭
+     * @param evictionSeconds  空闲检查间隔（秒）
+     * @param borrowTimeoutMs  借出连接的最长等待时间（毫秒）
+     * @param connectTimeoutMs 建立连接的超时时间（毫秒）
+     * @param readTimeoutMs    读取服务器响应的超时时间（毫秒）
+     * @param writeTimeoutMs   写入数据的超时时间（毫秒）
+     */
+    public SmtpTransportPool(JavaMailSenderImpl mailSender, MeterRegistry meterRegistry,
+                             @Value("${afang.mail.pool.max-total:4}") int maxTotal,
+                             @Value("${afang.mail.pool.max-idle-seconds:60}") int maxIdleSeconds,
+                             @Value("${afang.mail.pool.eviction-interval-seconds:15}") int evictionSeconds,
+                             @Value("${afang.mail.pool.borrow-timeout-ms:5000}") long borrowTimeoutMs,
+                             @Value("${afang.mail.pool.connect-timeout-ms:10000}") long connectTimeoutMs,
+                             @Value("${afang.mail.pool.read-timeout-ms:30000}") long readTimeoutMs,
+                             @Value("${afang.mail.pool.write-timeout-ms:30000}") long writeTimeoutMs) {
+        Properties properties = new Properties();
+        properties.putAll(mailSender.getSession().getProperties());
+        String prefix = "mail." + (mailSender.getProtocol() == null ? "smtp" : mailSender.getProtocol()) + ".";
+        properties.putIfAbsent(prefix + "connectiontimeout", String.valueOf(connectTimeoutMs));
+        properties.putIfAbsent(prefix + "timeout", String.valueOf(readTimeoutMs));
+        properties.putIfAbsent(prefix + "writetimeout", String.valueOf(writeTimeoutMs));
+        this.session = Session.getInstance(properties);
+        GenericObjectPoolConfig<Transport> config = new GenericObjectPoolConfig<>();
+        config.setMaxTotal(maxTotal);
+        config.setMaxIdle(maxTotal);
+        config.setMinIdle(0);
+        config.setMaxWait(Duration.ofMillis(borrowTimeoutMs));
+        config.setTestWhileIdle(true);
+        config.setMinEvictableIdleDuration(Duration.ofSeconds(maxIdleSeconds));
+        config.setTimeBetweenEvictionRuns(Duration.ofSeconds(evictionSeconds));
+        config.setJmxEnabled(false);
+        this.pool = new GenericObjectPool<>(new TransportFactory(session, mailSender), config);
+        Gauge.builder("mail.smtp.connections", pool, GenericObjectPool::getNumActive)
+                .tag("state", "active").description("SMTP连接数").register(meterRegistry);
+        Gauge.builder("mail.smtp.connections", pool, GenericObjectPool::getNumIdle)
+                .tag("state", "idle").description("SMTP连接数").register(meterRegistry);
+    }
+
+    /**
+     * 邮件会话，用于创建待发送的消息
+     *
+     * @return 邮件会话
+     */
+    public Session session() {
+        return session;
+    }
+
+    /**
+     * 借出一个已认证的连接
+     *
+     * @return SMTP连接
+     * @throws Exception 建立连接失败或等待超时时抛出
+     */
+    public Transport borrow() throws Exception {
+        return pool.borrowObject();
+    }
+
+    /**
+     * 归还连接
+     *
+     * @param transport SMTP连接
+     */
+    public void release(Transport transport) {
+        pool.returnObject(transport);
+    }
+
+    /**
+     * 作废失效的连接
+     *
+     * @param transport SMTP连接
+     */
+    public void invalidate(Transport transport) {
+        try {
+            pool.invalidateObject(transport);
+        } catch (Exception e) {
+            log.debug("作废SMTP连接失败，错误信息：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 关闭连接池
+     */
+    @PreDestroy
+    public void shutdown() {
+        pool.close();
+    }
+
+    /**
+     * SMTP连接工厂
+     */
+    private static final class TransportFactory extends BasePooledObjectFactory<Transport> {
+
+        /**
+         * 邮件会话
+         */
+        private final Session session;
+
+        /**
+         * 连接参数来源
+         */
+        private final JavaMailSenderImpl mailSender;
+
+        /**
+         * 构造函数
+         *
+         * @param session    邮件会话
+         * @param mailSender 连接参数来源
+         */
+        TransportFactory(Session session, JavaMailSenderImpl mailSender) {
+            this.session = session;
+            this.mailSender = mailSender;
+        }
+
+        @Override
+        public Transport create() throws Exception {
+            Transport transport = mailSender.getProtocol() == null
+                    ? session.getTransport()
+                    : session.getTransport(mailSender.getProtocol());
+            transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+            log.debug("建立SMTP连接：{}:{}", mailSender.getHost(), mailSender.getPort());
+            return transport;
+        }
+
+        @Override
+        public PooledObject<Transport> wrap(Transport transport) {
+            return new DefaultPooledObject<>(transport);
+        }
+
+        @Override
+        public boolean validateObject(PooledObject<Transport> pooled) {
+            return pooled.getObject().isConnected();
+        }
+
+        @Override
+        public void destroyObject(PooledObject<Transport> pooled) {
+            try {
+                pooled.getObject().close();
+            } catch (Exception e) {
+                log.debug("关闭SMTP连接失败，错误信息：{}", e.getMessage());
+            }
+        }
+    }
+}
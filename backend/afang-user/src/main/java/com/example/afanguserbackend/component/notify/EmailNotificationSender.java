@@ -0,0 +1,84 @@
+package com.example.afanguserbackend.component.notify;
+
+import com.example.afanguserbackend.component.mail.MailDeliveryPipeline;
+import com.example.afanguserbackend.component.mail.MailTask;
+import com.example.afanguserbackend.component.template.MessageTemplateEngine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 邮件通知发送方。
+ * <p>
+ * 按入队时的语言渲染邮件模板，交给{@link MailDeliveryPipeline}通过池化的SMTP连接批量发送，并等待投递结束后返回。
+ * 管道内部已经按退避重试并在最终失败时写入邮件死信，此时抛出{@link NotificationFailedException}，
+ * 通知队列按失败统计而不再重新入队；管道拒收（队列已满）时原样抛出，由通知队列重新入队。主题取模板参数 SUBJECT。
+ * <p>
+ * 等待投递结束的时间不超过通知认领空闲阈值的一半：管道仍在退避重试时直接返回，由管道完成后续投递或写入死信，
+ * 避免通知消息在等待期间空闲超时，被XAUTOCLAIM认领后重复发送。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class EmailNotificationSender implements NotificationSender {
+
+    /**
+     * 主题参数名
+     */
+    public static final String SUBJECT = "SUBJECT";
+
+    /**
+     * 消息模板引擎
+     */
+    private final MessageTemplateEngine messageTemplateEngine;
+
+    /**
+     * 异步邮件投递管道
+     */
+    private final MailDeliveryPipeline mailDeliveryPipeline;
+
+    /**
+     * 等待投递结束的最长时间（毫秒）
+     */
+    private final long waitMs;
+
+    /**
+     * 构造函数
+     *
+     * @param messageTemplateEngine 消息模板引擎
+     * @param mailDeliveryPipeline  异步邮件投递管道
+     * @param claimMinIdleMs        通知消息空闲多久后可被其他节点认领（毫秒）
+     */
+    public EmailNotificationSender(MessageTemplateEngine messageTemplateEngine, MailDeliveryPipeline mailDeliveryPipeline,
+                                   @Value("${afang.notify.claim-min-idle-ms:60000}") long claimMinIdleMs) {
+        this.messageTemplateEngine = messageTemplateEngine;
+        this.mailDeliveryPipeline = mailDeliveryPipeline;
+        this.waitMs = Math.max(1, claimMinIdleMs / 2);
+    }
+
+    @Override
+    public NotificationChannel channel() {
+        return NotificationChannel.EMAIL;
+    }
+
+    @Override
+    public void send(NotificationMessage message) throws InterruptedException {
+        String html = messageTemplateEngine.render(message.template(), message.locale(), message.params());
+        MailTask task = MailTask.of(message.to(), message.params().getOrDefault(SUBJECT, ""), html, message.template());
+        mailDeliveryPipeline.submit(task);
+        try {
+            task.completion().get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new NotificationFailedException("邮件已由投递管道写入死信，收件人：" + message.to(), e.getCause());
+        } catch (TimeoutException e) {
+            log.info("邮件仍在投递管道中重试，不再等待，收件人：{}", message.to());
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.afanguserbackend.component.notify;
+
+import java.util.Locale;
+
+/**
+ * 通知渠道，每个渠道对应一个独立的Stream和并发上限
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public enum NotificationChannel {
+
+    /**
+     * 短信
+     */
+    SMS,
+
+    /**
+     * 邮件
+     */
+    EMAIL;
+
+    /**
+     * 用于Stream Key和指标标签的小写名称
+     *
+     * @return 渠道名称
+     */
+    public String key() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.afanguserbackend.component.notify;
+
+/**
+ * 通知已由发送方自行重试并最终失败。
+ * <p>
+ * 通知队列收到该异常时不再重新入队，直接按失败统计并确认消息，避免与发送方内部的重试叠加。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class NotificationFailedException extends RuntimeException {
+
+    /**
+     * 构造函数
+     *
+     * @param message 错误信息
+     * @param cause   失败原因
+     */
+    public NotificationFailedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
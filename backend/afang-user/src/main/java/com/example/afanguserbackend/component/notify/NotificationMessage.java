@@ -0,0 +1,119 @@
+package com.example.afanguserbackend.component.notify;
+
+import org.springframework.context.i18n.LocaleContextHolder;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 待发送的通知。
+ * <p>
+ * 只记录收件地址、模板名和模板参数，正文由发送方在投递时渲染，Stream中的消息保持紧凑。
+ *
+ * @param channel         渠道
+ * @param to              收件地址（手机号或邮箱）
+ * @param template        消息模板名
+ * @param languageTag     入队时请求的语言，如 zh-CN
+ * @param params          模板参数
+ * @param attempts        已失败的次数
+ * @param enqueuedMillis  首次入队的时间戳（毫秒）
+ * @param notBeforeMillis 失败重试前的最早发送时间戳（毫秒），首次发送为0
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public record NotificationMessage(NotificationChannel channel, String to, String template, String languageTag,
+                                  Map<String, String> params, int attempts, long enqueuedMillis,
+                                  long notBeforeMillis) {
+
+    /**
+     * 模板参数字段名前缀
+     */
+    private static final String PARAM_PREFIX = "p:";
+
+    /**
+     * 创建新通知，语言取当前请求的语言
+     *
+     * @param channel  渠道
+     * @param to       收件地址
+     * @param template 消息模板名
+     * @param params   模板参数
+     * @return 待发送的通知
+     */
+    public static NotificationMessage of(NotificationChannel channel, String to, String template, Map<String, String> params) {
+        return new NotificationMessage(channel, to, template, LocaleContextHolder.getLocale().toLanguageTag(),
+                Map.copyOf(params), 0, System.currentTimeMillis(), 0);
+    }
+
+    /**
+     * 从Stream消息字段还原
+     *
+     * @param channel 渠道
+     * @param fields  消息字段
+     * @return 待发送的通知
+     * @throws IllegalArgumentException 缺少必要字段时抛出
+     */
+    public static NotificationMessage fromFields(NotificationChannel channel, Map<?, ?> fields) {
+        Map<String, String> params = new HashMap<>();
+        for (Map.Entry<?, ?> e : fields.entrySet()) {
+            String name = String.valueOf(e.getKey());
+            if (name.startsWith(PARAM_PREFIX)) {
+                params.put(name.substring(PARAM_PREFIX.length()), String.valueOf(e.getValue()));
+            }
+        }
+        Object to = fields.get("to");
+        Object template = fields.get("tpl");
+        if (to == null || template == null) {
+            throw new IllegalArgumentException("通知消息缺少收件地址或模板名");
+        }
+        Object lang = fields.get("lang");
+        Object attempts = fields.get("att");
+        Object ts = fields.get("ts");
+        Object notBefore = fields.get("nb");
+        return new NotificationMessage(channel, to.toString(), template.toString(),
+                lang == null ? "" : lang.toString(), Map.copyOf(params),
+                attempts == null ? 0 : Integer.parseInt(attempts.toString()),
+                ts == null ? System.currentTimeMillis() : Long.parseLong(ts.toString()),
+                notBefore == null ? 0 : Long.parseLong(notBefore.toString()));
+    }
+
+    /**
+     * 转换为Stream消息字段
+     *
+     * @return 消息字段
+     */
+    public Map<String, String> toFields() {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("to", to);
+        fields.put("tpl", template);
+        fields.put("lang", languageTag);
+        fields.put("att", String.valueOf(attempts));
+        fields.put("ts", String.valueOf(enqueuedMillis));
+        if (notBeforeMillis > 0) {
+            fields.put("nb", String.valueOf(notBeforeMillis));
+        }
+        params.forEach((name, value) -> fields.put(PARAM_PREFIX + name, value));
+        return fields;
+    }
+
+    /**
+     * 入队时请求的语言
+     *
+     * @return 语言
+     */
+    public Locale locale() {
+        return Locale.forLanguageTag(languageTag);
+    }
+
+    /**
+     * 记录一次失败
+     *
+     * @param backoffMs 距下次发送的退避时间（毫秒）
+     * @return 失败次数加一、退避结束前不发送的通知
+     */
+    public NotificationMessage retried(long backoffMs) {
+        return new NotificationMessage(channel, to, template, languageTag, params, attempts + 1, enqueuedMillis,
+                System.currentTimeMillis() + backoffMs);
+    }
+}
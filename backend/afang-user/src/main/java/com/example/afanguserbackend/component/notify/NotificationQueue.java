@@ -0,0 +1,683 @@
+package com.example.afanguserbackend.component.notify;
+
+import com.example.afanguserbackend.utils.RedisUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于Redis Stream的持久化通知队列。
+ * <p>
+ * 请求线程只做一次XADD，短信、邮件的实际发送由任意节点上的消费组工作线程完成，节点在请求中途宕机也不会丢失通知：
+ * <ul>
+ *   <li>每个渠道一个Stream，所有节点加入同一个消费组，消息只会被其中一个节点领取（竞争消费）</li>
+ *   <li>每个渠道在本节点的并发发送数由信号量限制，读取时只领取有空闲许可数量的消息，
+ *       处理不过来的消息留在Stream中由其他节点领取；扩容只需增加节点</li>
+ *   <li>发送成功后才XACK；节点宕机时已领取未确认的消息空闲超过阈值后由其他节点通过XAUTOCLAIM认领重发，语义为至少一次；
+ *       发送方等待发送结果的时间须小于该阈值，否则仍在发送中的消息会被认领重复发送</li>
+ *   <li>认领到的消息正文已因Stream按长度裁剪而不存在时直接确认，不再留在待确认列表中反复认领</li>
+ *   <li>发送失败的消息带失败次数和退避截止时间重新XADD并确认原消息，退避按失败次数指数增长，
+ *       达到最大次数后写入Redis死信列表；读到尚在退避中的消息时暂不确认，到期后再发送，
+ *       退避上限为认领空闲阈值的一半，等待期间不会被其他节点认领</li>
+ *   <li>发送方已自行重试并最终失败（{@link NotificationFailedException}）时不再重新入队，按失败统计</li>
+ *   <li>按渠道统计积压（未读取的lag加已领取未确认的pending）、进行中的发送数，以及从入队到发送完成的延迟</li>
+ * </ul>
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class NotificationQueue implements SmartLifecycle {
+
+    /**
+     * 消费组名，所有节点共用
+     */
+    private static final String GROUP = "notify-workers";
+
+    /**
+     * 读取时的最长阻塞时间
+     */
+    private static final Duration BLOCK = Duration.ofSeconds(2);
+
+    /**
+     * 认领空闲消息：XAUTOCLAIM key group consumer min-idle start COUNT n
+     * 返回 [下一个游标, [[消息ID, [字段, 值, ...]], ...], [已删除的消息ID]]
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> AUTOCLAIM_SCRIPT = new DefaultRedisScript<>(
+            "return redis.call('XAUTOCLAIM', KEYS[1], ARGV[1], ARGV[2], ARGV[3], ARGV[4], 'COUNT', ARGV[5])", List.class);
+
+    /**
+     * Redis字符串操作模板
+     */
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 指标注册表
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 各渠道的发送方
+     */
+    private final Map<NotificationChannel, NotificationSender> senders = new EnumMap<>(NotificationChannel.class);
+
+    /**
+     * 各渠道本节点的并发许可
+     */
+    private final Map<NotificationChannel, Semaphore> permits = new EnumMap<>(NotificationChannel.class);
+
+    /**
+     * 各渠道的并发上限
+     */
+    private final Map<NotificationChannel, Integer> concurrency = new EnumMap<>(NotificationChannel.class);
+
+    /**
+     * 各渠道的积压消息数，定时刷新
+     */
+    private final Map<NotificationChannel, AtomicLong> backlog = new EnumMap<>(NotificationChannel.class);
+
+    /**
+     * 发送线程
+     */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * 退避中的消息到期后重新提交发送
+     */
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofVirtual().name("notify-retry").factory());
+
+    /**
+     * 各渠道的读取线程
+     */
+    private final List<Thread> readers = new ArrayList<>();
+
+    /**
+     * Stream Key前缀，后接渠道名
+     */
+    private final String streamPrefix;
+
+    /**
+     * 本节点的消费者
+     */
+    private final Consumer consumer;
+
+    /**
+     * 单次读取的最大消息数
+     */
+    private final int batchSize;
+
+    /**
+     * 最大失败次数
+     */
+    private final int maxAttempts;
+
+    /**
+     * 消息空闲多久后可被其他节点认领（毫秒）
+     */
+    private final long claimMinIdleMs;
+
+    /**
+     * 认领扫描间隔（毫秒）
+     */
+    private final long claimIntervalMs;
+
+    /**
+     * 首次失败后的退避时间（毫秒），之后每次失败翻倍
+     */
+    private final long retryBackoffMs;
+
+    /**
+     * 退避时间上限（毫秒），为认领空闲阈值的一半
+     */
+    private final long maxBackoffMs;
+
+    /**
+     * Stream近似最大长度
+     */
+    private final long maxLength;
+
+    /**
+     * 死信列表Key
+     */
+    private final String deadLetterKey;
+
+    /**
+     * 死信列表最大长度
+     */
+    private final int deadLetterMax;
+
+    /**
+     * 是否运行中
+     */
+    private volatile boolean running;
+
+    /**
+     * 构造函数
+     *
+     * @param stringRedisTemplate Redis字符串操作模板
+     * @param meterRegistry       指标注册表
+     * @param senderList          各渠道的发送方
+     * @param streamPrefix        Stream Key前缀
+     * @param nodeId              节点标识，为空时使用主机名
+     * @param smsConcurrency      短信渠道本节点的并发上限
+     * @param emailConcurrency    邮件渠道本节点的并发上限
+     * @param batchSize           单次读取的最大消息数
+     * @param maxAttempts         最大失败次数
+     * @param claimMinIdleMs      消息空闲多久后可被其他节点认领（毫秒）
+     * @param claimIntervalMs     认领扫描间隔（毫秒）
+     * @param retryBackoffMs      首次失败后的退避时间（毫秒），之后每次失败翻倍
+     * @param maxLength           Stream近似最大长度
+     * @param deadLetterKey       死信列表Key
+     * @param deadLetterMax       死信列表最大长度
+     */
+    public NotificationQueue(StringRedisTemplate stringRedisTemplate, MeterRegistry meterRegistry,
+                             List<NotificationSender> senderList,
+                             @Value("${afang.notify.stream-prefix:stream:notify:}") String streamPrefix,
+                             @Value("${afang.notify.node-id:}") String nodeId,
+                             @Value("${afang.notify.sms-concurrency:8}") int smsConcurrency,
+                             @Value("${afang.notify.email-concurrency:8}") int emailConcurrency,
+                             @Value("${afang.notify.batch-size:16}") int batchSize,
+                             @Value("${afang.notify.max-attempts:3}") int maxAttempts,
+                             @Value("${afang.notify.claim-min-idle-ms:60000}") long claimMinIdleMs,
+                             @Value("${afang.notify.claim-interval-ms:10000}") long claimIntervalMs,
+                             @Value("${afang.notify.retry-backoff-ms:2000}") long retryBackoffMs,
+                             @Value("${afang.notify.stream-max-length:100000}") long maxLength,
+                             @Value("${afang.notify.dead-letter-key:notify:dead-letter}") String deadLetterKey,
+                             @Value("${afang.notify.dead-letter-max:1000}") int deadLetterMax) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.streamPrefix = streamPrefix;
+        this.consumer = Consumer.from(GROUP, nodeId.isBlank() ? hostName() : nodeId);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.claimMinIdleMs = claimMinIdleMs;
+        this.claimIntervalMs = claimIntervalMs;
+        this.retryBackoffMs = retryBackoffMs;
+        this.maxBackoffMs = Math.max(0, claimMinIdleMs / 2);
+        this.maxLength = maxLength;
+        this.deadLetterKey = deadLetterKey;
+        this.deadLetterMax = deadLetterMax;
+        senderList.forEach(sender -> senders.put(sender.channel(), sender));
+        concurrency.put(NotificationChannel.SMS, smsConcurrency);
+        concurrency.put(NotificationChannel.EMAIL, emailConcurrency);
+        for (NotificationChannel channel : senders.keySet()) {
+            Semaphore semaphore = new Semaphore(concurrency.get(channel));
+            permits.put(channel, semaphore);
+            AtomicLong size = new AtomicLong();
+            backlog.put(channel, size);
+            Gauge.builder("notify.queue.backlog", size, AtomicLong::get)
+                    .tag("channel", channel.key()).description("通知队列积压的消息数").register(meterRegistry);
+            Gauge.builder("notify.queue.in-flight", semaphore, s -> concurrency.get(channel) - s.availablePermits())
+                    .tag("channel", channel.key()).description("本节点正在发送的通知数").register(meterRegistry);
+        }
+    }
+
+    /**
+     * 投递一条通知
+     *
+     * @param message 通知
+     * @throws IllegalStateException 渠道没有发送方时抛出
+     */
+    public void enqueue(NotificationMessage message) {
+        if (!senders.containsKey(message.channel())) {
+            throw new IllegalStateException("通知渠道未配置发送方：" + message.channel());
+        }
+        append(message);
+    }
+
+    /**
+     * 启动各渠道的读取线程
+     */
+    @Override
+    public void start() {
+        running = true;
+        for (NotificationChannel channel : senders.keySet()) {
+            try {
+                createGroupIfAbsent(streamKey(channel));
+            } catch (Exception e) {
+                log.error("通知队列消费组初始化失败，渠道：{}，错误信息：{}", channel, e.getMessage(), e);
+            }
+            readers.add(Thread.ofVirtual().name("notify-reader-" + channel.key()).start(() -> read(channel)));
+        }
+        log.info("通知队列已启动，消费者：{}，并发上限：{}", consumer.getName(), concurrency);
+    }
+
+    /**
+     * 停止读取新消息，等待进行中的发送完成并确认
+     * 未完成的消息保留在待确认列表中，由其他节点认领
+     */
+    @Override
+    public void stop() {
+        running = false;
+        for (Thread reader : readers) {
+            try {
+                reader.join(BLOCK.toMillis() + 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        // 退避中的消息未确认，留在待确认列表中由其他节点认领
+        retryScheduler.shutdownNow();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("通知队列关闭时仍有发送未完成，将由其他节点认领重发");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 是否运行中
+     *
+     * @return 运行中返回true
+     */
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 定时刷新各渠道的积压消息数：消费组中尚未读取的lag加已领取未确认的pending
+     */
+    @Scheduled(fixedDelayString = "${afang.notify.metrics-interval-ms:5000}")
+    public void refreshBacklog() {
+        for (Map.Entry<NotificationChannel, AtomicLong> entry : backlog.entrySet()) {
+            try {
+                StreamInfo.XInfoGroups groups = stringRedisTemplate.opsForStream().groups(streamKey(entry.getKey()));
+                groups.stream().filter(group -> GROUP.equals(group.groupName())).findFirst().ifPresent(group -> {
+                    // lag 字段需要 Redis 7，缺失时只统计 pending
+                    Object lag = group.getRaw().get("lag");
+                    long unread = lag == null ? 0 : Long.parseLong(lag.toString());
+                    entry.getValue().set(unread + group.pendingCount());
+                });
+            } catch (Exception e) {
+                log.debug("刷新通知队列积压失败，渠道：{}，错误信息：{}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 渠道读取线程主循环：先按空闲许可数领取消息，定期认领其他节点遗留的空闲消息，再阻塞读取新消息
+     *
+     * @param channel 渠道
+     */
+    private void read(NotificationChannel channel) {
+        String key = streamKey(channel);
+        Semaphore semaphore = permits.get(channel);
+        String claimCursor = "0-0";
+        long nextClaimMillis = 0;
+        while (running) {
+            int granted = 0;
+            try {
+                semaphore.acquire();
+                granted = 1;
+                if (!running) {
+                    break;
+                }
+                int extra = Math.min(semaphore.availablePermits(), batchSize - 1);
+                if (extra > 0 && semaphore.tryAcquire(extra)) {
+                    granted += extra;
+                }
+                List<MapRecord<String, Object, Object>> records = List.of();
+                if (System.currentTimeMillis() >= nextClaimMillis) {
+                    ClaimResult claimed = autoClaim(key, claimCursor, granted);
+                    claimCursor = claimed.cursor();
+                    records = claimed.records();
+                    if ("0-0".equals(claimCursor)) {
+                        // 一轮扫描结束，等待下一个间隔
+                        nextClaimMillis = System.currentTimeMillis() + claimIntervalMs;
+                    }
+                    if (!records.isEmpty()) {
+                        log.info("认领空闲的通知消息{}条，渠道：{}", records.size(), channel);
+                    }
+                }
+                if (records.isEmpty()) {
+                    List<MapRecord<String, Object, Object>> read = stringRedisTemplate.opsForStream().read(consumer,
+                            StreamReadOptions.empty().count(granted).block(BLOCK),
+                            StreamOffset.create(key, ReadOffset.lastConsumed()));
+                    records = read == null ? List.of() : read;
+                }
+                for (MapRecord<String, Object, Object> record : records) {
+                    executor.execute(() -> {
+                        try {
+                            handle(channel, record);
+                        } finally {
+                            semaphore.release();
+                        }
+                    });
+                    // 提交成功后许可才转交给发送线程；提交失败时由finally归还
+                    granted--;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (running) {
+                    log.warn("读取通知队列失败，渠道：{}，错误信息：{}", channel, e.getMessage());
+                    sleepQuietly();
+                }
+            } finally {
+                semaphore.release(granted);
+            }
+        }
+    }
+
+    /**
+     * 处理一条消息：尚在退避中则到期后再处理；发送成功则确认；失败则带失败次数重新入队或写入死信，再确认原消息
+     *
+     * @param channel 渠道
+     * @param record  Stream消息
+     */
+    private void handle(NotificationChannel channel, MapRecord<String, Object, Object> record) {
+        NotificationMessage message;
+        try {
+            message = NotificationMessage.fromFields(channel, record.getValue());
+        } catch (Exception e) {
+            log.error("丢弃格式错误的通知消息：{}，错误信息：{}", record.getId(), e.getMessage());
+            acknowledge(record);
+            return;
+        }
+        long delayMs = message.notBeforeMillis() - System.currentTimeMillis();
+        if (delayMs > 0) {
+            // 节点间时钟偏差时也不超过上限，避免等待期间被其他节点认领
+            defer(channel, record, Math.min(delayMs, maxBackoffMs));
+            return;
+        }
+        try {
+            senders.get(channel).send(message);
+            finish(message, "sent");
+        } catch (Exception e) {
+            if (!running) {
+                // 关闭过程中的失败不确认，留给其他节点认领
+                return;
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            NotificationMessage failed = message.retried(backoff(message.attempts()));
+            if (cause instanceof NotificationFailedException) {
+                log.warn("通知发送最终失败，渠道：{}，收件地址：{}，错误信息：{}", channel, message.to(), cause.getMessage());
+                finish(message, "failed");
+            } else if (failed.attempts() < maxAttempts) {
+                log.warn("通知发送失败，重新入队，渠道：{}，收件地址：{}，失败次数：{}，错误信息：{}",
+                        channel, message.to(), failed.attempts(), cause.getMessage());
+                append(failed);
+                count(message, "retried");
+            } else {
+                deadLetter(failed, cause);
+                finish(message, "dead");
+            }
+        }
+        acknowledge(record);
+    }
+
+    /**
+     * 退避结束后重新处理消息，处理时重新占用渠道的并发许可
+     * 等待期间消息不确认，节点关闭时由其他节点认领
+     *
+     * @param channel 渠道
+     * @param record  Stream消息
+     * @param delayMs 等待时间（毫秒）
+     */
+    private void defer(NotificationChannel channel, MapRecord<String, Object, Object> record, long delayMs) {
+        Semaphore semaphore = permits.get(channel);
+        try {
+            retryScheduler.schedule(() -> executor.execute(() -> {
+                try {
+                    semaphore.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                try {
+                    handle(channel, record);
+                } finally {
+                    semaphore.release();
+                }
+            }), delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("通知队列关闭中，退避中的消息留给其他节点认领：{}", record.getId());
+        }
+    }
+
+    /**
+     * 再次失败后的退避时间：首次失败为配置值，之后每次翻倍，不超过认领空闲阈值的一半
+     *
+     * @param previousAttempts 本次失败前已失败的次数
+     * @return 退避时间（毫秒）
+     */
+    private long backoff(int previousAttempts) {
+        long backoff = retryBackoffMs << Math.min(previousAttempts, 20);
+        return Math.min(backoff, maxBackoffMs);
+    }
+
+    /**
+     * 写入渠道Stream
+     *
+     * @param message 通知
+     */
+    private void append(NotificationMessage message) {
+        Map<byte[], byte[]> fields = new HashMap<>();
+        message.toFields().forEach((name, value) -> fields.put(bytes(name), bytes(value)));
+        MapRecord<byte[], byte[], byte[]> record = StreamRecords.newRecord().in(bytes(streamKey(message.channel()))).ofMap(fields);
+        RedisStreamCommands.XAddOptions options = RedisStreamCommands.XAddOptions.maxlen(maxLength).approximateTrimming(true);
+        stringRedisTemplate.execute((RedisCallback<RecordId>) connection -> connection.streamCommands().xAdd(record, options));
+    }
+
+    /**
+     * 确认消息
+     *
+     * @param record Stream消息
+     */
+    private void acknowledge(MapRecord<String, Object, Object> record) {
+        try {
+            stringRedisTemplate.opsForStream().acknowledge(record.getStream(), GROUP, record.getId());
+        } catch (Exception e) {
+            // 未确认的消息空闲超时后会被重新认领，可能导致重复发送
+            log.warn("确认通知消息失败：{}，错误信息：{}", record.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 认领其他消费者遗留的空闲消息
+     *
+     * @param key    Stream Key
+     * @param cursor 扫描游标
+     * @param count  最多认领的消息数
+     * @return 下一个游标和认领到的消息
+     */
+    @SuppressWarnings("unchecked")
+    private ClaimResult autoClaim(String key, String cursor, int count) {
+        List<Object> reply = stringRedisTemplate.execute(AUTOCLAIM_SCRIPT, List.of(key),
+                GROUP, consumer.getName(), String.valueOf(claimMinIdleMs), cursor, String.valueOf(count));
+        if (reply == null || reply.size() < 2) {
+            return new ClaimResult("0-0", List.of());
+        }
+        List<MapRecord<String, Object, Object>> records = new ArrayList<>();
+        List<RecordId> trimmed = new ArrayList<>();
+        for (Object item : (List<Object>) reply.get(1)) {
+            List<Object> entry = (List<Object>) item;
+            if (entry.size() < 2 || entry.get(1) == null) {
+                // 消息已被MAXLEN裁剪，只剩待确认记录（Redis 7以下仍会返回并保留在待确认列表中）
+                if (!entry.isEmpty() && entry.get(0) != null) {
+                    trimmed.add(RecordId.of(entry.get(0).toString()));
+                }
+                continue;
+            }
+            List<Object> values = (List<Object>) entry.get(1);
+            Map<Object, Object> fields = new LinkedHashMap<>();
+            for (int i = 0; i + 1 < values.size(); i += 2) {
+                fields.put(values.get(i), values.get(i + 1));
+            }
+            records.add(StreamRecords.newRecord().in(key).withId(RecordId.of(entry.get(0).toString())).ofMap(fields));
+        }
+        if (!trimmed.isEmpty()) {
+            log.warn("确认已被裁剪的通知消息{}条，Stream：{}", trimmed.size(), key);
+            stringRedisTemplate.opsForStream().acknowledge(key, GROUP, trimmed.toArray(new RecordId[0]));
+        }
+        return new ClaimResult(reply.get(0).toString(), records);
+    }
+
+    /**
+     * 创建消费组，已存在时忽略
+     * 从Stream开头建组，消费组创建之前写入的消息也会被发送
+     *
+     * @param key Stream Key
+     */
+    private void createGroupIfAbsent(String key) {
+        try {
+            stringRedisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands()
+                    .xGroupCreate(bytes(key), GROUP, ReadOffset.from("0"), true));
+        } catch (RedisSystemException e) {
+            if (e.getMostSpecificCause().getMessage() == null
+                    || !e.getMostSpecificCause().getMessage().contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 写入死信列表
+     *
+     * @param message 通知
+     * @param cause   失败原因
+     */
+    private void deadLetter(NotificationMessage message, Throwable cause) {
+        log.error("通知发送最终失败，写入死信，渠道：{}，收件地址：{}，失败次数：{}，错误信息：{}",
+                message.channel(), message.to(), message.attempts(), cause.getMessage());
+        try {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("channel", message.channel().key());
+            entry.put("to", message.to());
+            entry.put("template", message.template());
+            entry.put("attempts", message.attempts());
+            entry.put("error", String.valueOf(cause.getMessage()));
+            entry.put("failedTime", LocalDateTime.now().toString());
+            RedisUtil.listPush(deadLetterKey, entry);
+            RedisUtil.listTrim(deadLetterKey, 0, deadLetterMax - 1);
+        } catch (Exception e) {
+            log.warn("写入通知死信列表失败，错误信息：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 统计一条通知的最终结果和从入队到完成的延迟
+     *
+     * @param message 通知
+     * @param outcome 结果
+     */
+    private void finish(NotificationMessage message, String outcome) {
+        count(message, outcome);
+        Timer.builder("notify.delivery.latency")
+                .tags("channel", message.channel().key(), "outcome", outcome)
+                .description("通知从首次入队到发送完成的耗时")
+                .register(meterRegistry)
+                .record(System.currentTimeMillis() - message.enqueuedMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 按渠道和结果计数
+     *
+     * @param message 通知
+     * @param outcome 结果
+     */
+    private void count(NotificationMessage message, String outcome) {
+        meterRegistry.counter("notify.delivery", "channel", message.channel().key(), "outcome", outcome).increment();
+    }
+
+    /**
+     * 渠道的Stream Key
+     *
+     * @param channel 渠道
+     * @return Stream Key
+     */
+    private String streamKey(NotificationChannel channel) {
+        return streamPrefix + channel.key();
+    }
+
+    /**
+     * 读取失败后短暂等待，避免Redis不可用时空转
+     */
+    private static void sleepQuietly() {
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 字符串转UTF-8字节
+     *
+     * @param value 字符串
+     * @return 字节数组
+     */
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 获取主机名
+     *
+     * @return 主机名，获取失败时为local
+     */
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "local";
+        }
+    }
+
+    /**
+     * XAUTOCLAIM的结果
+     *
+     * @param cursor  下一个游标，0-0表示一轮扫描结束
+     * @param records 认领到的消息
+     */
+    private record ClaimResult(String cursor, List<MapRecord<String, Object, Object>> records) {
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.afanguserbackend.component.notify;
+
+/**
+ * 通知发送方，每个渠道一个实现
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public interface NotificationSender {
+
+    /**
+     * 负责的渠道
+     *
+     * @return 渠道
+     */
+    NotificationChannel channel();
+
+    /**
+     * 发送一条通知，在虚拟线程上调用，可以阻塞等待下游
+     * 正常返回后消息被确认；抛出异常时按失败次数重新入队或写入死信
+     *
+     * @param message 通知
+     * @throws Exception 发送失败时抛出
+     */
+    void send(NotificationMessage message) throws Exception;
+}
@@ -0,0 +1,33 @@
+package com.example.afanguserbackend.component.notify;
+
+import com.example.afanguserbackend.component.sms.SmsMessage;
+import com.example.afanguserbackend.component.sms.SmsRouter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * 短信通知发送方：交给短信路由选择服务商发送，等待发送结果
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Component
+@RequiredArgsConstructor
+public class SmsNotificationSender implements NotificationSender {
+
+    /**
+     * 多服务商短信路由
+     */
+    private final SmsRouter smsRouter;
+
+    @Override
+    public NotificationChannel channel() {
+        return NotificationChannel.SMS;
+    }
+
+    @Override
+    public void send(NotificationMessage message) {
+        smsRouter.send(new SmsMessage(message.to(), message.template(), message.params())).join();
+    }
+}
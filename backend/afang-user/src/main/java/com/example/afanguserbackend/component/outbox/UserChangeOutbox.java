@@ -0,0 +1,77 @@
+package com.example.afanguserbackend.component.outbox;
+
+import com.example.afanguserbackend.component.event.UserChangedEvent;
+import com.example.afanguserbackend.component.id.SnowflakeIdGenerator;
+import com.example.afanguserbackend.mapper.outbox.UserOutboxMapper;
+import com.example.afanguserbackend.model.entity.outbox.UserOutbox;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.function.Supplier;
+
+/**
+ * 用户变更发件箱（transactional outbox）。
+ * <p>
+ * 用户写操作与发件箱记录在同一个本地事务中提交，写库成功即保证事件最终被投递，
+ * 不会出现“写库成功但事件丢失”或“事件已发但写库回滚”。写链路只多一条单行INSERT，
+ * 投递由{@link UserOutboxRelay}在后台完成。
+ * <p>
+ * 分片模式下事务必须在分片上下文内开启（即在{@code UserShardTemplate}的回调中调用），
+ * 这样用户表与发件箱位于同一分片库、同一连接。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Component
+@RequiredArgsConstructor
+public class UserChangeOutbox {
+
+    /**
+     * 发件箱数据访问
+     */
+    private final UserOutboxMapper userOutboxMapper;
+
+    /**
+     * 雪花ID生成器
+     */
+    private final SnowflakeIdGenerator idGenerator;
+
+    /**
+     * 事务模板
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * 在本地事务中执行写操作
+     *
+     * @param action 写操作，其中通过{@link #append}登记事件
+     * @param <T>    返回值类型
+     * @return 写操作的返回值
+     */
+    public <T> T inTransaction(Supplier<T> action) {
+        return transactionTemplate.execute(status -> action.get());
+    }
+
+    /**
+     * 登记一条用户变更事件，必须在{@link #inTransaction}中调用
+     *
+     * @param userId 用户ID
+     * @param type   变更类型
+     * @throws IllegalStateException 不在事务中调用时抛出
+     */
+    public void append(Long userId, UserChangedEvent.Type type) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("发件箱事件必须与用户写操作在同一事务中登记");
+        }
+        userOutboxMapper.insert(UserOutbox.builder()
+                .id(idGenerator.nextId())
+                .userId(userId)
+                .eventType(type.name())
+                .createTime(LocalDateTime.now())
+                .build());
+    }
+}
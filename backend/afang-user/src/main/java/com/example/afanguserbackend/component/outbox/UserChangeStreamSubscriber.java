@@ -0,0 +1,319 @@
+package com.example.afanguserbackend.component.outbox;
+
+import com.example.afanguserbackend.component.event.UserChangedEvent;
+import com.example.afanguserbackend.component.sharding.UserShardTemplate;
+import com.example.afanguserbackend.mapper.user.UsersMapper;
+import com.example.afanguserbackend.model.entity.user.Users;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.stream.StreamMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户变更Stream订阅者。
+ * <p>
+ * 每个节点以自己的消费组订阅用户变更Stream，使每个节点都收到全部事件（广播），
+ * 并在本进程内重新发布为{@link UserChangedEvent}，由缓存失效、搜索索引、位图索引等监听方处理：
+ * <ul>
+ *   <li>处理完成后才ACK；进程异常退出后重启时先重放本节点消费组中未ACK的事件，保证至少一次</li>
+ *   <li>同一用户的事件按发件箱事件ID（雪花ID，随写入时间递增）排序，不大于已处理ID的事件视为重复或过期直接丢弃，
+ *       多个中继并发投递导致的乱序因此不会让派生数据回退</li>
+ *   <li>每个事件只按用户ID回查一次最新数据，随本地事件交给所有监听方共用，不再由每个监听方各查一次</li>
+ *   <li>正常关闭时删除本节点的消费组；各节点还定期删除所有消费者都长时间空闲的其他节点的消费组，
+ *       避免宕机或更换主机名的节点留下的消费组一直保留并阻止Stream裁剪前的待确认记录释放</li>
+ * </ul>
+ * 监听方使用的是回查到的最新数据，丢弃过期事件不会丢失更新。
+ * 节点内的副本和索引在启动时全量重建，重启期间错过的事件不需要通过消费组补回。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class UserChangeStreamSubscriber implements SmartLifecycle {
+
+    /**
+     * 消费组名前缀
+     */
+    private static final String GROUP_PREFIX = "node:";
+
+    /**
+     * Redis字符串操作模板
+     */
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * Redis连接工厂
+     */
+    private final RedisConnectionFactory connectionFactory;
+
+    /**
+     * 事件发布器
+     */
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * 用户数据访问层
+     */
+    private final UsersMapper usersMapper;
+
+    /**
+     * 用户分片路由模板
+     */
+    private final UserShardTemplate shardTemplate;
+
+    /**
+     * Stream Key
+     */
+    private final String streamKey;
+
+    /**
+     * 本节点的消费者
+     */
+    private final Consumer consumer;
+
+    /**
+     * 单次拉取的最大事件数
+     */
+    private final int batchSize;
+
+    /**
+     * 其他节点的消费组所有消费者都空闲超过该时长后删除（毫秒）
+     */
+    private final long staleGroupIdleMs;
+
+    /**
+     * 每个用户最近处理的事件ID，按访问顺序淘汰
+     * 只在监听线程中访问
+     */
+    private final Map<Long, Long> lastEventIds;
+
+    /**
+     * 监听容器
+     */
+    private StreamMessageListenerContainer<String, MapRecord<String, String, String>> container;
+
+    /**
+     * 是否运行中
+     */
+    private volatile boolean running;
+
+    /**
+     * 构造函数
+     *
+     * @param stringRedisTemplate Redis字符串操作模板
+     * @param connectionFactory   Redis连接工厂
+     * @param eventPublisher      事件发布器
+     * @param usersMapper         用户数据访问层
+     * @param shardTemplate       用户分片路由模板
+     * @param streamKey           Stream Key
+     * @param nodeId              节点标识，为空时使用主机名
+     * @param batchSize           单次拉取的最大事件数
+     * @param dedupCapacity       去重表最多记录的用户数
+     * @param staleGroupIdleMs    其他节点的消费组空闲多久后删除（毫秒）
+     */
+    public UserChangeStreamSubscriber(StringRedisTemplate stringRedisTemplate, RedisConnectionFactory connectionFactory,
+                                      ApplicationEventPublisher eventPublisher, UsersMapper usersMapper,
+                                      UserShardTemplate shardTemplate,
+                                      @Value("${afang.outbox.stream-key:stream:user-changed}") String streamKey,
+                                      @Value("${afang.outbox.node-id:}") String nodeId,
+                                      @Value("${afang.outbox.batch-size:200}") int batchSize,
+                                      @Value("${afang.outbox.dedup-capacity:100000}") int dedupCapacity,
+                                      @Value("${afang.outbox.stale-group-idle-ms:86400000}") long staleGroupIdleMs) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.connectionFactory = connectionFactory;
+        this.eventPublisher = eventPublisher;
+        this.usersMapper = usersMapper;
+        this.shardTemplate = shardTemplate;
+        this.streamKey = streamKey;
+        String node = nodeId.isBlank() ? hostName() : nodeId;
+        this.consumer = Consumer.from(GROUP_PREFIX + node, node);
+        this.batchSize = batchSize;
+        this.staleGroupIdleMs = staleGroupIdleMs;
+        this.lastEventIds = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > dedupCapacity;
+            }
+        };
+    }
+
+    /**
+     * 启动订阅
+     * 首次启动时从Stream末尾开始建组；重启时先重放未ACK的事件，再从消费组位置继续
+     */
+    @Override
+    public void start() {
+        try {
+            createGroupIfAbsent();
+            replayPending();
+        } catch (Exception e) {
+            log.error("用户变更Stream订阅初始化失败，错误信息：{}", e.getMessage(), e);
+        }
+        container = StreamMessageListenerContainer.create(connectionFactory,
+                StreamMessageListenerContainer.StreamMessageListenerContainerOptions.builder()
+                        .batchSize(batchSize)
+                        .pollTimeout(Duration.ofSeconds(1))
+                        .errorHandler(e -> log.warn("读取用户变更Stream失败，错误信息：{}", e.getMessage()))
+                        .build());
+        // 读取失败（如Redis短暂不可用）时不取消订阅，恢复后继续消费
+        container.register(StreamMessageListenerContainer.StreamReadRequest
+                .builder(StreamOffset.create(streamKey, ReadOffset.lastConsumed()))
+                .consumer(consumer)
+                .autoAcknowledge(false)
+                .cancelOnError(e -> false)
+                .build(), this::handle);
+        container.start();
+        running = true;
+        log.info("用户变更Stream订阅已启动，Stream：{}，消费组：{}", streamKey, consumer.getGroup());
+    }
+
+    /**
+     * 停止订阅并删除本节点的消费组
+     */
+    @Override
+    public void stop() {
+        if (container != null) {
+            container.stop();
+        }
+        running = false;
+        try {
+            stringRedisTemplate.opsForStream().destroyGroup(streamKey, consumer.getGroup());
+        } catch (Exception e) {
+            log.warn("删除用户变更Stream消费组失败，消费组：{}，错误信息：{}", consumer.getGroup(), e.getMessage());
+        }
+    }
+
+    /**
+     * 删除其他节点遗留的消费组：所有消费者都空闲超过阈值时视为节点已不存在。
+     * 没有消费者的消费组无法判断空闲时长，保留不动
+     */
+    @Scheduled(fixedDelayString = "${afang.outbox.group-cleanup-interval-ms:3600000}")
+    public void destroyStaleGroups() {
+        try {
+            for (StreamInfo.XInfoGroup group : stringRedisTemplate.opsForStream().groups(streamKey).stream().toList()) {
+                String name = group.groupName();
+                if (!name.startsWith(GROUP_PREFIX) || name.equals(consumer.getGroup()) || group.consumerCount() == 0) {
+                    continue;
+                }
+                boolean stale = stringRedisTemplate.opsForStream().consumers(streamKey, name).stream()
+                        .allMatch(c -> c.idleTimeMs() > staleGroupIdleMs);
+                if (stale) {
+                    stringRedisTemplate.opsForStream().destroyGroup(streamKey, name);
+                    log.info("删除长时间空闲的用户变更Stream消费组：{}，待确认事件数：{}", name, group.pendingCount());
+                }
+            }
+        } catch (Exception e) {
+            log.warn("清理用户变更Stream消费组失败，错误信息：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 是否运行中
+     *
+     * @return 运行中返回true
+     */
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 处理一条Stream事件：去重、回查最新数据、发布本地事件、ACK
+     *
+     * @param record Stream事件
+     */
+    void handle(MapRecord<String, ?, ?> record) {
+        try {
+            Map<?, ?> fields = record.getValue();
+            Long eventId = Long.valueOf(String.valueOf(fields.get("eventId")));
+            Long userId = Long.valueOf(String.valueOf(fields.get("userId")));
+            Long last = lastEventIds.get(userId);
+            if (last == null || eventId > last) {
+                UserChangedEvent.Type type = UserChangedEvent.Type.valueOf(String.valueOf(fields.get("type")));
+                // 逻辑删除的行查不到，与删除事件一样按null处理；绕过二级缓存，避免读到写入方尚未失效的旧值
+                Users user = type == UserChangedEvent.Type.DELETED
+                        ? null
+                        : shardTemplate.onId(userId, null, () -> usersMapper.selectByIdUncached(userId));
+                eventPublisher.publishEvent(new UserChangedEvent(this, userId, type, user));
+                lastEventIds.put(userId, eventId);
+            }
+            stringRedisTemplate.opsForStream().acknowledge(streamKey, consumer.getGroup(), record.getId());
+        } catch (Exception e) {
+            // 不ACK，重启后从待确认列表重放
+            log.warn("处理用户变更事件失败，事件：{}，错误信息：{}", record.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 创建本节点的消费组，已存在时忽略
+     */
+    private void createGroupIfAbsent() {
+        try {
+            // MKSTREAM：Stream尚不存在（还没有任何事件）时一并创建
+            stringRedisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands()
+                    .xGroupCreate(streamKey.getBytes(StandardCharsets.UTF_8), consumer.getGroup(), ReadOffset.latest(), true));
+        } catch (RedisSystemException e) {
+            if (e.getMostSpecificCause().getMessage() == null
+                    || !e.getMostSpecificCause().getMessage().contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 重放本节点已读取但未ACK的事件
+     */
+    private void replayPending() {
+        int replayed = 0;
+        ReadOffset offset = ReadOffset.from("0");
+        while (true) {
+            List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().read(consumer,
+                    StreamReadOptions.empty().count(batchSize), StreamOffset.create(streamKey, offset));
+            if (records == null || records.isEmpty()) {
+                break;
+            }
+            records.forEach(this::handle);
+            replayed += records.size();
+            // 处理失败的事件仍在待确认列表中，从最后一条之后继续，避免反复读取
+            offset = ReadOffset.from(records.get(records.size() - 1).getId());
+        }
+        if (replayed > 0) {
+            log.info("重放未确认的用户变更事件{}条", replayed);
+        }
+    }
+
+    /**
+     * 获取主机名
+     *
+     * @return 主机名，获取失败时为local
+     */
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "local";
+        }
+    }
+}
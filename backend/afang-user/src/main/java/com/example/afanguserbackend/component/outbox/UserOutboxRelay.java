@@ -0,0 +1,189 @@
+package com.example.afanguserbackend.component.outbox;
+
+import com.example.afanguserbackend.component.sharding.UserShardTemplate;
+import com.example.afanguserbackend.mapper.outbox.UserOutboxMapper;
+import com.example.afanguserbackend.model.entity.outbox.UserOutbox;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户变更发件箱中继。
+ * <p>
+ * 定时轮询每个分片的发件箱，把未投递的事件批量写入Redis Stream后标记为已投递：
+ * <ul>
+ *   <li>以 SELECT ... FOR UPDATE SKIP LOCKED 领取一批事件，多个节点同时轮询时各自领取不同的行，互不阻塞</li>
+ *   <li>一批事件通过管道一次往返XADD，全部成功后在同一事务中标记投递；任一失败则回滚，整批留待下次重试</li>
+ *   <li>标记投递前崩溃会导致重复投递，因此语义为至少一次，消费方按事件ID去重</li>
+ * </ul>
+ * 已投递的事件保留一段时间后清理，Stream按近似MAXLEN裁剪。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class UserOutboxRelay {
+
+    /**
+     * 发件箱数据访问
+     */
+    private final UserOutboxMapper userOutboxMapper;
+
+    /**
+     * 分片操作模板
+     */
+    private final UserShardTemplate shardTemplate;
+
+    /**
+     * 事务模板
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Redis字符串操作模板
+     */
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * Stream Key
+     */
+    private final String streamKey;
+
+    /**
+     * 单次领取的最大事件数
+     */
+    private final int batchSize;
+
+    /**
+     * Stream近似最大长度
+     */
+    private final long maxLength;
+
+    /**
+     * 已投递事件的保留小时数
+     */
+    private final int retentionHours;
+
+    /**
+     * 构造函数
+     *
+     * @param userOutboxMapper    发件箱数据访问
+     * @param shardTemplate       分片操作模板
+     * @param transactionTemplate 事务模板
+     * @param stringRedisTemplate Redis字符串操作模板
+     * @param streamKey           Stream Key
+     * @param batchSize           单次领取的最大事件数
+     * @param maxLength           Stream近似最大长度
+     * @param retentionHours      已投递事件的保留小时数
+     */
+    public UserOutboxRelay(UserOutboxMapper userOutboxMapper, UserShardTemplate shardTemplate,
+                           TransactionTemplate transactionTemplate, StringRedisTemplate stringRedisTemplate,
+                           @Value("${afang.outbox.stream-key:stream:user-changed}") String streamKey,
+                           @Value("${afang.outbox.batch-size:200}") int batchSize,
+                           @Value("${afang.outbox.stream-max-length:100000}") long maxLength,
+                           @Value("${afang.outbox.retention-hours:24}") int retentionHours) {
+        this.userOutboxMapper = userOutboxMapper;
+        this.shardTemplate = shardTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.streamKey = streamKey;
+        this.batchSize = batchSize;
+        this.maxLength = maxLength;
+        this.retentionHours = retentionHours;
+    }
+
+    /**
+     * 定时投递各分片的未投递事件
+     * 一批满载时立即继续领取下一批，直到该分片积压清空
+     */
+    @Scheduled(fixedDelayString = "${afang.outbox.relay-interval-ms:200}")
+    public void relay() {
+        for (String shard : shardTemplate.configuredShards()) {
+            try {
+                int relayed;
+                do {
+                    relayed = shardTemplate.onShard(shard, () -> transactionTemplate.execute(status -> relayBatch()));
+                } while (relayed >= batchSize);
+            } catch (Exception e) {
+                log.warn("用户变更事件投递失败，分片：{}，等待下次重试，错误信息：{}", shard, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 定时清理已投递的历史事件并裁剪Stream
+     */
+    @Scheduled(fixedDelayString = "${afang.outbox.cleanup-interval-ms:600000}")
+    public void cleanup() {
+        LocalDateTime before = LocalDateTime.now().minusHours(retentionHours);
+        for (String shard : shardTemplate.configuredShards()) {
+            try {
+                int deleted;
+                do {
+                    deleted = shardTemplate.onShard(shard, () -> userOutboxMapper.deleteDelivered(before, batchSize * 5));
+                } while (deleted >= batchSize * 5);
+            } catch (Exception e) {
+                log.warn("清理已投递的用户变更事件失败，分片：{}，错误信息：{}", shard, e.getMessage());
+            }
+        }
+        try {
+            stringRedisTemplate.opsForStream().trim(streamKey, maxLength, true);
+        } catch (Exception e) {
+            log.warn("裁剪用户变更Stream失败，错误信息：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 在当前事务中领取并投递一批事件
+     *
+     * @return 投递的事件数
+     */
+    private int relayBatch() {
+        List<UserOutbox> batch = userOutboxMapper.lockUndelivered(batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        byte[] key = streamKey.getBytes(StandardCharsets.UTF_8);
+        RedisStreamCommands.XAddOptions options = RedisStreamCommands.XAddOptions.maxlen(maxLength).approximateTrimming(true);
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (UserOutbox event : batch) {
+                MapRecord<byte[], byte[], byte[]> record = StreamRecords.newRecord().in(key).ofMap(Map.of(
+                        bytes("eventId"), bytes(event.getId().toString()),
+                        bytes("userId"), bytes(event.getUserId().toString()),
+                        bytes("type"), bytes(event.getEventType())));
+                connection.streamCommands().xAdd(record, options);
+            }
+            return null;
+        });
+        if (results.size() != batch.size() || results.stream().anyMatch(r -> r == null || r instanceof Throwable)) {
+            throw new IllegalStateException("部分用户变更事件写入Stream失败");
+        }
+        userOutboxMapper.markDelivered(batch.stream().map(UserOutbox::getId).toList(), LocalDateTime.now());
+        log.debug("投递用户变更事件{}条", batch.size());
+        return batch.size();
+    }
+
+    /**
+     * 字符串转UTF-8字节
+     *
+     * @param value 字符串
+     * @return 字节数组
+     */
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.afanguserbackend.component.replica;
+
+import com.example.afanguserbackend.model.entity.user.Users;
+
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 堆内用户副本存储。
+ * <p>
+ * 以{@link ConcurrentHashMap}保存用户行及三个二级索引；角色、状态等取值很少的字符串在写入时去重共享，
+ * 每个用户只保留一份对象，不保存密码。二级索引只在键仍指向同一用户时才删除，避免旧值误删别人刚占用的键。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class HeapUserReplicaStore implements UserReplicaStore {
+
+    /**
+     * ID到用户
+     */
+    private final Map<Long, Users> byId = new ConcurrentHashMap<>();
+
+    /**
+     * 手机号到ID
+     */
+    private final Map<String, Long> byPhone = new ConcurrentHashMap<>();
+
+    /**
+     * 小写邮箱到ID
+     */
+    private final Map<String, Long> byEmail = new ConcurrentHashMap<>();
+
+    /**
+     * 小写用户名到ID
+     */
+    private final Map<String, Long> byUsername = new ConcurrentHashMap<>();
+
+    /**
+     * 共享的低基数字符串（角色、状态）
+     */
+    private final Map<String, String> shared = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(Users user) {
+        Users copy = user.toBuilder()
+                .password(null)
+                .userRole(share(user.getUserRole()))
+                .status(share(user.getStatus()))
+                .build();
+        Long id = copy.getId();
+        Users old = byId.put(id, copy);
+        // 先登记新键，再删除已变化的旧键，并发读取不会看到键暂时缺失
+        reindex(byPhone, old == null ? null : old.getPhone(), copy.getPhone(), id);
+        reindex(byEmail, old == null ? null : lower(old.getEmail()), lower(copy.getEmail()), id);
+        reindex(byUsername, old == null ? null : lower(old.getUsername()), lower(copy.getUsername()), id);
+    }
+
+    @Override
+    public void remove(long id) {
+        Users old = byId.remove(id);
+        if (old != null) {
+            unindex(byPhone, old.getPhone(), id);
+            unindex(byEmail, lower(old.getEmail()), id);
+            unindex(byUsername, lower(old.getUsername()), id);
+        }
+    }
+
+    @Override
+    public Users get(long id) {
+        Users user = byId.get(id);
+        return user == null ? null : user.toBuilder().build();
+    }
+
+    @Override
+    public LocalDateTime updateTimeOf(long id) {
+        Users user = byId.get(id);
+        return user == null ? null : user.getUpdateTime();
+    }
+
+    @Override
+    public Long idByPhone(String phone) {
+        return phone == null ? null : byPhone.get(phone);
+    }
+
+    @Override
+    public Long idByEmail(String email) {
+        return email == null ? null : byEmail.get(lower(email));
+    }
+
+    @Override
+    public Long idByUsername(String username) {
+        return username == null ? null : byUsername.get(lower(username));
+    }
+
+    @Override
+    public int size() {
+        return byId.size();
+    }
+
+    @Override
+    public void clear() {
+        byId.clear();
+        byPhone.clear();
+        byEmail.clear();
+        byUsername.clear();
+    }
+
+    /**
+     * 更新二级索引
+     *
+     * @param index  索引
+     * @param oldKey 旧键，为空时忽略
+     * @param newKey 新键，为空时忽略
+     * @param id     用户ID
+     */
+    private static void reindex(Map<String, Long> index, String oldKey, String newKey, Long id) {
+        if (newKey != null) {
+            index.put(newKey, id);
+        }
+        if (oldKey != null && !oldKey.equals(newKey)) {
+            index.remove(oldKey, id);
+        }
+    }
+
+    /**
+     * 删除二级索引，只有键仍指向该用户时才删除
+     *
+     * @param index 索引
+     * @param key   键，为空时忽略
+     * @param id    用户ID
+     */
+    private static void unindex(Map<String, Long> index, String key, Long id) {
+        if (key != null) {
+            index.remove(key, id);
+        }
+    }
+
+    /**
+     * 获取共享的字符串实例
+     *
+     * @param value 字符串
+     * @return 共享实例
+     */
+    private String share(String value) {
+        return value == null ? null : shared.computeIfAbsent(value, v -> v);
+    }
+
+    /**
+     * 转小写
+     *
+     * @param value 字符串
+     * @return 小写字符串，为空时为null
+     */
+    private static String lower(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.afanguserbackend.component.replica;
+
+import java.util.function.LongPredicate;
+
+/**
+ * 以long为键、long为值的开放寻址哈希索引。
+ * <p>
+ * 键和值分别存放在两个基本类型数组中，没有每个条目的对象，条目数再多也只增加两个数组的大小；
+ * 线性探测，删除时向后移位补洞而不留墓碑，装载因子超过阈值时扩容一倍。
+ * 同一个键可以对应多个值（用于字符串哈希可能冲突的二级索引），唯一键场景使用{@link #put}。
+ * 键0保留为空槽标记。非线程安全，由调用方加锁。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+final class LongHashIndex {
+
+    /**
+     * 最大装载因子
+     */
+    private static final double MAX_LOAD = 0.6;
+
+    /**
+     * 键数组，0表示空槽
+     */
+    private long[] keys;
+
+    /**
+     * 值数组
+     */
+    private long[] values;
+
+    /**
+     * 容量减一，容量始终为2的幂
+     */
+    private int mask;
+
+    /**
+     * 条目数
+     */
+    private int size;
+
+    /**
+     * 构造函数
+     *
+     * @param expected 预期条目数
+     */
+    LongHashIndex(int expected) {
+        int capacity = Integer.highestOneBit((int) Math.max(16, Math.min(1 << 30, expected / MAX_LOAD)) - 1) << 1;
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * 条目数
+     *
+     * @return 条目数
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * 查询键对应的第一个值
+     *
+     * @param key          键，不能为0
+     * @param defaultValue 键不存在时的返回值
+     * @return 值
+     */
+    long get(long key, long defaultValue) {
+        long[] k = keys;
+        int m = mask;
+        for (int i = slot(key, m), probes = 0; k[i] != 0 && probes <= m; i = (i + 1) & m, probes++) {
+            if (k[i] == key) {
+                return values[i];
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * 查找键对应的第一个满足条件的值
+     *
+     * @param key       键，不能为0
+     * @param predicate 值的判定条件
+     * @param notFound  没有满足条件的值时的返回值
+     * @return 值
+     */
+    long find(long key, LongPredicate predicate, long notFound) {
+        long[] k = keys;
+        long[] v = values;
+        int m = mask;
+        for (int i = slot(key, m), probes = 0; k[i] != 0 && probes <= m; i = (i + 1) & m, probes++) {
+            if (k[i] == key && predicate.test(v[i])) {
+                return v[i];
+            }
+        }
+        return notFound;
+    }
+
+    /**
+     * 写入唯一键，已存在时替换值
+     *
+     * @param key   键，不能为0
+     * @param value 值
+     * @param absent 键原本不存在时的返回值
+     * @return 原来的值
+     */
+    long put(long key, long value, long absent) {
+        int i = slot(key, mask);
+        for (; keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                long old = values[i];
+                values[i] = value;
+                return old;
+            }
+        }
+        insertAt(i, key, value);
+        return absent;
+    }
+
+    /**
+     * 追加一个条目，不检查键是否已存在
+     *
+     * @param key   键，不能为0
+     * @param value 值
+     */
+    void add(long key, long value) {
+        int i = slot(key, mask);
+        while (keys[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        insertAt(i, key, value);
+    }
+
+    /**
+     * 删除键对应的第一个条目
+     *
+     * @param key    键
+     * @param absent 键不存在时的返回值
+     * @return 被删除的值
+     */
+    long removeKey(long key, long absent) {
+        for (int i = slot(key, mask); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                long old = values[i];
+                deleteAt(i);
+                return old;
+            }
+        }
+        return absent;
+    }
+
+    /**
+     * 删除指定的键值对
+     *
+     * @param key   键
+     * @param value 值
+     * @return 存在并删除返回true
+     */
+    boolean removeEntry(long key, long value) {
+        for (int i = slot(key, mask); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key && values[i] == value) {
+                deleteAt(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 清空
+     */
+    void clear() {
+        keys = new long[16];
+        values = new long[16];
+        mask = 15;
+        size = 0;
+    }
+
+    /**
+     * 在空槽写入条目，必要时扩容
+     *
+     * @param i     空槽位置
+     * @param key   键
+     * @param value 值
+     */
+    private void insertAt(int i, long key, long value) {
+        keys[i] = key;
+        values[i] = value;
+        if (++size > (mask + 1) * MAX_LOAD) {
+            resize();
+        }
+    }
+
+    /**
+     * 删除槽位上的条目，并把后续探测链上的条目前移补洞
+     *
+     * @param hole 被删除的槽位
+     */
+    private void deleteAt(int hole) {
+        size--;
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            long key = keys[i];
+            if (key == 0) {
+                break;
+            }
+            int home = slot(key, mask);
+            // 条目的理想位置不在 (hole, i] 区间内时，可以移动到洞里
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = key;
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        keys[hole] = 0;
+        values[hole] = 0;
+    }
+
+    /**
+     * 扩容一倍并重新散列
+     * 先构建新数组再整体替换；并发的乐观读仍可能看到新旧数组与掩码的混合，由调用方校验后重读
+     */
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        int capacity = oldKeys.length << 1;
+        long[] newKeys = new long[capacity];
+        long[] newValues = new long[capacity];
+        int newMask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != 0) {
+                int i = slot(oldKeys[j], newMask);
+                while (newKeys[i] != 0) {
+                    i = (i + 1) & newMask;
+                }
+                newKeys[i] = oldKeys[j];
+                newValues[i] = oldValues[j];
+            }
+        }
+        values = newValues;
+        keys = newKeys;
+        mask = newMask;
+    }
+
+    /**
+     * 计算键的理想槽位
+     *
+     * @param key  键
+     * @param mask 容量减一
+     * @return 槽位
+     */
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,583 @@
+package com.example.afanguserbackend.component.replica;
+
+import com.example.afanguserbackend.model.entity.user.Users;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * 堆外用户副本存储。
+ * <p>
+ * 每个用户编码为一条二进制记录，存放在直接内存{@link ByteBuffer}切分出的定长槽位中，堆上不保留任何用户对象：
+ * <ul>
+ *   <li>记录布局：定长头部（ID、三个时间、登录次数、版本号、6个字符串的字节长度）+ 依次排列的UTF-8字符串；
+ *       不保存密码，副本的读取方都不需要它，也避免把密码哈希长期留在进程内存中</li>
+ *   <li>两档槽位（256字节、1024字节），常见用户落在小槽位；超过大槽位的记录不保存，查询未命中后由调用方回退数据库</li>
+ *   <li>ID索引为开放寻址的long到槽位引用映射；手机号、邮箱、用户名索引以字符串的64位哈希为键、用户ID为值，命中后比对记录中的原值</li>
+ *   <li>查询只在需要时解码：取更新时间只读8个字节，二级索引比对只解码对应字段，完整的{@link Users}只在返回时构造</li>
+ * </ul>
+ * 写操作持有{@link StampedLock}写锁；读操作先乐观读，校验失败（期间发生写入）再加读锁重读。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+class OffHeapUserReplicaStore implements UserReplicaStore {
+
+    /**
+     * 槽位档位（字节）
+     */
+    private static final int[] SLOT_SIZES = {256, 1024};
+
+    /**
+     * 空值标记
+     */
+    private static final long NULL_LONG = Long.MIN_VALUE;
+
+    /**
+     * 空值标记
+     */
+    private static final int NULL_INT = Integer.MIN_VALUE;
+
+    /**
+     * 不存在的槽位引用
+     */
+    private static final long NO_REF = -1L;
+
+    /**
+     * 字符串字段数
+     */
+    private static final int STRING_FIELDS = 6;
+
+    /**
+     * 各字段偏移
+     */
+    private static final int ID = 0, CREATE_TIME = 8, UPDATE_TIME = 16, LAST_LOGIN_TIME = 24,
+            LOGIN_COUNT = 32, VERSION = 36, LENGTHS = 40, HEADER = LENGTHS + STRING_FIELDS * 2;
+
+    /**
+     * 字符串字段序号
+     */
+    private static final int USERNAME = 0, EMAIL = 1, PHONE = 2, AVATAR = 3, USER_ROLE = 4, STATUS = 5;
+
+    /**
+     * 各档槽位分配器
+     */
+    private final SlabArena[] arenas;
+
+    /**
+     * ID到槽位引用
+     */
+    private final LongHashIndex byId = new LongHashIndex(1024);
+
+    /**
+     * 手机号哈希到ID
+     */
+    private final LongHashIndex byPhone = new LongHashIndex(1024);
+
+    /**
+     * 小写邮箱哈希到ID
+     */
+    private final LongHashIndex byEmail = new LongHashIndex(1024);
+
+    /**
+     * 小写用户名哈希到ID
+     */
+    private final LongHashIndex byUsername = new LongHashIndex(1024);
+
+    /**
+     * 读写锁
+     */
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * 因记录过大未保存的用户数
+     */
+    private final AtomicLong oversized = new AtomicLong();
+
+    /**
+     * 构造函数
+     *
+     * @param chunkBytes 每次向操作系统申请的直接内存块大小，单块最大不超过2GB
+     */
+    OffHeapUserReplicaStore(long chunkBytes) {
+        arenas = new SlabArena[SLOT_SIZES.length];
+        for (int i = 0; i < SLOT_SIZES.length; i++) {
+            arenas[i] = new SlabArena(SLOT_SIZES[i], chunkBytes);
+        }
+    }
+
+    @Override
+    public void put(Users user) {
+        byte[][] strings = {
+                utf8(user.getUsername()), utf8(user.getEmail()), utf8(user.getPhone()),
+                utf8(user.getAvatar()), utf8(user.getUserRole()), utf8(user.getStatus())};
+        int length = HEADER;
+        for (byte[] s : strings) {
+            length += s == null ? 0 : s.length;
+        }
+        int arena = arenaFor(length);
+        long id = user.getId();
+
+        long stamp = lock.writeLock();
+        try {
+            unlink(id);
+            if (arena < 0) {
+                if (oversized.incrementAndGet() % 1000 == 1) {
+                    log.warn("用户记录超过最大槽位，不保存到堆外副本，用户ID：{}，记录长度：{}", id, length);
+                }
+                return;
+            }
+            int slot = arenas[arena].allocate();
+            ByteBuffer buffer = arenas[arena].buffer(slot);
+            int base = arenas[arena].offset(slot);
+            buffer.putLong(base + ID, id);
+            buffer.putLong(base + CREATE_TIME, epochSecond(user.getCreateTime()));
+            buffer.putLong(base + UPDATE_TIME, epochSecond(user.getUpdateTime()));
+            buffer.putLong(base + LAST_LOGIN_TIME, epochSecond(user.getLastLoginTime()));
+            buffer.putInt(base + LOGIN_COUNT, user.getLoginCount() == null ? NULL_INT : user.getLoginCount());
+            buffer.putInt(base + VERSION, user.getVersion() == null ? NULL_INT : user.getVersion());
+            int position = base + HEADER;
+            for (int f = 0; f < STRING_FIELDS; f++) {
+                byte[] s = strings[f];
+                buffer.putShort(base + LENGTHS + f * 2, (short) (s == null ? -1 : s.length));
+                if (s != null) {
+                    buffer.put(position, s);
+                    position += s.length;
+                }
+            }
+            byId.put(id, ref(arena, slot), NO_REF);
+            link(byPhone, user.getPhone(), id);
+            link(byEmail, lower(user.getEmail()), id);
+            link(byUsername, lower(user.getUsername()), id);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void remove(long id) {
+        long stamp = lock.writeLock();
+        try {
+            unlink(id);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Users get(long id) {
+        return read(() -> {
+            long ref = byId.get(id, NO_REF);
+            return ref == NO_REF ? null : decode(ref);
+        });
+    }
+
+    @Override
+    public LocalDateTime updateTimeOf(long id) {
+        return read(() -> {
+            long ref = byId.get(id, NO_REF);
+            return ref == NO_REF ? null : dateTime(bufferOf(ref).getLong(offsetOf(ref) + UPDATE_TIME));
+        });
+    }
+
+    @Override
+    public Long idByPhone(String phone) {
+        return phone == null ? null : lookup(byPhone, PHONE, phone);
+    }
+
+    @Override
+    public Long idByEmail(String email) {
+        return email == null ? null : lookup(byEmail, EMAIL, lower(email));
+    }
+
+    @Override
+    public Long idByUsername(String username) {
+        return username == null ? null : lookup(byUsername, USERNAME, lower(username));
+    }
+
+    @Override
+    public int size() {
+        return read(byId::size);
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            for (SlabArena arena : arenas) {
+                arena.clear();
+            }
+            byId.clear();
+            byPhone.clear();
+            byEmail.clear();
+            byUsername.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 在乐观读下执行读取，期间发生写入（或因并发修改读到不一致的数据而出错）时加读锁重读
+     *
+     * @param reader 读取逻辑
+     * @param <T>    结果类型
+     * @return 读取结果
+     */
+    private <T> T read(Supplier<T> reader) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = reader.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // 并发写入导致的不一致读取，下面加锁重读
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 通过二级索引查询用户ID，命中哈希后比对记录中的字段原值
+     *
+     * @param index 二级索引
+     * @param field 字段序号
+     * @param key   查询值（邮箱、用户名已转小写）
+     * @return 用户ID，不存在时为null
+     */
+    private Long lookup(LongHashIndex index, int field, String key) {
+        long hash = hash(key);
+        return read(() -> {
+            long id = index.find(hash, candidate -> {
+                long ref = byId.get(candidate, NO_REF);
+                if (ref == NO_REF) {
+                    return false;
+                }
+                String value = readString(bufferOf(ref), offsetOf(ref), field);
+                return value != null && key.equals(field == PHONE ? value : lower(value));
+            }, NO_REF);
+            return id == NO_REF ? null : id;
+        });
+    }
+
+    /**
+     * 删除用户的槽位和全部索引，调用方持有写锁
+     *
+     * @param id 用户ID
+     */
+    private void unlink(long id) {
+        long ref = byId.removeKey(id, NO_REF);
+        if (ref == NO_REF) {
+            return;
+        }
+        ByteBuffer buffer = bufferOf(ref);
+        int base = offsetOf(ref);
+        unlink(byPhone, readString(buffer, base, PHONE), id);
+        unlink(byEmail, lower(readString(buffer, base, EMAIL)), id);
+        unlink(byUsername, lower(readString(buffer, base, USERNAME)), id);
+        arenas[(int) (ref >>> 32)].free((int) ref);
+    }
+
+    /**
+     * 登记二级索引
+     *
+     * @param index 二级索引
+     * @param key   键，为空时忽略
+     * @param id    用户ID
+     */
+    private static void link(LongHashIndex index, String key, long id) {
+        if (key != null) {
+            index.add(hash(key), id);
+        }
+    }
+
+    /**
+     * 删除二级索引
+     *
+     * @param index 二级索引
+     * @param key   键，为空时忽略
+     * @param id    用户ID
+     */
+    private static void unlink(LongHashIndex index, String key, long id) {
+        if (key != null) {
+            index.removeEntry(hash(key), id);
+        }
+    }
+
+    /**
+     * 把记录解码为用户对象
+     *
+     * @param ref 槽位引用
+     * @return 用户对象
+     */
+    private Users decode(long ref) {
+        ByteBuffer buffer = bufferOf(ref);
+        int base = offsetOf(ref);
+        int loginCount = buffer.getInt(base + LOGIN_COUNT);
+        int version = buffer.getInt(base + VERSION);
+        return Users.builder()
+                .id(buffer.getLong(base + ID))
+                .username(readString(buffer, base, USERNAME))
+                .email(readString(buffer, base, EMAIL))
+                .phone(readString(buffer, base, PHONE))
+                .avatar(readString(buffer, base, AVATAR))
+                .userRole(readString(buffer, base, USER_ROLE))
+                .status(readString(buffer, base, STATUS))
+                .createTime(dateTime(buffer.getLong(base + CREATE_TIME)))
+                .updateTime(dateTime(buffer.getLong(base + UPDATE_TIME)))
+                .lastLoginTime(dateTime(buffer.getLong(base + LAST_LOGIN_TIME)))
+                .loginCount(loginCount == NULL_INT ? null : loginCount)
+                .version(version == NULL_INT ? null : version)
+                .deleted(0)
+                .build();
+    }
+
+    /**
+     * 读取一个字符串字段
+     *
+     * @param buffer 记录所在的内存块
+     * @param base   记录起始偏移
+     * @param field  字段序号
+     * @return 字段值，为空时为null
+     */
+    private static String readString(ByteBuffer buffer, int base, int field) {
+        int position = base + HEADER;
+        for (int f = 0; f < field; f++) {
+            position += Math.max(0, buffer.getShort(base + LENGTHS + f * 2));
+        }
+        int length = buffer.getShort(base + LENGTHS + field * 2);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 选择能容纳记录的最小槽位档位
+     *
+     * @param length 记录长度
+     * @return 档位序号，超过最大档位时为-1
+     */
+    private static int arenaFor(int length) {
+        for (int i = 0; i < SLOT_SIZES.length; i++) {
+            if (length <= SLOT_SIZES[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 槽位引用：高32位为档位，低32位为槽位序号
+     *
+     * @param arena 档位
+     * @param slot  槽位序号
+     * @return 槽位引用
+     */
+    private static long ref(int arena, int slot) {
+        return ((long) arena << 32) | (slot & 0xFFFFFFFFL);
+    }
+
+    /**
+     * 槽位引用所在的内存块
+     *
+     * @param ref 槽位引用
+     * @return 内存块
+     */
+    private ByteBuffer bufferOf(long ref) {
+        return arenas[(int) (ref >>> 32)].buffer((int) ref);
+    }
+
+    /**
+     * 槽位引用在内存块中的偏移
+     *
+     * @param ref 槽位引用
+     * @return 偏移
+     */
+    private int offsetOf(long ref) {
+        return arenas[(int) (ref >>> 32)].offset((int) ref);
+    }
+
+    /**
+     * 字符串的64位FNV-1a哈希，保证非0
+     *
+     * @param value 字符串
+     * @return 哈希值
+     */
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * 字符串转UTF-8字节
+     *
+     * @param value 字符串
+     * @return 字节数组，为空时为null
+     */
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 转小写
+     *
+     * @param value 字符串
+     * @return 小写字符串，为空时为null
+     */
+    private static String lower(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 时间编码为秒数
+     *
+     * @param time 时间
+     * @return 秒数，为空时为空值标记
+     */
+    private static long epochSecond(LocalDateTime time) {
+        return time == null ? NULL_LONG : time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * 秒数解码为时间
+     *
+     * @param seconds 秒数
+     * @return 时间，空值标记时为null
+     */
+    private static LocalDateTime dateTime(long seconds) {
+        return seconds == NULL_LONG ? null : LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * 定长槽位分配器
+     * 按块向操作系统申请直接内存，块内切分为定长槽位，释放的槽位进入空闲栈复用
+     */
+    private static final class SlabArena {
+
+        /**
+         * 槽位大小
+         */
+        private final int slotSize;
+
+        /**
+         * 每块的槽位数
+         */
+        private final int slotsPerChunk;
+
+        /**
+         * 已申请的内存块
+         */
+        private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+        /**
+         * 空闲槽位栈
+         */
+        private int[] free = new int[64];
+
+        /**
+         * 空闲槽位数
+         */
+        private int freeCount;
+
+        /**
+         * 从未使用过的下一个槽位
+         */
+        private int next;
+
+        /**
+         * 构造函数
+         *
+         * @param slotSize   槽位大小
+         * @param chunkBytes 内存块大小
+         */
+        SlabArena(int slotSize, long chunkBytes) {
+            this.slotSize = slotSize;
+            // 单个ByteBuffer的容量是int
+            this.slotsPerChunk = (int) Math.max(1, Math.min(Integer.MAX_VALUE / slotSize, chunkBytes / slotSize));
+        }
+
+        /**
+         * 分配一个槽位
+         *
+         * @return 槽位序号
+         */
+        int allocate() {
+            if (freeCount > 0) {
+                return free[--freeCount];
+            }
+            if (next == chunks.length * slotsPerChunk) {
+                List<ByteBuffer> grown = new ArrayList<>(List.of(chunks));
+                grown.add(ByteBuffer.allocateDirect(slotsPerChunk * slotSize));
+                chunks = grown.toArray(new ByteBuffer[0]);
+            }
+            return next++;
+        }
+
+        /**
+         * 释放槽位
+         *
+         * @param slot 槽位序号
+         */
+        void free(int slot) {
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, free.length * 2);
+            }
+            free[freeCount++] = slot;
+        }
+
+        /**
+         * 槽位所在的内存块
+         *
+         * @param slot 槽位序号
+         * @return 内存块
+         */
+        ByteBuffer buffer(int slot) {
+            return chunks[slot / slotsPerChunk];
+        }
+
+        /**
+         * 槽位在内存块中的偏移
+         *
+         * @param slot 槽位序号
+         * @return 偏移
+         */
+        int offset(int slot) {
+            return (slot % slotsPerChunk) * slotSize;
+        }
+
+        /**
+         * 释放全部内存块，由GC回收直接内存
+         */
+        void clear() {
+            chunks = new ByteBuffer[0];
+            free = new int[64];
+            freeCount = 0;
+            next = 0;
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package com.example.afanguserbackend.component.replica;
+
+import com.example.afanguserbackend.component.event.UserChangedEvent;
+import com.example.afanguserbackend.component.sharding.UserShardTemplate;
+import com.example.afanguserbackend.mapper.user.UsersMapper;
+import com.example.afanguserbackend.model.entity.user.Users;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 节点内用户全量副本。
+ * <p>
+ * 开启后每个节点在内存中保存一份只读的users表副本，按ID、手机号、邮箱、用户名的查询直接命中内存哈希索引
+ * （堆内存储，或用户量达到百万级时使用的堆外存储）：
+ * <ul>
+ *   <li>启动时先记录所有分片的数据库时间作为水位，再把每个分片的ID范围切成若干段，用虚拟线程并行分段扫描加载；
+ *       加载失败时清空副本，间隔一段时间后重新加载</li>
+ *   <li>之后定时按 (update_time, id) 键集扫描水位之后的变更；update_time 精度为秒且事务提交晚于语句执行，
+ *       因此每次从“水位 - 重叠窗口”开始重扫，重复应用同一行是幂等的</li>
+ *   <li>删除为逻辑删除，已删除的行作为墓碑随变更扫描到达，从副本中移除</li>
+ *   <li>加载后新增的分片（如扩容迁移）没有水位，从最早时间开始按变更扫描补齐</li>
+ *   <li>收到用户变更事件时按事件携带的最新数据立即刷新，把常见更新的延迟从轮询间隔缩短到事件投递延迟</li>
+ * </ul>
+ * 副本的陈旧程度以轮询间隔为上界，未命中时调用方应回退到数据库查询。目前的读取方：
+ * <ul>
+ *   <li>注册前的手机号、邮箱、用户名唯一性预检（覆盖所有分片，并发或陈旧导致的漏检由数据库唯一约束兜底）</li>
+ *   <li>管理后台筛选结果的用户资料回填</li>
+ * </ul>
+ * 副本不保存密码；登录和认证需要最新的密码与状态，变更事件回查和乐观锁版本号需要最新数据，都不读副本。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class UserReplica {
+
+    /**
+     * 用户数据访问
+     */
+    private final UsersMapper usersMapper;
+
+    /**
+     * 分片操作模板
+     */
+    private final UserShardTemplate shardTemplate;
+
+    /**
+     * 副本存储
+     */
+    private final UserReplicaStore store;
+
+    /**
+     * 没有水位的分片从该时间开始扫描变更
+     */
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    /**
+     * 各分片的变更水位（已应用的最大update_time）
+     */
+    private final Map<String, LocalDateTime> watermarks = new ConcurrentHashMap<>();
+
+    /**
+     * 保证轮询与事件刷新对同一用户的写入不会交错
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * 最近一次轮询成功完成的时间戳（毫秒）
+     */
+    private final AtomicLong lastSyncMillis = new AtomicLong();
+
+    /**
+     * 是否开启副本
+     */
+    private final boolean enabled;
+
+    /**
+     * 每批扫描的行数
+     */
+    private final int batchSize;
+
+    /**
+     * 每个分片的并行加载段数
+     */
+    private final int loadParallelism;
+
+    /**
+     * 变更扫描的重叠窗口（秒）
+     */
+    private final int overlapSeconds;
+
+    /**
+     * 加载失败后重新加载的间隔（毫秒）
+     */
+    private final long loadRetryMs;
+
+    /**
+     * 副本是否已加载完成
+     */
+    private volatile boolean ready;
+
+    /**
+     * 构造函数
+     *
+     * @param usersMapper     用户数据访问
+     * @param shardTemplate   分片操作模板
+     * @param meterRegistry   指标注册表
+     * @param enabled         是否开启副本
+     * @param batchSize       每批扫描的行数
+     * @param loadParallelism 每个分片的并行加载段数
+     * @param overlapSeconds  变更扫描的重叠窗口（秒）
+     * @param loadRetryMs     加载失败后重新加载的间隔（毫秒）
+     * @param storeType       存储方式：heap（堆内）或 off-heap（堆外）
+     * @param chunkMb         堆外存储每次申请的直接内存块大小（MB）
+     */
+    public UserReplica(UsersMapper usersMapper, UserShardTemplate shardTemplate, MeterRegistry meterRegistry,
+                       @Value("${afang.replica.enabled:false}") boolean enabled,
+                       @Value("${afang.replica.batch-size:1000}") int batchSize,
+                       @Value("${afang.replica.load-parallelism:8}") int loadParallelism,
+                       @Value("${afang.replica.overlap-seconds:5}") int overlapSeconds,
+                       @Value("${afang.replica.load-retry-ms:30000}") long loadRetryMs,
+                       @Value("${afang.replica.store:heap}") String storeType,
+                       @Value("${afang.replica.off-heap-chunk-mb:16}") int chunkMb) {
+        this.usersMapper = usersMapper;
+        this.shardTemplate = shardTemplate;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.loadParallelism = Math.max(1, loadParallelism);
+        this.overlapSeconds = overlapSeconds;
+        this.loadRetryMs = loadRetryMs;
+        this.store = "off-heap".equals(storeType)
+                ? new OffHeapUserReplicaStore((long) chunkMb * 1024 * 1024)
+                : new HeapUserReplicaStore();
+        Gauge.builder("user.replica.size", store, UserReplicaStore::size)
+                .description("用户副本中的用户数").register(meterRegistry);
+        Gauge.builder("user.replica.staleness.seconds", lastSyncMillis,
+                        last -> last.get() == 0 ? Double.NaN : (System.currentTimeMillis() - last.get()) / 1000.0)
+                .description("距离上次成功同步的秒数").register(meterRegistry);
+    }
+
+    /**
+     * 副本是否可用
+     *
+     * @return 已开启且加载完成返回true
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 按ID查询
+     *
+     * @param id 用户ID
+     * @return 用户副本，副本不可用或未命中时为空
+     */
+    public Optional<Users> findById(Long id) {
+        return ready && id != null ? Optional.ofNullable(store.get(id)) : Optional.empty();
+    }
+
+    /**
+     * 按手机号查询
+     *
+     * @param phone 手机号
+     * @return 用户副本，副本不可用或未命中时为空
+     */
+    public Optional<Users> findByPhone(String phone) {
+        return ready ? findById(store.idByPhone(phone)) : Optional.empty();
+    }
+
+    /**
+     * 按邮箱查询，不区分大小写
+     *
+     * @param email 邮箱
+     * @return 用户副本，副本不可用或未命中时为空
+     */
+    public Optional<Users> findByEmail(String email) {
+        return ready ? findById(store.idByEmail(email)) : Optional.empty();
+    }
+
+    /**
+     * 按用户名查询，不区分大小写
+     *
+     * @param username 用户名
+     * @return 用户副本，副本不可用或未命中时为空
+     */
+    public Optional<Users> findByUsername(String username) {
+        return ready ? findById(store.idByUsername(username)) : Optional.empty();
+    }
+
+    /**
+     * 应用启动完成后在后台加载副本，失败时按间隔重试直到成功
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        Thread.ofVirtual().name("user-replica-load").start(() -> {
+            while (!ready) {
+                try {
+                    loadAll();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    store.clear();
+                    watermarks.clear();
+                    log.error("用户副本加载失败，{}ms后重试，错误信息：{}", loadRetryMs, e.getMessage(), e);
+                    try {
+                        Thread.sleep(loadRetryMs);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 定时拉取各分片水位之后的变更
+     */
+    @Scheduled(fixedDelayString = "${afang.replica.poll-interval-ms:1000}")
+    public void poll() {
+        if (!ready) {
+            return;
+        }
+        boolean success = true;
+        for (String shard : shardTemplate.configuredShards()) {
+            try {
+                pollShard(shard);
+            } catch (Exception e) {
+                success = false;
+                log.warn("用户副本同步失败，分片：{}，错误信息：{}", shard, e.getMessage());
+            }
+        }
+        if (success) {
+            lastSyncMillis.set(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 用户数据变更时按事件携带的最新数据刷新副本
+     *
+     * @param event 用户变更事件
+     */
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        Long id = event.getUserId();
+        if (!ready || id == null) {
+            return;
+        }
+        try {
+            // 逻辑删除的行查不到，与删除事件一样移除
+            Users user = event.getUser();
+            writeLock.lock();
+            try {
+                if (user == null) {
+                    store.remove(id);
+                } else {
+                    apply(user);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        } catch (Exception e) {
+            log.warn("用户副本增量刷新失败，等待定时同步，用户ID：{}，错误信息：{}", id, e.getMessage());
+        }
+    }
+
+    /**
+     * 全量加载所有分片
+     *
+     * @throws Exception 任一分片加载失败时抛出
+     */
+    private void loadAll() throws Exception {
+        long start = System.currentTimeMillis();
+        List<String> shards = shardTemplate.configuredShards();
+        // 先取所有分片的水位再扫描，扫描期间的变更会被随后的轮询补上
+        for (String shard : shards) {
+            watermarks.put(shard, shardTemplate.onShard(shard, usersMapper::selectDatabaseTime));
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (String shard : shards) {
+                Long min = shardTemplate.onShard(shard, usersMapper::selectMinId);
+                Long max = shardTemplate.onShard(shard, usersMapper::selectMaxId);
+                if (min == null || max == null) {
+                    continue;
+                }
+                long step = Math.max(1, (max - min) / loadParallelism + 1);
+                for (long from = min - 1; from < max; from += step) {
+                    long after = from;
+                    long to = Math.min(max, from + step);
+                    futures.add(executor.submit(() -> loadRange(shard, after, to)));
+                }
+            }
+            int total = 0;
+            for (Future<Integer> future : futures) {
+                total += future.get();
+            }
+            ready = true;
+            lastSyncMillis.set(System.currentTimeMillis());
+            log.info("用户副本加载完成，用户数：{}，扫描行数：{}，耗时：{}ms",
+                    store.size(), total, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 加载一个ID区间
+     *
+     * @param shard   分片
+     * @param afterId 区间下界（不含）
+     * @param toId    区间上界（含）
+     * @return 扫描的行数
+     */
+    private int loadRange(String shard, long afterId, long toId) {
+        int scanned = 0;
+        long lastId = afterId;
+        while (true) {
+            long from = lastId;
+            List<Users> batch = shardTemplate.onShard(shard, () -> usersMapper.scanRange(from, toId, batchSize));
+            if (batch.isEmpty()) {
+                return scanned;
+            }
+            batch.forEach(this::apply);
+            scanned += batch.size();
+            lastId = batch.get(batch.size() - 1).getId();
+        }
+    }
+
+    /**
+     * 拉取一个分片的变更，没有水位的分片从最早时间开始
+     *
+     * @param shard 分片
+     */
+    private void pollShard(String shard) {
+        LocalDateTime watermark = watermarks.getOrDefault(shard, EARLIEST);
+        LocalDateTime afterTime = watermark.minusSeconds(overlapSeconds);
+        long afterId = 0;
+        LocalDateTime newest = watermark;
+        while (true) {
+            LocalDateTime fromTime = afterTime;
+            long fromId = afterId;
+            List<Users> batch = shardTemplate.onShard(shard, () -> usersMapper.scanChangedAfter(fromTime, fromId, batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            writeLock.lock();
+            try {
+                batch.forEach(this::apply);
+            } finally {
+                writeLock.unlock();
+            }
+            Users last = batch.get(batch.size() - 1);
+            afterTime = last.getUpdateTime();
+            afterId = last.getId();
+            if (afterTime.isAfter(newest)) {
+                newest = afterTime;
+            }
+            if (batch.size() < batchSize) {
+                break;
+            }
+        }
+        watermarks.put(shard, newest);
+    }
+
+    /**
+     * 应用一行：墓碑移除，比已保存版本更旧的行丢弃
+     *
+     * @param user 用户行
+     */
+    private void apply(Users user) {
+        if (Integer.valueOf(1).equals(user.getDeleted())) {
+            store.remove(user.getId());
+            return;
+        }
+        LocalDateTime current = store.updateTimeOf(user.getId());
+        if (current != null && user.getUpdateTime() != null && current.isAfter(user.getUpdateTime())) {
+            return;
+        }
+        store.put(user);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.afanguserbackend.component.replica;
+
+import com.example.afanguserbackend.model.entity.user.Users;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户副本存储。
+ * <p>
+ * 按ID保存用户行，并维护手机号、邮箱、用户名到ID的唯一索引。
+ * 写入只来自副本同步（单写者或并行加载时的不同ID），读取可以并发进行；
+ * 返回的用户对象都是独立副本，调用方可以自由修改。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public interface UserReplicaStore {
+
+    /**
+     * 写入或替换用户
+     *
+     * @param user 用户行，ID不能为空
+     */
+    void put(Users user);
+
+    /**
+     * 删除用户
+     *
+     * @param id 用户ID
+     */
+    void remove(long id);
+
+    /**
+     * 按ID查询
+     *
+     * @param id 用户ID
+     * @return 用户，不存在时为null
+     */
+    Users get(long id);
+
+    /**
+     * 查询用户的更新时间，用于丢弃比已保存版本更旧的行
+     *
+     * @param id 用户ID
+     * @return 更新时间，用户不存在时为null
+     */
+    LocalDateTime updateTimeOf(long id);
+
+    /**
+     * 按手机号查询用户ID
+     *
+     * @param phone 手机号
+     * @return 用户ID，不存在时为null
+     */
+    Long idByPhone(String phone);
+
+    /**
+     * 按邮箱查询用户ID，不区分大小写
+     *
+     * @param email 邮箱
+     * @return 用户ID，不存在时为null
+     */
+    Long idByEmail(String email);
+
+    /**
+     * 按用户名查询用户ID，不区分大小写
+     *
+     * @param username 用户名
+     * @return 用户ID，不存在时为null
+     */
+    Long idByUsername(String username);
+
+    /**
+     * 用户数
+     *
+     * @return 当前保存的用户数
+     */
+    int size();
+
+    /**
+     * 清空存储
+     */
+    void clear();
+}
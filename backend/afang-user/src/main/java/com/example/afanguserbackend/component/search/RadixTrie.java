@@ -0,0 +1,198 @@
+package com.example.afanguserbackend.component.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongPredicate;
+
+/**
+ * 压缩前缀树（基数树），Key为字符串，值为用户ID集合。
+ * <p>
+ * 只有一个子节点且不是终止节点的路径会被合并为一条边，节点数与Key数量同阶。
+ * 非线程安全，由{@link UserSearchIndex}加锁保护。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+final class RadixTrie {
+
+    /**
+     * 树节点
+     */
+    private static final class Node {
+
+        /**
+         * 从父节点到本节点的边标签
+         */
+        String label;
+
+        /**
+         * 子节点，按边标签首字符索引
+         */
+        final Map<Character, Node> children = new HashMap<>(4);
+
+        /**
+         * 以本节点结尾的Key对应的ID，非终止节点为null
+         */
+        Set<Long> ids;
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * 根节点
+     */
+    private final Node root = new Node("");
+
+    /**
+     * 添加Key与ID的映射
+     *
+     * @param key Key
+     * @param id  用户ID
+     */
+    void add(String key, long id) {
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            char c = key.charAt(i);
+            Node child = node.children.get(c);
+            if (child == null) {
+                Node leaf = new Node(key.substring(i));
+                leaf.ids = new HashSet<>(2);
+                leaf.ids.add(id);
+                node.children.put(c, leaf);
+                return;
+            }
+            int common = commonPrefix(child.label, key, i);
+            if (common < child.label.length()) {
+                // 在公共前缀处拆分边
+                Node middle = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.children.put(child.label.charAt(0), child);
+                node.children.put(c, middle);
+                child = middle;
+            }
+            node = child;
+            i += common;
+        }
+        if (node.ids == null) {
+            node.ids = new HashSet<>(2);
+        }
+        node.ids.add(id);
+    }
+
+    /**
+     * 删除Key与ID的映射，并回收不再需要的节点
+     *
+     * @param key Key
+     * @param id  用户ID
+     */
+    void remove(String key, long id) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.children.get(key.charAt(i));
+            if (child == null || !key.startsWith(child.label, i)) {
+                return;
+            }
+            i += child.label.length();
+            node = child;
+            path.add(node);
+        }
+        if (node.ids == null || !node.ids.remove(id) || !node.ids.isEmpty()) {
+            return;
+        }
+        node.ids = null;
+        if (node == root) {
+            return;
+        }
+        Node parent = path.get(path.size() - 2);
+        if (node.children.isEmpty()) {
+            parent.children.remove(node.label.charAt(0));
+            if (parent != root && parent.ids == null && parent.children.size() == 1) {
+                merge(path.get(path.size() - 3), parent);
+            }
+        } else if (node.children.size() == 1) {
+            merge(parent, node);
+        }
+    }
+
+    /**
+     * 按前缀收集ID，广度优先遍历使较短的Key先被访问
+     *
+     * @param prefix  前缀
+     * @param visitor ID回调，返回false时停止遍历
+     */
+    void collect(String prefix, LongPredicate visitor) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            Node child = node.children.get(prefix.charAt(i));
+            if (child == null) {
+                return;
+            }
+            int remaining = prefix.length() - i;
+            if (remaining <= child.label.length()) {
+                if (!child.label.startsWith(prefix.substring(i))) {
+                    return;
+                }
+            } else if (!prefix.startsWith(child.label, i)) {
+                return;
+            }
+            i += child.label.length();
+            node = child;
+        }
+
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        queue.add(node);
+        while (!queue.isEmpty()) {
+            Node current = queue.poll();
+            if (current.ids != null) {
+                for (Long id : current.ids) {
+                    if (!visitor.test(id)) {
+                        return;
+                    }
+                }
+            }
+            queue.addAll(current.children.values());
+        }
+    }
+
+    /**
+     * 将只剩一个子节点的非终止节点与其子节点合并
+     *
+     * @param parent 父节点
+     * @param node   待合并节点
+     */
+    private static void merge(Node parent, Node node) {
+        Node only = node.children.values().iterator().next();
+        only.label = node.label + only.label;
+        parent.children.put(only.label.charAt(0), only);
+    }
+
+    /**
+     * 计算边标签与Key从offset开始的公共前缀长度
+     *
+     * @param label  边标签
+     * @param key    Key
+     * @param offset Key中的起始位置
+     * @return 公共前缀长度
+     */
+    private static int commonPrefix(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int n = 0;
+        while (n < max && label.charAt(n) == key.charAt(offset + n)) {
+            n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.afanguserbackend.component.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongPredicate;
+
+/**
+ * 三元组（trigram）倒排索引，用于子串匹配。
+ * <p>
+ * 每个文档的文本被拆成连续的三个字符并打包为一个long作为倒排Key，
+ * 查询时对查询串的所有三元组求交集，得到的候选集再由调用方校验是否真正包含查询串。
+ * 非线程安全，由{@link UserSearchIndex}加锁保护。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+final class TrigramIndex {
+
+    /**
+     * 三元组到用户ID集合的倒排表
+     */
+    private final Map<Long, Set<Long>> postings = new HashMap<>();
+
+    /**
+     * 添加文档的三元组
+     *
+     * @param grams 文档的三元组集合（已去重）
+     * @param id    用户ID
+     */
+    void add(Set<Long> grams, long id) {
+        for (Long gram : grams) {
+            postings.computeIfAbsent(gram, g -> new HashSet<>(4)).add(id);
+        }
+    }
+
+    /**
+     * 删除文档的三元组
+     *
+     * @param grams 文档的三元组集合（已去重）
+     * @param id    用户ID
+     */
+    void remove(Set<Long> grams, long id) {
+        for (Long gram : grams) {
+            Set<Long> ids = postings.get(gram);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * 查询包含查询串所有三元组的候选ID
+     * 从最短的倒排表开始逐个校验其余倒排表，避免构造中间集合
+     *
+     * @param query   查询串，长度至少为3
+     * @param visitor 候选ID回调，返回false时停止
+     */
+    void collect(String query, LongPredicate visitor) {
+        Set<Long> grams = gramsOf(query);
+        if (grams.isEmpty()) {
+            return;
+        }
+        List<Set<Long>> lists = new ArrayList<>(grams.size());
+        for (Long gram : grams) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null) {
+                return;
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        Set<Long> smallest = lists.get(0);
+        outer:
+        for (Long id : smallest) {
+            for (int i = 1; i < lists.size(); i++) {
+                if (!lists.get(i).contains(id)) {
+                    continue outer;
+                }
+            }
+            if (!visitor.test(id)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 计算文本的三元组集合
+     *
+     * @param texts 文本（已归一化），null会被忽略
+     * @return 去重后的三元组
+     */
+    static Set<Long> gramsOf(String... texts) {
+        Set<Long> grams = new HashSet<>();
+        for (String text : texts) {
+            if (text == null) {
+                continue;
+            }
+            for (int i = 0; i + 3 <= text.length(); i++) {
+                grams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+            }
+        }
+        return grams;
+    }
+}
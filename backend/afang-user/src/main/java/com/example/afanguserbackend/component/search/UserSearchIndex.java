@@ -0,0 +1,250 @@
+package com.example.afanguserbackend.component.search;
+
+import com.example.afanguserbackend.component.event.UserChangedEvent;
+import com.example.afanguserbackend.component.index.InMemoryUserIndex;
+import com.example.afanguserbackend.component.sharding.UserShardTemplate;
+import com.example.afanguserbackend.mapper.user.UsersMapper;
+import com.example.afanguserbackend.model.entity.user.Users;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.LongPredicate;
+
+/**
+ * 用户搜索内存索引。
+ * <p>
+ * 为管理后台和@提及提供按用户名、邮箱、手机号的即时搜索，避免对users表做 LIKE '%x%' 全表扫描：
+ * <ul>
+ *   <li>前缀匹配：用户名、邮箱、手机号（均转为小写）写入同一棵压缩前缀树</li>
+ *   <li>子串匹配：用户名和邮箱的三元组倒排索引，查询串不少于3个字符时启用</li>
+ *   <li>排序：完全匹配 > 前缀匹配 > 子串匹配，同级别中匹配字段越短越靠前，取前K条</li>
+ * </ul>
+ * 构建与增量更新由{@link InMemoryUserIndex}负责：启动完成后流式扫描全部分片构建，之后监听{@link UserChangedEvent}增量更新。
+ * 变更事件由{@link com.example.afanguserbackend.component.outbox.UserChangeStreamSubscriber}从用户变更Stream
+ * 广播到每个节点，其他节点写入的数据同样会增量更新到本节点的索引中。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Component
+public class UserSearchIndex extends InMemoryUserIndex {
+
+    /**
+     * 索引中的用户文档，不包含密码等敏感字段
+     *
+     * @param id       用户ID
+     * @param username 用户名
+     * @param email    邮箱
+     * @param phone    手机号
+     * @param avatar   头像
+     * @param keys     归一化后的可搜索字段（去重）
+     */
+    public record Document(Long id, String username, String email, String phone, String avatar, Set<String> keys) {
+    }
+
+    /**
+     * 单次查询最多评估的候选数量
+     */
+    private final int maxCandidates;
+
+    /**
+     * ID到文档的映射
+     */
+    private final Map<Long, Document> documents = new HashMap<>();
+
+    /**
+     * 前缀索引
+     */
+    private final RadixTrie prefixIndex = new RadixTrie();
+
+    /**
+     * 子串索引
+     */
+    private final TrigramIndex infixIndex = new TrigramIndex();
+
+    /**
+     * 构造函数
+     *
+     * @param usersMapper   用户数据访问
+     * @param shardTemplate 分片操作模板
+     * @param scanBatchSize 构建索引时每批扫描的行数
+     * @param maxCandidates 单次查询最多评估的候选数量
+     */
+    public UserSearchIndex(UsersMapper usersMapper, UserShardTemplate shardTemplate,
+                           @Value("${afang.search.scan-batch-size:1000}") int scanBatchSize,
+                           @Value("${afang.search.max-candidates:1000}") int maxCandidates) {
+        super("用户搜索索引", "user-search-index", usersMapper, shardTemplate, scanBatchSize);
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * 搜索用户
+     *
+     * @param keyword 关键字，匹配用户名、邮箱、手机号
+     * @param limit   最多返回条数
+     * @return 按相关度降序排列的文档
+     * @throws RuntimeException 索引尚未构建完成时抛出
+     */
+    public List<Document> search(String keyword, int limit) {
+        if (!isReady()) {
+            throw new RuntimeException("搜索索引正在构建，请稍后重试");
+        }
+        String query = normalize(keyword);
+        if (query == null || limit <= 0) {
+            return List.of();
+        }
+
+        // 小顶堆保留得分最高的limit条
+        Comparator<Map.Entry<Document, Integer>> order = Map.Entry.<Document, Integer>comparingByValue()
+                .thenComparing(e -> e.getKey().username(), Comparator.nullsFirst(Comparator.reverseOrder()));
+        PriorityQueue<Map.Entry<Document, Integer>> top = new PriorityQueue<>(limit + 1, order);
+
+        lock.readLock().lock();
+        try {
+            Set<Long> candidates = new LinkedHashSet<>();
+            LongPredicate collector = id -> {
+                candidates.add(id);
+                return candidates.size() < maxCandidates;
+            };
+            prefixIndex.collect(query, collector);
+            if (query.length() >= 3 && candidates.size() < maxCandidates) {
+                infixIndex.collect(query, collector);
+            }
+            for (Long id : candidates) {
+                Document document = documents.get(id);
+                int score = document == null ? 0 : score(document, query);
+                if (score > 0) {
+                    top.offer(Map.entry(document, score));
+                    if (top.size() > limit) {
+                        top.poll();
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Document> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            result.add(top.poll().getKey());
+        }
+        return result.reversed();
+    }
+
+    /**
+     * 写入或替换文档，调用方需持有写锁
+     *
+     * @param user 用户实体
+     */
+    @Override
+    protected void put(Users user) {
+        Set<String> keys = new HashSet<>(4);
+        addKey(keys, user.getUsername());
+        addKey(keys, user.getEmail());
+        addKey(keys, user.getPhone());
+        Document next = new Document(user.getId(), user.getUsername(), user.getEmail(), user.getPhone(),
+                user.getAvatar(), keys);
+
+        Document previous = documents.put(user.getId(), next);
+        Set<String> previousKeys = previous == null ? Set.of() : previous.keys();
+        for (String key : previousKeys) {
+            if (!keys.contains(key)) {
+                prefixIndex.remove(key, user.getId());
+            }
+        }
+        for (String key : keys) {
+            if (!previousKeys.contains(key)) {
+                prefixIndex.add(key, user.getId());
+            }
+        }
+
+        Set<Long> grams = gramsOf(next);
+        if (previous != null) {
+            Set<Long> stale = gramsOf(previous);
+            stale.removeAll(grams);
+            infixIndex.remove(stale, user.getId());
+        }
+        infixIndex.add(grams, user.getId());
+    }
+
+    /**
+     * 删除文档，调用方需持有写锁
+     *
+     * @param id 用户ID
+     */
+    @Override
+    protected void remove(Long id) {
+        Document previous = documents.remove(id);
+        if (previous == null) {
+            return;
+        }
+        previous.keys().forEach(key -> prefixIndex.remove(key, id));
+        infixIndex.remove(gramsOf(previous), id);
+    }
+
+    /**
+     * 计算文档用于子串匹配的三元组（用户名和邮箱）
+     *
+     * @param document 文档
+     * @return 三元组集合
+     */
+    private static Set<Long> gramsOf(Document document) {
+        return TrigramIndex.gramsOf(normalize(document.username()), normalize(document.email()));
+    }
+
+    /**
+     * 计算文档与查询串的相关度
+     *
+     * @param document 文档
+     * @param query    归一化后的查询串
+     * @return 相关度，不匹配时为0
+     */
+    private static int score(Document document, String query) {
+        int best = 0;
+        for (String key : document.keys()) {
+            int level = key.equals(query) ? 3 : key.startsWith(query) ? 2 : key.contains(query) ? 1 : 0;
+            if (level > 0) {
+                best = Math.max(best, level * 1000 - Math.min(key.length(), 999));
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 添加归一化后的可搜索字段
+     *
+     * @param keys  字段集合
+     * @param value 原始值
+     */
+    private static void addKey(Set<String> keys, String value) {
+        String key = normalize(value);
+        if (key != null) {
+            keys.add(key);
+        }
+    }
+
+    /**
+     * 归一化：去除首尾空白并转为小写
+     *
+     * @param value 原始值
+     * @return 归一化结果，空白时为null
+     */
+    private static String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.afanguserbackend.component.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 一致性哈希环。
+ * <p>
+ * 每个分片映射为若干虚拟节点，分片增减时只有相邻区间的数据需要迁移。实例不可变，
+ * 切换分片列表时整体替换。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public final class ConsistentHashRing {
+
+    /**
+     * 虚拟节点哈希值到分片名称的映射
+     */
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    /**
+     * 参与哈希的分片列表
+     */
+    private final List<String> shards;
+
+    /**
+     * 构造函数
+     *
+     * @param shards       分片名称列表，不能为空
+     * @param virtualNodes 每个分片的虚拟节点数
+     */
+    public ConsistentHashRing(List<String> shards, int virtualNodes) {
+        if (shards == null || shards.isEmpty()) {
+            throw new IllegalArgumentException("分片列表不能为空");
+        }
+        this.shards = List.copyOf(shards);
+        for (String shard : this.shards) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(shard + "#" + i), shard);
+            }
+        }
+    }
+
+    /**
+     * 计算分片Key所属的分片
+     *
+     * @param key 分片Key（手机号）
+     * @return 分片名称
+     */
+    public String shardFor(String key) {
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * 获取参与哈希的分片列表
+     *
+     * @return 不可变分片列表
+     */
+    public List<String> getShards() {
+        return shards;
+    }
+
+    /**
+     * 64位哈希：FNV-1a后接MurmurHash3的fmix64混淆，保证虚拟节点在环上分布均匀
+     *
+     * @param key 输入字符串
+     * @return 64位哈希值
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.afanguserbackend.component.sharding;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 全局查找表类型
+ * 非分片Key的唯一字段通过查找表定位所属分片，同时作为跨分片的唯一性约束
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Getter
+@AllArgsConstructor
+public enum LookupType {
+
+    /**
+     * 用户ID
+     */
+    ID("id"),
+
+    /**
+     * 邮箱
+     */
+    EMAIL("email"),
+
+    /**
+     * 用户名
+     */
+    USERNAME("username");
+
+    /**
+     * 对应的用户表列名，用于拼装唯一约束冲突信息
+     */
+    private final String column;
+}
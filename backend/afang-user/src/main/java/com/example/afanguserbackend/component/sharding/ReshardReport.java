@@ -0,0 +1,68 @@
+package com.example.afanguserbackend.component.sharding;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 重分片执行报告
+ * 记录一次在线重分片的阶段与进度，供管理接口查询
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Data
+public class ReshardReport {
+
+    /**
+     * 执行阶段：COPYING、CATCHING_UP、FENCING、SWITCHING、CLEANING、DONE、FAILED
+     */
+    private volatile String phase = "COPYING";
+
+    /**
+     * 迁移前的生效分片
+     */
+    private List<String> sourceShards;
+
+    /**
+     * 迁移后的生效分片
+     */
+    private List<String> targetShards;
+
+    /**
+     * 已扫描行数
+     */
+    private volatile long scanned;
+
+    /**
+     * 已迁移行数
+     */
+    private volatile long moved;
+
+    /**
+     * 追平阶段重新复制的行数（包括栅栏前和栅栏期间的两轮）
+     */
+    private volatile long caughtUp;
+
+    /**
+     * 已从源分片清理的行数
+     */
+    private volatile long cleaned;
+
+    /**
+     * 开始时间
+     */
+    private LocalDateTime startTime;
+
+    /**
+     * 结束时间
+     */
+    private LocalDateTime endTime;
+
+    /**
+     * 失败原因
+     */
+    private String error;
+}
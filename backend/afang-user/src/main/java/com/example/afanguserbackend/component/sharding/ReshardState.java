@@ -0,0 +1,22 @@
+package com.example.afanguserbackend.component.sharding;
+
+/**
+ * 在线重分片状态
+ * 保存在Redis中，各节点随生效分片列表一起定时刷新
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public enum ReshardState {
+
+    /**
+     * 复制和追平中：用户写入照常进行，登录统计暂停写库
+     */
+    COPYING,
+
+    /**
+     * 写入栅栏：拒绝用户写入，等待最后一次追平和切换完成
+     */
+    FENCED
+}
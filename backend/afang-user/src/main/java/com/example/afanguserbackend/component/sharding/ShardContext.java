@@ -0,0 +1,60 @@
+package com.example.afanguserbackend.component.sharding;
+
+import java.util.function.Supplier;
+
+/**
+ * 分片路由上下文。
+ * <p>
+ * 以ThreadLocal保存当前线程要访问的分片名称，由{@link ShardRoutingDataSource}在获取连接时读取。
+ * 未设置时路由到全局（默认）数据源。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public final class ShardContext {
+
+    /**
+     * 全局数据源的路由Key
+     */
+    public static final String GLOBAL = "global";
+
+    /**
+     * 当前线程的分片名称
+     */
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * 获取当前线程的分片名称
+     *
+     * @return 分片名称，未设置时返回null
+     */
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 在指定分片上执行操作，支持嵌套，执行完成后恢复原分片
+     *
+     * @param shard  分片名称
+     * @param action 要执行的操作
+     * @param <T>    返回值类型
+     * @return 操作结果
+     */
+    public static <T> T runOn(String shard, Supplier<T> action) {
+        String previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.afanguserbackend.component.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * 分片路由数据源。
+ * <p>
+ * 根据{@link ShardContext}中的分片名称选择目标数据源，未设置时使用全局数据源。
+ * 注意：事务开启时即绑定连接，分片上下文必须在事务方法外层设置。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    /**
+     * 确定当前查找Key
+     *
+     * @return 分片名称，未设置时为全局数据源Key
+     */
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String shard = ShardContext.current();
+        return shard != null ? shard : ShardContext.GLOBAL;
+    }
+}
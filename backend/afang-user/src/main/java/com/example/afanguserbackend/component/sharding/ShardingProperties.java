@@ -0,0 +1,81 @@
+package com.example.afanguserbackend.component.sharding;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 用户表分片配置。
+ * <p>
+ * 对应配置前缀{@code afang.sharding}，未启用时所有路由操作直接在默认数据源上执行。
+ * 全局查找表（id/email/username → 分片）保存在默认数据源（spring.datasource）中。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "afang.sharding")
+public class ShardingProperties {
+
+    /**
+     * 是否启用分片
+     */
+    private boolean enabled = false;
+
+    /**
+     * 一致性哈希环上每个分片的虚拟节点数
+     */
+    private int virtualNodes = 160;
+
+    /**
+     * 各节点刷新当前生效分片列表的间隔（毫秒）
+     */
+    private long ringRefreshIntervalMs = 5000;
+
+    /**
+     * 重分片时每批扫描的行数
+     */
+    private int reshardBatchSize = 500;
+
+    /**
+     * 所有已配置的分片数据源（包括尚未加入哈希环、等待迁入的新分片）
+     */
+    private List<Shard> shards = new ArrayList<>();
+
+    /**
+     * 单个分片数据源配置
+     */
+    @Data
+    public static class Shard {
+
+        /**
+         * 分片名称，作为路由Key
+         */
+        private String name;
+
+        /**
+         * JDBC连接地址
+         */
+        private String url;
+
+        /**
+         * 数据库用户名
+         */
+        private String username;
+
+        /**
+         * 数据库密码
+         */
+        private String password;
+
+        /**
+         * JDBC驱动类名
+         */
+        private String driverClassName;
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.afanguserbackend.component.sharding;
+
+import com.example.afanguserbackend.mapper.user.UsersMapper;
+import com.example.afanguserbackend.model.entity.user.Users;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 在线重分片工具。
+ * <p>
+ * 将用户数据从当前生效的分片布局迁移到新的分片布局，迁移过程中服务持续可用：
+ * <ol>
+ *   <li>复制：逐个分片按ID分页扫描，把归属发生变化的行复制到新分片；查找表和哈希环不变，读写仍由源分片承担，
+ *       登录统计暂停写库（不更新update_time，追平时无法识别）</li>
+ *   <li>追平：按更新时间水位和ID水位重新扫描源分片，复制期间被修改的行和插入到已扫描区间的行再复制一次</li>
+ *   <li>栅栏：所有节点拒绝用户写入后，再做最后一次追平，此后源分片不再变化</li>
+ *   <li>切换：查找表和哈希环一起指向新分片，等待所有节点刷新后解除栅栏</li>
+ *   <li>清理：从源分片物理删除已迁移的行</li>
+ * </ol>
+ * 新分片的数据源必须事先在所有节点的afang.sharding.shards中配置好。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserReshardingTool {
+
+    /**
+     * 单次IN查询的最大ID数量
+     */
+    private static final int ID_CHUNK = 500;
+
+    /**
+     * 更新时间水位的提前量，覆盖应用节点与数据库之间的时钟偏差
+     */
+    private static final Duration CLOCK_SKEW_MARGIN = Duration.ofMinutes(1);
+
+    /**
+     * 分片操作模板
+     */
+    private final UserShardTemplate shardTemplate;
+
+    /**
+     * 用户数据访问
+     */
+    private final UsersMapper usersMapper;
+
+    /**
+     * 分片配置
+     */
+    private final ShardingProperties properties;
+
+    /**
+     * 最近一次重分片报告
+     */
+    private final AtomicReference<ReshardReport> current = new AtomicReference<>();
+
+    /**
+     * 启动重分片任务（后台执行）
+     *
+     * @param targetShards 目标分片列表
+     * @return 任务报告，可通过{@link #status()}查询进度
+     * @throws RuntimeException 未启用分片、目标分片未配置或已有任务在执行时抛出
+     */
+    public ReshardReport start(List<String> targetShards) {
+        if (!shardTemplate.isEnabled()) {
+            throw new RuntimeException("未启用分片，无法重分片");
+        }
+        if (targetShards == null || targetShards.isEmpty() || !shardTemplate.configuredShards().containsAll(targetShards)) {
+            throw new RuntimeException("目标分片为空或存在未配置数据源的分片");
+        }
+
+        ReshardReport report = new ReshardReport();
+        report.setSourceShards(shardTemplate.activeShards());
+        report.setTargetShards(List.copyOf(targetShards));
+        report.setStartTime(LocalDateTime.now());
+
+        ReshardReport previous = current.get();
+        if (previous != null && !isFinished(previous)) {
+            throw new RuntimeException("已有重分片任务在执行");
+        }
+        if (!current.compareAndSet(previous, report)) {
+            throw new RuntimeException("已有重分片任务在执行");
+        }
+
+        Thread.ofVirtual().name("user-reshard").start(() -> run(report));
+        return report;
+    }
+
+    /**
+     * 查询最近一次重分片任务
+     *
+     * @return 任务报告，从未执行过时为空
+     */
+    public Optional<ReshardReport> status() {
+        return Optional.ofNullable(current.get());
+    }
+
+    /**
+     * 执行重分片
+     *
+     * @param report 任务报告
+     */
+    private void run(ReshardReport report) {
+        try {
+            ConsistentHashRing target = new ConsistentHashRing(report.getTargetShards(), properties.getVirtualNodes());
+            long settleMs = properties.getRingRefreshIntervalMs() * 2;
+            // 源分片 -> 已迁移的用户ID -> 目标分片
+            Map<String, Map<Long, String>> movedBySource = new LinkedHashMap<>();
+            Map<String, LocalDateTime> since = new HashMap<>();
+            Map<String, Long> watermarks = new HashMap<>();
+
+            // 暂停登录统计写库，等待所有节点至少刷新两次
+            shardTemplate.setReshardState(ReshardState.COPYING);
+            Thread.sleep(settleMs);
+
+            // 复制
+            for (String source : shardTemplate.configuredShards()) {
+                since.put(source, databaseTime(source));
+                long lastId = 0L;
+                while (true) {
+                    long from = lastId;
+                    List<Users> batch = shardTemplate.onShard(source,
+                            () -> usersMapper.scanAfterId(from, properties.getReshardBatchSize()));
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+                    for (Users user : batch) {
+                        report.setScanned(report.getScanned() + 1);
+                        String destination = target.shardFor(UserShardTemplate.shardKeyOf(user.getPhone(), user.getEmail()));
+                        if (!destination.equals(source)) {
+                            copyTo(destination, user);
+                            movedBySource.computeIfAbsent(source, k -> new LinkedHashMap<>()).put(user.getId(), destination);
+                            report.setMoved(report.getMoved() + 1);
+                        }
+                    }
+                    lastId = batch.get(batch.size() - 1).getId();
+                }
+                watermarks.put(source, lastId);
+            }
+
+            // 追平：栅栏前先追一轮，缩短栅栏持续时间
+            report.setPhase("CATCHING_UP");
+            catchUp(report, target, since, watermarks, movedBySource);
+
+            // 栅栏：各节点的写入路径直接读取栅栏状态，等待栅栏前已开始的写入完成后，做最后一次追平
+            report.setPhase("FENCING");
+            shardTemplate.setReshardState(ReshardState.FENCED);
+            Thread.sleep(settleMs);
+            catchUp(report, target, since, watermarks, movedBySource);
+
+            // 切换：查找表和哈希环一起指向新分片，等待所有节点至少刷新两次后解除栅栏
+            report.setPhase("SWITCHING");
+            movedBySource.values().forEach(moved -> moved.forEach(shardTemplate::moveLookups));
+            shardTemplate.switchActiveShards(report.getTargetShards());
+            Thread.sleep(settleMs);
+            shardTemplate.setReshardState(null);
+
+            // 清理
+            report.setPhase("CLEANING");
+            for (Map.Entry<String, Map<Long, String>> entry : movedBySource.entrySet()) {
+                for (List<Long> chunk : chunks(List.copyOf(entry.getValue().keySet()))) {
+                    int deleted = shardTemplate.onShard(entry.getKey(), () -> usersMapper.physicalDeleteByIds(chunk));
+                    report.setCleaned(report.getCleaned() + deleted);
+                }
+            }
+
+            report.setPhase("DONE");
+            log.info("重分片完成：{}", report);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(report, e);
+        } catch (Exception e) {
+            fail(report, e);
+        } finally {
+            if (shardTemplate.isResharding()) {
+                try {
+                    shardTemplate.setReshardState(null);
+                } catch (Exception e) {
+                    log.error("解除重分片状态失败，需要手动删除，错误信息：{}", e.getMessage());
+                }
+            }
+            report.setEndTime(LocalDateTime.now());
+        }
+    }
+
+    /**
+     * 追平一轮：按上一轮的更新时间水位和ID水位重新扫描每个源分片，归属变化的行重新复制到目标分片，
+     * 完成后把水位推进到本轮开始时
+     *
+     * @param report        任务报告
+     * @param target        目标哈希环
+     * @param since         各源分片的更新时间水位
+     * @param watermarks    各源分片已扫描到的最大ID
+     * @param movedBySource 已迁移的行，追平中新发现的行会加入
+     */
+    private void catchUp(ReshardReport report, ConsistentHashRing target, Map<String, LocalDateTime> since,
+                         Map<String, Long> watermarks, Map<String, Map<Long, String>> movedBySource) {
+        for (String source : shardTemplate.configuredShards()) {
+            LocalDateTime passStart = databaseTime(source);
+            LocalDateTime changedSince = since.get(source);
+            long watermark = watermarks.get(source);
+            long maxId = watermark;
+            long lastId = 0L;
+            while (true) {
+                long from = lastId;
+                List<Users> batch = shardTemplate.onShard(source, () -> usersMapper.scanChangedSince(
+                        from, changedSince, watermark, properties.getReshardBatchSize()));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                for (Users user : batch) {
+                    String destination = target.shardFor(UserShardTemplate.shardKeyOf(user.getPhone(), user.getEmail()));
+                    if (!destination.equals(source)) {
+                        copyTo(destination, user);
+                        movedBySource.computeIfAbsent(source, k -> new LinkedHashMap<>()).put(user.getId(), destination);
+                        report.setCaughtUp(report.getCaughtUp() + 1);
+                    }
+                }
+                lastId = batch.get(batch.size() - 1).getId();
+                maxId = Math.max(maxId, lastId);
+            }
+            since.put(source, passStart);
+            watermarks.put(source, maxId);
+        }
+    }
+
+    /**
+     * 读取分片的数据库时间，减去时钟偏差提前量后作为更新时间水位
+     *
+     * @param shard 分片名称
+     * @return 更新时间水位
+     */
+    private LocalDateTime databaseTime(String shard) {
+        return shardTemplate.onShard(shard, usersMapper::selectDatabaseTime).minus(CLOCK_SKEW_MARGIN);
+    }
+
+    /**
+     * 将用户行复制到目标分片（先删后插，保证幂等且不受乐观锁版本影响）
+     *
+     * @param shard 目标分片
+     * @param user  用户行
+     */
+    private void copyTo(String shard, Users user) {
+        shardTemplate.onShard(shard, () -> {
+            usersMapper.physicalDeleteByIds(List.of(user.getId()));
+            return usersMapper.insert(user);
+        });
+    }
+
+    /**
+     * 标记任务失败
+     *
+     * @param report 任务报告
+     * @param e      失败原因
+     */
+    private static void fail(ReshardReport report, Exception e) {
+        log.error("重分片失败，阶段：{}，错误信息：{}", report.getPhase(), e.getMessage(), e);
+        report.setError(e.getMessage());
+        report.setPhase("FAILED");
+    }
+
+    /**
+     * 判断任务是否已结束
+     *
+     * @param report 任务报告
+     * @return 已完成或失败返回true
+     */
+    private static boolean isFinished(ReshardReport report) {
+        return "DONE".equals(report.getPhase()) || "FAILED".equals(report.getPhase());
+    }
+
+    /**
+     * 将ID列表按固定大小切块
+     *
+     * @param ids ID列表
+     * @return 切块后的列表
+     */
+    private static List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> result = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += ID_CHUNK) {
+            result.add(ids.subList(i, Math.min(ids.size(), i + ID_CHUNK)));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,594 @@
+package com.example.afanguserbackend.component.sharding;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.example.afanguserbackend.mapper.user.UserShardLookupMapper;
+import com.example.afanguserbackend.model.entity.user.UserShardLookup;
+import com.example.afanguserbackend.model.entity.user.Users;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 用户分片操作模板。
+ * <p>
+ * 所有访问users表的代码通过该模板选择分片，未启用分片时各方法直接在默认数据源上执行原操作，
+ * 因此单库部署不受影响。启用后：
+ * <ul>
+ *   <li>按手机号（无手机号时按邮箱）的一致性哈希路由到分片</li>
+ *   <li>id/email/username通过全局查找表定位分片，查找表主键同时保证跨分片唯一</li>
+ *   <li>管理类查询通过{@link #scatter}在所有分片上并发执行后合并</li>
+ *   <li>生效的分片列表保存在Redis中，各节点定时刷新，供在线重分片切换使用</li>
+ *   <li>在线重分片的状态同样保存在Redis中：迁移期间暂停登录统计写库，切换前的写入栅栏期间拒绝用户写入</li>
+ * </ul>
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class UserShardTemplate {
+
+    /**
+     * 生效分片列表的Redis Key
+     */
+    private static final String ACTIVE_SHARDS_KEY = "sharding:active-shards";
+
+    /**
+     * 重分片状态的Redis Key
+     */
+    private static final String RESHARD_STATE_KEY = "sharding:reshard-state";
+
+    /**
+     * 分片配置
+     */
+    private final ShardingProperties properties;
+
+    /**
+     * 查找表数据访问
+     */
+    private final UserShardLookupMapper lookupMapper;
+
+    /**
+     * Redis操作模板
+     */
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    /**
+     * 当前生效的哈希环
+     */
+    private final AtomicReference<ConsistentHashRing> ring = new AtomicReference<>();
+
+    /**
+     * 本节点看到的重分片状态，未在重分片时为null
+     */
+    private volatile ReshardState reshardState;
+
+    /**
+     * 分散查询执行器，每个分片一个虚拟线程
+     */
+    private final ExecutorService scatterExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * 构造函数
+     *
+     * @param properties    分片配置
+     * @param lookupMapper  查找表数据访问
+     * @param redisTemplate Redis操作模板
+     */
+    public UserShardTemplate(ShardingProperties properties, UserShardLookupMapper lookupMapper,
+                             RedisTemplate<String, Object> redisTemplate) {
+        this.properties = properties;
+        this.lookupMapper = lookupMapper;
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 初始化哈希环：优先使用Redis中记录的生效分片列表，否则使用全部已配置分片
+     */
+    @PostConstruct
+    public void init() {
+        if (!isEnabled()) {
+            return;
+        }
+        List<String> active = readActiveShards().orElseGet(this::configuredShards);
+        ring.set(new ConsistentHashRing(active, properties.getVirtualNodes()));
+        reshardState = readReshardState();
+        log.info("用户分片已启用，生效分片：{}", active);
+    }
+
+    /**
+     * 关闭分散查询执行器
+     */
+    @PreDestroy
+    public void shutdown() {
+        scatterExecutor.shutdown();
+    }
+
+    /**
+     * 是否启用分片
+     *
+     * @return 启用返回true
+     */
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 计算用户的分片Key：手机号优先，没有手机号时使用邮箱
+     *
+     * @param phone 手机号
+     * @param email 邮箱
+     * @return 分片Key
+     */
+    public static String shardKeyOf(String phone, String email) {
+        return StringUtils.hasText(phone) ? phone : email;
+    }
+
+    /**
+     * 计算分片Key所属分片
+     *
+     * @param shardKey 分片Key
+     * @return 分片名称，未启用时为全局数据源
+     */
+    public String shardFor(String shardKey) {
+        return isEnabled() ? ring.get().shardFor(shardKey) : ShardContext.GLOBAL;
+    }
+
+    /**
+     * 在分片Key所属分片上执行操作
+     *
+     * @param shardKey 分片Key（手机号或邮箱）
+     * @param action   要执行的操作
+     * @param <T>      返回值类型
+     * @return 操作结果
+     */
+    public <T> T onShardKey(String shardKey, Supplier<T> action) {
+        return isEnabled() ? ShardContext.runOn(shardFor(shardKey), action) : action.get();
+    }
+
+    /**
+     * 在指定分片上执行操作
+     *
+     * @param shard  分片名称
+     * @param action 要执行的操作
+     * @param <T>    返回值类型
+     * @return 操作结果
+     */
+    public <T> T onShard(String shard, Supplier<T> action) {
+        return isEnabled() ? ShardContext.runOn(shard, action) : action.get();
+    }
+
+    /**
+     * 在用户ID所在分片上执行操作
+     *
+     * @param id       用户ID
+     * @param notFound 查找表中不存在该ID时的返回值
+     * @param action   要执行的操作
+     * @param <T>      返回值类型
+     * @return 操作结果
+     */
+    public <T> T onId(Long id, T notFound, Supplier<T> action) {
+        if (!isEnabled()) {
+            return action.get();
+        }
+        return shardOf(LookupType.ID, String.valueOf(id))
+                .map(shard -> ShardContext.runOn(shard, action))
+                .orElse(notFound);
+    }
+
+    /**
+     * 通过查找表定位分片
+     *
+     * @param type  查找类型
+     * @param value 查找值
+     * @return 分片名称，不存在时为空
+     */
+    public Optional<String> shardOf(LookupType type, String value) {
+        if (!isEnabled()) {
+            return Optional.of(ShardContext.GLOBAL);
+        }
+        UserShardLookup lookup = ShardContext.runOn(ShardContext.GLOBAL, () -> lookupMapper.selectOne(
+                new LambdaQueryWrapper<UserShardLookup>()
+                        .eq(UserShardLookup::getLookupType, type.name())
+                        .eq(UserShardLookup::getLookupValue, value)));
+        return Optional.ofNullable(lookup).map(UserShardLookup::getShard);
+    }
+
+    /**
+     * 批量按分片分组用户ID
+     *
+     * @param ids 用户ID集合
+     * @return 分片名称到ID列表的映射，查找表中不存在的ID被忽略
+     */
+    public Map<String, List<Long>> groupIdsByShard(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        if (!isEnabled()) {
+            return Map.of(ShardContext.GLOBAL, List.copyOf(ids));
+        }
+        List<String> values = ids.stream().map(String::valueOf).toList();
+        List<UserShardLookup> lookups = ShardContext.runOn(ShardContext.GLOBAL, () -> lookupMapper.selectList(
+                new LambdaQueryWrapper<UserShardLookup>()
+                        .eq(UserShardLookup::getLookupType, LookupType.ID.name())
+                        .in(UserShardLookup::getLookupValue, values)));
+        return lookups.stream().collect(Collectors.groupingBy(UserShardLookup::getShard, LinkedHashMap::new,
+                Collectors.mapping(UserShardLookup::getUserId, Collectors.toList())));
+    }
+
+    /**
+     * 插入新用户：先登记查找表（跨分片唯一性校验），再写入所属分片，写入失败时回滚查找表
+     *
+     * @param user   新用户，ID必须已分配
+     * @param insert 在分片上执行的插入操作
+     * @return 插入结果
+     * @throws DuplicateKeyException 邮箱或用户名已被其他分片上的用户占用时抛出
+     * @throws RuntimeException      处于重分片写入栅栏期间时抛出
+     */
+    public boolean insertUser(Users user, Supplier<Boolean> insert) {
+        if (!isEnabled()) {
+            return insert.get();
+        }
+        checkWritable();
+        String shard = shardFor(shardKeyOf(user.getPhone(), user.getEmail()));
+        Map<LookupType, String> reserved = reserveLookups(user.getId(), shard, lookupValuesOf(user));
+        try {
+            boolean saved = Boolean.TRUE.equals(ShardContext.runOn(shard, insert));
+            if (!saved) {
+                releaseLookups(user.getId(), reserved);
+            }
+            return saved;
+        } catch (RuntimeException e) {
+            releaseLookups(user.getId(), reserved);
+            throw e;
+        }
+    }
+
+    /**
+     * 在用户所在分片上执行更新，并同步维护邮箱、用户名查找记录
+     * 新值先预占（跨分片唯一性校验），更新成功后清理旧值，更新失败时撤销预占
+     *
+     * @param update 更新内容，ID不能为空
+     * @param action 在分片上执行的更新操作，返回影响行数
+     * @return 影响行数，用户不存在时为0
+     * @throws RuntimeException 新手机号属于其他分片或处于重分片写入栅栏期间时抛出
+     * @throws DuplicateKeyException 新邮箱或用户名已被其他用户占用时抛出
+     */
+    public int updateUser(Users update, Supplier<Integer> action) {
+        if (!isEnabled()) {
+            return action.get();
+        }
+        checkWritable();
+        Optional<String> located = shardOf(LookupType.ID, String.valueOf(update.getId()));
+        if (located.isEmpty()) {
+            return 0;
+        }
+        String shard = located.get();
+        if (StringUtils.hasText(update.getPhone()) && !shard.equals(shardFor(update.getPhone()))) {
+            throw new RuntimeException("新手机号属于其他分片，暂不支持直接修改");
+        }
+
+        Map<LookupType, String> changed = lookupValuesOf(update);
+        changed.remove(LookupType.ID);
+        Map<LookupType, String> reserved = reserveLookups(update.getId(), shard, changed);
+        int affected;
+        try {
+            affected = ShardContext.runOn(shard, action);
+        } catch (RuntimeException e) {
+            releaseLookups(update.getId(), reserved);
+            throw e;
+        }
+        if (affected > 0) {
+            changed.forEach((type, value) -> removeStaleLookups(update.getId(), type, value));
+        } else {
+            releaseLookups(update.getId(), reserved);
+        }
+        return affected;
+    }
+
+    /**
+     * 预占查找表记录
+     * 已被同一用户占用的值视为成功；任一值被其他用户占用时撤销本次已预占的记录
+     *
+     * @param userId  用户ID
+     * @param shard   所在分片
+     * @param lookups 要预占的查找值
+     * @return 本次新增的查找值，用于失败时撤销
+     * @throws DuplicateKeyException 被其他用户占用时抛出
+     */
+    public Map<LookupType, String> reserveLookups(Long userId, String shard, Map<LookupType, String> lookups) {
+        if (!isEnabled() || lookups.isEmpty()) {
+            return Map.of();
+        }
+        Map<LookupType, String> reserved = new EnumMap<>(LookupType.class);
+        ShardContext.runOn(ShardContext.GLOBAL, () -> {
+            for (Map.Entry<LookupType, String> entry : lookups.entrySet()) {
+                try {
+                    lookupMapper.insert(UserShardLookup.builder()
+                            .lookupType(entry.getKey().name())
+                            .lookupValue(entry.getValue())
+                            .userId(userId)
+                            .shard(shard)
+                            .build());
+                    reserved.put(entry.getKey(), entry.getValue());
+                } catch (DuplicateKeyException e) {
+                    UserShardLookup existing = lookupMapper.selectOne(new LambdaQueryWrapper<UserShardLookup>()
+                            .eq(UserShardLookup::getLookupType, entry.getKey().name())
+                            .eq(UserShardLookup::getLookupValue, entry.getValue()));
+                    if (existing != null && userId.equals(existing.getUserId())) {
+                        continue;
+                    }
+                    releaseLookups(userId, reserved);
+                    // 与MySQL唯一约束冲突信息保持同样格式，便于上层统一映射
+                    throw new DuplicateKeyException("Duplicate entry '" + entry.getValue()
+                            + "' for key 'users." + entry.getKey().getColumn() + "'", e);
+                }
+            }
+            return null;
+        });
+        return reserved;
+    }
+
+    /**
+     * 删除用户某类查找值中除保留值以外的记录（用于邮箱、用户名变更后清理旧值）
+     *
+     * @param userId 用户ID
+     * @param type   查找类型
+     * @param keep   需要保留的当前值
+     */
+    public void removeStaleLookups(Long userId, LookupType type, String keep) {
+        if (!isEnabled()) {
+            return;
+        }
+        ShardContext.runOn(ShardContext.GLOBAL, () -> lookupMapper.delete(new LambdaQueryWrapper<UserShardLookup>()
+                .eq(UserShardLookup::getLookupType, type.name())
+                .eq(UserShardLookup::getUserId, userId)
+                .ne(UserShardLookup::getLookupValue, keep)));
+    }
+
+    /**
+     * 撤销查找表记录
+     *
+     * @param userId  用户ID
+     * @param lookups 要撤销的查找值
+     */
+    public void releaseLookups(Long userId, Map<LookupType, String> lookups) {
+        if (!isEnabled() || lookups.isEmpty()) {
+            return;
+        }
+        ShardContext.runOn(ShardContext.GLOBAL, () -> {
+            lookups.forEach((type, value) -> lookupMapper.delete(new LambdaQueryWrapper<UserShardLookup>()
+                    .eq(UserShardLookup::getLookupType, type.name())
+                    .eq(UserShardLookup::getLookupValue, value)
+                    .eq(UserShardLookup::getUserId, userId)));
+            return null;
+        });
+    }
+
+    /**
+     * 将用户的全部查找记录指向新分片（重分片迁移时使用）
+     *
+     * @param userId 用户ID
+     * @param shard  新分片
+     */
+    public void moveLookups(Long userId, String shard) {
+        ShardContext.runOn(ShardContext.GLOBAL, () -> lookupMapper.update(null,
+                new LambdaUpdateWrapper<UserShardLookup>()
+                        .set(UserShardLookup::getShard, shard)
+                        .eq(UserShardLookup::getUserId, userId)));
+    }
+
+    /**
+     * 提取用户需要登记到查找表的字段
+     *
+     * @param user 用户
+     * @return 查找类型到值的映射，空值字段被忽略
+     */
+    public static Map<LookupType, String> lookupValuesOf(Users user) {
+        Map<LookupType, String> values = new EnumMap<>(LookupType.class);
+        if (user.getId() != null) {
+            values.put(LookupType.ID, String.valueOf(user.getId()));
+        }
+        if (StringUtils.hasText(user.getEmail())) {
+            values.put(LookupType.EMAIL, user.getEmail());
+        }
+        if (StringUtils.hasText(user.getUsername())) {
+            values.put(LookupType.USERNAME, user.getUsername());
+        }
+        return values;
+    }
+
+    /**
+     * 在所有已配置分片上并发执行查询并合并结果
+     *
+     * @param query 在单个分片上执行的查询
+     * @param <T>   元素类型
+     * @return 合并后的结果
+     */
+    public <T> List<T> scatter(Supplier<List<T>> query) {
+        if (!isEnabled()) {
+            return query.get();
+        }
+        List<Future<List<T>>> futures = new ArrayList<>();
+        for (String shard : configuredShards()) {
+            futures.add(scatterExecutor.submit(() -> ShardContext.runOn(shard, query)));
+        }
+        List<T> merged = new ArrayList<>();
+        for (Future<List<T>> future : futures) {
+            try {
+                merged.addAll(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("分片查询被中断", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("分片查询失败: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 在所有分片上并发执行查询，按指定顺序归并后截取前limit条
+     * 每个分片的查询应自行按相同顺序排序并限制条数
+     *
+     * @param query 在单个分片上执行的查询
+     * @param order 全局排序规则
+     * @param limit 最大返回条数
+     * @param <T>   元素类型
+     * @return 归并后的结果
+     */
+    public <T> List<T> scatter(Supplier<List<T>> query, Comparator<? super T> order, int limit) {
+        return scatter(query).stream().sorted(order).limit(limit).toList();
+    }
+
+    /**
+     * 获取所有已配置的分片名称
+     *
+     * @return 分片名称列表，未启用时只包含全局数据源
+     */
+    public List<String> configuredShards() {
+        if (!isEnabled()) {
+            return List.of(ShardContext.GLOBAL);
+        }
+        return properties.getShards().stream().map(ShardingProperties.Shard::getName).toList();
+    }
+
+    /**
+     * 获取当前生效的分片列表
+     *
+     * @return 哈希环中的分片名称
+     */
+    public List<String> activeShards() {
+        return isEnabled() ? ring.get().getShards() : List.of(ShardContext.GLOBAL);
+    }
+
+    /**
+     * 切换生效的分片列表：写入Redis供其他节点刷新，并立即更新本节点
+     *
+     * @param shards 新的分片列表
+     */
+    public void switchActiveShards(List<String> shards) {
+        if (!configuredShards().containsAll(shards)) {
+            throw new IllegalArgumentException("存在未配置数据源的分片：" + shards);
+        }
+        redisTemplate.opsForValue().set(ACTIVE_SHARDS_KEY, new ArrayList<>(shards));
+        ring.set(new ConsistentHashRing(shards, properties.getVirtualNodes()));
+        log.info("生效分片已切换为：{}", shards);
+    }
+
+    /**
+     * 是否正在重分片，重分片期间暂停登录统计等不更新update_time的写入
+     *
+     * @return 正在重分片返回true
+     */
+    public boolean isResharding() {
+        return reshardState != null;
+    }
+
+    /**
+     * 写入重分片状态，供所有节点刷新，并立即更新本节点
+     *
+     * @param state 新状态，为null表示重分片结束
+     */
+    public void setReshardState(ReshardState state) {
+        if (state == null) {
+            redisTemplate.delete(RESHARD_STATE_KEY);
+        } else {
+            redisTemplate.opsForValue().set(RESHARD_STATE_KEY, state.name());
+        }
+        reshardState = state;
+        log.info("重分片状态已切换为：{}", state);
+    }
+
+    /**
+     * 处于写入栅栏期间时拒绝写入用户数据
+     * 重分片进行中时每次写入都直接从Redis读取状态，栅栏一经设置立即在所有节点生效，不必等待定时刷新；
+     * 重分片工具在设置栅栏前会先等待所有节点刷新到COPYING，因此未在重分片时无需额外读取Redis
+     *
+     * @throws RuntimeException 处于写入栅栏期间，或重分片进行中无法读取状态时抛出
+     */
+    private void checkWritable() {
+        if (reshardState == null) {
+            return;
+        }
+        ReshardState current;
+        try {
+            current = readReshardState();
+        } catch (Exception e) {
+            log.warn("读取重分片状态失败，拒绝写入：{}", e.getMessage());
+            throw new RuntimeException("用户数据迁移中，暂时无法修改，请稍后重试", e);
+        }
+        reshardState = current;
+        if (current == ReshardState.FENCED) {
+            throw new RuntimeException("用户数据迁移中，暂时无法修改，请稍后重试");
+        }
+    }
+
+    /**
+     * 定时从Redis刷新生效分片列表和重分片状态
+     * 先刷新分片列表再刷新状态，栅栏解除时本节点一定已经使用新的分片列表
+     */
+    @Scheduled(fixedDelayString = "${afang.sharding.ring-refresh-interval-ms:5000}")
+    public void refreshActiveShards() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            readActiveShards()
+                    .filter(shards -> !shards.equals(ring.get().getShards()))
+                    .ifPresent(shards -> {
+                        ring.set(new ConsistentHashRing(shards, properties.getVirtualNodes()));
+                        log.info("检测到生效分片变更，已刷新为：{}", shards);
+                    });
+            reshardState = readReshardState();
+        } catch (Exception e) {
+            log.warn("刷新生效分片列表失败：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 从Redis读取重分片状态
+     *
+     * @return 重分片状态，未在重分片时为null
+     */
+    private ReshardState readReshardState() {
+        Object value = redisTemplate.opsForValue().get(RESHARD_STATE_KEY);
+        return value == null ? null : ReshardState.valueOf(String.valueOf(value));
+    }
+
+    /**
+     * 从Redis读取生效分片列表
+     *
+     * @return 分片列表，不存在时为空
+     */
+    private Optional<List<String>> readActiveShards() {
+        Object value = redisTemplate.opsForValue().get(ACTIVE_SHARDS_KEY);
+        if (value instanceof List<?> list && !list.isEmpty()) {
+            return Optional.of(list.stream().map(String::valueOf).toList());
+        }
+        return Optional.empty();
+    }
+}
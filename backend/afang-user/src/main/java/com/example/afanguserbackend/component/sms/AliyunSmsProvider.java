@@ -0,0 +1,136 @@
+package com.example.afanguserbackend.component.sms;
+
+import com.aliyun.auth.credentials.Credential;
+import com.aliyun.auth.credentials.provider.StaticCredentialProvider;
+import com.aliyun.sdk.service.dysmsapi20170525.AsyncClient;
+import com.aliyun.sdk.service.dysmsapi20170525.models.SendSmsRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import darabonba.core.client.ClientOverrideConfiguration;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 阿里云短信服务商（dysmsapi 2017-05-25，异步SDK）。
+ * <p>
+ * 模板参数按阿里云短信模板变量的约定转为小写键的JSON，如 {"code":"123456","minute":"5"}；
+ * 未配置AccessKey时不启用，也不创建SDK客户端。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class AliyunSmsProvider implements SmsProvider {
+
+    /**
+     * JSON序列化
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 短信签名
+     */
+    private final String signName;
+
+    /**
+     * 短信模板Code
+     */
+    private final String templateCode;
+
+    /**
+     * SDK客户端，未启用时为null
+     */
+    private final AsyncClient client;
+
+    /**
+     * 构造函数
+     *
+     * @param objectMapper    JSON序列化
+     * @param enabled         是否启用
+     * @param region          地域
+     * @param endpoint        服务地址
+     * @param accessKeyId     AccessKey ID
+     * @param accessKeySecret AccessKey Secret
+     * @param signName        短信签名
+     * @param templateCode    短信模板Code
+     */
+    public AliyunSmsProvider(ObjectMapper objectMapper,
+                             @Value("${afang.sms.aliyun.enabled:false}") boolean enabled,
+                             @Value("${afang.sms.aliyun.region:cn-hangzhou}") String region,
+                             @Value("${afang.sms.aliyun.endpoint:dysmsapi.aliyuncs.com}") String endpoint,
+                             @Value("${afang.sms.aliyun.access-key-id:}") String accessKeyId,
+                             @Value("${afang.sms.aliyun.access-key-secret:}") String accessKeySecret,
+                             @Value("${afang.sms.aliyun.sign-name:}") String signName,
+                             @Value("${afang.sms.aliyun.template-code:}") String templateCode) {
+        this.objectMapper = objectMapper;
+        this.signName = signName;
+        this.templateCode = templateCode;
+        this.client = enabled && !accessKeyId.isBlank()
+                ? AsyncClient.builder()
+                .region(region)
+                .credentialsProvider(StaticCredentialProvider.create(Credential.builder()
+                        .accessKeyId(accessKeyId)
+                        .accessKeySecret(accessKeySecret)
+                        .build()))
+                .overrideConfiguration(ClientOverrideConfiguration.create().setEndpointOverride(endpoint))
+                .build()
+                : null;
+    }
+
+    @Override
+    public String name() {
+        return "aliyun";
+    }
+
+    @Override
+    public boolean enabled() {
+        return client != null;
+    }
+
+    @Override
+    public CompletableFuture<Void> send(SmsMessage message) {
+        Map<String, String> templateParam = new LinkedHashMap<>();
+        message.params().forEach((name, value) -> templateParam.put(name.toLowerCase(Locale.ROOT), value));
+        SendSmsRequest request;
+        try {
+            request = SendSmsRequest.builder()
+                    .phoneNumbers(message.phone())
+                    .signName(signName)
+                    .templateCode(templateCode)
+                    .templateParam(objectMapper.writeValueAsString(templateParam))
+                    .build();
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return client.sendSms(request).thenAccept(response -> {
+            // 业务失败（如签名未审核、触发流控）时HTTP状态码仍为200，以Code判断
+            if (response.getBody() == null || !"OK".equalsIgnoreCase(response.getBody().getCode())) {
+                throw new RuntimeException("短信发送失败，原因："
+                        + (response.getBody() == null ? "空响应" : response.getBody().getCode() + " " + response.getBody().getMessage()));
+            }
+        });
+    }
+
+    /**
+     * 关闭SDK客户端
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (client != null) {
+            try {
+                client.close();
+            } catch (Exception e) {
+                log.debug("关闭阿里云短信客户端失败，错误信息：{}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.afanguserbackend.component.sms;
+
+import com.example.afanguserbackend.component.http.OutboundHttpClient;
+import com.example.afanguserbackend.component.template.MessageTemplateEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpRequest;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 国阳云短信服务商（阿里云市场）。
+ * <p>
+ * 模板参数串（如 **code**:123456,**minute**:5）由同名消息模板渲染，请求通过共享的{@link OutboundHttpClient}发出。
+ * smsSignId（短信签名）和templateId（短信模板）需要登录国阳云控制台申请，参考文档：http://help.guoyangyun.com/Problem/Qm.html
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Component
+public class GuoyangSmsProvider implements SmsProvider {
+
+    /**
+     * 发送短信接口路径
+     */
+    private static final String PATH = "/sms/smsSend";
+
+    /**
+     * 共享的对外HTTP客户端
+     */
+    private final OutboundHttpClient outboundHttpClient;
+
+    /**
+     * 消息模板引擎
+     */
+    private final MessageTemplateEngine messageTemplateEngine;
+
+    /**
+     * 是否启用
+     */
+    private final boolean enabled;
+
+    /**
+     * 服务地址
+     */
+    private final String host;
+
+    /**
+     * 应用代码，用于API认证
+     */
+    private final String appCode;
+
+    /**
+     * 短信签名ID
+     */
+    private final String signId;
+
+    /**
+     * 短信模板ID
+     */
+    private final String templateId;
+
+    /**
+     * 构造函数
+     *
+     * @param outboundHttpClient    共享的对外HTTP客户端
+     * @param messageTemplateEngine 消息模板引擎
+     * @param enabled               是否启用
+     * @param host                  服务地址
+     * @param appCode               应用代码
+     * @param signId                短信签名ID
+     * @param templateId            短信模板ID
+     */
+    public GuoyangSmsProvider(OutboundHttpClient outboundHttpClient, MessageTemplateEngine messageTemplateEngine,
+                              @Value("${afang.sms.guoyang.enabled:true}") boolean enabled,
+                              @Value("${afang.sms.guoyang.host:https://gyytz.market.alicloudapi.com}") String host,
+                              @Value("${afang.sms.guoyang.app-code:}") String appCode,
+                              @Value("${afang.sms.guoyang.sign-id:}") String signId,
+                              @Value("${afang.sms.guoyang.template-id:}") String templateId) {
+        this.outboundHttpClient = outboundHttpClient;
+        this.messageTemplateEngine = messageTemplateEngine;
+        this.enabled = enabled;
+        this.host = host;
+        this.appCode = appCode;
+        this.signId = signId;
+        this.templateId = templateId;
+    }
+
+    @Override
+    public String name() {
+        return "guoyang";
+    }
+
+    @Override
+    public boolean enabled() {
+        return enabled && !appCode.isBlank();
+    }
+
+    @Override
+    public CompletableFuture<Void> send(SmsMessage message) {
+        // 参数串是服务商接口格式，与语言无关
+        String param = messageTemplateEngine.render(message.template(), Locale.ROOT, message.params());
+        Map<String, String> querys = new LinkedHashMap<>();
+        querys.put("mobile", message.phone());
+        querys.put("param", param);
+        querys.put("smsSignId", signId);
+        querys.put("templateId", templateId);
+
+        // 格式：Authorization:APPCODE appcode（中间是英文空格）；此接口使用查询参数，请求体为空
+        HttpRequest.Builder request = HttpRequest.newBuilder(OutboundHttpClient.uri(host, PATH, querys))
+                .header("Authorization", "APPCODE " + appCode)
+                .header("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8")
+                .POST(HttpRequest.BodyPublishers.noBody());
+
+        return outboundHttpClient.sendAsync(request).thenAccept(response -> {
+            if (response.statusCode() / 100 != 2) {
+                // 阿里云市场网关的错误原因在 X-Ca-Error-Message 响应头中
+                throw new RuntimeException("短信发送失败，状态码：" + response.statusCode() + "，原因："
+                        + response.headers().firstValue("X-Ca-Error-Message").orElse(response.body()));
+            }
+        });
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.afanguserbackend.component.sms;
+
+import java.util.Map;
+
+/**
+ * 待发送的短信，由各服务商按自己的接口格式转换模板参数
+ *
+ * @param phone    手机号
+ * @param template 消息模板名，如 sms-verification-code
+ * @param params   模板参数，如 CODE、MINUTE
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public record SmsMessage(String phone, String template, Map<String, String> params) {
+}
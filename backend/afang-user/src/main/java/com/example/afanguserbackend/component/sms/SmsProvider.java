@@ -0,0 +1,35 @@
+package com.example.afanguserbackend.component.sms;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 短信服务商
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public interface SmsProvider {
+
+    /**
+     * 服务商名称，与 afang.sms.providers 配置中的名称一致
+     *
+     * @return 名称
+     */
+    String name();
+
+    /**
+     * 是否已配置并启用
+     *
+     * @return 启用返回true
+     */
+    boolean enabled();
+
+    /**
+     * 异步发送短信，不能阻塞调用线程
+     *
+     * @param message 短信
+     * @return 发送结果；服务商返回失败或请求超时时异常完成
+     */
+    CompletableFuture<Void> send(SmsMessage message);
+}
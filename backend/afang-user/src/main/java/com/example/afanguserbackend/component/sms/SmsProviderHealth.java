@@ -0,0 +1,211 @@
+package com.example.afanguserbackend.component.sms;
+
+/**
+ * 单个短信服务商的健康状态：EWMA延迟、EWMA错误率和熔断器。
+ * <p>
+ * 熔断器三种状态：
+ * <ul>
+ *   <li>关闭：正常放行；连续失败达到阈值或错误率超过阈值时打开</li>
+ *   <li>打开：拒绝请求，经过打开时长后进入半开</li>
+ *   <li>半开：只放行一个探测请求，成功则关闭，失败则重新打开</li>
+ * </ul>
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+final class SmsProviderHealth {
+
+    /**
+     * 熔断器状态
+     */
+    enum State {
+        /**
+         * 关闭
+         */
+        CLOSED,
+        /**
+         * 打开
+         */
+        OPEN,
+        /**
+         * 半开
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * EWMA平滑系数
+     */
+    private final double alpha;
+
+    /**
+     * 打开熔断的连续失败次数
+     */
+    private final int failureThreshold;
+
+    /**
+     * 打开熔断的错误率
+     */
+    private final double errorRateThreshold;
+
+    /**
+     * 熔断打开时长（毫秒）
+     */
+    private final long openMillis;
+
+    /**
+     * EWMA延迟（毫秒），小于0表示尚无样本
+     */
+    private double latencyMs = -1;
+
+    /**
+     * EWMA错误率
+     */
+    private double errorRate;
+
+    /**
+     * 连续失败次数
+     */
+    private int consecutiveFailures;
+
+    /**
+     * 熔断器状态
+     */
+    private State state = State.CLOSED;
+
+    /**
+     * 熔断打开的时间戳（毫秒）
+     */
+    private long openedAt;
+
+    /**
+     * 半开状态下是否已有探测请求
+     */
+    private boolean probing;
+
+    /**
+     * 构造函数
+     *
+     * @param alpha              EWMA平滑系数
+     * @param failureThreshold   打开熔断的连续失败次数
+     * @param errorRateThreshold 打开熔断的错误率
+     * @param openMillis         熔断打开时长（毫秒）
+     */
+    SmsProviderHealth(double alpha, int failureThreshold, double errorRateThreshold, long openMillis) {
+        this.alpha = alpha;
+        this.failureThreshold = failureThreshold;
+        this.errorRateThreshold = errorRateThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * 是否可以参与选择，不改变状态
+     *
+     * @param now 当前时间戳（毫秒）
+     * @return 熔断关闭或可以探测时返回true
+     */
+    synchronized boolean available(long now) {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> now - openedAt >= openMillis;
+            case HALF_OPEN -> !probing;
+        };
+    }
+
+    /**
+     * 申请发送一次，打开时长已过时转为半开并占用探测名额
+     *
+     * @param now 当前时间戳（毫秒）
+     * @return 允许发送返回true
+     */
+    synchronized boolean tryAcquire(long now) {
+        if (state == State.OPEN && now - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            probing = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probing) {
+                return false;
+            }
+            probing = true;
+            return true;
+        }
+        return state == State.CLOSED;
+    }
+
+    /**
+     * 记录一次成功
+     *
+     * @param latency 耗时（毫秒）
+     */
+    synchronized void success(long latency) {
+        updateLatency(latency);
+        errorRate = (1 - alpha) * errorRate;
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+        probing = false;
+    }
+
+    /**
+     * 记录一次失败
+     *
+     * @param latency 耗时（毫秒），超时类失败同样计入延迟
+     * @param now     当前时间戳（毫秒）
+     */
+    synchronized void failure(long latency, long now) {
+        updateLatency(latency);
+        errorRate = alpha + (1 - alpha) * errorRate;
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold || errorRate >= errorRateThreshold) {
+            state = State.OPEN;
+            openedAt = now;
+            probing = false;
+        }
+    }
+
+    /**
+     * 选择用的评分，越小越优先：延迟按错误率放大；尚无样本时为0，使新服务商先被试用
+     *
+     * @return 评分
+     */
+    synchronized double score() {
+        return latencyMs < 0 ? 0 : latencyMs * (1 + 4 * errorRate);
+    }
+
+    /**
+     * EWMA延迟
+     *
+     * @return 延迟（毫秒），尚无样本时为0
+     */
+    synchronized double latencyMs() {
+        return Math.max(0, latencyMs);
+    }
+
+    /**
+     * EWMA错误率
+     *
+     * @return 错误率
+     */
+    synchronized double errorRate() {
+        return errorRate;
+    }
+
+    /**
+     * 熔断器状态
+     *
+     * @return 状态
+     */
+    synchronized State state() {
+        return state;
+    }
+
+    /**
+     * 更新EWMA延迟
+     *
+     * @param latency 耗时（毫秒）
+     */
+    private void updateLatency(long latency) {
+        latencyMs = latencyMs < 0 ? latency : alpha * latency + (1 - alpha) * latencyMs;
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.afanguserbackend.component.sms;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 多服务商短信路由。
+ * <p>
+ * 每次发送按各服务商的健康状态选择顺序，单个服务商变慢或故障时不再拖慢所有验证码请求：
+ * <ul>
+ *   <li>评分为EWMA延迟按EWMA错误率放大，评分越低越优先；评分相同时按 afang.sms.providers 的配置顺序</li>
+ *   <li>每个服务商有独立的熔断器，打开期间不参与选择，打开时长过后放行一个探测请求</li>
+ *   <li>首选服务商超过延迟预算仍未返回时，对冲发送到下一个服务商，先成功者为准（只对冲一次）；
+ *       对冲可能导致用户收到两条内容相同的短信，以此换取尾延迟</li>
+ *   <li>服务商返回失败时立即切换到下一个，所有候选都失败时整体失败</li>
+ * </ul>
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class SmsRouter {
+
+    /**
+     * 对冲定时器
+     */
+    private final ScheduledExecutorService hedgeScheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("sms-hedge").daemon(true).factory());
+
+    /**
+     * 按配置顺序排列的已启用服务商
+     */
+    private final List<Route> routes = new ArrayList<>();
+
+    /**
+     * 指标注册表
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 对冲前的延迟预算（毫秒），小于等于0表示不对冲
+     */
+    private final long hedgeAfterMs;
+
+    /**
+     * 构造函数
+     *
+     * @param providers          所有服务商
+     * @param meterRegistry      指标注册表
+     * @param order              服务商优先顺序，逗号分隔
+     * @param hedgeAfterMs       对冲前的延迟预算（毫秒）
+     * @param alpha              EWMA平滑系数
+     * @param failureThreshold   打开熔断的连续失败次数
+     * @param errorRateThreshold 打开熔断的错误率
+     * @param openMs             熔断打开时长（毫秒）
+     */
+    public SmsRouter(List<SmsProvider> providers, MeterRegistry meterRegistry,
+                     @Value("${afang.sms.providers:guoyang,aliyun,stub}") List<String> order,
+                     @Value("${afang.sms.hedge-after-ms:1500}") long hedgeAfterMs,
+                     @Value("${afang.sms.ewma-alpha:0.2}") double alpha,
+                     @Value("${afang.sms.breaker.failure-threshold:5}") int failureThreshold,
+                     @Value("${afang.sms.breaker.error-rate-threshold:0.5}") double errorRateThreshold,
+                     @Value("${afang.sms.breaker.open-ms:30000}") long openMs) {
+        this.meterRegistry = meterRegistry;
+        this.hedgeAfterMs = hedgeAfterMs;
+        Map<String, SmsProvider> byName = providers.stream()
+                .collect(Collectors.toMap(SmsProvider::name, Function.identity()));
+        for (String name : order) {
+            SmsProvider provider = byName.get(name.trim());
+            if (provider == null || !provider.enabled()) {
+                continue;
+            }
+            SmsProviderHealth health = new SmsProviderHealth(alpha, failureThreshold, errorRateThreshold, openMs);
+            routes.add(new Route(provider, health, routes.size()));
+            Gauge.builder("sms.provider.latency", health, SmsProviderHealth::latencyMs)
+                    .tag("provider", provider.name()).description("短信服务商EWMA延迟（毫秒）").register(meterRegistry);
+            Gauge.builder("sms.provider.error.rate", health, SmsProviderHealth::errorRate)
+                    .tag("provider", provider.name()).description("短信服务商EWMA错误率").register(meterRegistry);
+            Gauge.builder("sms.provider.breaker.open", health, h -> h.state() == SmsProviderHealth.State.OPEN ? 1 : 0)
+                    .tag("provider", provider.name()).description("短信服务商熔断是否打开").register(meterRegistry);
+        }
+        log.info("短信路由已启用的服务商：{}", routes.stream().map(r -> r.provider().name()).toList());
+    }
+
+    /**
+     * 发送短信
+     *
+     * @param message 短信
+     * @return 发送结果；没有可用服务商或所有候选都失败时异常完成
+     */
+    public CompletableFuture<Void> send(SmsMessage message) {
+        long now = System.currentTimeMillis();
+        List<Route> ranked = routes.stream()
+                .filter(route -> route.health().available(now))
+                .sorted(Comparator.comparingDouble((Route route) -> route.health().score())
+                        .thenComparingInt(Route::order))
+                .toList();
+        Attempt attempt = new Attempt(message, ranked);
+        attempt.next();
+        return attempt.result;
+    }
+
+    /**
+     * 关闭对冲定时器
+     */
+    @PreDestroy
+    public void shutdown() {
+        hedgeScheduler.shutdownNow();
+    }
+
+    /**
+     * 一条短信的发送过程：依次尝试候选服务商，首选超过延迟预算时对冲一次
+     */
+    private final class Attempt {
+
+        /**
+         * 最终结果
+         */
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        /**
+         * 短信
+         */
+        private final SmsMessage message;
+
+        /**
+         * 按评分排序的候选服务商
+         */
+        private final List<Route> ranked;
+
+        /**
+         * 下一个候选的位置
+         */
+        private int nextIndex;
+
+        /**
+         * 进行中的发送数
+         */
+        private int inFlight;
+
+        /**
+         * 是否已对冲
+         */
+        private boolean hedged;
+
+        /**
+         * 最近一次失败原因
+         */
+        private Throwable lastError;
+
+        /**
+         * 构造函数
+         *
+         * @param message 短信
+         * @param ranked  候选服务商
+         */
+        Attempt(SmsMessage message, List<Route> ranked) {
+            this.message = message;
+            this.ranked = ranked;
+        }
+
+        /**
+         * 发往下一个熔断器放行的候选；没有候选且没有进行中的发送时整体失败
+         */
+        synchronized void next() {
+            while (nextIndex < ranked.size()) {
+                Route route = ranked.get(nextIndex++);
+                if (!route.health().tryAcquire(System.currentTimeMillis())) {
+                    continue;
+                }
+                inFlight++;
+                launch(route);
+                if (!hedged && hedgeAfterMs > 0 && nextIndex < ranked.size()) {
+                    hedgeScheduler.schedule(this::hedge, hedgeAfterMs, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+            if (inFlight == 0) {
+                result.completeExceptionally(lastError != null ? lastError : new RuntimeException("没有可用的短信服务商"));
+            }
+        }
+
+        /**
+         * 延迟预算耗尽仍未完成时对冲到下一个候选
+         */
+        synchronized void hedge() {
+            if (result.isDone() || hedged || inFlight == 0) {
+                return;
+            }
+            hedged = true;
+            meterRegistry.counter("sms.hedge").increment();
+            log.info("短信发送超过{}ms未返回，对冲到下一个服务商，手机号：{}", hedgeAfterMs, message.phone());
+            next();
+        }
+
+        /**
+         * 发往一个服务商并记录结果
+         *
+         * @param route 服务商
+         */
+        private void launch(Route route) {
+            long start = System.nanoTime();
+            CompletableFuture<Void> sent;
+            try {
+                sent = route.provider().send(message);
+            } catch (RuntimeException e) {
+                sent = CompletableFuture.failedFuture(e);
+            }
+            sent.whenComplete((ignored, error) -> completed(route, start, error));
+        }
+
+        /**
+         * 一个服务商返回：成功则完成整体结果，失败且没有其他进行中的发送时切换到下一个
+         *
+         * @param route 服务商
+         * @param start 开始时间（纳秒）
+         * @param error 失败原因，成功时为null
+         */
+        private void completed(Route route, long start, Throwable error) {
+            long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            String outcome = error == null ? "success" : "failure";
+            if (error == null) {
+                route.health().success(latencyMs);
+            } else {
+                route.health().failure(latencyMs, System.currentTimeMillis());
+                log.warn("短信服务商发送失败，服务商：{}，手机号：{}，错误信息：{}",
+                        route.provider().name(), message.phone(), error.getMessage());
+            }
+            Timer.builder("sms.send")
+                    .tags("provider", route.provider().name(), "outcome", outcome)
+                    .description("短信服务商发送耗时")
+                    .register(meterRegistry)
+                    .record(latencyMs, TimeUnit.MILLISECONDS);
+            synchronized (this) {
+                inFlight--;
+                if (error == null) {
+                    result.complete(null);
+                    return;
+                }
+                lastError = error;
+                if (!result.isDone() && inFlight == 0) {
+                    next();
+                }
+            }
+        }
+    }
+
+    /**
+     * 已启用的服务商
+     *
+     * @param provider 服务商
+     * @param health   健康状态
+     * @param order    配置顺序
+     */
+    private record Route(SmsProvider provider, SmsProviderHealth health, int order) {
+    }
+}
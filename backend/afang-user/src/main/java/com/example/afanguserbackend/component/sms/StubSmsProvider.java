@@ -0,0 +1,104 @@
+package com.example.afanguserbackend.component.sms;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地桩服务商，用于本地联调和测试。
+ * <p>
+ * 不发出真实短信，只记录日志并保留最近发送的短信供检查；可配置模拟延迟和失败率，用于验证路由、熔断和对冲。
+ * 默认不启用，生产环境不要开启。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Slf4j
+@Component
+public class StubSmsProvider implements SmsProvider {
+
+    /**
+     * 保留的最近短信条数
+     */
+    private static final int RETAINED = 100;
+
+    /**
+     * 最近发送的短信，新的在前
+     */
+    private final Deque<SmsMessage> sent = new ArrayDeque<>();
+
+    /**
+     * 是否启用
+     */
+    private final boolean enabled;
+
+    /**
+     * 模拟延迟（毫秒）
+     */
+    private final long latencyMs;
+
+    /**
+     * 模拟失败率，0到1
+     */
+    private final double failureRate;
+
+    /**
+     * 构造函数
+     *
+     * @param enabled     是否启用
+     * @param latencyMs   模拟延迟（毫秒）
+     * @param failureRate 模拟失败率
+     */
+    public StubSmsProvider(@Value("${afang.sms.stub.enabled:false}") boolean enabled,
+                           @Value("${afang.sms.stub.latency-ms:0}") long latencyMs,
+                           @Value("${afang.sms.stub.failure-rate:0}") double failureRate) {
+        this.enabled = enabled;
+        this.latencyMs = latencyMs;
+        this.failureRate = failureRate;
+    }
+
+    @Override
+    public String name() {
+        return "stub";
+    }
+
+    @Override
+    public boolean enabled() {
+        return enabled;
+    }
+
+    @Override
+    public CompletableFuture<Void> send(SmsMessage message) {
+        return CompletableFuture.runAsync(() -> {
+            if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+                throw new RuntimeException("桩服务商模拟发送失败");
+            }
+            synchronized (sent) {
+                sent.addFirst(message);
+                if (sent.size() > RETAINED) {
+                    sent.removeLast();
+                }
+            }
+            log.info("桩服务商发送短信，手机号：{}，模板：{}，参数：{}", message.phone(), message.template(), message.params());
+        }, CompletableFuture.delayedExecutor(latencyMs, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 最近发送的短信
+     *
+     * @return 新的在前
+     */
+    public List<SmsMessage> sent() {
+        synchronized (sent) {
+            return List.copyOf(sent);
+        }
+    }
+}
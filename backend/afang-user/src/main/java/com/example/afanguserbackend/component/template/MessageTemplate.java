@@ -0,0 +1,136 @@
+package com.example.afanguserbackend.component.template;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预编译的消息模板。
+ * <p>
+ * 模板文本在加载时一次性切分为“文本段、占位符、文本段、……、文本段”的交替序列，
+ * 渲染时只按顺序把文本段和参数值追加到输出中，不再扫描模板或做字符串替换。
+ * 占位符格式为 {{NAME}}，名称两侧的空白会被忽略；参数值原样写入，不做HTML转义。
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public final class MessageTemplate {
+
+    /**
+     * 占位符开始标记
+     */
+    private static final String OPEN = "{{";
+
+    /**
+     * 占位符结束标记
+     */
+    private static final String CLOSE = "}}";
+
+    /**
+     * 模板名称
+     */
+    private final String name;
+
+    /**
+     * 文本段，比占位符多一个
+     */
+    private final String[] literals;
+
+    /**
+     * 占位符名称，第i个占位符位于第i和第i+1个文本段之间
+     */
+    private final String[] placeholders;
+
+    /**
+     * 文本段总长度，用于预估输出大小
+     */
+    private final int literalLength;
+
+    /**
+     * 构造函数
+     *
+     * @param name         模板名称
+     * @param literals     文本段
+     * @param placeholders 占位符名称
+     */
+    private MessageTemplate(String name, String[] literals, String[] placeholders) {
+        this.name = name;
+        this.literals = literals;
+        this.placeholders = placeholders;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * 解析模板文本
+     *
+     * @param name   模板名称
+     * @param source 模板文本
+     * @return 预编译的模板
+     * @throws IllegalArgumentException 占位符未闭合或名称为空时抛出
+     */
+    public static MessageTemplate parse(String name, String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        int from = 0;
+        while (true) {
+            int open = source.indexOf(OPEN, from);
+            if (open < 0) {
+                break;
+            }
+            int close = source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                throw new IllegalArgumentException("模板 " + name + " 的占位符未闭合，位置：" + open);
+            }
+            String placeholder = source.substring(open + OPEN.length(), close).trim();
+            if (placeholder.isEmpty()) {
+                throw new IllegalArgumentException("模板 " + name + " 的占位符名称为空，位置：" + open);
+            }
+            literals.add(source.substring(from, open));
+            placeholders.add(placeholder);
+            from = close + CLOSE.length();
+        }
+        literals.add(source.substring(from));
+        return new MessageTemplate(name, literals.toArray(String[]::new), placeholders.toArray(String[]::new));
+    }
+
+    /**
+     * 模板名称
+     *
+     * @return 模板名称
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * 输出长度的预估值，用于预分配缓冲区
+     *
+     * @return 文本段总长度加上每个占位符预留的长度
+     */
+    public int estimatedLength() {
+        return literalLength + placeholders.length * 16;
+    }
+
+    /**
+     * 把渲染结果追加到缓冲区
+     *
+     * @param params 占位符参数
+     * @param out    输出缓冲区
+     * @throws IllegalArgumentException 缺少占位符参数时抛出
+     */
+    public void renderTo(Map<String, ?> params, StringBuilder out) {
+        out.append(literals[0]);
+        for (int i = 0; i < placeholders.length; i++) {
+            Object value = params.get(placeholders[i]);
+            if (value == null) {
+                throw new IllegalArgumentException("模板 " + name + " 缺少参数：" + placeholders[i]);
+            }
+            out.append(value).append(literals[i + 1]);
+        }
+    }
+}
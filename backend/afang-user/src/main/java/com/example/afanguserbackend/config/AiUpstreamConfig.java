@@ -0,0 +1,146 @@
+package com.example.afanguserbackend.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.client.RestClientBuilderConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Scope;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ReactorClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * 大模型上游调用配置类
+ * 所有AI调用共用一个Reactor Netty连接池，连接和TLS会话在请求之间复用，首个token的耗时不再包含建连和握手
+ * <ul>
+ *   <li>连接池限制最大连接数和排队获取数，排队超时直接失败，不无限堆积</li>
+ *   <li>空闲连接后台定期回收，连接存活超过最长时间后不再复用，避免使用被上游静默关闭的连接</li>
+ *   <li>https地址通过ALPN优先协商HTTP/2，多个流式请求复用同一条连接；上游不支持或使用http地址（如本地网关）时使用HTTP/1.1</li>
+ *   <li>连接池和请求指标注册到Micrometer（reactor.netty.connection.provider.*、reactor.netty.http.client.*）</li>
+ * </ul>
+ * Spring Boot自动配置的WebClient.Builder会使用这里的{@link ClientHttpConnector}，Spring AI的流式调用因此共用同一个连接池；
+ * Spring AI的同步调用使用专用的{@link RestClient.Builder}接入同一个HttpClient，不再通过全局RestClientCustomizer影响其他RestClient
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Configuration
+public class AiUpstreamConfig {
+
+    /**
+     * 配置上游连接池
+     *
+     * @param maxConnections          最大连接数
+     * @param pendingAcquireMax       排队获取连接的最大请求数
+     * @param pendingAcquireTimeoutMs 排队获取连接的超时时间（毫秒）
+     * @param maxIdleMs               连接最长空闲时间（毫秒）
+     * @param maxLifeMs               连接最长存活时间（毫秒）
+     * @param evictIntervalMs         后台回收间隔（毫秒）
+     * @return 连接池
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider aiConnectionProvider(
+            @Value("${afang.ai.upstream.max-connections:64}") int maxConnections,
+            @Value("${afang.ai.upstream.pending-acquire-max:256}") int pendingAcquireMax,
+            @Value("${afang.ai.upstream.pending-acquire-timeout-ms:2000}") long pendingAcquireTimeoutMs,
+            @Value("${afang.ai.upstream.max-idle-ms:60000}") long maxIdleMs,
+            @Value("${afang.ai.upstream.max-life-ms:600000}") long maxLifeMs,
+            @Value("${afang.ai.upstream.evict-interval-ms:30000}") long evictIntervalMs) {
+        return ConnectionProvider.builder("ai-upstream")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMax)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofMillis(maxIdleMs))
+                .maxLifeTime(Duration.ofMillis(maxLifeMs))
+                .evictInBackground(Duration.ofMillis(evictIntervalMs))
+                .metrics(true)
+                .build();
+    }
+
+    /**
+     * 配置上游HttpClient
+     *
+     * @param connectionProvider 连接池
+     * @param connectTimeoutMs   建连超时（毫秒）
+     * @param responseTimeoutMs  两次读取之间的最长间隔（毫秒），流式响应按每个数据块计算
+     * @param http2              https地址是否优先协商HTTP/2
+     * @return HttpClient
+     */
+    @Bean
+    public HttpClient aiHttpClient(ConnectionProvider connectionProvider,
+                                   @Value("${afang.ai.upstream.connect-timeout-ms:3000}") int connectTimeoutMs,
+                                   @Value("${afang.ai.upstream.response-timeout-ms:60000}") long responseTimeoutMs,
+                                   @Value("${afang.ai.upstream.http2:true}") boolean http2) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(Duration.ofMillis(responseTimeoutMs))
+                // 上游路径固定，按路径打标签不会造成指标基数膨胀
+                .metrics(true, uri -> {
+                    int query = uri.indexOf('?');
+                    return query < 0 ? uri : uri.substring(0, query);
+                });
+        if (http2) {
+            // 不调用secure()：TLS按请求地址的协议自动启用，http地址仍可使用
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+        // 预先初始化事件循环和TLS实现，避免第一次请求承担这部分开销
+        httpClient.warmup().block();
+        return httpClient;
+    }
+
+    /**
+     * WebClient使用的连接器，Spring Boot自动配置的WebClient.Builder会使用该Bean
+     *
+     * @param aiHttpClient 上游HttpClient
+     * @return 连接器
+     */
+    @Bean
+    public ClientHttpConnector aiClientHttpConnector(HttpClient aiHttpClient) {
+        return new ReactorClientHttpConnector(aiHttpClient);
+    }
+
+    /**
+     * Spring AI的OpenAI同步调用使用的RestClient.Builder，接入同一个HttpClient
+     * 应用中只有Spring AI注入RestClient.Builder；与Spring Boot自动配置的Builder一样为原型作用域，
+     * 每次注入都是新实例，聊天和向量化各自设置地址和请求头互不影响
+     *
+     * @param configurer   Spring Boot的RestClient.Builder配置器，保留消息转换器等默认设置
+     * @param aiHttpClient 上游HttpClient
+     * @return RestClient.Builder
+     */
+    @Bean
+    @Scope("prototype")
+    public RestClient.Builder aiRestClientBuilder(RestClientBuilderConfigurer configurer, HttpClient aiHttpClient) {
+        return configurer.configure(RestClient.builder())
+                .requestFactory(new ReactorClientHttpRequestFactory(aiHttpClient));
+    }
+
+    /**
+     * 直接调用大模型接口的WebClient，全局共用一个实例
+     *
+     * @param builder Spring Boot自动配置的WebClient.Builder
+     * @param baseUrl 大模型接口地址
+     * @param apiKey  API密钥
+     * @return WebClient
+     */
+    @Bean
+    public WebClient aiWebClient(WebClient.Builder builder,
+                                 @Value("${spring.ai.openai.base-url}") String baseUrl,
+                                 @Value("${spring.ai.openai.api-key}") String apiKey) {
+        return builder.baseUrl(baseUrl)
+                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .build();
+    }
+}
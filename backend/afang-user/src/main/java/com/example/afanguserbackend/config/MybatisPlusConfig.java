@@ -0,0 +1,31 @@
+package com.example.afanguserbackend.config;
+
+import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.inner.OptimisticLockerInnerInterceptor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * MyBatis-Plus配置类
+ * 注册MyBatis-Plus插件，如乐观锁等
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Configuration
+public class MybatisPlusConfig {
+
+    /**
+     * MyBatis-Plus插件拦截器
+     * 乐观锁插件：实体携带@Version字段值时，updateById会追加 version = ? 条件并将版本号自增
+     *
+     * @return 配置好的插件拦截器
+     */
+    @Bean
+    public MybatisPlusInterceptor mybatisPlusInterceptor() {
+        MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
+        interceptor.addInnerInterceptor(new OptimisticLockerInnerInterceptor());
+        return interceptor;
+    }
+}
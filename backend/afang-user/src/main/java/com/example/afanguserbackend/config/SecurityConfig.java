@@ -75,6 +75,8 @@ public class SecurityConfig {
                     auth.requestMatchers("/websocket/**").permitAll();
                     // 白名单路径允许无需认证访问
                     AUTH_WHITELIST.forEach(path -> auth.requestMatchers(path).permitAll());
+                    // 管理接口仅管理员可访问
+                    auth.requestMatchers("/admin/**").hasRole("ADMIN");
                     // 其他所有请求都需要认证
                     auth.anyRequest().authenticated();
                 })
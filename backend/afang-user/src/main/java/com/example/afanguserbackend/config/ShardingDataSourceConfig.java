@@ -0,0 +1,58 @@
+package com.example.afanguserbackend.config;
+
+import com.example.afanguserbackend.component.sharding.ShardContext;
+import com.example.afanguserbackend.component.sharding.ShardRoutingDataSource;
+import com.example.afanguserbackend.component.sharding.ShardingProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 分片数据源配置类
+ * 启用afang.sharding.enabled后，以路由数据源替换默认数据源：
+ * spring.datasource作为全局库（存放分片查找表等全局数据），afang.sharding.shards为各用户分片
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "afang.sharding", name = "enabled", havingValue = "true")
+public class ShardingDataSourceConfig {
+
+    /**
+     * 分片路由数据源Bean
+     *
+     * @param globalProperties   默认数据源配置，作为全局库
+     * @param shardingProperties 分片配置
+     * @return 路由数据源
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties globalProperties, ShardingProperties shardingProperties) {
+        DataSource global = globalProperties.initializeDataSourceBuilder().build();
+
+        Map<Object, Object> targets = new LinkedHashMap<>();
+        targets.put(ShardContext.GLOBAL, global);
+        for (ShardingProperties.Shard shard : shardingProperties.getShards()) {
+            targets.put(shard.getName(), DataSourceBuilder.create()
+                    .url(shard.getUrl())
+                    .username(shard.getUsername())
+                    .password(shard.getPassword())
+                    .driverClassName(shard.getDriverClassName())
+                    .build());
+        }
+
+        ShardRoutingDataSource routing = new ShardRoutingDataSource();
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(global);
+        return routing;
+    }
+}
@@ -3,18 +3,27 @@ package com.example.afanguserbackend.controller;
 import com.example.afanguserbackend.common.BaseResponse;
 import com.example.afanguserbackend.common.ResultUtils;
 import com.example.afanguserbackend.model.dto.user.common_user_dto.UpdateUsersDto;
+import com.example.afanguserbackend.model.vo.user.UserSearchVo;
+import com.example.afanguserbackend.model.vo.user.UserVo;
+import com.example.afanguserbackend.model.wrapper.SecurityUserWrapper;
 import com.example.afanguserbackend.service.user.CommonUserService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 
 /**
  * 用户管理控制器
- * 提供用户信息更新等普通业务操作的API接口
+ * 提供用户信息更新、用户搜索等普通业务操作的API接口
  *
  * @author AFang Team
  * @version 1.0
@@ -31,17 +40,45 @@ public class CommonUserController {
      */
     private final CommonUserService commonUserService;
 
+    /**
+     * 查询当前登录用户资料接口
+     * 返回的版本号在修改资料时原样提交
+     *
+     * @param principal 当前登录用户
+     * @return 用户资料，不含密码
+     */
+    @GetMapping("/me")
+    public BaseResponse<UserVo> me(@AuthenticationPrincipal SecurityUserWrapper principal) {
+        return ResultUtils.success(commonUserService.getCurrentUser(principal.getUsers().getId()));
+    }
+
     /**
      * 更新用户信息接口
-     * 根据提供的用户信息更新对应用户的数据
+     * 更新当前登录用户自己的资料，目标用户取自认证信息而不是请求体；版本号取自 /user/me
      *
+     * @param principal      当前登录用户
      * @param updateUsersDto 用户更新信息，包含需要更新的字段
      * @return 更新操作结果，成功返回空数据，失败返回错误信息
      */
     @PostMapping("/updateUser")
-    public BaseResponse<Void> update(@RequestBody UpdateUsersDto updateUsersDto) {
-        return commonUserService.updateUsers(updateUsersDto) ?
+    public BaseResponse<Void> update(@AuthenticationPrincipal SecurityUserWrapper principal,
+                                     @Valid @RequestBody UpdateUsersDto updateUsersDto) {
+        return commonUserService.updateUsers(principal.getUsers().getId(), updateUsersDto) ?
                 ResultUtils.success()
                 : ResultUtils.fail("用户信息更改失败!");
     }
+
+    /**
+     * 搜索用户接口
+     * 按用户名、邮箱、手机号的前缀或子串匹配用户，用于@提及和后台搜索
+     *
+     * @param keyword 搜索关键字
+     * @param limit   最多返回条数，默认10，最大50
+     * @return 按相关度排序的用户列表，邮箱和手机号已脱敏
+     */
+    @GetMapping("/search")
+    public BaseResponse<List<UserSearchVo>> search(@RequestParam("keyword") String keyword,
+                                                   @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return ResultUtils.success(commonUserService.searchUsers(keyword, limit));
+    }
 }
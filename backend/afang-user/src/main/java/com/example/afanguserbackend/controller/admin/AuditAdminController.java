@@ -0,0 +1,59 @@
+package com.example.afanguserbackend.controller.admin;
+
+import com.example.afanguserbackend.common.BaseResponse;
+import com.example.afanguserbackend.common.ResultUtils;
+import com.example.afanguserbackend.component.audit.LoginAuditRecorder;
+import com.example.afanguserbackend.model.entity.audit.LoginAudit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 审计管理控制器
+ * 提供登录审计记录的查询接口，仅管理员可访问
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@RestController
+@RequestMapping("/admin/audit")
+@RequiredArgsConstructor
+@Slf4j
+public class AuditAdminController {
+
+    /**
+     * 单次查询最多返回条数
+     */
+    private static final int MAX_LIMIT = 500;
+
+    /**
+     * 最多可查询的天数
+     */
+    private static final int MAX_DAYS = 90;
+
+    /**
+     * 登录审计记录器
+     */
+    private final LoginAuditRecorder loginAuditRecorder;
+
+    /**
+     * 查询用户最近的登录记录
+     *
+     * @param userId 用户ID
+     * @param days   查询最近多少天，默认7天，最多90天
+     * @param limit  最多返回条数，默认50，最多500
+     * @return 按登录时间倒序的审计记录
+     */
+    @GetMapping("/logins")
+    public BaseResponse<List<LoginAudit>> logins(@RequestParam("userId") Long userId,
+                                                 @RequestParam(value = "days", defaultValue = "7") int days,
+                                                 @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        if (days <= 0 || limit <= 0) {
+            throw new RuntimeException("查询天数和返回条数必须大于0");
+        }
+        return ResultUtils.success(loginAuditRecorder.recent(userId, Math.min(days, MAX_DAYS), Math.min(limit, MAX_LIMIT)));
+    }
+}
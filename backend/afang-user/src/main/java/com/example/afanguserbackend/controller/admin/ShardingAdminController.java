@@ -0,0 +1,69 @@
+package com.example.afanguserbackend.controller.admin;
+
+import com.example.afanguserbackend.common.BaseResponse;
+import com.example.afanguserbackend.common.ResultUtils;
+import com.example.afanguserbackend.component.sharding.ReshardReport;
+import com.example.afanguserbackend.component.sharding.UserReshardingTool;
+import com.example.afanguserbackend.component.sharding.UserShardTemplate;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 分片管理控制器
+ * 提供查看生效分片、触发在线重分片等管理接口，仅管理员可访问
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@RestController
+@RequestMapping("/admin/sharding")
+@RequiredArgsConstructor
+@Slf4j
+public class ShardingAdminController {
+
+    /**
+     * 分片操作模板
+     */
+    private final UserShardTemplate userShardTemplate;
+
+    /**
+     * 在线重分片工具
+     */
+    private final UserReshardingTool userReshardingTool;
+
+    /**
+     * 查询当前生效的分片列表
+     *
+     * @return 生效分片名称列表
+     */
+    @GetMapping("/active")
+    public BaseResponse<List<String>> activeShards() {
+        return ResultUtils.success(userShardTemplate.activeShards());
+    }
+
+    /**
+     * 启动在线重分片
+     *
+     * @param targetShards 目标分片名称列表
+     * @return 任务报告
+     */
+    @PostMapping("/reshard")
+    public BaseResponse<ReshardReport> reshard(@RequestBody List<String> targetShards) {
+        log.info("管理员触发重分片，目标分片：{}", targetShards);
+        return ResultUtils.success(userReshardingTool.start(targetShards));
+    }
+
+    /**
+     * 查询最近一次重分片任务进度
+     *
+     * @return 任务报告，从未执行过时data为空
+     */
+    @GetMapping("/reshard/status")
+    public BaseResponse<ReshardReport> reshardStatus() {
+        return ResultUtils.success(userReshardingTool.status().orElse(null));
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.afanguserbackend.controller.admin;
+
+import com.example.afanguserbackend.common.BaseResponse;
+import com.example.afanguserbackend.common.ResultUtils;
+import com.example.afanguserbackend.component.bitmap.UserBitmapIndex;
+import com.example.afanguserbackend.model.dto.user.admin_user_dto.UpdateUserRoleDto;
+import com.example.afanguserbackend.model.dto.user.admin_user_dto.UserFilterDto;
+import com.example.afanguserbackend.model.vo.user.UserFilterVo;
+import com.example.afanguserbackend.service.user.CommonUserService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户管理后台控制器
+ * 提供基于内存位图索引的用户组合筛选与统计接口，以及用户角色和状态修改接口，仅管理员可访问
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@RestController
+@RequestMapping("/admin/users")
+@RequiredArgsConstructor
+@Slf4j
+public class UserAdminController {
+
+    /**
+     * 用户位图索引
+     */
+    private final UserBitmapIndex userBitmapIndex;
+
+    /**
+     * 用户业务服务接口
+     */
+    private final CommonUserService commonUserService;
+
+    /**
+     * 按角色、状态、注册日期组合筛选用户
+     *
+     * @param filter 筛选条件
+     * @return 满足条件的用户数及当前页的用户ID和资料
+     */
+    @PostMapping("/filter")
+    public BaseResponse<UserFilterVo> filter(@Valid @RequestBody UserFilterDto filter) {
+        List<Long> ids = userBitmapIndex.ids(filter, filter.getOffset(), filter.getLimit());
+        return ResultUtils.success(UserFilterVo.builder()
+                .count(userBitmapIndex.count(filter))
+                .ids(ids)
+                .users(commonUserService.getUsersByIds(ids))
+                .build());
+    }
+
+    /**
+     * 修改用户角色和状态
+     *
+     * @param dto 角色和状态修改信息
+     * @return 更新操作结果，成功返回空数据，失败返回错误信息
+     */
+    @PostMapping("/updateRole")
+    public BaseResponse<Void> updateRole(@Valid @RequestBody UpdateUserRoleDto dto) {
+        return commonUserService.updateRoleAndStatus(dto) ?
+                ResultUtils.success()
+                : ResultUtils.fail("用户角色更改失败!");
+    }
+
+    /**
+     * 按角色和状态统计用户数
+     *
+     * @return 维度名到各取值用户数的映射
+     */
+    @GetMapping("/stats")
+    public BaseResponse<Map<String, Map<String, Long>>> stats() {
+        return ResultUtils.success(userBitmapIndex.stats());
+    }
+}
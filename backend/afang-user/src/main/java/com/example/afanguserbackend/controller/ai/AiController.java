@@ -1,16 +1,36 @@
 package com.example.afanguserbackend.controller.ai;
 
+import com.example.afanguserbackend.component.ai.AiStreamScheduler;
+import com.example.afanguserbackend.component.ai.ChatChunkEncoder;
+import com.example.afanguserbackend.component.ai.ChatResponseCache;
+import com.example.afanguserbackend.component.ai.SemanticAnswerCache;
+import com.example.afanguserbackend.component.ai.StreamCoalescer;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
 
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * Spring AI 1.0.1 AI聊天控制器（修复SSE解析问题 + 优化依赖）
  */
@@ -22,15 +42,40 @@ public class AiController {
     // 核心修复1：OpenAiChatModel已实现StreamingChatModel，无需额外注入，减少冗余
     private final ChatClient chatClient;
 
-    public AiController(ChatClient.Builder chatClientBuilder) {
+    // 共享连接池的上游WebClient，不再每次请求新建连接池和TLS会话
+    private final WebClient aiWebClient;
+
+    // 精确匹配的回答缓存，重复问题不再调用上游
+    private final ChatResponseCache chatResponseCache;
+
+    // 语义缓存，换了说法的同一问题也能命中
+    private final SemanticAnswerCache semanticAnswerCache;
+
+    // 相同问题的并发流式请求合并
+    private final StreamCoalescer streamCoalescer;
+
+    // 按客户端限流并公平排队，控制上游并发
+    private final AiStreamScheduler aiStreamScheduler;
+
+    // 流式响应等到第一帧后返回，到响应体被订阅之间保持共享流连接的时长
+    private static final Duration RESPONSE_SUBSCRIBE_GRACE = Duration.ofSeconds(5);
+
+    // 排队结束后执行同步调用的线程，不占用请求线程
+    private final ExecutorService callExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public AiController(ChatClient.Builder chatClientBuilder, WebClient aiWebClient,
+                        ChatResponseCache chatResponseCache, SemanticAnswerCache semanticAnswerCache,
+                        StreamCoalescer streamCoalescer, AiStreamScheduler aiStreamScheduler) {
         this.chatClient = chatClientBuilder.build();
+        this.aiWebClient = aiWebClient;
+        this.chatResponseCache = chatResponseCache;
+        this.semanticAnswerCache = semanticAnswerCache;
+        this.streamCoalescer = streamCoalescer;
+        this.aiStreamScheduler = aiStreamScheduler;
     }
-    
-    @Value("${spring.ai.openai.api-key}")
-    private String apiKey;
-    
-    @Value("${spring.ai.openai.base-url}")
-    private String baseUrl;
+
+    @Value("${spring.ai.openai.chat.options.model:glm-4.5-flash}")
+    private String model;
 
     /**
      * 非流式聊天接口
@@ -38,8 +83,40 @@ public class AiController {
      */
 
     @GetMapping("/ai/generateStream")
-    public String generateStream(@RequestParam(value = "message", defaultValue = "Tell me a joke") String message) {
-        return this.chatClient.prompt().user(message).call().content();
+    public CompletableFuture<String> generateStream(@RequestParam(value = "message", defaultValue = "Tell me a joke") String message,
+                                                    HttpServletRequest request) {
+        String cacheKey = chatResponseCache.key(message);
+        Optional<String> cached = chatResponseCache.get(cacheKey);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached.get());
+        }
+        // 排队拿到上游名额后再查询语义缓存（向量化同样计费）和调用上游，超过限制时以429返回
+        CompletableFuture<AiStreamScheduler.Permit> acquired =
+                aiStreamScheduler.acquire(aiStreamScheduler.client(request), true);
+        // 请求已超时或断开时不再排队；已拿到名额的调用照常结束并释放
+        onAbandon(request, () -> acquired.cancel(false));
+        return acquired
+                .thenApplyAsync(permit -> {
+                    try {
+                        CacheLookup lookup = lookupSemantic(message, cacheKey);
+                        if (lookup.answer() != null) {
+                            return lookup.answer();
+                        }
+                        ChatResponse response = this.chatClient.prompt().user(message).call().chatResponse();
+                        Generation result = response == null ? null : response.getResult();
+                        if (result == null) {
+                            return null;
+                        }
+                        String content = result.getOutput().getText();
+                        // 被截断（length等）或被过滤的回答不缓存
+                        if (isStop(result)) {
+                            remember(lookup, content);
+                        }
+                        return content;
+                    } finally {
+                        permit.release();
+                    }
+                }, callExecutor);
     }
 
     /**
@@ -47,75 +124,119 @@ public class AiController {
      * 完整路径：http://localhost:端口/public/ai/stream
      */
     @GetMapping(value = "/ai/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> streamChat(@RequestParam String message) {
+    public CompletableFuture<ResponseEntity<Flux<String>>> streamChat(@RequestParam String message,
+                                                                      HttpServletRequest request) {
+        String cacheKey = chatResponseCache.key(message);
+        Optional<String> cached = chatResponseCache.get(cacheKey);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.ok(Flux.fromIterable(chatResponseCache.replay(cacheKey, cached.get()))));
+        }
+        AiStreamScheduler.Client client = aiStreamScheduler.client(request);
+        // 每个请求计入客户端的并发数（不排队，立即完成）；只有实际发起上游调用的共享流才排队申请上游名额
+        return aiStreamScheduler.acquire(client, false).thenCompose(permit -> {
+            Flux<String> body = streamCoalescer.coalesce(cacheKey, () -> aiStreamScheduler.acquireUpstream(client),
+                            () -> {
+                                // 相同问题同时只有一个请求查询语义缓存和调用上游，其余请求共享其输出
+                                CacheLookup lookup = lookupSemantic(message, cacheKey);
+                                if (lookup.answer() != null) {
+                                    return Flux.fromIterable(
+                                            chatResponseCache.replay(lookup.answerKey(), lookup.answer()));
+                                }
+                                return upstreamStream(message, lookup);
+                            })
+                    .doFinally(signal -> permit.release())
+                    // 响应体订阅之前先订阅等到第一帧，排队被拒绝时在响应开始前以429返回；
+                    // 两次订阅之间保持连接，响应体始终没有订阅（请求已放弃）时在宽限期后断开
+                    .replay()
+                    .refCount(1, RESPONSE_SUBSCRIBE_GRACE);
+            CompletableFuture<String> first = body.next().toFuture();
+            onAbandon(request, () -> first.cancel(false));
+            return first.thenApply(frame -> ResponseEntity.ok(body));
+        });
+    }
+
+    /**
+     * 调用上游流式接口，按OpenAI格式逐帧输出，正常结束时写入缓存
+     */
+    private Flux<String> upstreamStream(String message, CacheLookup lookup) {
+        // 每个流一个编码器，id、created、model在第一帧时确定并预先编码
+        ChatChunkEncoder[] encoder = new ChatChunkEncoder[1];
+        // 累积完整回答，正常结束时写入缓存
+        StringBuilder answer = new StringBuilder();
+        String[] lastFinishReason = new String[1];
         return chatClient.prompt(message)
                 .stream()
                 .chatResponse()
+                // 开启stream-usage时最后一帧只有用量信息，没有生成结果
+                .filter(response -> response.getResult() != null)
                 .map(response -> {
-                    // 提取响应内容
-                    String content = response.getResult().getOutput().getText();
-                    if (content == null) {
-                        content = "";
+                    Generation result = response.getResult();
+                    if (encoder[0] == null) {
+                        Object id = result.getOutput().getMetadata().get("id");
+                        encoder[0] = ChatChunkEncoder.forStream(
+                                id != null ? id.toString() : "msg_" + System.currentTimeMillis(),
+                                System.currentTimeMillis() / 1000, model);
+                    }
+                    String content = result.getOutput().getText();
+                    if (content != null) {
+                        answer.append(content);
+                    }
+                    String finishReason = finishReason(result);
+                    if (finishReason != null && !finishReason.isEmpty()) {
+                        lastFinishReason[0] = finishReason;
+                    }
+                    return encoder[0].encode(content, finishReason);
+                })
+                .doOnComplete(() -> {
+                    // 被截断（length等）的回答不缓存
+                    if ("stop".equalsIgnoreCase(lastFinishReason[0])) {
+                        remember(lookup, answer.toString());
                     }
+                });
+    }
 
-                    // 安全提取metadata信息，添加空值检查
-                    String messageId = "msg_" + System.currentTimeMillis();
-                    String role = "ASSISTANT";
-                    String finishReason = "";
+    /**
+     * 生成结果的结束原因
+     */
+    private static String finishReason(Generation result) {
+        return result.getMetadata() != null ? result.getMetadata().getFinishReason() : null;
+    }
 
-                    try {
-                        Object idObj = response.getResult().getOutput().getMetadata().get("id");
-                        if (idObj != null) {
-                            messageId = idObj.toString();
-                        }
-                    } catch (Exception e) {
-                        log.debug("无法获取messageId，使用默认值: {}", e.getMessage());
-                    }
+    /**
+     * 是否正常结束，只有正常结束的回答才写入缓存
+     */
+    private static boolean isStop(Generation result) {
+        return "stop".equalsIgnoreCase(finishReason(result));
+    }
 
-                    try {
-                        Object roleObj = response.getResult().getOutput().getMetadata().get("role");
-                        if (roleObj != null) {
-                            role = roleObj.toString();
-                        }
-                    } catch (Exception e) {
-                        log.debug("无法获取role，使用默认值: {}", e.getMessage());
-                    }
+    /**
+     * 查询语义缓存
+     */
+    private CacheLookup lookupSemantic(String message, String cacheKey) {
+        float[] embedding = semanticAnswerCache.embed(message);
+        return semanticAnswerCache.find(embedding)
+                .map(hit -> new CacheLookup(cacheKey, embedding, hit.key(), hit.answer()))
+                .orElseGet(() -> new CacheLookup(cacheKey, embedding, null, null));
+    }
 
-                    try {
-                        Object finishReasonObj = response.getResult().getMetadata().get("finishReason");
-                        if (finishReasonObj != null) {
-                            finishReason = finishReasonObj.toString();
-                        }
-                    } catch (Exception e) {
-                        log.debug("无法获取finishReason，使用默认值: {}", e.getMessage());
-                    }
+    /**
+     * 写入精确匹配缓存，并把问题加入语义索引
+     */
+    private void remember(CacheLookup lookup, String answer) {
+        chatResponseCache.put(lookup.cacheKey(), answer);
+        semanticAnswerCache.remember(lookup.embedding(), lookup.cacheKey());
+    }
 
-                    // 构建OpenAPI格式的响应
-                    String openAiFormat = String.format("""
-                        {
-                            "id": "%s",
-                            "object": "chat.completion.chunk",
-                            "created": %d,
-                            "model": "glm-4.5-flash",
-                            "choices": [
-                                {
-                                    "index": 0,
-                                    "delta": {
-                                        "content": "%s"
-                                    },
-                                    "finish_reason": %s
-                                }
-                            ]
-                        }
-                        """,
-                        messageId,
-                        System.currentTimeMillis() / 1000,
-                        content.replace("\"", "\\\"").replace("\n", "\\n"),
-                        finishReason.isEmpty() ? "null" : "\"" + finishReason + "\""
-                    );
-
-                    return openAiFormat + "\n\n";
-                });
+    /**
+     * 缓存查询结果
+     *
+     * @param cacheKey  本次问题的精确匹配Key
+     * @param embedding 本次问题的向量，语义缓存未启用或向量化失败时为null
+     * @param answerKey 命中回答的Key，未命中时为null
+     * @param answer    命中的回答，未命中时为null
+     */
+    private record CacheLookup(String cacheKey, float[] embedding, String answerKey, String answer) {
     }
 
     /**
@@ -123,13 +244,8 @@ public class AiController {
      * 完整路径：http://localhost:端口/public/ai/raw-stream
      */
     @GetMapping(value = "/ai/raw-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> rawStreamChat(@RequestParam String message) {
-        WebClient webClient = WebClient.builder()
-                .baseUrl(baseUrl)
-                .defaultHeader("Authorization", "Bearer " + apiKey)
-                .defaultHeader("Content-Type", "application/json")
-                .build();
-
+    public CompletableFuture<ResponseEntity<Flux<String>>> rawStreamChat(@RequestParam String message,
+                                                                         HttpServletRequest request) {
         String requestBody = String.format("""
             {
                 "model": "glm-4.5-flash",
@@ -145,13 +261,56 @@ public class AiController {
             }
             """, message.replace("\"", "\\\""));
 
-        return webClient.post()
-                .uri("/chat/completions")
-                .bodyValue(requestBody)
-                .retrieve()
-                .bodyToFlux(String.class)
-                .doOnNext(chunk -> log.info("原始SSE数据块: {}", chunk))
-                .filter(chunk -> !chunk.trim().isEmpty());
+        CompletableFuture<AiStreamScheduler.Permit> acquired =
+                aiStreamScheduler.acquire(aiStreamScheduler.client(request), true);
+        onAbandon(request, () -> releaseAbandoned(acquired));
+        return acquired
+                .thenApply(permit -> ResponseEntity.ok(aiWebClient.post()
+                        .uri("/chat/completions")
+                        .bodyValue(requestBody)
+                        .retrieve()
+                        .bodyToFlux(String.class)
+                        .doOnNext(chunk -> log.info("原始SSE数据块: {}", chunk))
+                        .filter(chunk -> !chunk.trim().isEmpty())
+                        .doFinally(signal -> permit.release())));
+    }
+
+    /**
+     * 异步请求超时或客户端断开时执行，覆盖排队阶段和之后的流式输出阶段
+     */
+    private static void onAbandon(HttpServletRequest request, Runnable action) {
+        WebAsyncUtils.getAsyncManager(request).registerDeferredResultInterceptor(AiController.class.getName(),
+                new DeferredResultProcessingInterceptor() {
+                    @Override
+                    public <T> boolean handleTimeout(NativeWebRequest webRequest, DeferredResult<T> deferredResult) {
+                        action.run();
+                        return true;
+                    }
+
+                    @Override
+                    public <T> boolean handleError(NativeWebRequest webRequest, DeferredResult<T> deferredResult,
+                                                   Throwable t) {
+                        action.run();
+                        return true;
+                    }
+                });
+    }
+
+    /**
+     * 放弃流式请求的名额：仍在排队时移出队列；已发放时释放，响应流可能不会再被订阅，不能只靠doFinally释放
+     */
+    private static void releaseAbandoned(CompletableFuture<AiStreamScheduler.Permit> acquired) {
+        if (!acquired.cancel(false)) {
+            acquired.thenAccept(AiStreamScheduler.Permit::release);
+        }
+    }
+
+    /**
+     * 关闭同步调用线程
+     */
+    @PreDestroy
+    public void shutdown() {
+        callExecutor.shutdown();
     }
 }
 
@@ -28,6 +28,12 @@ public enum StatusCode {
      */
     SYSTEM_ERROR("50000", "system error"),
 
+    /**
+     * 请求过多状态
+     * 表示超过并发或排队上限，需要按Retry-After稍后重试
+     */
+    TOO_MANY_REQUESTS("42900", "请求过于频繁，请稍后再试"),
+
     /**
      * 运行时异常状态
      * 表示业务逻辑处理过程中的异常，需要用户稍后重试
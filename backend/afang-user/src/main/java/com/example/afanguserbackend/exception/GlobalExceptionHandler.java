@@ -2,7 +2,9 @@ package com.example.afanguserbackend.exception;
 
 import com.example.afanguserbackend.common.BaseResponse;
 import com.example.afanguserbackend.common.ResultUtils;
+import com.example.afanguserbackend.enums.StatusCode;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -25,6 +27,21 @@ import java.io.IOException;
 @Slf4j
 public class GlobalExceptionHandler {
 
+    /**
+     * 处理请求过多异常
+     * 返回HTTP 429和Retry-After，客户端按提示时间重试
+     *
+     * @param e 请求过多异常对象
+     * @return 状态码429的响应实体
+     */
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<BaseResponse<String>> handleTooManyRequestsException(TooManyRequestsException e) {
+        log.debug("请求过多：{}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(ResultUtils.fail(StatusCode.TOO_MANY_REQUESTS.getCode(), e.getMessage()));
+    }
+
     /**
      * 处理运行时异常
      * 捕获所有RuntimeException及其子类异常
@@ -0,0 +1,31 @@
+package com.example.afanguserbackend.exception;
+
+import lombok.Getter;
+
+/**
+ * 请求过多异常
+ * 超过并发或排队上限时抛出，由全局异常处理器转换为HTTP 429并带上Retry-After
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Getter
+public class TooManyRequestsException extends RuntimeException {
+
+    /**
+     * 建议的重试等待时间（秒）
+     */
+    private final long retryAfterSeconds;
+
+    /**
+     * 构造函数
+     *
+     * @param message           错误信息
+     * @param retryAfterSeconds 建议的重试等待时间（秒）
+     */
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message, null, false, false);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
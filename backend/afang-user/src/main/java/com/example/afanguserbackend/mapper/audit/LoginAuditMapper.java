@@ -0,0 +1,67 @@
+package com.example.afanguserbackend.mapper.audit;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.afanguserbackend.model.entity.audit.LoginAudit;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 登录审计数据访问层接口
+ * 提供审计记录的批量写入以及按天分区的维护
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public interface LoginAuditMapper extends BaseMapper<LoginAudit> {
+
+    /**
+     * 多行批量插入
+     *
+     * @param audits 审计记录，不能为空
+     * @return 插入的行数
+     */
+    @Insert("<script>INSERT INTO login_audit "
+            + "(id, user_id, phone, ip, user_agent, success, failure_reason, latency_ms, login_time) VALUES "
+            + "<foreach collection='audits' item='a' separator=','>"
+            + "(#{a.id}, #{a.userId}, #{a.phone}, #{a.ip}, #{a.userAgent}, #{a.success}, #{a.failureReason}, "
+            + "#{a.latencyMs}, #{a.loginTime})</foreach></script>")
+    int insertBatch(@Param("audits") Collection<LoginAudit> audits);
+
+    /**
+     * 查询login_audit表当前的分区名
+     *
+     * @return 分区名列表，表未分区时为空
+     */
+    @Select("SELECT PARTITION_NAME FROM information_schema.PARTITIONS "
+            + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'login_audit' AND PARTITION_NAME IS NOT NULL")
+    List<String> selectPartitionNames();
+
+    /**
+     * 从兜底分区p_future中拆分出一个新的日分区
+     * 分区名和边界由调用方按固定格式生成，不能传入外部输入
+     *
+     * @param name       分区名，如 p20240101
+     * @param upperBound 分区上界日期（不含），如 2024-01-02
+     * @return 影响行数
+     */
+    @Update("ALTER TABLE login_audit REORGANIZE PARTITION p_future INTO ("
+            + "PARTITION ${name} VALUES LESS THAN (TO_DAYS('${upperBound}')), "
+            + "PARTITION p_future VALUES LESS THAN MAXVALUE)")
+    int addPartition(@Param("name") String name, @Param("upperBound") String upperBound);
+
+    /**
+     * 删除分区
+     * 分区名由调用方从已有分区中筛选，不能传入外部输入
+     *
+     * @param name 分区名
+     * @return 影响行数
+     */
+    @Update("ALTER TABLE login_audit DROP PARTITION ${name}")
+    int dropPartition(@Param("name") String name);
+}
@@ -0,0 +1,55 @@
+package com.example.afanguserbackend.mapper.outbox;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.afanguserbackend.model.entity.outbox.UserOutbox;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 用户变更发件箱数据访问层接口
+ * 由UserShardTemplate负责切换到对应分片执行
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public interface UserOutboxMapper extends BaseMapper<UserOutbox> {
+
+    /**
+     * 锁定一批未投递的事件
+     * 必须在事务中调用；SKIP LOCKED 使多个节点的中继可以并发领取不同的行而不互相等待
+     *
+     * @param limit 最大行数
+     * @return 按ID升序的未投递事件
+     */
+    @Select("SELECT id, user_id, event_type, create_time, delivered_time FROM user_outbox "
+            + "WHERE delivered_time IS NULL ORDER BY id LIMIT #{limit} FOR UPDATE SKIP LOCKED")
+    List<UserOutbox> lockUndelivered(@Param("limit") int limit);
+
+    /**
+     * 标记事件已投递
+     *
+     * @param ids           事件ID，不能为空
+     * @param deliveredTime 投递时间
+     * @return 更新的行数
+     */
+    @Update("<script>UPDATE user_outbox SET delivered_time = #{deliveredTime} WHERE id IN "
+            + "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    int markDelivered(@Param("ids") Collection<Long> ids, @Param("deliveredTime") LocalDateTime deliveredTime);
+
+    /**
+     * 清理已投递的历史事件
+     *
+     * @param before 投递时间早于该时间的事件会被删除
+     * @param limit  单次最多删除的行数
+     * @return 删除的行数
+     */
+    @Delete("DELETE FROM user_outbox WHERE delivered_time < #{before} LIMIT #{limit}")
+    int deleteDelivered(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
@@ -0,0 +1,15 @@
+package com.example.afanguserbackend.mapper.user;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.afanguserbackend.model.entity.user.UserShardLookup;
+
+/**
+ * 用户分片查找表数据访问层接口
+ * 始终在全局数据源上执行，由UserShardTemplate负责切换
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public interface UserShardLookupMapper extends BaseMapper<UserShardLookup> {
+}
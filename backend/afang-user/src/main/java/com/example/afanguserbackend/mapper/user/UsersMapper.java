@@ -1,17 +1,32 @@
 package com.example.afanguserbackend.mapper.user;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.afanguserbackend.component.cache.RedisMybatisCache;
+import com.example.afanguserbackend.component.login.LoginDelta;
 import com.example.afanguserbackend.model.entity.user.Users;
+import org.apache.ibatis.annotations.CacheNamespace;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * 用户数据访问层接口
  * 提供用户实体的数据库操作功能
  * 继承MyBatis-Plus的BaseMapper，自动拥有CRUD功能
+ * 查询结果使用Redis二级缓存，命名空间内任意写操作都会使缓存整体失效，
+ * 开启缓存的语句由 afang.mybatis-cache.statements 配置
  *
  * @author AFang Team
  * @version 1.0
  * @since 2024-01-01
  */
+@CacheNamespace(implementation = RedisMybatisCache.class)
 public interface UsersMapper extends BaseMapper<Users> {
     // 继承BaseMapper后，自动拥有以下方法：
     // - insert: 插入记录
@@ -21,4 +36,134 @@ public interface UsersMapper extends BaseMapper<Users> {
     // - selectList: 根据条件查询列表
     // - selectPage: 分页查询
     // 等更多MyBatis-Plus提供的通用方法
+
+    /**
+     * 根据ID批量物理删除
+     * 供重分片等数据迁移场景使用，不经过逻辑删除等全局处理
+     *
+     * @param ids 用户ID集合，不能为空
+     * @return 删除的行数
+     */
+    @Delete("<script>DELETE FROM users WHERE id IN "
+            + "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    int physicalDeleteByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 按ID顺序分页扫描
+     * 供构建内存索引、数据迁移等全表遍历场景使用，结果不进入二级缓存；
+     * 包含已逻辑删除的行，需要时由调用方过滤
+     *
+     * @param afterId 上一批的最大ID，首批传0
+     * @param limit   每批行数
+     * @return ID大于afterId的前limit个用户，按ID升序
+     */
+    @Select("SELECT * FROM users WHERE id > #{afterId} ORDER BY id LIMIT #{limit}")
+    @Options(useCache = false)
+    List<Users> scanAfterId(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * 按ID顺序分页扫描水位之后变化过的行
+     * 供重分片追平使用：更新时间不早于since的行，或ID超过上一轮扫描水位的行（上一轮扫描之后插入），
+     * 包含已逻辑删除的行，结果不进入二级缓存
+     *
+     * @param afterId   上一批的最大ID，首批传0
+     * @param since     更新时间水位（含）
+     * @param watermark 上一轮扫描到的最大ID
+     * @param limit     每批行数
+     * @return 满足条件且ID大于afterId的前limit个用户，按ID升序
+     */
+    @Select("SELECT * FROM users WHERE id > #{afterId} AND (update_time >= #{since} OR id > #{watermark}) "
+            + "ORDER BY id LIMIT #{limit}")
+    @Options(useCache = false)
+    List<Users> scanChangedSince(@Param("afterId") long afterId, @Param("since") LocalDateTime since,
+                                 @Param("watermark") long watermark, @Param("limit") int limit);
+
+    /**
+     * 按ID区间分页扫描
+     * 供并行分段加载使用，包含已逻辑删除的行，结果不进入二级缓存
+     *
+     * @param afterId 上一批的最大ID，首批传区间下界（不含）
+     * @param toId    区间上界（含）
+     * @param limit   每批行数
+     * @return ID位于 (afterId, toId] 的前limit个用户，按ID升序
+     */
+    @Select("SELECT * FROM users WHERE id > #{afterId} AND id <= #{toId} ORDER BY id LIMIT #{limit}")
+    @Options(useCache = false)
+    List<Users> scanRange(@Param("afterId") long afterId, @Param("toId") long toId, @Param("limit") int limit);
+
+    /**
+     * 查询最小用户ID
+     *
+     * @return 最小ID，表为空时为null
+     */
+    @Select("SELECT MIN(id) FROM users")
+    @Options(useCache = false)
+    Long selectMinId();
+
+    /**
+     * 查询最大用户ID
+     *
+     * @return 最大ID，表为空时为null
+     */
+    @Select("SELECT MAX(id) FROM users")
+    @Options(useCache = false)
+    Long selectMaxId();
+
+    /**
+     * 按 (update_time, id) 键集分页扫描变更
+     * 包含已逻辑删除的行（墓碑），结果不进入二级缓存
+     *
+     * @param afterTime 上一批最后一行的更新时间
+     * @param afterId   上一批最后一行的ID，首批传0
+     * @param limit     每批行数
+     * @return 位于 (afterTime, afterId) 之后的前limit个用户，按更新时间、ID升序
+     */
+    @Select("SELECT * FROM users WHERE update_time > #{afterTime} OR (update_time = #{afterTime} AND id > #{afterId}) "
+            + "ORDER BY update_time, id LIMIT #{limit}")
+    @Options(useCache = false)
+    List<Users> scanChangedAfter(@Param("afterTime") LocalDateTime afterTime, @Param("afterId") long afterId,
+                                 @Param("limit") int limit);
+
+    /**
+     * 按ID读取最新的用户行
+     * 与selectById相同但绕过二级缓存，也不清空缓存，供变更事件回查使用：
+     * 事件到达时其他节点写入引起的缓存失效可能尚未完成，不能读到缓存中的旧值
+     *
+     * @param id 用户ID
+     * @return 未逻辑删除的用户，不存在时为null
+     */
+    @Select("SELECT * FROM users WHERE id = #{id} AND deleted = 0")
+    @Options(useCache = false, flushCache = Options.FlushCachePolicy.FALSE)
+    Users selectByIdUncached(@Param("id") Long id);
+
+    /**
+     * 查询数据库当前时间
+     * 变更水位以数据库时钟为准，避免应用与数据库之间的时钟偏差
+     *
+     * @return 数据库当前时间
+     */
+    @Select("SELECT NOW()")
+    @Options(useCache = false)
+    LocalDateTime selectDatabaseTime();
+
+    /**
+     * 批量累加登录统计
+     * 单条 UPDATE ... CASE 语句写入一批用户的登录次数增量和最后登录时间，最后登录时间只前进不后退；
+     * 登录统计不属于用户资料：不清空二级缓存，显式保留update_time（该列带ON UPDATE CURRENT_TIMESTAMP），
+     * 避免每次写入都让缓存整体失效、让按update_time水位同步的副本重新拉取这些用户，
+     * 代价是缓存和副本中的登录统计可能滞后，直到条目过期或用户资料下次变更
+     *
+     * @param deltas 登录增量，不能为空，同一用户只能出现一次
+     * @return 更新的行数
+     */
+    @Update("<script>UPDATE users SET "
+            + "update_time = update_time, "
+            + "login_count = login_count + CASE id "
+            + "<foreach collection='deltas' item='d'>WHEN #{d.userId} THEN #{d.count} </foreach>END, "
+            + "last_login_time = GREATEST(COALESCE(last_login_time, '1970-01-01 00:00:00'), CASE id "
+            + "<foreach collection='deltas' item='d'>WHEN #{d.userId} THEN #{d.lastLoginTime} </foreach>END) "
+            + "WHERE id IN <foreach collection='deltas' item='d' open='(' separator=',' close=')'>#{d.userId}</foreach>"
+            + "</script>")
+    @Options(flushCache = Options.FlushCachePolicy.FALSE)
+    int batchRecordLogins(@Param("deltas") Collection<LoginDelta> deltas);
 }
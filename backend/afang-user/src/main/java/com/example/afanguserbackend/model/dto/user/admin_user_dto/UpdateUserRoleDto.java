@@ -0,0 +1,45 @@
+package com.example.afanguserbackend.model.dto.user.admin_user_dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 用户角色和状态修改数据传输对象
+ * 管理后台修改指定用户的角色或状态，至少提供其中一项
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UpdateUserRoleDto {
+    /**
+     * 用户ID
+     * 要修改的用户唯一标识符
+     */
+    @NotNull(message = "用户ID不能为空")
+    private Long id;
+
+    /**
+     * 用户角色
+     * 用户权限角色（如：admin、user等），可选更新字段
+     */
+    private String userRole;
+
+    /**
+     * 用户状态
+     * 用户账户状态（如：active、inactive、banned等），可选更新字段
+     */
+    private String status;
+
+    /**
+     * 版本号
+     * 读取用户时拿到的版本，必填，由乐观锁校验并发修改
+     */
+    @NotNull(message = "版本号不能为空")
+    private Integer version;
+}
@@ -0,0 +1,73 @@
+package com.example.afanguserbackend.model.dto.user.admin_user_dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 用户筛选数据传输对象
+ * 管理后台按角色、状态、注册日期组合筛选用户；
+ * 同一维度内的多个值为“或”，不同维度之间为“与”，排除项为“非”
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserFilterDto {
+    /**
+     * 角色（任一匹配），为空表示不限
+     */
+    private List<String> roles;
+
+    /**
+     * 状态（任一匹配），为空表示不限
+     */
+    private List<String> statuses;
+
+    /**
+     * 排除的角色
+     */
+    private List<String> excludeRoles;
+
+    /**
+     * 排除的状态
+     */
+    private List<String> excludeStatuses;
+
+    /**
+     * 注册日期起始（含），为空表示不限
+     */
+    @DateTimeFormat(pattern = "yyyy-MM-dd")
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate createdFrom;
+
+    /**
+     * 注册日期截止（含），为空表示不限
+     */
+    @DateTimeFormat(pattern = "yyyy-MM-dd")
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate createdTo;
+
+    /**
+     * 返回ID的起始偏移
+     */
+    @Min(value = 0, message = "偏移量不能为负数")
+    private int offset;
+
+    /**
+     * 返回ID的最大数量，为0时只统计数量
+     */
+    @Min(value = 0, message = "返回数量不能为负数")
+    @Max(value = 1000, message = "返回数量不能超过1000")
+    private int limit;
+}
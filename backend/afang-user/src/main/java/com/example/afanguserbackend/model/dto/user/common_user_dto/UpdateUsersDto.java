@@ -1,12 +1,14 @@
 package com.example.afanguserbackend.model.dto.user.common_user_dto;
 
+import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 /**
  * 用户更新数据传输对象
- * 用于接收用户信息更新时提交的数据，支持部分字段更新
+ * 用于接收用户修改自己资料时提交的数据，支持部分字段更新；
+ * 目标用户取自当前登录用户，密码、角色和状态不在此处修改
  *
  * @author AFang Team
  * @version 1.0
@@ -16,24 +18,12 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 public class UpdateUsersDto {
-    /**
-     * 用户ID
-     * 要更新的用户唯一标识符
-     */
-    private Long id;
-
     /**
      * 用户名
      * 用户登录名，可选更新字段
      */
     private String username;
 
-    /**
-     * 密码
-     * 用户登录密码，可选更新字段，更新时需要加密处理
-     */
-    private String password;
-
     /**
      * 邮箱
      * 用户邮箱地址，可选更新字段
@@ -53,14 +43,9 @@ public class UpdateUsersDto {
     private String avatar;
 
     /**
-     * 用户状态
-     * 用户账户状态（如：正常、禁用等），可选更新字段
-     */
-    private String status;
-
-    /**
-     * 用户角色
-     * 用户权限角色（如：管理员、普通用户等），可选更新字段
+     * 版本号
+     * 客户端通过 /user/me 拿到的版本，必填，由乐观锁校验并发修改
      */
-    private String userRole;
+    @NotNull(message = "版本号不能为空")
+    private Integer version;
 }
@@ -0,0 +1,87 @@
+package com.example.afanguserbackend.model.entity.audit;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 登录审计实体类
+ * 对应数据库中的login_audit表（按天分区），记录每一次登录尝试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("login_audit")
+public class LoginAudit implements Serializable {
+
+    /**
+     * 序列化版本号
+     */
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 审计ID
+     * 雪花算法生成，与登录时间组成主键
+     */
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long id;
+
+    /**
+     * 用户ID
+     * 手机号不存在时为空
+     */
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long userId;
+
+    /**
+     * 登录使用的手机号
+     */
+    private String phone;
+
+    /**
+     * 客户端IP
+     */
+    private String ip;
+
+    /**
+     * 客户端User-Agent
+     */
+    private String userAgent;
+
+    /**
+     * 是否登录成功
+     */
+    private Boolean success;
+
+    /**
+     * 失败原因
+     */
+    private String failureReason;
+
+    /**
+     * 登录处理耗时（毫秒）
+     */
+    private Integer latencyMs;
+
+    /**
+     * 登录时间
+     * 分区键
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    private LocalDateTime loginTime;
+}
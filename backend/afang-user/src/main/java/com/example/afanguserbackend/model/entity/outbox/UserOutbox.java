@@ -0,0 +1,61 @@
+package com.example.afanguserbackend.model.entity.outbox;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 用户变更发件箱实体类
+ * 对应与users表位于同一库（分片）的user_outbox表，与用户写操作在同一事务中写入
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("user_outbox")
+public class UserOutbox implements Serializable {
+
+    /**
+     * 序列化版本号
+     */
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 事件ID
+     * 雪花算法生成，同一分片内按ID顺序投递
+     */
+    private Long id;
+
+    /**
+     * 用户ID
+     */
+    private Long userId;
+
+    /**
+     * 事件类型
+     * CREATED、UPDATED、DELETED之一
+     */
+    private String eventType;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+
+    /**
+     * 投递时间
+     * 未投递时为空
+     */
+    private LocalDateTime deliveredTime;
+}
@@ -0,0 +1,53 @@
+package com.example.afanguserbackend.model.entity.user;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * 用户分片查找表实体类
+ * 对应全局库中的user_shard_lookup表，记录id/email/username所在的分片
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("user_shard_lookup")
+public class UserShardLookup implements Serializable {
+
+    /**
+     * 序列化版本号
+     */
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 查找类型
+     * id、email、username之一，与lookupValue组成联合主键
+     */
+    private String lookupType;
+
+    /**
+     * 查找值
+     */
+    private String lookupValue;
+
+    /**
+     * 用户ID
+     */
+    private Long userId;
+
+    /**
+     * 所在分片名称
+     */
+    private String shard;
+}
@@ -2,6 +2,8 @@ package com.example.afanguserbackend.model.entity.user;
 
 import com.baomidou.mybatisplus.annotation.*;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -21,7 +23,7 @@ import java.time.LocalDateTime;
  * @since 2024-01-01
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @TableName("users")
@@ -35,9 +37,10 @@ public class Users implements Serializable {
 
     /**
      * 用户ID
-     * 主键，自增长
+     * 主键，由雪花算法在写库前生成；序列化为字符串以避免前端精度丢失
      */
-    @TableId(type = IdType.AUTO)
+    @TableId(type = IdType.ASSIGN_ID)
+    @JsonSerialize(using = ToStringSerializer.class)
     private Long id;
 
     /**
@@ -99,4 +102,34 @@ public class Users implements Serializable {
     @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
     private LocalDateTime updateTime;
-}
\ No newline at end of file
+
+    /**
+     * 最后登录时间
+     * 由登录统计组件异步批量写入，普通更新不会修改该字段
+     */
+    @TableField(updateStrategy = FieldStrategy.NEVER)
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    private LocalDateTime lastLoginTime;
+
+    /**
+     * 登录次数
+     * 由登录统计组件异步批量累加，普通更新不会修改该字段
+     */
+    @TableField(updateStrategy = FieldStrategy.NEVER)
+    private Integer loginCount;
+
+    /**
+     * 版本号
+     * 乐观锁版本，每次成功更新后自增
+     */
+    @Version
+    private Integer version;
+
+    /**
+     * 逻辑删除标记
+     * 0表示正常，1表示已删除；删除时保留行作为墓碑，供各节点的用户副本同步删除
+     */
+    @TableLogic
+    private Integer deleted;
+}
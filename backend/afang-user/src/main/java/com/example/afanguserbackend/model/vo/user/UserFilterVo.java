@@ -0,0 +1,40 @@
+package com.example.afanguserbackend.model.vo.user;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 用户筛选结果视图对象
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserFilterVo {
+
+    /**
+     * 满足条件的用户总数
+     */
+    private long count;
+
+    /**
+     * 当前页的用户ID，序列化为字符串以避免前端精度丢失
+     */
+    @JsonSerialize(contentUsing = ToStringSerializer.class)
+    private List<Long> ids;
+
+    /**
+     * 当前页的用户资料，顺序与ids一致
+     */
+    private List<UserVo> users;
+}
@@ -0,0 +1,53 @@
+package com.example.afanguserbackend.model.vo.user;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 用户搜索结果视图对象
+ * 用于@提及和后台搜索，邮箱和手机号脱敏后返回
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSearchVo {
+
+    /**
+     * 用户ID
+     * 序列化为字符串以避免前端精度丢失
+     */
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long id;
+
+    /**
+     * 用户名
+     */
+    private String username;
+
+    /**
+     * 头像
+     * 用户头像URL或路径
+     */
+    private String avatar;
+
+    /**
+     * 邮箱（脱敏）
+     * 如 a***@qq.com
+     */
+    private String email;
+
+    /**
+     * 手机号（脱敏）
+     * 如 138****1234
+     */
+    private String phone;
+}
@@ -1,12 +1,14 @@
 package com.example.afanguserbackend.model.vo.user;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import lombok.*;
 
 import java.time.LocalDateTime;
 
 /**
  * 用户视图对象
- * 用于向前端返回用户信息，隐藏敏感数据如密码
+ * 用于向前端返回用户信息，隐藏敏感数据如密码；带版本号，修改资料时原样提交
  *
  * @author AFang Team
  * @version 1.0
@@ -18,16 +20,17 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class UserVo {
     /**
-     * 用户名
-     * 用户登录名
+     * 用户ID
+     * 序列化为字符串以避免前端精度丢失
      */
-    private String username;
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long id;
 
     /**
-     * 密码
-     * 注意：通常在VO中不应包含密码字段，这里保留但实际使用时应考虑安全性
+     * 用户名
+     * 用户登录名
      */
-    private String password;
+    private String username;
 
     /**
      * 邮箱
@@ -73,4 +76,10 @@ public class UserVo {
     @Setter
     private LocalDateTime updateTime;
 
+    /**
+     * 版本号
+     * 修改资料时原样提交，用于乐观锁校验
+     */
+    private Integer version;
+
 }
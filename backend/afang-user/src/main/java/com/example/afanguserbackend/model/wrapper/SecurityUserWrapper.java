@@ -3,10 +3,12 @@ package com.example.afanguserbackend.model.wrapper;
 import com.example.afanguserbackend.model.entity.user.Users;
 import lombok.Data;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Spring Security用户包装类
@@ -36,11 +38,15 @@ public class SecurityUserWrapper implements UserDetails {
 
       /**
      * 获取用户权限集合
-     * @return 权限集合，当前返回空列表
+     * @return 权限集合，按用户角色映射为ROLE_前缀的权限（如admin → ROLE_ADMIN），无角色时为空列表
      */
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return List.of();
+        String role = users.getUserRole();
+        if (role == null || role.isBlank()) {
+            return List.of();
+        }
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role.toUpperCase(Locale.ROOT)));
     }
 
     /**
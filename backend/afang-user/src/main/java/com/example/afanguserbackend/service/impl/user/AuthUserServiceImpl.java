@@ -1,7 +1,19 @@
 package com.example.afanguserbackend.service.impl.user;
 
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.example.afanguserbackend.component.audit.LoginAuditRecorder;
+import com.example.afanguserbackend.component.code.VerificationSendGuard;
+import com.example.afanguserbackend.component.event.UserChangedEvent;
+import com.example.afanguserbackend.component.id.SnowflakeIdGenerator;
+import com.example.afanguserbackend.component.login.LoginActivityTracker;
+import com.example.afanguserbackend.component.notify.NotificationChannel;
+import com.example.afanguserbackend.component.notify.NotificationMessage;
+import com.example.afanguserbackend.component.notify.NotificationQueue;
+import com.example.afanguserbackend.component.outbox.UserChangeOutbox;
+import com.example.afanguserbackend.component.replica.UserReplica;
+import com.example.afanguserbackend.component.sharding.UserShardTemplate;
 import com.example.afanguserbackend.mapper.user.UsersMapper;
 import com.example.afanguserbackend.model.dto.user.auth_user_dto.LoginUserDto;
 import com.example.afanguserbackend.model.dto.user.auth_user_dto.RegisterUsersDto;
@@ -11,14 +23,19 @@ import com.example.afanguserbackend.utils.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
 import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 
 /**
@@ -54,6 +71,46 @@ public class AuthUserServiceImpl extends ServiceImpl<UsersMapper, Users> impleme
      */
     private final EmailUtil emailUtil;
 
+    /**
+     * 持久化通知队列
+     */
+    private final NotificationQueue notificationQueue;
+
+    /**
+     * 验证码发送去重
+     */
+    private final VerificationSendGuard verificationSendGuard;
+
+    /**
+     * 用户分片操作模板
+     */
+    private final UserShardTemplate userShardTemplate;
+
+    /**
+     * 雪花ID生成器
+     */
+    private final SnowflakeIdGenerator snowflakeIdGenerator;
+
+    /**
+     * 用户变更发件箱
+     */
+    private final UserChangeOutbox userChangeOutbox;
+
+    /**
+     * 登录统计写后缓冲
+     */
+    private final LoginActivityTracker loginActivityTracker;
+
+    /**
+     * 登录审计记录器
+     */
+    private final LoginAuditRecorder loginAuditRecorder;
+
+    /**
+     * 节点内用户副本
+     */
+    private final UserReplica userReplica;
+
     /**
      * 用户缓存Key前缀
      */
@@ -74,9 +131,15 @@ public class AuthUserServiceImpl extends ServiceImpl<UsersMapper, Users> impleme
      */
     private static final Duration USER_CACHE_DURATION = Duration.ofMinutes(24);
 
+    /**
+     * MySQL唯一约束冲突信息中的索引名匹配规则
+     */
+    private static final Pattern DUPLICATE_KEY_PATTERN = Pattern.compile("for key '(?:[^.']+\\.)?([^']+)'");
+
     /**
      * 用户注册实现
-     * 验证用户信息，创建账户并生成Token
+     * 按代价从低到高依次校验：验证码比对 → 手机号/邮箱/用户名唯一性（单次查询）→ 密码加密，
+     * 写库成功后再消费验证码，并发注册导致的唯一约束冲突由数据库兜底并映射为业务错误
      *
      * @param dto 用户注册信息
      * @return 包含JWT Token的Map
@@ -84,38 +147,58 @@ public class AuthUserServiceImpl extends ServiceImpl<UsersMapper, Users> impleme
      */
     @Override
     public Map<String, String> registerUsers(RegisterUsersDto dto) throws Exception {
-        log.info("开始处理用户注册，注册信息：{}", dto);
+        log.info("开始处理用户注册，用户名：{}，手机号：{}，邮箱：{}", dto.getUsername(), dto.getPhone(), dto.getEmail());
 
-        // 检查用户是否已存在
-        Users existingUser = baseMapper.selectOne(new QueryWrapper<Users>().eq("phone", dto.getPhone()));
-        if (existingUser != null) {
-            throw new RuntimeException("用户已存在");
+        // 比对邮箱验证码（一次Redis读取），错误的验证码不再付出BCrypt加密的代价
+        if (!CommonUtil.matchVerificationCode(dto.getCode(), dto.getEmail())) {
+            throw new RuntimeException("验证码错误");
         }
 
-        // 创建新用户对象
+        // 检查手机号、邮箱、用户名是否已被占用：副本可用时在内存中检查，不访问数据库；
+        // 否则一次查询同时检查（分片模式下只查所属分片，跨分片唯一性由查找表保证）
+        if (userReplica.isReady()) {
+            checkRegisterUniquenessOnReplica(dto);
+        } else {
+            userShardTemplate.onShardKey(UserShardTemplate.shardKeyOf(dto.getPhone(), dto.getEmail()), () -> {
+                checkRegisterUniqueness(dto);
+                return null;
+            });
+        }
+
+        // 创建新用户对象，写库前分配ID，分片模式下据此登记查找表
         Users newUser = new Users();
         BeanUtils.copyProperties(dto, newUser);
+        newUser.setId(snowflakeIdGenerator.nextId());
 
         // 加密密码
         newUser.setPassword(passwordEncoder.encode(dto.getPassword()));
 
-        // 验证邮箱验证码
-        if (!CommonUtil.validateVerificationCode(dto.getCode(), dto.getEmail())) {
-            throw new RuntimeException("验证码错误");
+        // 保存用户到数据库，并在同一事务中登记创建事件；唯一约束冲突说明并发注册抢先写入
+        try {
+            if (!userShardTemplate.insertUser(newUser, () -> userChangeOutbox.inTransaction(() -> {
+                boolean saved = this.save(newUser);
+                if (saved) {
+                    userChangeOutbox.append(newUser.getId(), UserChangedEvent.Type.CREATED);
+                }
+                return saved;
+            }))) {
+                throw new RuntimeException("用户创建失败!");
+            }
+        } catch (DuplicateKeyException e) {
+            log.warn("用户注册唯一约束冲突：{}", e.getMessage());
+            throw new RuntimeException(duplicateKeyMessage(e));
         }
 
-        // 保存用户到数据库
-        boolean saved = this.save(newUser);
-        if (!saved) {
-            throw new RuntimeException("用户创建失败!");
+        // 写库成功后才消费验证码，写库失败时用户可以用同一验证码重试；
+        // 同一邮箱并发注册只有一个能写入成功（邮箱唯一约束），验证码不会被重复使用
+        if (!CommonUtil.validateVerificationCode(dto.getCode(), dto.getEmail())) {
+            log.warn("注册成功但验证码已失效，邮箱：{}", dto.getEmail());
         }
 
         // 将用户信息缓存到Redis
         // TODO: 优化缓存Key，考虑使用UUID作为用户唯一标识
         RedisUtil.set(USER_CACHE_KEY_PREFIX + newUser.getPhone(), newUser, USER_CACHE_DURATION);
 
-        // TODO: 删除已使用的邮箱验证码
-
         // 生成并返回JWT Token
         Map<String, String> result = new HashMap<>();
         result.put("token", jwtUtil.generateToken(newUser));
@@ -124,43 +207,134 @@ public class AuthUserServiceImpl extends ServiceImpl<UsersMapper, Users> impleme
         return result;
     }
 
+    /**
+     * 注册唯一性校验
+     * 以 phone = ? OR email = ? OR username = ? 单次查询代替多次逐项查询，只取比对所需的列
+     *
+     * @param dto 用户注册信息
+     * @throws RuntimeException 任一字段已被占用时抛出
+     */
+    private void checkRegisterUniqueness(RegisterUsersDto dto) {
+        boolean hasPhone = StringUtils.hasText(dto.getPhone());
+        boolean hasUsername = StringUtils.hasText(dto.getUsername());
+
+        LambdaQueryWrapper<Users> wrapper = new LambdaQueryWrapper<Users>()
+                .select(Users::getPhone, Users::getEmail, Users::getUsername)
+                .eq(Users::getEmail, dto.getEmail())
+                .or(hasPhone).eq(hasPhone, Users::getPhone, dto.getPhone())
+                .or(hasUsername).eq(hasUsername, Users::getUsername, dto.getUsername())
+                .last("LIMIT 3");
+
+        List<Users> conflicts = baseMapper.selectList(wrapper);
+        if (hasPhone && conflicts.stream().anyMatch(u -> dto.getPhone().equals(u.getPhone()))) {
+            throw new RuntimeException("用户已存在");
+        }
+        if (conflicts.stream().anyMatch(u -> dto.getEmail().equalsIgnoreCase(u.getEmail()))) {
+            throw new RuntimeException("邮箱已被注册");
+        }
+        if (hasUsername && conflicts.stream().anyMatch(u -> dto.getUsername().equalsIgnoreCase(u.getUsername()))) {
+            throw new RuntimeException("用户名已被占用");
+        }
+    }
+
+    /**
+     * 基于节点内副本的注册唯一性校验
+     * 副本覆盖所有分片，邮箱和用户名不区分大小写，与数据库查询的比对规则一致；
+     * 副本滞后导致的漏检在写库时由唯一约束兜底
+     *
+     * @param dto 用户注册信息
+     * @throws RuntimeException 任一字段已被占用时抛出
+     */
+    private void checkRegisterUniquenessOnReplica(RegisterUsersDto dto) {
+        if (StringUtils.hasText(dto.getPhone()) && userReplica.findByPhone(dto.getPhone()).isPresent()) {
+            throw new RuntimeException("用户已存在");
+        }
+        if (userReplica.findByEmail(dto.getEmail()).isPresent()) {
+            throw new RuntimeException("邮箱已被注册");
+        }
+        if (StringUtils.hasText(dto.getUsername()) && userReplica.findByUsername(dto.getUsername()).isPresent()) {
+            throw new RuntimeException("用户名已被占用");
+        }
+    }
+
+    /**
+     * 将唯一约束冲突映射为业务提示
+     * 根据MySQL错误信息中的索引名（如 for key 'users.phone'）判断冲突字段
+     *
+     * @param e 唯一约束冲突异常
+     * @return 面向用户的提示信息
+     */
+    private static String duplicateKeyMessage(DuplicateKeyException e) {
+        Matcher matcher = DUPLICATE_KEY_PATTERN.matcher(String.valueOf(e.getMostSpecificCause().getMessage()));
+        String key = matcher.find() ? matcher.group(1) : "";
+        return switch (key) {
+            case "phone", "idx_phone" -> "用户已存在";
+            case "email", "idx_email" -> "邮箱已被注册";
+            case "username", "idx_username" -> "用户名已被占用";
+            default -> "用户信息重复，请检查后重试";
+        };
+    }
+
     /**
      * 用户登录实现
-     * 验证用户凭据，从缓存或数据库获取用户信息并生成Token
+     * 从缓存或数据库获取用户信息并验证密码，登录统计和登录审计都异步落库，登录链路不写数据库。
+     * 不读节点内副本：副本按轮询间隔同步，改密或封禁后旧数据仍可能短暂命中；缓存在用户变更时由事件清除
      *
      * @param dto 用户登录信息
      * @return 包含JWT Token的Map
      */
     @Override
     public Map<String, String> loginUsers(LoginUserDto dto) {
-        // 从缓存中获取用户信息
-        Optional<Users> userOptional = RedisUtil.get(USER_CACHE_KEY_PREFIX + dto.getPhone(), Users.class);
-
-        Users user = userOptional
-                .orElseGet(() -> {
-                    // 缓存中不存在，从数据库查询
-                    Users dbUser = baseMapper.selectOne(new QueryWrapper<Users>().eq("phone", dto.getPhone()));
-                    if (dbUser == null) {
-                        throw new RuntimeException("用户不存在");
-                    }
-
-                    // 验证密码
-                    if (!passwordEncoder.matches(dto.getPassword(), dbUser.getPassword())) {
-                        throw new RuntimeException("用户名或密码错误");
-                    }
-                    return dbUser;
-                });
-
-        log.info("用户登录成功，用户信息：{}", user);
-
-        // 更新用户缓存
-        RedisUtil.set(USER_CACHE_KEY_PREFIX + dto.getPhone(), user, USER_CACHE_DURATION);
-
-        // 生成并返回JWT Token
-        Map<String, String> result = new HashMap<>();
-        result.put("token", jwtUtil.generateToken(user));
+        long start = System.nanoTime();
+        Users user = null;
+        try {
+            // 优先从Redis缓存获取用户信息，未命中时从数据库查询
+            user = RedisUtil.get(USER_CACHE_KEY_PREFIX + dto.getPhone(), Users.class)
+                    .orElseGet(() -> userShardTemplate.onShardKey(dto.getPhone(),
+                            () -> baseMapper.selectOne(new QueryWrapper<Users>().eq("phone", dto.getPhone()))));
+            if (user == null) {
+                throw new RuntimeException("用户不存在");
+            }
+
+            // 验证密码（无论用户信息来自缓存还是数据库）
+            if (!passwordEncoder.matches(dto.getPassword(), user.getPassword())) {
+                throw new RuntimeException("用户名或密码错误");
+            }
+
+            log.info("用户登录成功，用户ID：{}", user.getId());
+            loginActivityTracker.record(user.getId());
+
+            // 更新用户缓存
+            RedisUtil.set(USER_CACHE_KEY_PREFIX + dto.getPhone(), user, USER_CACHE_DURATION);
+
+            // 生成并返回JWT Token
+            Map<String, String> result = new HashMap<>();
+            result.put("token", jwtUtil.generateToken(user));
+
+            loginAuditRecorder.record(user.getId(), dto.getPhone(), true, null, start);
+            return result;
+        } catch (RuntimeException e) {
+            loginAuditRecorder.record(user == null ? null : user.getId(), dto.getPhone(), false, e.getMessage(), start);
+            throw e;
+        }
+    }
 
-        return result;
+    /**
+     * 用户信息变更后清除登录缓存
+     * 由用户变更Stream驱动，每个节点都会收到；缓存位于共享Redis，重复删除无副作用。
+     * 修改手机号时旧手机号下的缓存无法从当前数据定位，依赖缓存过期时间淘汰
+     *
+     * @param event 用户变更事件
+     */
+    @EventListener
+    public void evictUserCache(UserChangedEvent event) {
+        if (event.getType() == UserChangedEvent.Type.CREATED) {
+            return;
+        }
+        Users user = event.getUser();
+        if (user != null && StringUtils.hasText(user.getPhone())) {
+            RedisUtil.delete(USER_CACHE_KEY_PREFIX + user.getPhone());
+        }
     }
 
     /**
@@ -190,7 +364,7 @@ public class AuthUserServiceImpl extends ServiceImpl<UsersMapper, Users> impleme
 
     /**
      * 发送手机验证码实现
-     * 生成验证码，缓存到Redis，并发送短信
+     * 冷却期内的重复请求直接返回；复用未过期的验证码或生成新验证码缓存到Redis，并写入短信通知队列
      *
      * @param phone 接收验证码的手机号
      * @return 发送结果响应
@@ -198,14 +372,21 @@ public class AuthUserServiceImpl extends ServiceImpl<UsersMapper, Users> impleme
      */
     @Override
     public void sendCodeByPhone(String phone) throws Exception {
-        // 生成6位验证码
-        String verificationCode = CommonUtil.getVerificationCode();
-
-        // 将验证码缓存到Redis，有效期5分钟
-        RedisUtil.set(VERIFICATION_CODE_KEY_PREFIX + phone, verificationCode, 5, TimeUnit.MINUTES);
+        // 冷却期内的重复请求不再发送；上一条验证码未过期时复用，否则生成新验证码并缓存5分钟
+        Optional<String> verificationCode = verificationSendGuard.acquire(phone,
+                VERIFICATION_CODE_KEY_PREFIX + phone, Duration.ofMinutes(5));
+        if (verificationCode.isEmpty()) {
+            return;
+        }
 
-        // 发送短信验证码
-        PhoneUtil.sendPhoneCode(phone, verificationCode, "5");
+        // 写入通知队列，由通知工作线程调用短信网关，失败时由队列重试
+        try {
+            notificationQueue.enqueue(NotificationMessage.of(NotificationChannel.SMS, phone, "sms-verification-code",
+                    Map.of("CODE", verificationCode.get(), "MINUTE", "5")));
+        } catch (RuntimeException e) {
+            verificationSendGuard.release(phone);
+            throw e;
+        }
 
           }
 }
@@ -1,21 +1,36 @@
 package com.example.afanguserbackend.service.impl.user;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.example.afanguserbackend.component.event.UserChangedEvent;
+import com.example.afanguserbackend.component.outbox.UserChangeOutbox;
+import com.example.afanguserbackend.component.replica.UserReplica;
+import com.example.afanguserbackend.component.search.UserSearchIndex;
+import com.example.afanguserbackend.component.sharding.UserShardTemplate;
 import com.example.afanguserbackend.mapper.user.UsersMapper;
+import com.example.afanguserbackend.model.dto.user.admin_user_dto.UpdateUserRoleDto;
 import com.example.afanguserbackend.model.dto.user.common_user_dto.UpdateUsersDto;
 import com.example.afanguserbackend.model.entity.user.Users;
+import com.example.afanguserbackend.model.vo.user.UserSearchVo;
+import com.example.afanguserbackend.model.vo.user.UserVo;
 import com.example.afanguserbackend.model.wrapper.SecurityUserWrapper;
 import com.example.afanguserbackend.service.user.CommonUserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
 /**
  * 用户业务服务实现类
  * 实现用户信息管理功能，同时作为Spring Security的UserDetailsService
@@ -29,41 +44,222 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class CommonUserServiceImpl extends ServiceImpl<UsersMapper, Users> implements CommonUserService, UserDetailsService {
 
+    /**
+     * 用户分片操作模板
+     */
+    private final UserShardTemplate userShardTemplate;
+
+    /**
+     * 用户搜索索引
+     */
+    private final UserSearchIndex userSearchIndex;
+
+    /**
+     * 用户变更发件箱
+     */
+    private final UserChangeOutbox userChangeOutbox;
+
+    /**
+     * 节点内用户副本
+     */
+    private final UserReplica userReplica;
+
+    /**
+     * 单次搜索最多返回条数
+     */
+    private static final int MAX_SEARCH_LIMIT = 50;
+
+    /**
+     * 查询当前登录用户资料实现
+     * 在用户所在分片直接读取，返回最新的版本号
+     *
+     * @param userId 当前登录用户的ID
+     * @return 用户资料，不含密码
+     * @throws RuntimeException 用户不存在时抛出
+     */
+    @Override
+    public UserVo getCurrentUser(Long userId) {
+        Users user = userShardTemplate.onId(userId, null, () -> baseMapper.selectById(userId));
+        if (user == null) {
+            throw new RuntimeException("用户不存在");
+        }
+        return toUserVo(user);
+    }
+
+    /**
+     * 批量查询用户资料实现
+     * 先查节点内副本，未命中的ID按分片分组后批量读库
+     *
+     * @param ids 用户ID列表
+     * @return 用户资料，按ids的顺序排列，不存在的用户被忽略
+     */
+    @Override
+    public List<UserVo> getUsersByIds(List<Long> ids) {
+        Map<Long, Users> found = new HashMap<>(ids.size() * 2);
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            userReplica.findById(id).ifPresentOrElse(user -> found.put(id, user), () -> missing.add(id));
+        }
+        userShardTemplate.groupIdsByShard(missing).forEach((shard, shardIds) ->
+                userShardTemplate.onShard(shard, () -> baseMapper.selectBatchIds(shardIds))
+                        .forEach(user -> found.put(user.getId(), user)));
+        return ids.stream().map(found::get).filter(Objects::nonNull).map(CommonUserServiceImpl::toUserVo).toList();
+    }
+
+    /**
+     * 转换为用户视图对象
+     *
+     * @param user 用户
+     * @return 用户视图对象，不含密码
+     */
+    private static UserVo toUserVo(Users user) {
+        UserVo userVo = new UserVo();
+        BeanUtils.copyProperties(user, userVo);
+        return userVo;
+    }
+
     /**
      * 更新用户信息实现
-     * 根据提供的用户信息更新对应用户的数据
+     * 用户只能修改自己的资料（用户名、邮箱、手机号、头像），角色和状态只能由管理员修改
      *
-     * @param dto 用户更新信息，包含需要更新的字段
-     * @return 更新操作结果，true表示更新成功
+     * @param userId 当前登录用户的ID
+     * @param dto    用户更新信息，包含需要更新的字段
+     * @return 更新操作结果，true表示更新成功，false表示用户不存在
+     * @throws RuntimeException 版本冲突、缺少版本号或没有可更新字段时抛出
      */
     @Override
-    public boolean updateUsers(UpdateUsersDto dto) {
-        // 查询现有用户信息
-        Users existingUser = baseMapper.selectOne(new QueryWrapper<Users>().eq("id", dto.getId()));
-        if (existingUser == null) {
-            log.warn("尝试更新不存在的用户，用户ID：{}", dto.getId());
-            return false;
+    public boolean updateUsers(Long userId, UpdateUsersDto dto) {
+        if (Stream.of(dto.getUsername(), dto.getEmail(), dto.getPhone(), dto.getAvatar()).allMatch(Objects::isNull)) {
+            throw new RuntimeException("没有需要更新的字段");
         }
 
-        // 创建更新对象并复制属性
+        // 创建更新对象并复制属性，null字段按默认NOT_NULL策略不会出现在SET中
         Users updateUser = new Users();
         BeanUtils.copyProperties(dto, updateUser);
+        updateUser.setId(userId);
+        return conditionalUpdate(updateUser);
+    }
 
-        // 执行更新操作
-        boolean updateResult = this.updateById(updateUser);
+    /**
+     * 修改用户角色和状态实现，仅供管理员接口调用
+     *
+     * @param dto 角色和状态修改信息
+     * @return 更新操作结果，true表示更新成功，false表示用户不存在
+     * @throws RuntimeException 版本冲突、缺少版本号或没有可更新字段时抛出
+     */
+    @Override
+    public boolean updateRoleAndStatus(UpdateUserRoleDto dto) {
+        if (dto.getUserRole() == null && dto.getStatus() == null) {
+            throw new RuntimeException("没有需要更新的字段");
+        }
+
+        Users updateUser = new Users();
+        BeanUtils.copyProperties(dto, updateUser);
+        return conditionalUpdate(updateUser);
+    }
+
+    /**
+     * 按ID和版本号执行一条条件UPDATE，按影响行数判断结果：
+     * 仅非空字段参与SET；version必填，由乐观锁插件追加版本条件，
+     * 影响行数为0时才额外探测一次用户是否存在，以区分“不存在”和“版本冲突”
+     *
+     * @param updateUser 更新对象，id和version必填
+     * @return 更新成功返回true，用户不存在返回false
+     * @throws RuntimeException 版本冲突、缺少ID或版本号、唯一约束冲突时抛出
+     */
+    private boolean conditionalUpdate(Users updateUser) {
+        Long id = updateUser.getId();
+        if (id == null) {
+            throw new RuntimeException("用户ID不能为空");
+        }
+        if (updateUser.getVersion() == null) {
+            throw new RuntimeException("版本号不能为空");
+        }
+
+        // UPDATE users SET ... WHERE id = ? AND version = ?，成功时在同一事务中登记更新事件（分片模式下在用户所在分片执行）
+        int affected;
+        try {
+            affected = userShardTemplate.updateUser(updateUser, () -> userChangeOutbox.inTransaction(() -> {
+                int rows = baseMapper.updateById(updateUser);
+                if (rows > 0) {
+                    userChangeOutbox.append(id, UserChangedEvent.Type.UPDATED);
+                }
+                return rows;
+            }));
+        } catch (DuplicateKeyException e) {
+            log.warn("用户信息更新唯一约束冲突，用户ID：{}，错误信息：{}", id, e.getMessage());
+            throw new RuntimeException("用户名、邮箱或手机号已被占用");
+        }
+        if (affected > 0) {
+            log.info("用户信息更新成功，用户ID：{}", id);
+            return true;
+        }
+
+        // 影响行数为0时区分用户不存在和版本冲突
+        if (!userShardTemplate.onId(id, false,
+                () -> baseMapper.exists(new LambdaQueryWrapper<Users>().eq(Users::getId, id)))) {
+            log.warn("尝试更新不存在的用户，用户ID：{}", id);
+            return false;
+        }
+
+        log.warn("用户信息更新版本冲突，用户ID：{}，请求版本：{}", id, updateUser.getVersion());
+        throw new RuntimeException("用户信息已被修改，请刷新后重试");
+    }
 
-        if (updateResult) {
-            log.info("用户信息更新成功，用户ID：{}", dto.getId());
-        } else {
-            log.error("用户信息更新失败，用户ID：{}", dto.getId());
+    /**
+     * 搜索用户实现
+     * 查询进程内的搜索索引，不访问数据库
+     *
+     * @param keyword 搜索关键字
+     * @param limit   最多返回条数，超过上限时按上限截取
+     * @return 脱敏后的用户列表
+     */
+    @Override
+    public List<UserSearchVo> searchUsers(String keyword, int limit) {
+        if (keyword == null || keyword.isBlank()) {
+            return List.of();
         }
+        return userSearchIndex.search(keyword, Math.min(limit, MAX_SEARCH_LIMIT)).stream()
+                .map(document -> UserSearchVo.builder()
+                        .id(document.id())
+                        .username(document.username())
+                        .avatar(document.avatar())
+                        .email(maskEmail(document.email()))
+                        .phone(maskPhone(document.phone()))
+                        .build())
+                .toList();
+    }
 
-        return updateResult;
+    /**
+     * 邮箱脱敏：保留首字符和域名
+     *
+     * @param email 邮箱
+     * @return 脱敏后的邮箱，如 a***@qq.com
+     */
+    private static String maskEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        int at = email.indexOf('@');
+        return at <= 0 ? "***" : email.charAt(0) + "***" + email.substring(at);
+    }
+
+    /**
+     * 手机号脱敏：保留前3位和后4位
+     *
+     * @param phone 手机号
+     * @return 脱敏后的手机号，如 138****1234
+     */
+    private static String maskPhone(String phone) {
+        if (phone == null || phone.length() < 7) {
+            return phone == null ? null : "****";
+        }
+        return phone.substring(0, 3) + "****" + phone.substring(phone.length() - 4);
     }
 
     /**
      * Spring Security用户加载实现
-     * 根据手机号加载用户详情，用于认证
+     * 根据手机号加载用户详情，用于认证，直接查询数据库以获取最新的密码和状态
      *
      * @param phone 用户手机号
      * @return Spring Security的UserDetails实现
@@ -71,10 +267,8 @@ public class CommonUserServiceImpl extends ServiceImpl<UsersMapper, Users> imple
      */
     @Override
     public UserDetails loadUserByUsername(String phone) throws UsernameNotFoundException {
-        LambdaQueryWrapper<Users> queryWrapper = new LambdaQueryWrapper<Users>()
-                .eq(Users::getPhone, phone);
-
-        Users user = baseMapper.selectOne(queryWrapper);
+        Users user = userShardTemplate.onShardKey(phone,
+                () -> baseMapper.selectOne(new LambdaQueryWrapper<Users>().eq(Users::getPhone, phone)));
         if (user == null) {
             log.warn("根据手机号未找到用户，手机号：{}", phone);
             throw new UsernameNotFoundException("用户不存在");
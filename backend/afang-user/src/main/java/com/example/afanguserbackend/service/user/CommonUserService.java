@@ -1,8 +1,13 @@
 package com.example.afanguserbackend.service.user;
 
 import com.baomidou.mybatisplus.extension.service.IService;
+import com.example.afanguserbackend.model.dto.user.admin_user_dto.UpdateUserRoleDto;
 import com.example.afanguserbackend.model.dto.user.common_user_dto.UpdateUsersDto;
 import com.example.afanguserbackend.model.entity.user.Users;
+import com.example.afanguserbackend.model.vo.user.UserSearchVo;
+import com.example.afanguserbackend.model.vo.user.UserVo;
+
+import java.util.List;
 
 /**
  * 用户业务服务接口
@@ -14,12 +19,51 @@ import com.example.afanguserbackend.model.entity.user.Users;
  */
 public interface CommonUserService extends IService<Users> {
 
+    /**
+     * 查询当前登录用户资料方法
+     * 返回的版本号用于随后修改资料
+     *
+     * @param userId 当前登录用户的ID
+     * @return 用户资料
+     * @throws RuntimeException 用户不存在时抛出
+     */
+    UserVo getCurrentUser(Long userId);
+
+    /**
+     * 批量查询用户资料方法
+     * 供管理后台回填筛选结果，优先读取节点内副本
+     *
+     * @param ids 用户ID列表
+     * @return 用户资料，按ids的顺序排列，不存在的用户被忽略
+     */
+    List<UserVo> getUsersByIds(List<Long> ids);
+
     /**
      * 更新用户信息方法
-     * 根据提供的用户信息更新对应用户的数据
+     * 更新当前登录用户自己的资料
      *
-     * @param dto 用户更新信息，包含需要更新的字段
+     * @param userId 当前登录用户的ID
+     * @param dto    用户更新信息，包含需要更新的字段
      * @return 更新操作结果，true表示更新成功
      */
-    boolean updateUsers(UpdateUsersDto dto);
+    boolean updateUsers(Long userId, UpdateUsersDto dto);
+
+    /**
+     * 修改用户角色和状态方法
+     * 仅供管理员使用
+     *
+     * @param dto 角色和状态修改信息
+     * @return 更新操作结果，true表示更新成功
+     */
+    boolean updateRoleAndStatus(UpdateUserRoleDto dto);
+
+    /**
+     * 搜索用户方法
+     * 按用户名、邮箱、手机号的前缀或子串匹配，结果按相关度排序
+     *
+     * @param keyword 搜索关键字
+     * @param limit   最多返回条数
+     * @return 脱敏后的用户列表
+     */
+    List<UserSearchVo> searchUsers(String keyword, int limit);
 }
@@ -36,6 +36,20 @@ public class CommonUtil {
         return Integer.toString(ThreadLocalRandom.current().nextInt(900000) + 100000);
     }
 
+    /**
+     * 比对验证码但不消费。
+     * <p>
+     * 仅读取Redis中的验证码进行比较，不删除缓存。用于在执行代价较高的操作（如密码加密）之前
+     * 快速拒绝错误的验证码，真正消费验证码仍需调用{@link #validateVerificationCode(String, String)}。
+     *
+     * @param code    用户输入的验证码
+     * @param address 用户地址（手机号或邮箱地址，作为Redis的key）
+     * @return 验证码存在且匹配返回true，否则返回false
+     */
+    public static boolean matchVerificationCode(String code, String address) {
+        return code != null && RedisUtil.getString(address).filter(code::equals).isPresent();
+    }
+
     /**
      * 验证验证码的有效性。
      * <p>
@@ -2,6 +2,7 @@ package com.example.afanguserbackend.utils;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 
@@ -23,6 +24,7 @@ import java.util.concurrent.TimeUnit;
  *   <li>原子性自增操作</li>
  *   <li>批量操作</li>
  *   <li>模糊查询</li>
+ *   <li>原始连接回调</li>
  * </ul>
  * <p>
  * 所有方法都经过空值检查和类型安全处理，使用Optional包装返回值以提高代码健壮性。
@@ -128,6 +130,25 @@ public class RedisUtil {
         return false;
     }
 
+    /**
+     * 仅当键不存在时存储键值对并设置过期时间。
+     * <p>
+     * 原子操作（SET NX EX），常用于实现带超时的简单分布式锁。
+     * 如果值为null，则不执行存储操作并返回false。
+     *
+     * @param key     存储键，不能为null
+     * @param value   存储值，可以为null
+     * @param timeout 过期时间，不能为null
+     * @param <T>     值的类型参数
+     * @return 键不存在且存储成功返回true，否则返回false
+     */
+    public static <T> boolean setIfAbsent(@NotNull String key, @Nullable T value, @NotNull Duration timeout) {
+        if (value != null) {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, value, timeout));
+        }
+        return false;
+    }
+
     /**
      * 获取值并转换为指定类型。
      * <p>
@@ -387,6 +408,19 @@ public class RedisUtil {
         return size == null ? 0 : size;
     }
 
+    /**
+     * 裁剪列表，只保留指定范围的元素。
+     * <p>
+     * 常与{@link #listPush}配合使用，将列表限制为最近的若干个元素。
+     *
+     * @param key   列表键，不能为null
+     * @param start 起始索引（包含）
+     * @param end   结束索引（包含）
+     */
+    public static void listTrim(@NotNull String key, long start, long end) {
+        redisTemplate.opsForList().trim(key, start, end);
+    }
+
     /**
      * 更新已存在的键值。
      * <p>
@@ -404,4 +438,17 @@ public class RedisUtil {
         }
         return false;
     }
-}
\ No newline at end of file
+
+    /**
+     * 在原始连接上执行自定义操作。
+     * <p>
+     * 绕过RedisTemplate的序列化器直接读写字节数组，适用于需要自定义序列化或执行脚本的场景。
+     *
+     * @param callback Redis连接回调，不能为null
+     * @param <T>      返回值类型参数
+     * @return 回调的返回值
+     */
+    public static <T> T execute(@NotNull RedisCallback<T> callback) {
+        return redisTemplate.execute(callback);
+    }
+}
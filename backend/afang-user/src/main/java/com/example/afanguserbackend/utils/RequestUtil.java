@@ -0,0 +1,59 @@
+package com.example.afanguserbackend.utils;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Optional;
+
+/**
+ * 请求工具类。
+ * <p>
+ * 提供从当前线程绑定的HTTP请求中获取客户端信息的方法，包括：
+ * <ul>
+ *   <li>获取当前请求</li>
+ *   <li>解析客户端IP（连接的对端地址）</li>
+ *   <li>获取User-Agent</li>
+ * </ul>
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class RequestUtil {
+
+    /**
+     * 获取当前线程绑定的HTTP请求。
+     *
+     * @return 当前请求，非请求线程中调用时返回空Optional
+     */
+    public static Optional<HttpServletRequest> currentRequest() {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                ? Optional.of(attributes.getRequest())
+                : Optional.empty();
+    }
+
+    /**
+     * 解析客户端IP。
+     * <p>
+     * 只取连接的对端地址，不读取X-Forwarded-For、X-Real-IP等客户端可以任意伪造的请求头。
+     * 部署在反向代理之后时，应由容器只对可信代理解析转发头（server.forward-headers-strategy），
+     * 此时对端地址即为真实客户端地址。
+     *
+     * @param request HTTP请求
+     * @return 客户端IP
+     */
+    public static String clientIp(HttpServletRequest request) {
+        return request.getRemoteAddr();
+    }
+
+    /**
+     * 获取User-Agent。
+     *
+     * @param request HTTP请求
+     * @return User-Agent，不存在时为null
+     */
+    public static String userAgent(HttpServletRequest request) {
+        return request.getHeader("User-Agent");
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.afanguserbackend.component.ai;
+
+import com.example.afanguserbackend.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * AI请求调度器的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class AiStreamSchedulerTest {
+
+    private static final AiStreamScheduler.Client ANONYMOUS = new AiStreamScheduler.Client("ip:10.0.0.1", 1);
+
+    private static final AiStreamScheduler.Client USER = new AiStreamScheduler.Client("user:alice", 2);
+
+    private static final AiStreamScheduler.Client HOLDER = new AiStreamScheduler.Client("ip:10.0.0.9", 1);
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private AiStreamScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        scheduler = new AiStreamScheduler(meterRegistry, 1, 10, 100, 60_000, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void sharesFreedSlotsByWeight() {
+        AiStreamScheduler.Permit current = scheduler.acquire(HOLDER, true).join();
+        Map<CompletableFuture<AiStreamScheduler.Permit>, String> pending = new LinkedHashMap<>();
+        for (int i = 1; i <= 4; i++) {
+            pending.put(scheduler.acquire(ANONYMOUS, true), "ip" + i);
+        }
+        for (int i = 1; i <= 4; i++) {
+            pending.put(scheduler.acquire(USER, true), "user" + i);
+        }
+
+        List<String> order = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            current.release();
+            CompletableFuture<AiStreamScheduler.Permit> granted = pending.keySet().stream()
+                    .filter(CompletableFuture::isDone)
+                    .findFirst()
+                    .orElseThrow();
+            order.add(pending.remove(granted));
+            current = granted.join();
+        }
+        current.release();
+
+        // 登录用户权重为2，每轮最多连续拿到两个名额
+        assertThat(order).containsExactly("ip1", "user1", "user2", "ip2", "user3", "user4", "ip3", "ip4");
+        assertThat(queueDepth()).isZero();
+        assertThat(upstreamInUse()).isZero();
+    }
+
+    @Test
+    void rejectsClientOverItsLimit() {
+        AiStreamScheduler limited = new AiStreamScheduler(new SimpleMeterRegistry(), 4, 1, 100, 60_000, 2);
+        try {
+            AiStreamScheduler.Permit permit = limited.acquire(ANONYMOUS, false).join();
+
+            assertThatThrownBy(() -> limited.acquire(ANONYMOUS, true).join())
+                    .hasCauseInstanceOf(TooManyRequestsException.class);
+            permit.release();
+            assertThat(limited.acquire(ANONYMOUS, true)).isCompleted();
+        } finally {
+            limited.shutdown();
+        }
+    }
+
+    @Test
+    void cancelledWaiterLeavesQueue() {
+        AiStreamScheduler.Permit holder = scheduler.acquire(HOLDER, true).join();
+        CompletableFuture<AiStreamScheduler.Permit> cancelled = scheduler.acquire(ANONYMOUS, true);
+        CompletableFuture<AiStreamScheduler.Permit> next = scheduler.acquire(USER, true);
+
+        cancelled.cancel(false);
+        assertThat(queueDepth()).isEqualTo(1);
+        holder.release();
+
+        assertThat(next).isCompleted();
+        next.join().release();
+        assertThat(upstreamInUse()).isZero();
+        assertThat(queueDepth()).isZero();
+    }
+
+    @Test
+    void usesRemoteAddressInsteadOfForwardedHeaders() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("192.0.2.10");
+        request.addHeader("X-Forwarded-For", "203.0.113.7");
+        request.addHeader("X-Real-IP", "203.0.113.8");
+
+        assertThat(scheduler.client(request)).isEqualTo(new AiStreamScheduler.Client("ip:192.0.2.10", 1));
+    }
+
+    private double queueDepth() {
+        return meterRegistry.get("ai.scheduler.queue.depth").gauge().value();
+    }
+
+    private double upstreamInUse() {
+        return meterRegistry.get("ai.scheduler.upstream.in-use").gauge().value();
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.afanguserbackend.component.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 流式响应帧编码器的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class ChatChunkEncoderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void escapesContentSoFrameRoundTrips() throws Exception {
+        String content = "他说：\"a\\b\"\n\t\u0001</script>😀";
+        ChatChunkEncoder encoder = ChatChunkEncoder.forStream("chatcmpl-\"1\"", 1700000000L, "glm\\4");
+
+        String frame = encoder.encode(content, null);
+
+        assertThat(frame).doesNotContain("\n").doesNotContain("\u0001");
+        JsonNode node = objectMapper.readTree(frame);
+        assertThat(node.get("id").asText()).isEqualTo("chatcmpl-\"1\"");
+        assertThat(node.get("model").asText()).isEqualTo("glm\\4");
+        assertThat(node.get("created").asLong()).isEqualTo(1700000000L);
+        assertThat(node.at("/choices/0/delta/content").asText()).isEqualTo(content);
+        assertThat(node.at("/choices/0/finish_reason").isNull()).isTrue();
+    }
+
+    @Test
+    void writesLowerCaseFinishReasonAndEmptyContent() throws Exception {
+        ChatChunkEncoder encoder = ChatChunkEncoder.forStream("id", 1L, "m");
+
+        JsonNode node = objectMapper.readTree(encoder.encode(null, "STOP"));
+
+        assertThat(node.at("/choices/0/delta/content").asText()).isEmpty();
+        assertThat(node.at("/choices/0/finish_reason").asText()).isEqualTo("stop");
+    }
+
+    @Test
+    void reusedBufferDoesNotLeakPreviousFrame() throws Exception {
+        ChatChunkEncoder encoder = ChatChunkEncoder.forStream("id", 1L, "m");
+        encoder.encode("x".repeat(20_000), null);
+
+        JsonNode node = objectMapper.readTree(encoder.encode("y", null));
+
+        assertThat(node.at("/choices/0/delta/content").asText()).isEqualTo("y");
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.afanguserbackend.component.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 大模型回答精确匹配缓存的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class ChatResponseCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private ValueOperations<String, String> valueOperations;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private final List<ChatResponseCache> caches = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        caches.forEach(ChatResponseCache::shutdown);
+    }
+
+    @Test
+    void keyIgnoresWidthAndWhitespaceButNotCase() {
+        ChatResponseCache cache = cache("glm-4.5-flash", "0.7", 100, 1000, 1000);
+
+        assertThat(cache.key("  Ｈｅｌｌｏ　 \n world\t")).isEqualTo(cache.key("Hello world"));
+        assertThat(cache.key("hello world")).isNotEqualTo(cache.key("Hello world"));
+    }
+
+    @Test
+    void keyIncludesModelAndParameters() {
+        String key = cache("glm-4.5-flash", "0.7", 100, 1000, 1000).key("Hello");
+
+        assertThat(cache("glm-4.5-flash", "0.7", 100, 1000, 1000).key("Hello")).isEqualTo(key);
+        assertThat(cache("glm-4-plus", "0.7", 100, 1000, 1000).key("Hello")).isNotEqualTo(key);
+        assertThat(cache("glm-4.5-flash", "0.2", 100, 1000, 1000).key("Hello")).isNotEqualTo(key);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntryOverEntryCap() {
+        ChatResponseCache cache = cache("m", "", 2, 1000, 1000);
+        cache.put("a", "answer-a");
+        cache.put("b", "answer-b");
+        // 访问a后，b成为最久未访问的条目
+        assertThat(cache.get("a")).contains("answer-a");
+
+        cache.put("c", "answer-c");
+
+        assertThat(cache.get("b")).isEmpty();
+        assertThat(cache.get("a")).contains("answer-a");
+        assertThat(cache.get("c")).contains("answer-c");
+        assertThat(requests("l1")).isEqualTo(3);
+        assertThat(requests("miss")).isEqualTo(1);
+    }
+
+    @Test
+    void evictsOldestEntriesOverCharCap() {
+        ChatResponseCache cache = cache("m", "", 100, 10, 1000);
+        cache.put("a", "12345678");
+        cache.put("b", "12345");
+
+        assertThat(cache.get("a")).isEmpty();
+        assertThat(cache.get("b")).contains("12345");
+        assertThat(meterRegistry.get("ai.cache.local.size").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void fallsBackToRedisAndBackfillsLocal() {
+        ChatResponseCache cache = cache("m", "", 100, 1000, 1000);
+        when(valueOperations.get("ai:cache:k")).thenReturn("shared answer");
+        when(stringRedisTemplate.getExpire("ai:cache:k")).thenReturn(600L);
+
+        assertThat(cache.get("k")).contains("shared answer");
+        assertThat(cache.get("k")).contains("shared answer");
+
+        verify(valueOperations, times(1)).get("ai:cache:k");
+        assertThat(requests("l2")).isEqualTo(1);
+        assertThat(requests("l1")).isEqualTo(1);
+    }
+
+    @Test
+    void treatsRedisFailureAsMiss() {
+        ChatResponseCache cache = cache("m", "", 100, 1000, 1000);
+        when(valueOperations.get(anyString())).thenThrow(new IllegalStateException("redis down"));
+
+        assertThat(cache.get("k")).isEmpty();
+        assertThat(requests("miss")).isEqualTo(1);
+    }
+
+    @Test
+    void writesBothLevelsButSkipsOverlongAnswers() {
+        ChatResponseCache cache = cache("m", "", 100, 1000, 5);
+
+        cache.put("long", "123456");
+        cache.put("short", "12345");
+
+        assertThat(cache.get("long")).isEmpty();
+        assertThat(cache.get("short")).contains("12345");
+        verify(valueOperations, timeout(5000)).set(eq("ai:cache:short"), eq("12345"), any(Duration.class));
+        verify(valueOperations, never()).set(eq("ai:cache:long"), anyString(), any(Duration.class));
+    }
+
+    @Test
+    void replaysAnswerInFixedChunksEndingWithStop() throws Exception {
+        ChatResponseCache cache = cache("glm-4.5-flash", "", 100, 1000, 1000, 4);
+        String key = cache.key("Hello");
+
+        List<String> frames = cache.replay(key, "abcdefghij");
+
+        assertThat(frames).hasSize(4);
+        List<String> contents = new ArrayList<>();
+        for (String frame : frames) {
+            JsonNode node = objectMapper.readTree(frame);
+            assertThat(node.get("id").asText()).isEqualTo("chatcmpl-cache-" + key.substring(0, 16));
+            assertThat(node.get("model").asText()).isEqualTo("glm-4.5-flash");
+            contents.add(node.at("/choices/0/delta/content").asText());
+        }
+        assertThat(contents).containsExactly("abcd", "efgh", "ij", "");
+        assertThat(objectMapper.readTree(frames.get(2)).at("/choices/0/finish_reason").isNull()).isTrue();
+        assertThat(objectMapper.readTree(frames.get(3)).at("/choices/0/finish_reason").asText()).isEqualTo("stop");
+    }
+
+    @Test
+    void replayDoesNotSplitSurrogatePairs() throws Exception {
+        ChatResponseCache cache = cache("m", "", 100, 1000, 1000, 4);
+
+        List<String> frames = cache.replay(cache.key("emoji"), "abc😀d");
+
+        assertThat(objectMapper.readTree(frames.get(0)).at("/choices/0/delta/content").asText()).isEqualTo("abc😀");
+        assertThat(objectMapper.readTree(frames.get(1)).at("/choices/0/delta/content").asText()).isEqualTo("d");
+    }
+
+    private ChatResponseCache cache(String model, String temperature, int localMaxEntries, long localMaxChars,
+                                    int maxAnswerChars) {
+        return cache(model, temperature, localMaxEntries, localMaxChars, maxAnswerChars, 32);
+    }
+
+    private ChatResponseCache cache(String model, String temperature, int localMaxEntries, long localMaxChars,
+                                    int maxAnswerChars, int replayChunkChars) {
+        ChatResponseCache cache = new ChatResponseCache(stringRedisTemplate, meterRegistry, true, model, temperature,
+                "", 3600, localMaxEntries, localMaxChars, maxAnswerChars, replayChunkChars);
+        caches.add(cache);
+        return cache;
+    }
+
+    private double requests(String result) {
+        return meterRegistry.counter("ai.cache.requests", "result", result).count();
+    }
+}
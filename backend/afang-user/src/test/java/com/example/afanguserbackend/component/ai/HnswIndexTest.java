@@ -0,0 +1,101 @@
+package com.example.afanguserbackend.component.ai;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 内存映射HNSW索引的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 16;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void findsInsertedVectors() throws Exception {
+        Random random = new Random(42);
+        float[][] vectors = new float[500][];
+        try (HnswIndex index = HnswIndex.open(dir.resolve("index.hnsw"), DIMENSIONS, 8, 4, 1000, 64)) {
+            for (int i = 0; i < vectors.length; i++) {
+                vectors[i] = unit(random);
+                assertThat(index.insert(vectors[i], key(i))).isTrue();
+            }
+
+            assertThat(index.size()).isEqualTo(vectors.length);
+            for (int i = 0; i < vectors.length; i++) {
+                HnswIndex.Match match = index.nearest(vectors[i], vectors.length);
+                assertThat(match.key()).isEqualTo(key(i));
+                assertThat(match.similarity()).isGreaterThan(0.999f);
+            }
+        }
+    }
+
+    @Test
+    void skipsDuplicateKeysAndStopsWhenFull() throws Exception {
+        Random random = new Random(7);
+        try (HnswIndex index = HnswIndex.open(dir.resolve("index.hnsw"), DIMENSIONS, 4, 2, 2, 16)) {
+            assertThat(index.insert(unit(random), key(1))).isTrue();
+            assertThat(index.insert(unit(random), key(1))).isTrue();
+            assertThat(index.size()).isEqualTo(1);
+
+            assertThat(index.insert(unit(random), key(2))).isTrue();
+            assertThat(index.insert(unit(random), key(3))).isFalse();
+            assertThat(index.size()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void reopensExistingFile() throws Exception {
+        Path path = dir.resolve("index.hnsw");
+        float[] vector = unit(new Random(1));
+        try (HnswIndex index = HnswIndex.open(path, DIMENSIONS, 4, 2, 10, 16)) {
+            index.insert(vector, key(5));
+        }
+
+        try (HnswIndex index = HnswIndex.open(path, DIMENSIONS, 4, 2, 10, 16)) {
+            assertThat(index.size()).isEqualTo(1);
+            assertThat(index.keyAt(0)).isEqualTo(key(5));
+            assertThat(index.vectorAt(0)).containsExactly(vector);
+            // 去重集合在重新打开时恢复
+            index.insert(vector, key(5));
+            assertThat(index.size()).isEqualTo(1);
+        }
+
+        // 参数不一致时重建空索引
+        try (HnswIndex index = HnswIndex.open(path, DIMENSIONS, 4, 2, 20, 16)) {
+            assertThat(index.size()).isZero();
+            assertThat(index.nearest(vector, 16)).isNull();
+        }
+    }
+
+    private static float[] unit(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        double norm = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+
+    private static byte[] key(int value) {
+        byte[] key = new byte[HnswIndex.KEY_BYTES];
+        key[0] = (byte) (value >>> 8);
+        key[1] = (byte) value;
+        return key;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.afanguserbackend.component.ai;
+
+import com.example.afanguserbackend.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 流式请求合并的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class StreamCoalescerTest {
+
+    private static final AiStreamScheduler.Client CLIENT = new AiStreamScheduler.Client("ip:10.0.0.1", 1);
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private AiStreamScheduler scheduler;
+
+    private StreamCoalescer coalescer;
+
+    private List<Sinks.Many<String>> upstreamCalls;
+
+    private List<Double> inUseAtCall;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        scheduler = new AiStreamScheduler(meterRegistry, 1, 10, 0, 60_000, 2);
+        coalescer = new StreamCoalescer(meterRegistry);
+        upstreamCalls = new ArrayList<>();
+        inUseAtCall = new ArrayList<>();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void followersShareOneUpstreamCallAndPermit() {
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+        coalesce().subscribe(first::add);
+        coalesce().subscribe(second::add);
+        upstreamCalls.get(0).tryEmitNext("a");
+
+        List<String> late = new ArrayList<>();
+        coalesce().subscribe(late::add);
+        upstreamCalls.get(0).tryEmitNext("b");
+        upstreamCalls.get(0).tryEmitComplete();
+
+        assertThat(upstreamCalls).hasSize(1);
+        assertThat(inUseAtCall).containsExactly(1.0);
+        assertThat(first).containsExactly("a", "b");
+        assertThat(second).containsExactly("a", "b");
+        // 后加入的请求先收到已生成的部分
+        assertThat(late).containsExactly("a", "b");
+        assertThat(upstreamInUse()).isZero();
+    }
+
+    @Test
+    void reacquiresPermitWhenRestartedAfterAllSubscribersCancelled() {
+        Flux<String> shared = coalesce();
+        Disposable subscription = shared.subscribe();
+        subscription.dispose();
+
+        assertThat(upstreamInUse()).isZero();
+        shared.subscribe();
+
+        // 重新开始的共享流同样先拿到名额再调用上游
+        assertThat(upstreamCalls).hasSize(2);
+        assertThat(inUseAtCall).containsExactly(1.0, 1.0);
+        assertThat(upstreamInUse()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectedPermitFailsAllSubscribersWithoutCallingUpstream() {
+        AiStreamScheduler.Permit holder = scheduler.acquire(new AiStreamScheduler.Client("ip:10.0.0.9", 1), true)
+                .join();
+
+        assertThatThrownBy(() -> coalesce().collectList().block()).isInstanceOf(TooManyRequestsException.class);
+        assertThat(upstreamCalls).isEmpty();
+
+        holder.release();
+        coalesce().subscribe();
+        assertThat(upstreamCalls).hasSize(1);
+    }
+
+    private Flux<String> coalesce() {
+        return coalescer.coalesce("key", () -> scheduler.acquireUpstream(CLIENT), () -> {
+            inUseAtCall.add(upstreamInUse());
+            Sinks.Many<String> sink = Sinks.many().unicast().onBackpressureBuffer();
+            upstreamCalls.add(sink);
+            return sink.asFlux();
+        });
+    }
+
+    private double upstreamInUse() {
+        return meterRegistry.get("ai.scheduler.upstream.in-use").gauge().value();
+    }
+}
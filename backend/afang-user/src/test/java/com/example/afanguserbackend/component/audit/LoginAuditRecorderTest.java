@@ -0,0 +1,191 @@
+package com.example.afanguserbackend.component.audit;
+
+import com.example.afanguserbackend.component.id.SnowflakeIdGenerator;
+import com.example.afanguserbackend.mapper.audit.LoginAuditMapper;
+import com.example.afanguserbackend.model.entity.audit.LoginAudit;
+import com.example.afanguserbackend.utils.RedisUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 登录审计记录器的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class LoginAuditRecorderTest {
+
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+
+    private LoginAuditMapper loginAuditMapper;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private List<List<LoginAudit>> inserted;
+
+    private MockedStatic<RedisUtil> redis;
+
+    @BeforeEach
+    void setUp() {
+        loginAuditMapper = mock(LoginAuditMapper.class);
+        meterRegistry = new SimpleMeterRegistry();
+        inserted = new ArrayList<>();
+        when(loginAuditMapper.insertBatch(any())).thenAnswer(invocation -> {
+            List<LoginAudit> batch = List.copyOf(invocation.<Collection<LoginAudit>>getArgument(0));
+            inserted.add(batch);
+            return batch.size();
+        });
+        redis = mockStatic(RedisUtil.class);
+        redis.when(() -> RedisUtil.setIfAbsent(anyString(), any(), any(Duration.class))).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        redis.close();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void dropsAndCountsEventsBeyondCapacity() {
+        LoginAuditRecorder recorder = recorder(2, 10);
+        for (int i = 0; i < 3; i++) {
+            recorder.record(1L, "13800000000", true, null, System.nanoTime());
+        }
+
+        assertThat(dropped("queue_full")).isEqualTo(1);
+        assertThat(queueSize()).isEqualTo(2);
+
+        recorder.drain();
+        assertThat(inserted).hasSize(1);
+        assertThat(inserted.get(0)).hasSize(2);
+        assertThat(queueSize()).isZero();
+
+        // 写入后腾出容量，新事件不再被丢弃
+        recorder.record(1L, "13800000000", true, null, System.nanoTime());
+        assertThat(dropped("queue_full")).isEqualTo(1);
+    }
+
+    @Test
+    void drainsInBatchesOfConfiguredSize() {
+        LoginAuditRecorder recorder = recorder(100, 2);
+        for (int i = 0; i < 5; i++) {
+            recorder.record((long) i, "13800000000", false, "密码错误", System.nanoTime());
+        }
+
+        recorder.drain();
+
+        assertThat(inserted).extracting(List::size).containsExactly(2, 2, 1);
+        assertThat(inserted.get(0).get(0).getFailureReason()).isEqualTo("密码错误");
+    }
+
+    @Test
+    void countsEventsOfFailedBatch() {
+        when(loginAuditMapper.insertBatch(any())).thenThrow(new IllegalStateException("db down"));
+        LoginAuditRecorder recorder = recorder(100, 10);
+        recorder.record(1L, "13800000000", true, null, System.nanoTime());
+        recorder.record(2L, "13800000001", true, null, System.nanoTime());
+
+        recorder.drain();
+
+        assertThat(dropped("write_failed")).isEqualTo(2);
+        assertThat(queueSize()).isZero();
+    }
+
+    @Test
+    void recordsRemoteAddressInsteadOfForwardedHeaders() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("192.0.2.10");
+        request.addHeader("X-Forwarded-For", "203.0.113.7");
+        request.addHeader("X-Real-IP", "203.0.113.8");
+        request.addHeader("User-Agent", "a".repeat(300));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        LoginAuditRecorder recorder = recorder(100, 10);
+
+        recorder.record(1L, "13800000000", true, null, System.nanoTime());
+        recorder.drain();
+
+        LoginAudit audit = inserted.get(0).get(0);
+        assertThat(audit.getIp()).isEqualTo("192.0.2.10");
+        assertThat(audit.getUserAgent()).hasSize(255);
+    }
+
+    @Test
+    void premakesFuturePartitionsAndDropsExpiredOnes() {
+        LocalDate today = LocalDate.now();
+        String expired = partition(today.minusDays(91));
+        String retained = partition(today.minusDays(89));
+        String existing = partition(today);
+        when(loginAuditMapper.selectPartitionNames()).thenReturn(List.of(expired, retained, existing, "p_future"));
+
+        recorder(100, 10).maintainPartitions();
+
+        verify(loginAuditMapper, never()).addPartition(existing, today.plusDays(1).toString());
+        for (int i = 1; i <= 3; i++) {
+            LocalDate day = today.plusDays(i);
+            verify(loginAuditMapper).addPartition(partition(day), day.plusDays(1).toString());
+        }
+        verify(loginAuditMapper).dropPartition(expired);
+        verify(loginAuditMapper, never()).dropPartition(retained);
+        verify(loginAuditMapper, never()).dropPartition("p_future");
+        redis.verify(() -> RedisUtil.delete(anyString()));
+    }
+
+    @Test
+    void skipsMaintenanceOnUnpartitionedTable() {
+        when(loginAuditMapper.selectPartitionNames()).thenReturn(List.of());
+
+        recorder(100, 10).maintainPartitions();
+
+        verify(loginAuditMapper, never()).addPartition(anyString(), anyString());
+        verify(loginAuditMapper, never()).dropPartition(anyString());
+    }
+
+    @Test
+    void skipsMaintenanceWhenAnotherNodeHoldsTheLock() {
+        redis.when(() -> RedisUtil.setIfAbsent(anyString(), any(), any(Duration.class))).thenReturn(false);
+
+        recorder(100, 10).maintainPartitions();
+
+        verify(loginAuditMapper, never()).selectPartitionNames();
+    }
+
+    private LoginAuditRecorder recorder(int capacity, int batchSize) {
+        return new LoginAuditRecorder(loginAuditMapper, mock(SnowflakeIdGenerator.class), meterRegistry,
+                capacity, batchSize, 3, 90);
+    }
+
+    private double dropped(String reason) {
+        return meterRegistry.get("login.audit.dropped").tag("reason", reason).counter().count();
+    }
+
+    private double queueSize() {
+        return meterRegistry.get("login.audit.queue.size").gauge().value();
+    }
+
+    private static String partition(LocalDate day) {
+        return day.format(PARTITION_NAME);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.afanguserbackend.component.bitmap;
+
+import com.example.afanguserbackend.component.sharding.ShardContext;
+import com.example.afanguserbackend.component.sharding.UserShardTemplate;
+import com.example.afanguserbackend.mapper.user.UsersMapper;
+import com.example.afanguserbackend.model.dto.user.admin_user_dto.UserFilterDto;
+import com.example.afanguserbackend.model.entity.user.Users;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 用户位图索引的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class UserBitmapIndexTest {
+
+    private UserBitmapIndex index;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        UsersMapper usersMapper = mock(UsersMapper.class);
+        UserShardTemplate shardTemplate = mock(UserShardTemplate.class);
+        when(shardTemplate.configuredShards()).thenReturn(List.of(ShardContext.GLOBAL));
+        when(shardTemplate.onShard(anyString(), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        Users deleted = user(4L, "admin", "active", LocalDate.of(2024, 3, 1));
+        deleted.setDeleted(1);
+        when(usersMapper.scanAfterId(eq(0L), anyInt())).thenReturn(List.of(
+                user(1L, "admin", "active", LocalDate.of(2024, 1, 10)),
+                user(2L, "user", "active", LocalDate.of(2024, 2, 10)),
+                user(3L, "ADMIN ", "banned", LocalDate.of(2024, 2, 20)),
+                deleted));
+        when(usersMapper.scanAfterId(eq(4L), anyInt())).thenReturn(List.of());
+
+        index = new UserBitmapIndex(usersMapper, shardTemplate, 100);
+        index.build();
+        awaitReady();
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.shutdown();
+    }
+
+    @Test
+    void combinesRoleStatusAndDateRange() {
+        UserFilterDto filter = new UserFilterDto();
+        filter.setRoles(List.of("admin"));
+        filter.setExcludeStatuses(List.of("banned"));
+        filter.setCreatedFrom(LocalDate.of(2024, 1, 1));
+        filter.setCreatedTo(LocalDate.of(2024, 1, 31));
+        filter.setLimit(10);
+
+        assertThat(index.count(filter)).isEqualTo(1);
+        assertThat(index.ids(filter, 0, 10)).containsExactly(1L);
+    }
+
+    @Test
+    void skipsTombstonesAndNormalizesValues() {
+        assertThat(index.stats().get("role")).containsEntry("admin", 2L).containsEntry("user", 1L);
+    }
+
+    @Test
+    void rejectsInvertedDateRange() {
+        UserFilterDto filter = new UserFilterDto();
+        filter.setCreatedFrom(LocalDate.of(2024, 2, 1));
+        filter.setCreatedTo(LocalDate.of(2024, 1, 1));
+
+        assertThatThrownBy(() -> index.count(filter)).hasMessage("注册日期起始不能晚于截止日期");
+        assertThatThrownBy(() -> index.ids(filter, 0, 10)).hasMessage("注册日期起始不能晚于截止日期");
+    }
+
+    private void awaitReady() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                index.stats();
+                return;
+            } catch (RuntimeException e) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static Users user(long id, String role, String status, LocalDate created) {
+        Users user = new Users();
+        user.setId(id);
+        user.setUserRole(role);
+        user.setStatus(status);
+        user.setCreateTime(LocalDateTime.of(created, LocalTime.NOON));
+        return user;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.afanguserbackend.component.cache;
+
+import com.example.afanguserbackend.component.sharding.ShardContext;
+import org.apache.ibatis.cache.CacheKey;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MyBatis二级缓存字段计算的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class RedisMybatisCacheTest {
+
+    @Test
+    void sameQueryOnDifferentShardsUsesDifferentFields() {
+        CacheKey key = cacheKey(42L);
+
+        byte[] shard0 = ShardContext.runOn("shard0", () -> RedisMybatisCache.field(key));
+        byte[] shard1 = ShardContext.runOn("shard1", () -> RedisMybatisCache.field(key));
+
+        assertThat(shard0).isNotEqualTo(shard1);
+        assertThat(ShardContext.runOn("shard0", () -> RedisMybatisCache.field(cacheKey(42L)))).isEqualTo(shard0);
+    }
+
+    @Test
+    void noShardContextMatchesGlobal() {
+        CacheKey key = cacheKey(42L);
+
+        assertThat(RedisMybatisCache.field(key))
+                .isEqualTo(ShardContext.runOn(ShardContext.GLOBAL, () -> RedisMybatisCache.field(key)));
+    }
+
+    private static CacheKey cacheKey(long id) {
+        CacheKey key = new CacheKey();
+        key.update("com.example.afanguserbackend.mapper.user.UsersMapper.selectById");
+        key.update(0);
+        key.update(Integer.MAX_VALUE);
+        key.update("SELECT * FROM users WHERE id=?");
+        key.update(id);
+        return key;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.afanguserbackend.component.code;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 验证码发送去重的单元测试，Lua脚本的返回值由Redis模拟
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class VerificationSendGuardTest {
+
+    private RedisTemplate<String, Object> redisTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private VerificationSendGuard guard;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        guard = new VerificationSendGuard(redisTemplate, meterRegistry, 60, 10);
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void passesCooldownDailyAndCodeKeysToScript() {
+        givenReply(List.of(1L, "123456"));
+
+        assertThat(guard.acquire("13800000000", "13800000000", Duration.ofMinutes(5))).contains("123456");
+
+        ArgumentCaptor<List> keys = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<Object> args = ArgumentCaptor.forClass(Object.class);
+        verify(redisTemplate).execute(any(RedisScript.class), keys.capture(), args.capture(), args.capture(),
+                args.capture(), args.capture(), args.capture());
+        String day = LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE);
+        assertThat(keys.getValue()).containsExactly("code:cooldown:13800000000",
+                "code:daily:13800000000:" + day, "13800000000");
+        // 冷却毫秒数、每日上限、计数过期秒数、新验证码、验证码过期秒数
+        List<Object> values = args.getAllValues();
+        assertThat(values.get(0)).isEqualTo(60_000L);
+        assertThat(values.get(1)).isEqualTo(10);
+        assertThat(values.get(4)).isEqualTo(300L);
+        assertThat(meterRegistry.counter("verification.send", "outcome", "issued").count()).isEqualTo(1);
+    }
+
+    @Test
+    void suppressesRequestsDuringCooldown() {
+        givenReply(List.of(0L, ""));
+
+        assertThat(guard.acquire("a@example.com", "a@example.com", Duration.ofMinutes(5))).isEmpty();
+        assertThat(meterRegistry.counter("verification.send", "outcome", "suppressed").count()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsRequestsOverDailyLimit() {
+        givenReply(List.of(-1L, ""));
+
+        assertThatThrownBy(() -> guard.acquire("a@example.com", "a@example.com", Duration.ofMinutes(5)))
+                .hasMessageContaining("上限");
+    }
+
+    @Test
+    void resendsUnexpiredCode() {
+        givenReply(List.of(2L, "654321"));
+
+        assertThat(guard.acquire("a@example.com", "a@example.com", Duration.ofMinutes(5))).contains("654321");
+        assertThat(meterRegistry.counter("verification.send", "outcome", "reused").count()).isEqualTo(1);
+    }
+
+    @Test
+    void releaseClearsCooldown() {
+        guard.release("a@example.com");
+
+        verify(redisTemplate).delete("code:cooldown:a@example.com");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenReply(List<Object> reply) {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any(), any(), any(), any()))
+                .thenReturn(reply);
+    }
+}
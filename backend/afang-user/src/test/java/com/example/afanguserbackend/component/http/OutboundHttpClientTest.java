@@ -0,0 +1,167 @@
+package com.example.afanguserbackend.component.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 共享对外HTTP客户端的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class OutboundHttpClientTest {
+
+    private HttpServer server;
+
+    private CountDownLatch release;
+
+    private AtomicInteger inFlight;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private final List<OutboundHttpClient> clients = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        release = new CountDownLatch(1);
+        inFlight = new AtomicInteger();
+        meterRegistry = new SimpleMeterRegistry();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/ok", exchange -> respond(exchange, "ok"));
+        server.createContext("/slow", exchange -> {
+            inFlight.incrementAndGet();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, "slow");
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        clients.forEach(OutboundHttpClient::shutdown);
+        server.stop(0);
+    }
+
+    @Test
+    void capsConcurrentRequestsPerHostAndBoundsTheWait() throws Exception {
+        OutboundHttpClient client = client(5000, 2, 100);
+        CompletableFuture<HttpResponse<String>> first = client.sendAsync(request("/slow"));
+        CompletableFuture<HttpResponse<String>> second = client.sendAsync(request("/slow"));
+        awaitInFlight(2);
+
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> third = client.sendAsync(request("/ok"));
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // 许可已满：最多等待acquire-timeout-ms后直接失败，不发出请求
+        assertThat(waitedMs).isBetween(90L, 2000L);
+        assertThatThrownBy(third::join).hasCauseInstanceOf(HttpTimeoutException.class);
+        assertThat(meterRegistry.get("http.client.outbound.rejected").counter().count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS).body()).isEqualTo("slow");
+        assertThat(second.get(5, TimeUnit.SECONDS).body()).isEqualTo("slow");
+        assertThat(client.send(request("/ok")).body()).isEqualTo("ok");
+    }
+
+    @Test
+    void cancelsRequestAndReturnsPermitAtTotalDeadline() throws Exception {
+        OutboundHttpClient client = client(200, 1, 1000);
+
+        assertThatThrownBy(() -> client.send(request("/slow")))
+                .isInstanceOf(HttpTimeoutException.class)
+                .hasMessageContaining("总耗时");
+
+        // 底层请求被取消后许可立即归还，唯一的许可可以再次使用
+        assertThat(client.send(request("/ok")).body()).isEqualTo("ok");
+    }
+
+    @Test
+    void returnsPermitWhenRequestFails() throws Exception {
+        OutboundHttpClient client = client(5000, 1, 100);
+        URI closed = URI.create("http://127.0.0.1:" + freePort() + "/ok");
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> client.send(HttpRequest.newBuilder(closed)))
+                    .isInstanceOf(ConnectException.class);
+        }
+
+        assertThat(meterRegistry.find("http.client.outbound.rejected").counter()).isNull();
+    }
+
+    @Test
+    void encodesQueryParameters() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("content", "验证码 123");
+        params.put("flag", null);
+
+        assertThat(OutboundHttpClient.uri("https://api.example.com", "/send", params).toString())
+                .isEqualTo("https://api.example.com/send?content=%E9%AA%8C%E8%AF%81%E7%A0%81+123&flag");
+    }
+
+    private OutboundHttpClient client(long totalTimeoutMs, int maxPerHost, long acquireTimeoutMs) {
+        OutboundHttpClient client = new OutboundHttpClient(meterRegistry, 1000, 5000, totalTimeoutMs,
+                maxPerHost, acquireTimeoutMs);
+        clients.add(client);
+        return client;
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path));
+    }
+
+    private void awaitInFlight(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (inFlight.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(inFlight.get()).isEqualTo(expected);
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+}
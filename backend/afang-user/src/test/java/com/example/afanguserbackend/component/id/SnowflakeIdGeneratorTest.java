@@ -0,0 +1,132 @@
+package com.example.afanguserbackend.component.id;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 雪花算法ID生成器的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class SnowflakeIdGeneratorTest {
+
+    private static final long SEQUENCE_MASK = (1L << SnowflakeIdGenerator.SEQUENCE_BITS) - 1;
+
+    private WorkerIdLease workerIdLease;
+
+    @BeforeEach
+    void setUp() {
+        workerIdLease = mock(WorkerIdLease.class);
+        when(workerIdLease.getWorkerId()).thenReturn(5L);
+    }
+
+    @Test
+    void idsAreIncreasingAndCarryTheWorkerId() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(workerIdLease, 1000);
+
+        long previous = 0;
+        for (int i = 0; i < 100_000; i++) {
+            long id = generator.nextId();
+            assertThat(id).isGreaterThan(previous);
+            assertThat((id >>> SnowflakeIdGenerator.SEQUENCE_BITS) & SnowflakeIdGenerator.MAX_WORKER_ID).isEqualTo(5L);
+            previous = id;
+        }
+    }
+
+    @Test
+    void idsAreUniqueUnderConcurrency() throws Exception {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(workerIdLease, 1000);
+        int threads = 8;
+        int perThread = 50_000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long previous = 0;
+                    for (int i = 0; i < perThread; i++) {
+                        long id = generator.nextId();
+                        // 同一线程内也保持递增
+                        assertThat(id).isGreaterThan(previous);
+                        ids.add(id);
+                        previous = id;
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(ids).hasSize(threads * perThread);
+    }
+
+    @Test
+    void sequenceOverflowCarriesIntoTheNextMillisecond() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(workerIdLease, Long.MAX_VALUE);
+        // 逻辑时间远超物理时钟，所有ID都落在同一逻辑毫秒内，直到序列号溢出
+        long floor = System.currentTimeMillis() + 60_000;
+        generator.advanceTo(floor);
+
+        long first = generator.nextId();
+        long last = first;
+        for (int i = 1; i < SEQUENCE_MASK; i++) {
+            last = generator.nextId();
+        }
+        long carried = generator.nextId();
+
+        assertThat(SnowflakeIdGenerator.timestampOf(first)).isEqualTo(floor + 1);
+        assertThat(first & SEQUENCE_MASK).isEqualTo(1);
+        assertThat(SnowflakeIdGenerator.timestampOf(last)).isEqualTo(floor + 1);
+        assertThat(last & SEQUENCE_MASK).isEqualTo(SEQUENCE_MASK);
+        assertThat(SnowflakeIdGenerator.timestampOf(carried)).isEqualTo(floor + 2);
+        assertThat(carried & SEQUENCE_MASK).isZero();
+    }
+
+    @Test
+    void keepsIncreasingWhenTheClockIsBehindTheLeaseFloor() {
+        // 上次持久化的时间戳晚于当前时钟，相当于重启后时钟回拨
+        long floor = System.currentTimeMillis() + 5_000;
+        when(workerIdLease.getLastTimestamp()).thenReturn(floor);
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(workerIdLease, Long.MAX_VALUE);
+
+        long first = generator.nextId();
+        long second = generator.nextId();
+
+        assertThat(SnowflakeIdGenerator.timestampOf(first)).isGreaterThan(floor);
+        assertThat(second).isGreaterThan(first);
+        assertThat(generator.currentTimestamp()).isGreaterThan(floor);
+    }
+
+    @Test
+    void advanceToNeverMovesBackwards() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(workerIdLease, Long.MAX_VALUE);
+        long floor = System.currentTimeMillis() + 10_000;
+        generator.advanceTo(floor);
+        generator.advanceTo(floor - 5_000);
+
+        assertThat(generator.currentTimestamp()).isEqualTo(floor + 1);
+    }
+}
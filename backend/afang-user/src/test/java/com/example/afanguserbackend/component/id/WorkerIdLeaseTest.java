@@ -0,0 +1,118 @@
+package com.example.afanguserbackend.component.id;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 雪花ID机器号租约的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class WorkerIdLeaseTest {
+
+    private RedisTemplate<String, Object> redisTemplate;
+
+    private ValueOperations<String, Object> valueOperations;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    @Test
+    void acquiresAFreeWorkerIdAndUsesItsTimestampAsFloor() {
+        long floor = System.currentTimeMillis() + 60_000;
+        // 第一个候选已被占用，第二个空闲
+        when(valueOperations.setIfAbsent(startsWith("id:worker:lease:"), anyString(), any(Duration.class)))
+                .thenReturn(false, true);
+        when(valueOperations.get(startsWith("id:worker:ts:"))).thenReturn(floor);
+        WorkerIdLease lease = new WorkerIdLease(redisTemplate, -1, 60);
+
+        lease.acquire();
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(lease, Long.MAX_VALUE);
+
+        assertThat(lease.getWorkerId()).isBetween(0L, SnowflakeIdGenerator.MAX_WORKER_ID);
+        assertThat(lease.getLastTimestamp()).isEqualTo(floor);
+        assertThat(SnowflakeIdGenerator.timestampOf(generator.nextId())).isGreaterThan(floor);
+        verify(valueOperations, times(2)).setIfAbsent(anyString(), anyString(), eq(Duration.ofSeconds(60)));
+    }
+
+    @Test
+    void failsWhenNoWorkerIdIsFree() {
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        WorkerIdLease lease = new WorkerIdLease(redisTemplate, -1, 60);
+
+        assertThatThrownBy(lease::acquire).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void renewPersistsTheLogicalTimestamp() {
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any())).thenReturn(1L);
+        WorkerIdLease lease = new WorkerIdLease(redisTemplate, -1, 60);
+        lease.acquire();
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(lease, Long.MAX_VALUE);
+        long ahead = System.currentTimeMillis() + 30_000;
+        generator.advanceTo(ahead);
+
+        lease.renew();
+
+        verify(valueOperations).set(eq("id:worker:ts:" + lease.getWorkerId()),
+                argThat(value -> value instanceof Long timestamp && timestamp > ahead));
+        verify(valueOperations, times(1)).setIfAbsent(anyString(), anyString(), any(Duration.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reacquiresAndAdvancesTheGeneratorWhenTheLeaseIsLost() {
+        long floor = System.currentTimeMillis() + 120_000;
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        when(valueOperations.get(anyString())).thenReturn(null, floor);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any())).thenReturn(0L);
+        WorkerIdLease lease = new WorkerIdLease(redisTemplate, -1, 60);
+        lease.acquire();
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(lease, Long.MAX_VALUE);
+
+        lease.renew();
+
+        verify(valueOperations, times(2)).setIfAbsent(anyString(), anyString(), any(Duration.class));
+        // 重新拿到的机器号此前用到的时间区间被跳过
+        assertThat(generator.currentTimestamp()).isGreaterThan(floor);
+    }
+
+    @Test
+    void fixedWorkerIdSkipsTheLease() {
+        WorkerIdLease lease = new WorkerIdLease(redisTemplate, 7, 60);
+
+        lease.acquire();
+        lease.renew();
+
+        assertThat(lease.getWorkerId()).isEqualTo(7L);
+        verify(valueOperations, never()).setIfAbsent(anyString(), any(), any(Duration.class));
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.afanguserbackend.component.login;
+
+import com.example.afanguserbackend.component.sharding.UserShardTemplate;
+import com.example.afanguserbackend.mapper.user.UsersMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 登录统计写后缓冲的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class LoginActivityTrackerTest {
+
+    private static final String MIRROR_KEY = "login:pending:node-a";
+
+    private UsersMapper usersMapper;
+
+    private UserShardTemplate shardTemplate;
+
+    private RedisTemplate<String, Object> redisTemplate;
+
+    private HashOperations<String, Object, Object> hashOperations;
+
+    private LoginActivityTracker tracker;
+
+    /**
+     * 每次批量写库的分片和增量
+     */
+    private List<Map.Entry<String, List<LoginDelta>>> batches;
+
+    private String currentShard;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        usersMapper = mock(UsersMapper.class);
+        shardTemplate = mock(UserShardTemplate.class);
+        redisTemplate = mock(RedisTemplate.class);
+        hashOperations = mock(HashOperations.class);
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        batches = new ArrayList<>();
+
+        // 奇数ID在s1，偶数ID在s0
+        when(shardTemplate.groupIdsByShard(any())).thenAnswer(invocation -> {
+            Map<String, List<Long>> byShard = new LinkedHashMap<>();
+            for (Long id : invocation.<Collection<Long>>getArgument(0)) {
+                byShard.computeIfAbsent(id % 2 == 0 ? "s0" : "s1", k -> new ArrayList<>()).add(id);
+            }
+            return byShard;
+        });
+        when(shardTemplate.onShard(anyString(), any())).thenAnswer(invocation -> {
+            currentShard = invocation.getArgument(0);
+            return invocation.<Supplier<?>>getArgument(1).get();
+        });
+        when(usersMapper.batchRecordLogins(any())).thenAnswer(invocation -> {
+            List<LoginDelta> batch = List.copyOf(invocation.<Collection<LoginDelta>>getArgument(0));
+            batches.add(Map.entry(currentShard, batch));
+            return batch.size();
+        });
+
+        tracker = new LoginActivityTracker(usersMapper, shardTemplate, redisTemplate, 2, "node-a");
+    }
+
+    @Test
+    void mergeSumsCountsAndKeepsLatestTime() {
+        LocalDateTime earlier = LocalDateTime.of(2024, 1, 1, 8, 0);
+        LocalDateTime later = earlier.plusMinutes(5);
+
+        LoginDelta merged = LoginDelta.merge(new LoginDelta(1L, 2, later), new LoginDelta(1L, 3, earlier));
+
+        assertThat(merged.getCount()).isEqualTo(5);
+        assertThat(merged.getLastLoginTime()).isEqualTo(later);
+    }
+
+    @Test
+    void mergesRepeatedLoginsBeforeFlush() {
+        tracker.record(1L);
+        tracker.record(1L);
+        tracker.record(1L);
+
+        tracker.flush();
+
+        assertThat(batches).hasSize(1);
+        LoginDelta delta = batches.get(0).getValue().get(0);
+        assertThat(delta.getUserId()).isEqualTo(1L);
+        assertThat(delta.getCount()).isEqualTo(3);
+    }
+
+    @Test
+    void flushesOneCaseUpdatePerShardAndBatch() {
+        for (long id = 1; id <= 5; id++) {
+            tracker.record(id);
+        }
+
+        tracker.flush();
+
+        // s1有3个用户按批大小2拆成两条，s0有2个用户一条
+        assertThat(batches).hasSize(3);
+        assertThat(batches).allSatisfy(batch -> {
+            assertThat(batch.getValue()).hasSizeLessThanOrEqualTo(2);
+            long parity = "s0".equals(batch.getKey()) ? 0 : 1;
+            assertThat(batch.getValue()).allSatisfy(delta -> assertThat(delta.getUserId() % 2).isEqualTo(parity));
+        });
+        assertThat(batches.stream().mapToInt(batch -> batch.getValue().size()).sum()).isEqualTo(5);
+
+        tracker.flush();
+        assertThat(batches).hasSize(3);
+    }
+
+    @Test
+    void requeuesFailedBatchAndMergesWithNewLogins() {
+        doThrow(new IllegalStateException("db down"))
+                .doAnswer(invocation -> {
+                    batches.add(Map.entry(currentShard, List.copyOf(invocation.<Collection<LoginDelta>>getArgument(0))));
+                    return 1;
+                })
+                .when(usersMapper).batchRecordLogins(any());
+        tracker.record(1L);
+        tracker.flush();
+        assertThat(batches).isEmpty();
+
+        tracker.record(1L);
+        tracker.flush();
+
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0).getValue().get(0).getCount()).isEqualTo(2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void mirrorsSnapshotThroughTempKey() {
+        tracker.record(1L);
+        tracker.record(1L);
+
+        tracker.mirror();
+
+        ArgumentCaptor<Map<Object, Object>> snapshot = ArgumentCaptor.forClass(Map.class);
+        verify(hashOperations).putAll(eq(MIRROR_KEY + ":tmp"), snapshot.capture());
+        verify(redisTemplate).rename(MIRROR_KEY + ":tmp", MIRROR_KEY);
+        assertThat(snapshot.getValue()).containsOnlyKeys("1");
+        assertThat(snapshot.getValue().get("1").toString()).startsWith("2:");
+
+        // 没有新增量时不重复镜像
+        tracker.mirror();
+        verify(hashOperations, times(1)).putAll(anyString(), any());
+    }
+
+    @Test
+    void replaysMirrorOfPreviousRun() {
+        long lastLogin = 1_700_000_000_000L;
+        when(redisTemplate.hasKey(MIRROR_KEY + ":replay")).thenReturn(false);
+        when(redisTemplate.hasKey(MIRROR_KEY)).thenReturn(true);
+        when(hashOperations.entries(MIRROR_KEY + ":replay")).thenReturn(Map.of("7", "3:" + lastLogin));
+
+        tracker.replay();
+
+        verify(redisTemplate).rename(MIRROR_KEY, MIRROR_KEY + ":replay");
+        assertThat(batches).hasSize(1);
+        LoginDelta delta = batches.get(0).getValue().get(0);
+        assertThat(delta.getUserId()).isEqualTo(7L);
+        assertThat(delta.getCount()).isEqualTo(3);
+        assertThat(delta.getLastLoginTime())
+                .isEqualTo(LocalDateTime.ofInstant(Instant.ofEpochMilli(lastLogin), ZoneId.systemDefault()));
+        verify(redisTemplate).delete(MIRROR_KEY + ":replay");
+    }
+
+    @Test
+    void pausesDatabaseWritesWhileResharding() {
+        when(shardTemplate.isResharding()).thenReturn(true);
+        tracker.record(1L);
+
+        tracker.flush();
+
+        // 增量只镜像到Redis，不写库
+        verify(shardTemplate, never()).groupIdsByShard(any());
+        verify(hashOperations).putAll(eq(MIRROR_KEY + ":tmp"), any());
+        assertThat(batches).isEmpty();
+
+        when(shardTemplate.isResharding()).thenReturn(false);
+        tracker.flush();
+        assertThat(batches).hasSize(1);
+    }
+}
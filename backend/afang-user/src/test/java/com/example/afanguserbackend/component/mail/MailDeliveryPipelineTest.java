@@ -0,0 +1,67 @@
+package com.example.afanguserbackend.component.mail;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 异步邮件投递管道的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class MailDeliveryPipelineTest {
+
+    private SmtpTransportPool transportPool;
+
+    private MailDeliveryPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        transportPool = mock(SmtpTransportPool.class);
+        when(transportPool.session()).thenReturn(Session.getInstance(new Properties()));
+        // 退避时间远长于测试时长，重试在关闭时仍处于等待中
+        pipeline = new MailDeliveryPipeline(transportPool, new SimpleMeterRegistry(), "noreply@example.com",
+                10, 1, false, 1, 4, 60_000, 60_000, "mail:dead-letter", 100);
+        pipeline.start();
+    }
+
+    @Test
+    void deadLettersPendingRetriesOnShutdown() throws Exception {
+        when(transportPool.borrow()).thenThrow(new MessagingException("connection refused"));
+        MailTask task = MailTask.of("user@example.com", "subject", "<p>hi</p>", "test");
+
+        pipeline.submit(task);
+        verify(transportPool, timeout(5000)).borrow();
+        pipeline.shutdown();
+
+        // 死信写入Redis失败只记录日志，不影响调用方收到失败结果
+        assertThat(task.completion()).isCompletedExceptionally();
+    }
+
+    @Test
+    void completesSentMailBeforeShutdown() throws Exception {
+        Transport transport = mock(Transport.class);
+        when(transportPool.borrow()).thenReturn(transport);
+        MailTask task = MailTask.of("user@example.com", "subject", "<p>hi</p>", "test");
+
+        pipeline.submit(task);
+        task.completion().get(5, TimeUnit.SECONDS);
+        pipeline.shutdown();
+
+        assertThat(task.completion()).isCompleted().isNotCompletedExceptionally();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.afanguserbackend.component.mail;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * SMTP连接池的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class SmtpTransportPoolTest {
+
+    @Test
+    void setsSocketTimeoutsOnSession() {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setProtocol("smtp");
+
+        SmtpTransportPool pool = new SmtpTransportPool(mailSender, new SimpleMeterRegistry(), 1, 60, 15, 5000,
+                1000, 2000, 3000);
+        try {
+            assertThat(pool.session().getProperty("mail.smtp.connectiontimeout")).isEqualTo("1000");
+            assertThat(pool.session().getProperty("mail.smtp.timeout")).isEqualTo("2000");
+            assertThat(pool.session().getProperty("mail.smtp.writetimeout")).isEqualTo("3000");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void keepsTimeoutsConfiguredInMailProperties() {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        Properties properties = new Properties();
+        properties.setProperty("mail.smtp.timeout", "500");
+        mailSender.setJavaMailProperties(properties);
+
+        SmtpTransportPool pool = new SmtpTransportPool(mailSender, new SimpleMeterRegistry(), 1, 60, 15, 5000,
+                1000, 2000, 3000);
+        try {
+            assertThat(pool.session().getProperty("mail.smtp.timeout")).isEqualTo("500");
+            assertThat(pool.session().getProperty("mail.smtp.connectiontimeout")).isEqualTo("1000");
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.afanguserbackend.component.notify;
+
+import com.example.afanguserbackend.component.mail.MailDeliveryPipeline;
+import com.example.afanguserbackend.component.mail.MailTask;
+import com.example.afanguserbackend.component.template.MessageTemplateEngine;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 邮件通知发送方的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class EmailNotificationSenderTest {
+
+    @Test
+    void stopsWaitingWellBeforeMessageCanBeClaimed() {
+        MessageTemplateEngine templateEngine = mock(MessageTemplateEngine.class);
+        when(templateEngine.render(anyString(), any(), anyMap())).thenReturn("<p>hi</p>");
+        MailDeliveryPipeline pipeline = mock(MailDeliveryPipeline.class);
+        // 投递管道不完成任务，模拟一直在退避重试
+        EmailNotificationSender sender = new EmailNotificationSender(templateEngine, pipeline, 400);
+
+        long start = System.nanoTime();
+        assertThatCode(() -> sender.send(NotificationMessage.of(NotificationChannel.EMAIL, "user@example.com",
+                "email-verification-code", Map.of(EmailNotificationSender.SUBJECT, "验证码")))).doesNotThrowAnyException();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(400));
+        verify(pipeline).submit(any());
+    }
+
+    @Test
+    void reportsDeadLetteredMailAsFailed() {
+        MessageTemplateEngine templateEngine = mock(MessageTemplateEngine.class);
+        when(templateEngine.render(anyString(), any(), anyMap())).thenReturn("<p>hi</p>");
+        MailDeliveryPipeline pipeline = mock(MailDeliveryPipeline.class);
+        // 投递管道重试耗尽，写入邮件死信
+        doAnswer(invocation -> invocation.<MailTask>getArgument(0).completion()
+                .completeExceptionally(new IllegalStateException("smtp down"))).when(pipeline).submit(any());
+        EmailNotificationSender sender = new EmailNotificationSender(templateEngine, pipeline, 400);
+
+        assertThatThrownBy(() -> sender.send(NotificationMessage.of(NotificationChannel.EMAIL, "user@example.com",
+                "email-verification-code", Map.of(EmailNotificationSender.SUBJECT, "验证码"))))
+                .isInstanceOf(NotificationFailedException.class)
+                .hasRootCauseMessage("smtp down");
+    }
+}
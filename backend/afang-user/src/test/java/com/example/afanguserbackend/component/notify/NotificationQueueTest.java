@@ -0,0 +1,189 @@
+package com.example.afanguserbackend.component.notify;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 持久化通知队列的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class NotificationQueueTest {
+
+    private static final String STREAM_KEY = "stream:notify:sms";
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private StreamOperations<String, Object, Object> streamOperations;
+
+    private RedisStreamCommands streamCommands;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private NotificationSender sender;
+
+    private NotificationQueue queue;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        streamOperations = mock(StreamOperations.class);
+        streamCommands = mock(RedisStreamCommands.class);
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.streamCommands()).thenReturn(streamCommands);
+        when(stringRedisTemplate.opsForStream()).thenReturn(streamOperations);
+        when(stringRedisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection));
+        // 没有新消息时模拟阻塞读取，避免读取线程空转
+        when(streamOperations.read(any(Consumer.class), any(), any(StreamOffset[].class))).thenAnswer(invocation -> {
+            Thread.sleep(50);
+            return List.of();
+        });
+        sender = mock(NotificationSender.class);
+        when(sender.channel()).thenReturn(NotificationChannel.SMS);
+        meterRegistry = new SimpleMeterRegistry();
+        queue = new NotificationQueue(stringRedisTemplate, meterRegistry, List.of(sender),
+                "stream:notify:", "n1", 4, 4, 16, 3, 60000, 60000, 1000, 1000, "notify:dead-letter", 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        queue.stop();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sendsClaimedMessagesAndAcknowledgesTrimmedEntries() throws Exception {
+        List<Object> claimed = List.of(entry("1-0", message(0)), Arrays.asList("2-0", null));
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any(), any(), any(), any()))
+                .thenReturn(List.of("0-0", claimed, List.of()));
+
+        queue.start();
+
+        verify(sender, timeout(5000)).send(argThat(message -> "13800000000".equals(message.to())));
+        verify(streamOperations, timeout(5000)).acknowledge(STREAM_KEY, "notify-workers", RecordId.of("2-0"));
+        verify(streamOperations, timeout(5000)).acknowledge(STREAM_KEY, "notify-workers", RecordId.of("1-0"));
+    }
+
+    @Test
+    void reappendsFailedMessageWithBackoff() throws Exception {
+        doThrow(new IllegalStateException("provider down")).when(sender).send(any());
+        claim(message(0));
+        long before = System.currentTimeMillis();
+
+        queue.start();
+
+        verify(streamCommands, timeout(5000)).xAdd(argThat(record -> {
+            Map<String, String> fields = fields(record);
+            long notBefore = Long.parseLong(fields.getOrDefault("nb", "0"));
+            return "1".equals(fields.get("att")) && notBefore >= before + 1000 && notBefore <= System.currentTimeMillis() + 1000;
+        }), any());
+        verify(streamOperations, timeout(5000)).acknowledge(STREAM_KEY, "notify-workers", RecordId.of("1-0"));
+        assertThat(meterRegistry.counter("notify.delivery", "channel", "sms", "outcome", "retried").count()).isEqualTo(1);
+    }
+
+    @Test
+    void backoffDoublesWithEachFailure() throws Exception {
+        doThrow(new IllegalStateException("provider down")).when(sender).send(any());
+        // 已失败一次、退避已到期的消息
+        claim(message(1));
+        long before = System.currentTimeMillis();
+
+        queue.start();
+
+        verify(streamCommands, timeout(5000)).xAdd(argThat(record -> {
+            Map<String, String> fields = fields(record);
+            return "2".equals(fields.get("att")) && Long.parseLong(fields.getOrDefault("nb", "0")) >= before + 2000;
+        }), any());
+    }
+
+    @Test
+    void waitsForBackoffBeforeSending() throws Exception {
+        NotificationMessage pending = message(1);
+        claim(new NotificationMessage(pending.channel(), pending.to(), pending.template(), pending.languageTag(),
+                pending.params(), 1, pending.enqueuedMillis(), System.currentTimeMillis() + 500));
+
+        queue.start();
+
+        verify(sender, after(200).never()).send(any());
+        verify(streamOperations, never()).acknowledge(STREAM_KEY, "notify-workers", RecordId.of("1-0"));
+        verify(sender, timeout(5000)).send(any());
+        verify(streamOperations, timeout(5000)).acknowledge(STREAM_KEY, "notify-workers", RecordId.of("1-0"));
+    }
+
+    @Test
+    void countsSenderFinalFailureWithoutRetrying() throws Exception {
+        doThrow(new NotificationFailedException("dead-lettered", null)).when(sender).send(any());
+        claim(message(0));
+
+        queue.start();
+
+        verify(streamOperations, timeout(5000)).acknowledge(STREAM_KEY, "notify-workers", RecordId.of("1-0"));
+        verify(streamCommands, never()).xAdd(any(), any());
+        assertThat(meterRegistry.counter("notify.delivery", "channel", "sms", "outcome", "failed").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("notify.delivery", "channel", "sms", "outcome", "retried").count()).isZero();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void claim(NotificationMessage message) {
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any(), any(), any(), any()))
+                .thenReturn(List.of("0-0", List.of(entry("1-0", message)), List.of()));
+    }
+
+    private static NotificationMessage message(int attempts) {
+        NotificationMessage message = NotificationMessage.of(NotificationChannel.SMS, "13800000000", "verification-code",
+                Map.of("CODE", "123456"));
+        return new NotificationMessage(message.channel(), message.to(), message.template(), message.languageTag(),
+                message.params(), attempts, message.enqueuedMillis(), 0);
+    }
+
+    private static List<Object> entry(String id, NotificationMessage message) {
+        List<Object> body = new ArrayList<>();
+        message.toFields().forEach((name, value) -> {
+            body.add(name);
+            body.add(value);
+        });
+        return List.of(id, body);
+    }
+
+    private static Map<String, String> fields(MapRecord<byte[], byte[], byte[]> record) {
+        Map<String, String> fields = new HashMap<>();
+        record.getValue().forEach((name, value) ->
+                fields.put(new String(name, StandardCharsets.UTF_8), new String(value, StandardCharsets.UTF_8)));
+        return fields;
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.afanguserbackend.component.outbox;
+
+import com.example.afanguserbackend.component.event.UserChangedEvent;
+import com.example.afanguserbackend.component.sharding.UserShardTemplate;
+import com.example.afanguserbackend.mapper.user.UsersMapper;
+import com.example.afanguserbackend.model.entity.user.Users;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 用户变更Stream订阅者的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class UserChangeStreamSubscriberTest {
+
+    private static final String STREAM_KEY = "stream:user-changed";
+
+    private StreamOperations<String, Object, Object> streamOperations;
+
+    private ApplicationEventPublisher eventPublisher;
+
+    private UsersMapper usersMapper;
+
+    private UserChangeStreamSubscriber subscriber;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        streamOperations = mock(StreamOperations.class);
+        when(stringRedisTemplate.opsForStream()).thenReturn(streamOperations);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        usersMapper = mock(UsersMapper.class);
+        UserShardTemplate shardTemplate = mock(UserShardTemplate.class);
+        when(shardTemplate.onId(anyLong(), any(), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(2).get());
+        subscriber = new UserChangeStreamSubscriber(stringRedisTemplate, mock(RedisConnectionFactory.class),
+                eventPublisher, usersMapper, shardTemplate, STREAM_KEY, "a", 200, 100, 1000);
+    }
+
+    @Test
+    void loadsUserOnceAndPassesItToListeners() {
+        Users user = new Users();
+        user.setId(7L);
+        when(usersMapper.selectByIdUncached(7L)).thenReturn(user);
+
+        subscriber.handle(record("1-0", 10L, 7L, "UPDATED"));
+
+        ArgumentCaptor<UserChangedEvent> event = ArgumentCaptor.forClass(UserChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertThat(event.getValue().getUser()).isSameAs(user);
+        verify(usersMapper, times(1)).selectByIdUncached(7L);
+        // 不经过二级缓存的selectById
+        verify(usersMapper, never()).selectById(anyLong());
+        verify(streamOperations).acknowledge(STREAM_KEY, "node:a", RecordId.of("1-0"));
+    }
+
+    @Test
+    void skipsLookupForDeletesAndDropsStaleEvents() {
+        subscriber.handle(record("1-0", 20L, 7L, "DELETED"));
+        subscriber.handle(record("2-0", 10L, 7L, "UPDATED"));
+
+        ArgumentCaptor<UserChangedEvent> event = ArgumentCaptor.forClass(UserChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertThat(event.getValue().getType()).isEqualTo(UserChangedEvent.Type.DELETED);
+        assertThat(event.getValue().getUser()).isNull();
+        verify(usersMapper, never()).selectByIdUncached(anyLong());
+        verify(streamOperations).acknowledge(STREAM_KEY, "node:a", RecordId.of("2-0"));
+    }
+
+    @Test
+    void destroysOwnGroupOnStop() {
+        subscriber.stop();
+
+        verify(streamOperations).destroyGroup(STREAM_KEY, "node:a");
+    }
+
+    @Test
+    void destroysOnlyOtherGroupsWhoseConsumersAreAllIdle() {
+        StreamInfo.XInfoGroups groups = mock(StreamInfo.XInfoGroups.class);
+        List<StreamInfo.XInfoGroup> list = List.of(group("node:a", 1), group("node:gone", 1),
+                group("node:busy", 2), group("node:empty", 0), group("other", 1));
+        when(groups.stream()).thenAnswer(invocation -> list.stream());
+        when(streamOperations.groups(STREAM_KEY)).thenReturn(groups);
+        StreamInfo.XInfoConsumers gone = consumers(5000);
+        StreamInfo.XInfoConsumers busy = consumers(5000, 10);
+        when(streamOperations.consumers(STREAM_KEY, "node:gone")).thenReturn(gone);
+        when(streamOperations.consumers(STREAM_KEY, "node:busy")).thenReturn(busy);
+
+        subscriber.destroyStaleGroups();
+
+        verify(streamOperations).destroyGroup(STREAM_KEY, "node:gone");
+        verify(streamOperations, times(1)).destroyGroup(eq(STREAM_KEY), anyString());
+    }
+
+    private static MapRecord<String, String, String> record(String id, long eventId, long userId, String type) {
+        return StreamRecords.newRecord().in(STREAM_KEY).withId(RecordId.of(id)).ofMap(Map.of(
+                "eventId", String.valueOf(eventId), "userId", String.valueOf(userId), "type", type));
+    }
+
+    private static StreamInfo.XInfoGroup group(String name, long consumerCount) {
+        StreamInfo.XInfoGroup group = mock(StreamInfo.XInfoGroup.class);
+        when(group.groupName()).thenReturn(name);
+        when(group.consumerCount()).thenReturn(consumerCount);
+        when(group.pendingCount()).thenReturn(0L);
+        return group;
+    }
+
+    private static StreamInfo.XInfoConsumers consumers(long... idleTimes) {
+        StreamInfo.XInfoConsumers consumers = mock(StreamInfo.XInfoConsumers.class);
+        List<StreamInfo.XInfoConsumer> list = Arrays.stream(idleTimes)
+                .mapToObj(UserChangeStreamSubscriberTest::consumer).toList();
+        when(consumers.stream()).thenAnswer(invocation -> list.stream());
+        return consumers;
+    }
+
+    private static StreamInfo.XInfoConsumer consumer(long idleTime) {
+        StreamInfo.XInfoConsumer consumer = mock(StreamInfo.XInfoConsumer.class);
+        when(consumer.idleTimeMs()).thenReturn(idleTime);
+        return consumer;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.afanguserbackend.component.replica;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * long哈希索引的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class LongHashIndexTest {
+
+    @Test
+    void putReplacesAndRemoveKeyReturnsValue() {
+        LongHashIndex index = new LongHashIndex(4);
+
+        assertThat(index.put(7L, 1L, -1L)).isEqualTo(-1L);
+        assertThat(index.put(7L, 2L, -1L)).isEqualTo(1L);
+        assertThat(index.get(7L, -1L)).isEqualTo(2L);
+        assertThat(index.removeKey(7L, -1L)).isEqualTo(2L);
+        assertThat(index.get(7L, -1L)).isEqualTo(-1L);
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void keepsMultipleValuesPerKey() {
+        LongHashIndex index = new LongHashIndex(4);
+        index.add(5L, 10L);
+        index.add(5L, 11L);
+
+        assertThat(index.find(5L, v -> v == 11L, -1L)).isEqualTo(11L);
+        assertThat(index.removeEntry(5L, 10L)).isTrue();
+        assertThat(index.find(5L, v -> v == 10L, -1L)).isEqualTo(-1L);
+        assertThat(index.get(5L, -1L)).isEqualTo(11L);
+    }
+
+    @Test
+    void matchesHashMapUnderRandomInsertsAndDeletes() {
+        LongHashIndex index = new LongHashIndex(16);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            // 键空间小，保证大量冲突、删除补洞和多次扩容
+            long key = 1 + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                Long removed = expected.remove(key);
+                assertThat(index.removeKey(key, -1L)).isEqualTo(removed == null ? -1L : removed);
+            } else {
+                long value = random.nextInt(Integer.MAX_VALUE);
+                Long old = expected.put(key, value);
+                assertThat(index.put(key, value, -1L)).isEqualTo(old == null ? -1L : old);
+            }
+        }
+        assertThat(index.size()).isEqualTo(expected.size());
+        for (long key = 1; key <= 5_000; key++) {
+            Long value = expected.get(key);
+            assertThat(index.get(key, -1L)).isEqualTo(value == null ? -1L : value);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.afanguserbackend.component.replica;
+
+import com.example.afanguserbackend.model.entity.user.Users;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 堆外用户副本存储的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class OffHeapUserReplicaStoreTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private final OffHeapUserReplicaStore store = new OffHeapUserReplicaStore(4096);
+
+    @Test
+    void roundTripsFieldsWithoutPassword() {
+        store.put(user(1L, "13800000001", "AFang@Example.com", "AFang"));
+
+        Users stored = store.get(1L);
+        assertThat(stored.getPhone()).isEqualTo("13800000001");
+        assertThat(stored.getEmail()).isEqualTo("AFang@Example.com");
+        assertThat(stored.getUsername()).isEqualTo("AFang");
+        assertThat(stored.getUserRole()).isEqualTo("user");
+        assertThat(stored.getVersion()).isEqualTo(3);
+        assertThat(stored.getUpdateTime()).isEqualTo(NOW);
+        assertThat(stored.getPassword()).isNull();
+        assertThat(store.updateTimeOf(1L)).isEqualTo(NOW);
+    }
+
+    @Test
+    void looksUpSecondaryKeysIgnoringCase() {
+        store.put(user(1L, "13800000001", "AFang@Example.com", "AFang"));
+
+        assertThat(store.idByPhone("13800000001")).isEqualTo(1L);
+        assertThat(store.idByEmail("afang@example.com")).isEqualTo(1L);
+        assertThat(store.idByUsername("AFANG")).isEqualTo(1L);
+        assertThat(store.idByPhone("13800000002")).isNull();
+    }
+
+    @Test
+    void reindexesChangedKeysAndReusesSlots() {
+        for (long id = 1; id <= 100; id++) {
+            store.put(user(id, "138" + String.format("%08d", id), id + "@example.com", "user" + id));
+        }
+        store.put(user(1L, "13900000001", "1@example.com", "renamed"));
+        store.remove(2L);
+
+        assertThat(store.size()).isEqualTo(99);
+        assertThat(store.idByPhone("13800000001")).isNull();
+        assertThat(store.idByPhone("13900000001")).isEqualTo(1L);
+        assertThat(store.idByUsername("user1")).isNull();
+        assertThat(store.idByUsername("renamed")).isEqualTo(1L);
+        assertThat(store.get(2L)).isNull();
+        assertThat(store.idByEmail("2@example.com")).isNull();
+        assertThat(store.get(100L).getUsername()).isEqualTo("user100");
+    }
+
+    @Test
+    void skipsRecordsLargerThanTheBiggestSlot() {
+        Users user = user(1L, "13800000001", "afang@example.com", "afang");
+        user.setAvatar("a".repeat(2000));
+
+        store.put(user);
+
+        assertThat(store.get(1L)).isNull();
+        assertThat(store.idByPhone("13800000001")).isNull();
+    }
+
+    private static Users user(Long id, String phone, String email, String username) {
+        return Users.builder()
+                .id(id)
+                .phone(phone)
+                .email(email)
+                .username(username)
+                .password("$2a$10$hash")
+                .userRole("user")
+                .status("active")
+                .version(3)
+                .createTime(NOW)
+                .updateTime(NOW)
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.afanguserbackend.component.replica;
+
+import com.example.afanguserbackend.component.sharding.ShardContext;
+import com.example.afanguserbackend.component.sharding.UserShardTemplate;
+import com.example.afanguserbackend.mapper.user.UsersMapper;
+import com.example.afanguserbackend.model.entity.user.Users;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 节点内用户副本的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class UserReplicaTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    private UsersMapper usersMapper;
+
+    private UserShardTemplate shardTemplate;
+
+    private UserReplica replica;
+
+    @BeforeEach
+    void setUp() {
+        usersMapper = mock(UsersMapper.class);
+        shardTemplate = mock(UserShardTemplate.class);
+        when(shardTemplate.configuredShards()).thenReturn(List.of(ShardContext.GLOBAL));
+        when(shardTemplate.onShard(anyString(), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        when(usersMapper.selectMinId()).thenReturn(1L);
+        when(usersMapper.selectMaxId()).thenReturn(1L);
+        when(usersMapper.scanRange(eq(0L), anyLong(), anyInt())).thenReturn(List.of(user(1L, "13800000001")));
+        when(usersMapper.scanRange(eq(1L), anyLong(), anyInt())).thenReturn(List.of());
+        when(usersMapper.scanChangedAfter(any(), anyLong(), anyInt())).thenReturn(List.of());
+        replica = new UserReplica(usersMapper, shardTemplate, new SimpleMeterRegistry(),
+                true, 100, 1, 5, 10, "heap", 1);
+    }
+
+    @Test
+    void retriesAfterFailedLoad() throws InterruptedException {
+        when(usersMapper.selectDatabaseTime()).thenThrow(new RuntimeException("down")).thenReturn(NOW);
+
+        replica.load();
+        awaitReady();
+
+        assertThat(replica.isReady()).isTrue();
+        assertThat(replica.findByPhone("13800000001")).map(Users::getId).contains(1L);
+    }
+
+    @Test
+    void scansShardsWithoutWatermarkFromTheBeginning() throws InterruptedException {
+        when(usersMapper.selectDatabaseTime()).thenReturn(NOW);
+        replica.load();
+        awaitReady();
+
+        when(shardTemplate.configuredShards()).thenReturn(List.of(ShardContext.GLOBAL, "ds1"));
+        Users moved = user(2L, "13800000002");
+        when(usersMapper.scanChangedAfter(eq(LocalDateTime.of(1970, 1, 1, 0, 0).minusSeconds(5)), eq(0L), anyInt()))
+                .thenReturn(List.of(moved));
+        replica.poll();
+
+        assertThat(replica.findById(2L)).map(Users::getPhone).contains("13800000002");
+    }
+
+    private void awaitReady() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!replica.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static Users user(long id, String phone) {
+        Users user = new Users();
+        user.setId(id);
+        user.setPhone(phone);
+        user.setDeleted(0);
+        user.setUpdateTime(NOW);
+        return user;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.afanguserbackend.component.search;
+
+import com.example.afanguserbackend.component.event.UserChangedEvent;
+import com.example.afanguserbackend.component.sharding.ShardContext;
+import com.example.afanguserbackend.component.sharding.UserShardTemplate;
+import com.example.afanguserbackend.mapper.user.UsersMapper;
+import com.example.afanguserbackend.model.entity.user.Users;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 用户搜索索引的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class UserSearchIndexTest {
+
+    private UsersMapper usersMapper;
+
+    private UserShardTemplate shardTemplate;
+
+    private UserSearchIndex index;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        usersMapper = mock(UsersMapper.class);
+        shardTemplate = mock(UserShardTemplate.class);
+        when(shardTemplate.configuredShards()).thenReturn(List.of(ShardContext.GLOBAL));
+        when(shardTemplate.onShard(anyString(), any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(1).get());
+        when(usersMapper.scanAfterId(eq(0L), anyInt())).thenReturn(List.of(
+                user(1L, "Alice", "alice@example.com"),
+                user(2L, "malice", "m@example.com"),
+                user(3L, "bob", "bob@example.com")));
+        when(usersMapper.scanAfterId(eq(3L), anyInt())).thenReturn(List.of());
+
+        index = new UserSearchIndex(usersMapper, shardTemplate, 100, 1000);
+        index.build();
+        awaitReady();
+    }
+
+    @AfterEach
+    void tearDown() {
+        index.shutdown();
+    }
+
+    @Test
+    void ranksPrefixMatchesBeforeSubstringMatches() {
+        assertThat(index.search("ALI", 10)).extracting(UserSearchIndex.Document::id).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void appliesChangeEvents() throws InterruptedException {
+        index.onUserChanged(new UserChangedEvent(this, 3L, UserChangedEvent.Type.UPDATED,
+                user(3L, "robert", "bob@example.com")));
+        index.onUserChanged(new UserChangedEvent(this, 1L, UserChangedEvent.Type.DELETED, null));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (index.search("alice", 10).size() > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(index.search("alice", 10)).extracting(UserSearchIndex.Document::id).containsExactly(2L);
+        assertThat(index.search("rob", 10)).extracting(UserSearchIndex.Document::id).containsExactly(3L);
+    }
+
+    private void awaitReady() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                index.search("a", 1);
+                return;
+            } catch (RuntimeException e) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static Users user(long id, String username, String email) {
+        Users user = new Users();
+        user.setId(id);
+        user.setUsername(username);
+        user.setEmail(email);
+        return user;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.afanguserbackend.component.sharding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 一致性哈希环的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 10_000;
+
+    private static final int VIRTUAL_NODES = new ShardingProperties().getVirtualNodes();
+
+    @Test
+    void placesKeysDeterministicallyAndEvenly() {
+        List<String> shards = List.of("s0", "s1", "s2");
+        ConsistentHashRing ring = new ConsistentHashRing(shards, VIRTUAL_NODES);
+        ConsistentHashRing same = new ConsistentHashRing(shards, VIRTUAL_NODES);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            String shard = ring.shardFor(phone(i));
+            assertThat(same.shardFor(phone(i))).isEqualTo(shard);
+            counts.merge(shard, 1, Integer::sum);
+        }
+
+        assertThat(counts).containsOnlyKeys(shards);
+        // 虚拟节点足够多时各分片分到的Key接近均分
+        counts.values().forEach(count -> assertThat(count).isBetween(KEYS / 4, KEYS * 5 / 12));
+    }
+
+    @Test
+    void addingShardOnlyMovesKeysToTheNewShard() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("s0", "s1"), VIRTUAL_NODES);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("s0", "s1", "s2"), VIRTUAL_NODES);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String from = before.shardFor(phone(i));
+            String to = after.shardFor(phone(i));
+            if (!from.equals(to)) {
+                assertThat(to).isEqualTo("s2");
+                moved++;
+            }
+        }
+
+        // 只有约1/3的Key迁往新分片
+        assertThat(moved).isBetween(KEYS / 4, KEYS * 5 / 12);
+    }
+
+    @Test
+    void rejectsEmptyShardList() {
+        assertThatThrownBy(() -> new ConsistentHashRing(List.of(), VIRTUAL_NODES))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String phone(int i) {
+        return String.format("138%08d", i);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.afanguserbackend.component.sharding;
+
+import com.example.afanguserbackend.mapper.user.UsersMapper;
+import com.example.afanguserbackend.model.entity.user.Users;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 在线重分片切换顺序的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class UserReshardingToolTest {
+
+    private static final List<String> SHARDS = List.of("s0", "s1");
+
+    private UserShardTemplate shardTemplate;
+
+    private UsersMapper usersMapper;
+
+    private UserReshardingTool tool;
+
+    private volatile String currentShard;
+
+    @BeforeEach
+    void setUp() {
+        shardTemplate = mock(UserShardTemplate.class);
+        usersMapper = mock(UsersMapper.class);
+        ShardingProperties properties = new ShardingProperties();
+        properties.setRingRefreshIntervalMs(0);
+        tool = new UserReshardingTool(shardTemplate, usersMapper, properties);
+
+        when(shardTemplate.isEnabled()).thenReturn(true);
+        when(shardTemplate.configuredShards()).thenReturn(SHARDS);
+        when(shardTemplate.activeShards()).thenReturn(List.of("s0"));
+        when(shardTemplate.onShard(anyString(), any())).thenAnswer(invocation -> {
+            currentShard = invocation.getArgument(0);
+            return invocation.<Supplier<?>>getArgument(1).get();
+        });
+        when(usersMapper.selectDatabaseTime()).thenAnswer(invocation -> LocalDateTime.now());
+        when(usersMapper.insert(any(Users.class))).thenReturn(1);
+        when(usersMapper.physicalDeleteByIds(anyCollection())).thenReturn(1);
+    }
+
+    @Test
+    void movesLookupsOnlyAfterFenceAndPicksUpRowsInsertedBehindTheScan() throws InterruptedException {
+        ConsistentHashRing target = new ConsistentHashRing(SHARDS, new ShardingProperties().getVirtualNodes());
+        Users copied = user(1000L, phoneOn(target, "s1", 0));
+        // 复制阶段之后插入到已扫描区间（ID小于水位）的行
+        Users lateInsert = user(500L, phoneOn(target, "s1", 1));
+
+        when(usersMapper.scanAfterId(anyLong(), anyInt())).thenAnswer(invocation ->
+                "s0".equals(currentShard) && invocation.<Long>getArgument(0) == 0L ? List.of(copied) : List.of());
+        AtomicBoolean firstPass = new AtomicBoolean(true);
+        when(usersMapper.scanChangedSince(anyLong(), any(), anyLong(), anyInt())).thenAnswer(invocation ->
+                "s0".equals(currentShard) && invocation.<Long>getArgument(0) == 0L && firstPass.getAndSet(false)
+                        ? List.of(lateInsert) : List.of());
+
+        ReshardReport report = tool.start(SHARDS);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!"DONE".equals(report.getPhase()) && !"FAILED".equals(report.getPhase())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(report.getPhase()).isEqualTo("DONE");
+        assertThat(report.getMoved()).isEqualTo(1);
+        assertThat(report.getCaughtUp()).isEqualTo(1);
+        verify(usersMapper).insert(lateInsert);
+
+        InOrder order = inOrder(shardTemplate);
+        order.verify(shardTemplate).setReshardState(ReshardState.COPYING);
+        order.verify(shardTemplate).setReshardState(ReshardState.FENCED);
+        order.verify(shardTemplate).moveLookups(1000L, "s1");
+        order.verify(shardTemplate).moveLookups(500L, "s1");
+        order.verify(shardTemplate).switchActiveShards(SHARDS);
+        order.verify(shardTemplate).setReshardState(null);
+    }
+
+    private static Users user(long id, String phone) {
+        Users user = new Users();
+        user.setId(id);
+        user.setPhone(phone);
+        return user;
+    }
+
+    private static String phoneOn(ConsistentHashRing ring, String shard, int skip) {
+        int found = 0;
+        for (long phone = 13800000000L; ; phone++) {
+            if (ring.shardFor(Long.toString(phone)).equals(shard) && found++ == skip) {
+                return Long.toString(phone);
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.afanguserbackend.component.sharding;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.example.afanguserbackend.mapper.user.UserShardLookupMapper;
+import com.example.afanguserbackend.model.entity.user.UserShardLookup;
+import com.example.afanguserbackend.model.entity.user.Users;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 用户分片路由、查找表预占和写入栅栏的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class UserShardTemplateTest {
+
+    private static final List<String> SHARDS = List.of("s0", "s1");
+
+    private static final String FENCED_MESSAGE = "用户数据迁移中，暂时无法修改，请稍后重试";
+
+    private UserShardLookupMapper lookupMapper;
+
+    private ValueOperations<String, Object> valueOperations;
+
+    private UserShardTemplate template;
+
+    @BeforeAll
+    static void initTableInfo() {
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), UserShardLookup.class);
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ShardingProperties properties = new ShardingProperties();
+        properties.setEnabled(true);
+        for (String name : SHARDS) {
+            ShardingProperties.Shard shard = new ShardingProperties.Shard();
+            shard.setName(name);
+            properties.getShards().add(shard);
+        }
+        lookupMapper = mock(UserShardLookupMapper.class);
+        valueOperations = mock(ValueOperations.class);
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        template = new UserShardTemplate(properties, lookupMapper, redisTemplate);
+        template.init();
+    }
+
+    @Test
+    void routesShardKeyByRing() {
+        ConsistentHashRing ring = new ConsistentHashRing(SHARDS, new ShardingProperties().getVirtualNodes());
+
+        for (int i = 0; i < 20; i++) {
+            String phone = String.format("138%08d", i);
+            assertThat(template.onShardKey(phone, ShardContext::current)).isEqualTo(ring.shardFor(phone));
+        }
+        assertThat(ShardContext.current()).isNull();
+    }
+
+    @Test
+    void routesIdThroughGlobalLookup() {
+        List<String> lookupShards = new ArrayList<>();
+        when(lookupMapper.selectOne(any())).thenAnswer(invocation -> {
+            lookupShards.add(ShardContext.current());
+            return UserShardLookup.builder().userId(7L).shard("s1").build();
+        });
+
+        assertThat(template.onId(7L, "missing", ShardContext::current)).isEqualTo("s1");
+        assertThat(lookupShards).containsExactly(ShardContext.GLOBAL);
+    }
+
+    @Test
+    void returnsNotFoundForUnknownId() {
+        AtomicBoolean called = new AtomicBoolean();
+
+        assertThat(template.onId(7L, "missing", () -> {
+            called.set(true);
+            return "found";
+        })).isEqualTo("missing");
+        assertThat(called).isFalse();
+    }
+
+    @Test
+    void releasesLookupsWhenInsertReturnsFalse() {
+        assertThat(template.insertUser(user(), () -> false)).isFalse();
+
+        verify(lookupMapper, times(3)).insert(any(UserShardLookup.class));
+        verify(lookupMapper, times(3)).delete(any(Wrapper.class));
+    }
+
+    @Test
+    void releasesLookupsWhenInsertThrows() {
+        assertThatThrownBy(() -> template.insertUser(user(), () -> {
+            throw new IllegalStateException("boom");
+        })).hasMessage("boom");
+
+        verify(lookupMapper, times(3)).delete(any(Wrapper.class));
+    }
+
+    @Test
+    void releasesEarlierReservationsWhenValueIsTaken() {
+        when(lookupMapper.insert(any(UserShardLookup.class)))
+                .thenReturn(1)
+                .thenThrow(new DuplicateKeyException("duplicate"));
+        when(lookupMapper.selectOne(any())).thenReturn(UserShardLookup.builder().userId(99L).shard("s0").build());
+        AtomicBoolean inserted = new AtomicBoolean();
+
+        assertThatThrownBy(() -> template.insertUser(user(), () -> inserted.getAndSet(true)))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(inserted).isFalse();
+        // 只撤销本次已预占的ID记录
+        verify(lookupMapper, times(1)).delete(any(Wrapper.class));
+    }
+
+    @Test
+    void readsFenceFromRedisOnWriteWhileResharding() {
+        template.setReshardState(ReshardState.COPYING);
+        // 其他节点设置了栅栏，本节点尚未定时刷新
+        when(valueOperations.get(anyString())).thenReturn(ReshardState.FENCED.name());
+
+        assertThatThrownBy(() -> template.insertUser(user(), () -> true)).hasMessage(FENCED_MESSAGE);
+        assertThatThrownBy(() -> template.updateUser(user(), () -> 1)).hasMessage(FENCED_MESSAGE);
+        verifyNoInteractions(lookupMapper);
+    }
+
+    @Test
+    void rejectsWriteWhenFenceCannotBeReadWhileResharding() {
+        template.setReshardState(ReshardState.COPYING);
+        when(valueOperations.get(anyString())).thenThrow(new RedisConnectionFailureException("down"));
+
+        assertThatThrownBy(() -> template.insertUser(user(), () -> true)).hasMessage(FENCED_MESSAGE);
+        verifyNoInteractions(lookupMapper);
+    }
+
+    @Test
+    void skipsRedisReadWhenNotResharding() {
+        clearInvocations(valueOperations);
+
+        assertThat(template.insertUser(user(), () -> true)).isTrue();
+        verify(valueOperations, never()).get(any());
+    }
+
+    private static Users user() {
+        Users user = new Users();
+        user.setId(7L);
+        user.setPhone("13800000007");
+        user.setEmail("afang@example.com");
+        user.setUsername("afang");
+        return user;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.afanguserbackend.component.sms;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * 短信服务商健康状态的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class SmsProviderHealthTest {
+
+    @Test
+    void tracksEwmaLatencyAndErrorRate() {
+        SmsProviderHealth health = new SmsProviderHealth(0.5, 10, 1.0, 1000);
+        // 尚无样本时评分为0，新服务商先被试用
+        assertThat(health.score()).isZero();
+
+        health.success(100);
+        health.success(200);
+        assertThat(health.latencyMs()).isCloseTo(150, within(0.001));
+        assertThat(health.errorRate()).isZero();
+
+        health.failure(50, 0);
+        assertThat(health.latencyMs()).isCloseTo(100, within(0.001));
+        assertThat(health.errorRate()).isCloseTo(0.5, within(0.001));
+        // 延迟按错误率放大
+        assertThat(health.score()).isCloseTo(100 * (1 + 4 * 0.5), within(0.001));
+    }
+
+    @Test
+    void opensAfterConsecutiveFailuresAndLetsOneProbeThroughWhenHalfOpen() {
+        SmsProviderHealth health = new SmsProviderHealth(0.1, 2, 1.0, 1000);
+
+        health.failure(10, 0);
+        assertThat(health.state()).isEqualTo(SmsProviderHealth.State.CLOSED);
+        health.failure(10, 0);
+        assertThat(health.state()).isEqualTo(SmsProviderHealth.State.OPEN);
+        assertThat(health.available(500)).isFalse();
+        assertThat(health.tryAcquire(500)).isFalse();
+
+        // 打开时长已过：只放行一个探测请求
+        assertThat(health.available(1000)).isTrue();
+        assertThat(health.tryAcquire(1000)).isTrue();
+        assertThat(health.state()).isEqualTo(SmsProviderHealth.State.HALF_OPEN);
+        assertThat(health.available(1000)).isFalse();
+        assertThat(health.tryAcquire(1000)).isFalse();
+
+        // 探测失败重新打开，从失败时刻重新计时
+        health.failure(10, 1200);
+        assertThat(health.state()).isEqualTo(SmsProviderHealth.State.OPEN);
+        assertThat(health.tryAcquire(2000)).isFalse();
+        assertThat(health.tryAcquire(2200)).isTrue();
+
+        // 探测成功关闭
+        health.success(10);
+        assertThat(health.state()).isEqualTo(SmsProviderHealth.State.CLOSED);
+        assertThat(health.tryAcquire(2200)).isTrue();
+        assertThat(health.tryAcquire(2200)).isTrue();
+    }
+
+    @Test
+    void opensWhenErrorRateExceedsThreshold() {
+        SmsProviderHealth health = new SmsProviderHealth(0.5, 10, 0.5, 1000);
+
+        health.failure(10, 0);
+
+        assertThat(health.state()).isEqualTo(SmsProviderHealth.State.OPEN);
+    }
+}
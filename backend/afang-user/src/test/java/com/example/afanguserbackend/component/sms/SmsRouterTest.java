@@ -0,0 +1,128 @@
+package com.example.afanguserbackend.component.sms;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 多服务商短信路由的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class SmsRouterTest {
+
+    private static final SmsMessage MESSAGE = new SmsMessage("13800000000", "sms-verification-code",
+            Map.of("CODE", "123456"));
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private SmsRouter router;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (router != null) {
+            router.shutdown();
+        }
+    }
+
+    @Test
+    void prefersProviderWithLowerEwmaLatency() throws Exception {
+        StubSmsProvider slow = stub("slow", 200, 0);
+        StubSmsProvider fast = stub("fast", 0, 0);
+        router = router(List.of(slow, fast), 0, 5);
+
+        // 都没有样本时按配置顺序
+        router.send(MESSAGE).get(5, TimeUnit.SECONDS);
+        assertThat(slow.sent()).hasSize(1);
+
+        router.send(MESSAGE).get(5, TimeUnit.SECONDS);
+        router.send(MESSAGE).get(5, TimeUnit.SECONDS);
+
+        assertThat(slow.sent()).hasSize(1);
+        assertThat(fast.sent()).hasSize(2);
+        assertThat(meterRegistry.get("sms.provider.latency").tag("provider", "slow").gauge().value())
+                .isGreaterThanOrEqualTo(200);
+    }
+
+    @Test
+    void hedgesToNextProviderAfterLatencyBudget() throws Exception {
+        StubSmsProvider slow = stub("slow", 2000, 0);
+        StubSmsProvider fast = stub("fast", 0, 0);
+        router = router(List.of(slow, fast), 100, 5);
+
+        long start = System.nanoTime();
+        router.send(MESSAGE).get(5, TimeUnit.SECONDS);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1000));
+        assertThat(fast.sent()).hasSize(1);
+        assertThat(slow.sent()).isEmpty();
+        assertThat(meterRegistry.counter("sms.hedge").count()).isEqualTo(1);
+    }
+
+    @Test
+    void failsOverWhenFirstProviderFailsFast() throws Exception {
+        StubSmsProvider broken = stub("broken", 0, 1);
+        StubSmsProvider healthy = stub("healthy", 0, 0);
+        router = router(List.of(broken, healthy), 0, 5);
+
+        router.send(MESSAGE).get(5, TimeUnit.SECONDS);
+
+        assertThat(healthy.sent()).containsExactly(MESSAGE);
+        assertThat(meterRegistry.get("sms.provider.error.rate").tag("provider", "broken").gauge().value())
+                .isGreaterThan(0);
+        // 失败不触发对冲
+        assertThat(meterRegistry.counter("sms.hedge").count()).isZero();
+    }
+
+    @Test
+    void failsWhenEveryProviderFailsThenWhenNoneIsAvailable() {
+        router = router(List.of(stub("broken", 0, 1)), 0, 1);
+
+        assertThatThrownBy(() -> router.send(MESSAGE).get(5, TimeUnit.SECONDS))
+                .hasRootCauseMessage("桩服务商模拟发送失败");
+        assertThat(meterRegistry.get("sms.provider.breaker.open").tag("provider", "broken").gauge().value())
+                .isEqualTo(1);
+
+        // 熔断打开后没有可用的服务商
+        assertThatThrownBy(() -> router.send(MESSAGE).get(5, TimeUnit.SECONDS))
+                .hasRootCauseMessage("没有可用的短信服务商");
+    }
+
+    @Test
+    void skipsDisabledProviders() {
+        router = router(List.of(new StubSmsProvider(false, 0, 0)), 0, 5);
+
+        assertThatThrownBy(() -> router.send(MESSAGE).get(5, TimeUnit.SECONDS))
+                .hasRootCauseMessage("没有可用的短信服务商");
+    }
+
+    private SmsRouter router(List<SmsProvider> providers, long hedgeAfterMs, int failureThreshold) {
+        List<String> order = providers.stream().map(SmsProvider::name).toList();
+        return new SmsRouter(providers, meterRegistry, order, hedgeAfterMs, 0.5, failureThreshold, 1.0, 60_000);
+    }
+
+    private static StubSmsProvider stub(String name, long latencyMs, double failureRate) {
+        return new StubSmsProvider(true, latencyMs, failureRate) {
+            @Override
+            public String name() {
+                return name;
+            }
+        };
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.afanguserbackend.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.web.client.RestClientBuilderConfigurer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 大模型上游调用配置的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class AiUpstreamConfigTest {
+
+    private final AiUpstreamConfig config = new AiUpstreamConfig();
+
+    @Test
+    void doesNotForceTlsSoPlainHttpUpstreamsStillWork() {
+        ConnectionProvider provider = config.aiConnectionProvider(4, 8, 1000, 60000, 600000, 30000);
+        try {
+            HttpClient httpClient = config.aiHttpClient(provider, 1000, 1000, true);
+
+            assertThat(httpClient.configuration().sslProvider()).isNull();
+            assertThat(httpClient.configuration().protocols()).contains(HttpProtocol.H2, HttpProtocol.HTTP11);
+        } finally {
+            provider.dispose();
+        }
+    }
+
+    @Test
+    void createsSeparateRestClientBuilderPerInjection() {
+        ConnectionProvider provider = config.aiConnectionProvider(4, 8, 1000, 60000, 600000, 30000);
+        try {
+            HttpClient httpClient = config.aiHttpClient(provider, 1000, 1000, true);
+            RestClientBuilderConfigurer configurer = mock(RestClientBuilderConfigurer.class);
+            when(configurer.configure(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+            assertThat(config.aiRestClientBuilder(configurer, httpClient))
+                    .isNotSameAs(config.aiRestClientBuilder(configurer, httpClient));
+        } finally {
+            provider.dispose();
+        }
+    }
+}
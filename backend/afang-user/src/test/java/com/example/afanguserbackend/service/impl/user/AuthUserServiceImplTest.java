@@ -0,0 +1,137 @@
+package com.example.afanguserbackend.service.impl.user;
+
+import com.example.afanguserbackend.component.replica.UserReplica;
+import com.example.afanguserbackend.component.sharding.UserShardTemplate;
+import com.example.afanguserbackend.model.entity.user.Users;
+import com.example.afanguserbackend.model.dto.user.auth_user_dto.RegisterUsersDto;
+import com.example.afanguserbackend.utils.JwtUtil;
+import com.example.afanguserbackend.utils.RedisUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 注册流程中验证码消费时机的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class AuthUserServiceImplTest {
+
+    private static final String EMAIL = "afang@example.com";
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    @Mock
+    private JwtUtil jwtUtil;
+
+    @Mock
+    private UserShardTemplate userShardTemplate;
+
+    @Mock
+    private UserReplica userReplica;
+
+    @InjectMocks
+    private AuthUserServiceImpl service;
+
+    private MockedStatic<RedisUtil> redis;
+
+    @BeforeEach
+    void setUp() {
+        redis = mockStatic(RedisUtil.class);
+        redis.when(() -> RedisUtil.getString(EMAIL)).thenReturn(Optional.of("123456"));
+        when(passwordEncoder.encode(anyString())).thenReturn("encoded");
+    }
+
+    @AfterEach
+    void tearDown() {
+        redis.close();
+    }
+
+    @Test
+    void keepsCodeWhenInsertFails() {
+        when(userShardTemplate.insertUser(any(), any()))
+                .thenThrow(new DuplicateKeyException("Duplicate entry for key 'users.uk_users_email'"));
+
+        assertThatThrownBy(() -> service.registerUsers(dto())).isInstanceOf(RuntimeException.class);
+        redis.verify(() -> RedisUtil.delete(anyString()), never());
+    }
+
+    @Test
+    void consumesCodeAfterInsertSucceeds() throws Exception {
+        when(userShardTemplate.insertUser(any(), any())).thenReturn(true);
+        when(jwtUtil.generateToken(any())).thenReturn("token");
+
+        assertThat(service.registerUsers(dto())).containsEntry("token", "token");
+        redis.verify(() -> RedisUtil.delete(EMAIL), times(1));
+    }
+
+    @Test
+    void checksUniquenessOnReplicaWhenReady() {
+        when(userReplica.isReady()).thenReturn(true);
+        when(userReplica.findByPhone(anyString())).thenReturn(Optional.empty());
+        when(userReplica.findByEmail("AFang@example.com")).thenReturn(Optional.of(new Users()));
+        RegisterUsersDto dto = dto();
+        dto.setEmail("AFang@example.com");
+        redis.when(() -> RedisUtil.getString("AFang@example.com")).thenReturn(Optional.of("123456"));
+
+        assertThatThrownBy(() -> service.registerUsers(dto)).hasMessage("邮箱已被注册");
+        verify(userShardTemplate, never()).onShardKey(anyString(), any());
+        verify(userShardTemplate, never()).insertUser(any(), any());
+    }
+
+    @Test
+    void fallsBackToDatabaseCheckWhenReplicaNotReady() throws Exception {
+        when(userShardTemplate.insertUser(any(), any())).thenReturn(true);
+        when(jwtUtil.generateToken(any())).thenReturn("token");
+
+        service.registerUsers(dto());
+
+        verify(userShardTemplate).onShardKey(anyString(), any());
+        verify(userReplica, never()).findByEmail(anyString());
+    }
+
+    @Test
+    void rejectsWrongCodeBeforeTouchingDatabase() {
+        RegisterUsersDto dto = dto();
+        dto.setCode("000000");
+
+        assertThatThrownBy(() -> service.registerUsers(dto)).hasMessage("验证码错误");
+        redis.verify(() -> RedisUtil.delete(anyString()), never());
+    }
+
+    private static RegisterUsersDto dto() {
+        return RegisterUsersDto.builder()
+                .username("afang")
+                .password("secret")
+                .code("123456")
+                .email(EMAIL)
+                .phone("13800000000")
+                .build();
+    }
+}
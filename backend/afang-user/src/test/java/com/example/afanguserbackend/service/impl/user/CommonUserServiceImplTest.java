@@ -0,0 +1,150 @@
+package com.example.afanguserbackend.service.impl.user;
+
+import com.example.afanguserbackend.component.outbox.UserChangeOutbox;
+import com.example.afanguserbackend.component.replica.UserReplica;
+import com.example.afanguserbackend.component.search.UserSearchIndex;
+import com.example.afanguserbackend.component.sharding.UserShardTemplate;
+import com.example.afanguserbackend.model.dto.user.admin_user_dto.UpdateUserRoleDto;
+import com.example.afanguserbackend.model.dto.user.common_user_dto.UpdateUsersDto;
+import com.example.afanguserbackend.model.entity.user.Users;
+import com.example.afanguserbackend.model.vo.user.UserVo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 用户信息和角色状态更新的单元测试
+ *
+ * @author AFang Team
+ * @version 1.0
+ * @since 2024-01-01
+ */
+class CommonUserServiceImplTest {
+
+    private UserShardTemplate userShardTemplate;
+
+    private UserReplica userReplica;
+
+    private CommonUserServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        userShardTemplate = mock(UserShardTemplate.class);
+        userReplica = mock(UserReplica.class);
+        service = new CommonUserServiceImpl(userShardTemplate, mock(UserSearchIndex.class),
+                mock(UserChangeOutbox.class), userReplica);
+    }
+
+    @Test
+    void rejectsUpdateWithoutVersion() {
+        UpdateUsersDto dto = new UpdateUsersDto();
+        dto.setUsername("afang");
+
+        assertThatThrownBy(() -> service.updateUsers(1L, dto)).hasMessage("版本号不能为空");
+        verifyNoInteractions(userShardTemplate);
+    }
+
+    @Test
+    void rejectsUpdateWithoutFields() {
+        UpdateUsersDto dto = new UpdateUsersDto();
+        dto.setVersion(3);
+
+        assertThatThrownBy(() -> service.updateUsers(1L, dto)).hasMessage("没有需要更新的字段");
+        verifyNoInteractions(userShardTemplate);
+    }
+
+    @Test
+    void reportsVersionConflictWhenUserExists() {
+        UpdateUsersDto dto = new UpdateUsersDto();
+        dto.setUsername("afang");
+        dto.setVersion(3);
+        when(userShardTemplate.updateUser(any(), any())).thenReturn(0);
+        when(userShardTemplate.onId(eq(1L), eq(false), any())).thenReturn(true);
+
+        assertThatThrownBy(() -> service.updateUsers(1L, dto)).hasMessage("用户信息已被修改，请刷新后重试");
+    }
+
+    @Test
+    void updatesOnlyTheGivenUserIdAndNoRoleOrStatus() {
+        UpdateUsersDto dto = new UpdateUsersDto();
+        dto.setUsername("afang");
+        dto.setVersion(3);
+        ArgumentCaptor<Users> update = ArgumentCaptor.forClass(Users.class);
+        when(userShardTemplate.updateUser(update.capture(), any())).thenReturn(1);
+
+        assertThat(service.updateUsers(7L, dto)).isTrue();
+        assertThat(update.getValue().getId()).isEqualTo(7L);
+        assertThat(update.getValue().getUserRole()).isNull();
+        assertThat(update.getValue().getStatus()).isNull();
+        assertThat(update.getValue().getPassword()).isNull();
+    }
+
+    @Test
+    void currentUserCarriesVersion() {
+        Users user = new Users();
+        user.setId(7L);
+        user.setUsername("afang");
+        user.setPassword("$2a$10$hash");
+        user.setVersion(4);
+        when(userShardTemplate.onId(eq(7L), any(), any())).thenReturn(user);
+
+        UserVo userVo = service.getCurrentUser(7L);
+
+        assertThat(userVo.getId()).isEqualTo(7L);
+        assertThat(userVo.getVersion()).isEqualTo(4);
+        assertThat(userVo.getUsername()).isEqualTo("afang");
+    }
+
+    @Test
+    void hydratesFromReplicaAndReadsOnlyMissesFromDatabase() {
+        when(userReplica.findById(any())).thenReturn(Optional.empty());
+        when(userReplica.findById(1L)).thenReturn(Optional.of(user(1L, "replica")));
+        when(userShardTemplate.groupIdsByShard(List.of(2L, 3L))).thenReturn(Map.of("s0", List.of(2L, 3L)));
+        // 数据库中只有2号用户
+        when(userShardTemplate.onShard(eq("s0"), any())).thenReturn(List.of(user(2L, "database")));
+
+        List<UserVo> users = service.getUsersByIds(List.of(2L, 1L, 3L));
+
+        assertThat(users).extracting(UserVo::getId).containsExactly(2L, 1L);
+        assertThat(users).extracting(UserVo::getUsername).containsExactly("database", "replica");
+    }
+
+    @Test
+    void skipsDatabaseWhenReplicaHitsAll() {
+        when(userReplica.findById(1L)).thenReturn(Optional.of(user(1L, "replica")));
+        when(userShardTemplate.groupIdsByShard(List.of())).thenReturn(Map.of());
+
+        assertThat(service.getUsersByIds(List.of(1L))).hasSize(1);
+        verify(userShardTemplate, never()).onShard(any(), any(Supplier.class));
+    }
+
+    @Test
+    void adminUpdateRequiresRoleOrStatus() {
+        UpdateUserRoleDto dto = new UpdateUserRoleDto(7L, null, null, 3);
+
+        assertThatThrownBy(() -> service.updateRoleAndStatus(dto)).hasMessage("没有需要更新的字段");
+        verifyNoInteractions(userShardTemplate);
+    }
+
+    private static Users user(Long id, String username) {
+        Users user = new Users();
+        user.setId(id);
+        user.setUsername(username);
+        return user;
+    }
+}